@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.User;
+import com.google.maps.model.DirectionsRoute;
+import com.ramnani.alexaskills.CommuteHelper.maps.DirectionsResponses;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the checked-in fixtures and builds the request objects the benchmarks
+ * run against.
+ */
+final class BenchmarkFixtures {
+
+    /**
+     * A Directions API transit response with three alternative routes, from home
+     * to work in Seattle. One of them has a transit switch.
+     */
+    static final String DIRECTIONS_FIXTURE = "fixtures/directions-transit.json";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Parses the fixture the same way the maps client parses a live response
+     */
+    static DirectionsRoute[] loadRoutes() throws IOException {
+        return DirectionsResponses.load(DIRECTIONS_FIXTURE);
+    }
+
+    static List<TransitSuggestion> loadSuggestions(GoogleMapsService googleMapsService) throws IOException {
+        List<TransitSuggestion> suggestions = new ArrayList<>();
+
+        for (DirectionsRoute route : loadRoutes()) {
+            suggestions.add(googleMapsService.routeToSuggestionMap(route));
+        }
+        return suggestions;
+    }
+
+    /**
+     * A session in the middle of a suggestion conversation, as after GetNextTransitToWork
+     */
+    static Session suggestionSession(List<TransitSuggestion> suggestions, int index) throws IOException {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(TransitSpeechletManager.SUGGESTION_ATTRIBUTE,
+                TransitSpeechletManager.writeSuggestions(suggestions));
+        attributes.put(TransitSpeechletManager.INDEX_ATTRIBUTE, index);
+
+        return Session.builder()
+                .withSessionId("SessionId.benchmark")
+                .withIsNew(false)
+                .withUser(User.builder().withUserId("benchmark-user").build())
+                .withAttributes(attributes)
+                .build();
+    }
+
+    static Intent intent(String name) {
+        return Intent.builder()
+                .withName(name)
+                .withSlots(Collections.<String, Slot>emptyMap())
+                .build();
+    }
+
+    /**
+     * Only the routes are needed from the response
+     */
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.Speechlet;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletToSpeechletV2Adapter;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.ramnani.alexaskills.CommuteHelper.utils.SpeechletUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reading a follow-up intent of the suggestion conversation and writing its
+ * response, by the SDK and by the StreamingSpeechletRequestHandler. The
+ * speechlet only returns a prepared response, so the difference is the
+ * envelope handling.
+ */
+@State(Scope.Thread)
+public class EnvelopeBenchmark {
+
+    private static final String APPLICATION_ID = "amzn1.ask.skill.benchmark";
+
+    private SpeechletRequestHandler sdkHandler;
+    private SpeechletRequestHandler streamingHandler;
+    private SpeechletV2 speechlet;
+    private byte[] request;
+
+    @Setup
+    public void setUp() throws IOException {
+        Set<String> applicationIds = Collections.singleton(APPLICATION_ID);
+        sdkHandler = new LambdaSpeechletRequestHandler(applicationIds);
+        streamingHandler = new StreamingSpeechletRequestHandler(applicationIds);
+
+        SpeechletResponse response = SpeechletUtils.getNewAskResponse(
+                "Your next option is the 8:42 bus. It will take you 28 mins to arrive at your destination. ",
+                "Transit Duration");
+        speechlet = new SpeechletToSpeechletV2Adapter(new FixedSpeechlet(response));
+
+        Session session = BenchmarkFixtures.suggestionSession(
+                BenchmarkFixtures.loadSuggestions(new GoogleMapsService("benchmark")), 1);
+        request = new ObjectMapper().writeValueAsBytes(intentRequest(session));
+    }
+
+    @Benchmark
+    public byte[] sdk() throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        return sdkHandler.handleSpeechletCall(speechlet, request);
+    }
+
+    @Benchmark
+    public byte[] streaming() throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        return streamingHandler.handleSpeechletCall(speechlet, request);
+    }
+
+    private static Map<String, Object> intentRequest(Session session) {
+        Map<String, Object> application = Collections.<String, Object>singletonMap("applicationId", APPLICATION_ID);
+
+        Map<String, Object> sessionJson = new HashMap<>();
+        sessionJson.put("new", false);
+        sessionJson.put("sessionId", session.getSessionId());
+        sessionJson.put("application", application);
+        sessionJson.put("attributes", session.getAttributes());
+        sessionJson.put("user", Collections.singletonMap("userId", session.getUser().getUserId()));
+
+        Map<String, Object> intent = new HashMap<>();
+        intent.put("name", "AMAZON.NextIntent");
+        intent.put("slots", Collections.emptyMap());
+
+        Map<String, Object> requestJson = new HashMap<>();
+        requestJson.put("type", "IntentRequest");
+        requestJson.put("requestId", "EdwRequestId.benchmark");
+        requestJson.put("timestamp", "2017-03-01T08:15:00Z");
+        requestJson.put("locale", "en-US");
+        requestJson.put("intent", intent);
+
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("version", "1.0");
+        envelope.put("session", sessionJson);
+        envelope.put("context", Collections.singletonMap("System",
+                Collections.singletonMap("application", application)));
+        envelope.put("request", requestJson);
+        return envelope;
+    }
+
+    private static class FixedSpeechlet implements Speechlet {
+
+        private final SpeechletResponse response;
+
+        FixedSpeechlet(SpeechletResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onSessionStarted(SessionStartedRequest request, Session session) {
+        }
+
+        @Override
+        public SpeechletResponse onLaunch(LaunchRequest request, Session session) {
+            return response;
+        }
+
+        @Override
+        public SpeechletResponse onIntent(IntentRequest request, Session session) {
+            return response;
+        }
+
+        @Override
+        public void onSessionEnded(SessionEndedRequest request, Session session) {
+        }
+    }
+}
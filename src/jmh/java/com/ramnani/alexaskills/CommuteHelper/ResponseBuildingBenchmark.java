@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.ui.Reprompt;
+import com.ramnani.alexaskills.CommuteHelper.utils.SpeechletUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Building the speech responses of the suggestion conversation
+ */
+@State(Scope.Thread)
+public class ResponseBuildingBenchmark {
+
+    private static final String OUTPUT = "It will take you 28 mins to arrive at your destination. ";
+
+    private TransitSpeechletManager transitSpeechletManager;
+    private TransitSuggestion suggestion;
+    private List<TransitSuggestion> suggestions;
+    private Intent nextIntent;
+    private Intent durationIntent;
+    private Session session;
+
+    @Setup
+    public void setUp() throws IOException {
+        GoogleMapsService googleMapsService = new GoogleMapsService("benchmark");
+        transitSpeechletManager = new TransitSpeechletManager(googleMapsService);
+        suggestions = BenchmarkFixtures.loadSuggestions(googleMapsService);
+        suggestion = suggestions.get(1);
+        nextIntent = BenchmarkFixtures.intent("AMAZON.NextIntent");
+        durationIntent = BenchmarkFixtures.intent("GetTotalTransitDuration");
+
+        // The responses only overwrite the reprompt and previous response
+        // attributes, so the session can be shared by all invocations
+        session = BenchmarkFixtures.suggestionSession(suggestions, 1);
+    }
+
+    @Benchmark
+    public SpeechletResponse suggestionToDetailedResponse() {
+        return transitSpeechletManager.suggestionToDetailedResponse(suggestion, session,
+                "Your next option is ", nextIntent);
+    }
+
+    @Benchmark
+    public SpeechletResponse addRepromptQuestionAndReturnResponse() {
+        return transitSpeechletManager.addRepromptQuestionAndReturnResponse(
+                new StringBuilder(OUTPUT), "Transit Duration", session, durationIntent);
+    }
+
+    @Benchmark
+    public String generateRepromptQuestion() {
+        return transitSpeechletManager.generateRepromptQuestion(session, durationIntent);
+    }
+
+    @Benchmark
+    public SpeechletResponse newAskResponse() {
+        return SpeechletUtils.getNewAskResponse(OUTPUT, "Transit Duration");
+    }
+
+    @Benchmark
+    public SpeechletResponse newTellResponse() {
+        return SpeechletUtils.getNewTellResponse(OUTPUT, "Transit Duration");
+    }
+
+    @Benchmark
+    public Reprompt reprompt() {
+        return SpeechletUtils.getReprompt(OUTPUT);
+    }
+}
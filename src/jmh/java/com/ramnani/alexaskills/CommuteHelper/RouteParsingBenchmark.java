@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.google.maps.model.DirectionsRoute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+/**
+ * Turning a Directions response into suggestions, as done in
+ * GoogleMapsService.getNextTransitToDestination
+ */
+@State(Scope.Benchmark)
+public class RouteParsingBenchmark {
+
+    private GoogleMapsService googleMapsService;
+    private DirectionsRoute[] routes;
+
+    @Setup
+    public void setUp() throws IOException {
+        googleMapsService = new GoogleMapsService("benchmark");
+        routes = BenchmarkFixtures.loadRoutes();
+    }
+
+    @Benchmark
+    public void routeToSuggestionMap(Blackhole blackhole) {
+        for (DirectionsRoute route : routes) {
+            blackhole.consume(googleMapsService.routeToSuggestionMap(route));
+        }
+    }
+
+    @Benchmark
+    public void isRouteATransitType(Blackhole blackhole) {
+        for (DirectionsRoute route : routes) {
+            blackhole.consume(googleMapsService.isRouteATransitType(route, "train"));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The Jackson round trip of the suggestions kept in the session attributes.
+ * They're written once per GetNextTransitToWork and read on every follow-up
+ * intent.
+ */
+@State(Scope.Benchmark)
+public class SuggestionSerializationBenchmark {
+
+    private List<TransitSuggestion> suggestions;
+    private String suggestionsText;
+
+    @Setup
+    public void setUp() throws IOException {
+        suggestions = BenchmarkFixtures.loadSuggestions(new GoogleMapsService("benchmark"));
+        suggestionsText = TransitSpeechletManager.writeSuggestions(suggestions);
+    }
+
+    @Benchmark
+    public String writeSuggestions() throws IOException {
+        return TransitSpeechletManager.writeSuggestions(suggestions);
+    }
+
+    @Benchmark
+    public List<TransitSuggestion> readSuggestions() throws IOException {
+        return TransitSpeechletManager.readSuggestions(suggestionsText);
+    }
+
+    @Benchmark
+    public List<TransitSuggestion> roundTrip() throws IOException {
+        return TransitSpeechletManager.readSuggestions(TransitSpeechletManager.writeSuggestions(suggestions));
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveClient;
+import com.ramnani.alexaskills.CommuteHelper.directives.HttpDirectiveClient;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
+import com.ramnani.alexaskills.CommuteHelper.maps.CircuitBreaker;
+import com.ramnani.alexaskills.CommuteHelper.maps.DepartureLadders;
+import com.ramnani.alexaskills.CommuteHelper.maps.DirectionsCache;
+import com.ramnani.alexaskills.CommuteHelper.maps.GovernedMapsApi;
+import com.ramnani.alexaskills.CommuteHelper.maps.LiveMapsApi;
+import com.ramnani.alexaskills.CommuteHelper.maps.MapsApi;
+import com.ramnani.alexaskills.CommuteHelper.maps.MapsCorpus;
+import com.ramnani.alexaskills.CommuteHelper.maps.MapsCorpusWriter;
+import com.ramnani.alexaskills.CommuteHelper.maps.QpsGovernor;
+import com.ramnani.alexaskills.CommuteHelper.maps.RecordingMapsApi;
+import com.ramnani.alexaskills.CommuteHelper.maps.ReplayMapsApi;
+import com.ramnani.alexaskills.CommuteHelper.metrics.LogMetricsSink;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import com.ramnani.alexaskills.CommuteHelper.metrics.MetricsSink;
+import com.ramnani.alexaskills.CommuteHelper.metrics.StdoutMetricsSink;
+import com.ramnani.alexaskills.CommuteHelper.warmup.CommutePrefetcher;
+import com.ramnani.alexaskills.CommuteHelper.warmup.RecentCommuters;
+import com.ramnani.alexaskills.CommuteHelper.warmup.WarmPool;
+import com.ramnani.alexaskills.CommuteHelper.warmup.WarmupSchedule;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the services used by the skill directly from application.properties,
+ * instead of booting a Spring application context on every cold start.
+ * Environment variables take precedence over the properties file, so the
+ * settings can also be provided through the Lambda configuration.
+ */
+public class CommuteHelperComponents {
+
+    private static final Logger log = Logger.getLogger(CommuteHelperComponents.class);
+
+    public static final String CONFIG_FILE = "application.properties";
+    public static final String MAPS_API_KEY_PROPERTY = "googleMapsApiKey";
+    public static final String KMS_KEY_ID_PROPERTY = "kmsKeyId";
+    public static final String METRICS_SINK_PROPERTY = "metricsSink";
+    public static final String METRICS_FLUSH_INTERVAL_PROPERTY = "metricsFlushIntervalSeconds";
+    public static final String MAPS_MODE_PROPERTY = "mapsMode";
+    public static final String MAPS_CORPUS_FILE_PROPERTY = "mapsCorpusFile";
+    public static final String MAPS_REPLAY_LATENCY_PROPERTY = "mapsReplayLatency";
+    public static final String DIRECTIONS_CACHE_PRECISION_PROPERTY = "directionsCacheGeohashPrecision";
+    public static final String DIRECTIONS_CACHE_BUCKET_PROPERTY = "directionsCacheBucketSeconds";
+    public static final String DIRECTIONS_CACHE_MAX_ENTRIES_PROPERTY = "directionsCacheMaxEntries";
+    public static final String DEPARTURE_LADDER_MIN_DEPARTURES_PROPERTY = "departureLadderMinDepartures";
+    public static final String DEPARTURE_LADDER_TOP_UP_CALLS_PROPERTY = "departureLadderTopUpCalls";
+    public static final String DEPARTURE_LADDER_SPACING_PROPERTY = "departureLadderSpacingMinutes";
+    public static final String DEPARTURE_LADDER_MAX_AGE_PROPERTY = "departureLadderMaxAgeMinutes";
+    public static final String DEPARTURE_LADDER_MAX_WAIT_PROPERTY = "departureLadderMaxWaitMillis";
+    public static final String MAPS_BREAKER_WINDOW_PROPERTY = "mapsBreakerWindowSeconds";
+    public static final String MAPS_BREAKER_MIN_CALLS_PROPERTY = "mapsBreakerMinCalls";
+    public static final String MAPS_BREAKER_ERROR_RATE_PROPERTY = "mapsBreakerErrorRatePercent";
+    public static final String MAPS_BREAKER_SLOW_CALL_PROPERTY = "mapsBreakerSlowCallMillis";
+    public static final String MAPS_BREAKER_SLOW_CALL_RATE_PROPERTY = "mapsBreakerSlowCallRatePercent";
+    public static final String MAPS_BREAKER_OPEN_PROPERTY = "mapsBreakerOpenSeconds";
+    public static final String MAPS_QPS_PER_KEY_PROPERTY = "mapsQpsPerKey";
+    public static final String MAPS_BURST_PER_KEY_PROPERTY = "mapsBurstPerKey";
+    public static final String MAPS_MAX_QUEUE_LENGTH_PROPERTY = "mapsMaxQueueLength";
+    public static final String PROGRESSIVE_RESPONSES_PROPERTY = "progressiveResponses";
+    public static final String DIRECTIVE_TIMEOUT_PROPERTY = "directiveTimeoutMillis";
+    public static final String REQUEST_BUDGET_PROPERTY = "requestBudgetMillis";
+    public static final String EVENT_LOG_QUEUE_SIZE_PROPERTY = "eventLogQueueSize";
+    public static final String EVENT_LOG_SAMPLE_RATE_PROPERTY = "eventLogVerboseSampleRate";
+    public static final String EVENT_LOG_REDACTION_KEY_PROPERTY = "eventLogRedactionKey";
+    public static final String WARMUP_HOLD_PROPERTY = "warmupHoldMillis";
+    public static final String WARMUP_SCHEDULE_PROPERTY = "warmupSchedule";
+    public static final String WARMUP_SCHEDULE_TIMEZONE_PROPERTY = "warmupScheduleTimeZone";
+    public static final String WARMUP_PREFETCH_LEAD_PROPERTY = "warmupPrefetchLeadMinutes";
+    public static final String WARMUP_PREFETCH_MAX_USERS_PROPERTY = "warmupPrefetchMaxUsers";
+    public static final String WARMUP_PREFETCH_BUDGET_PROPERTY = "warmupPrefetchBudgetMillis";
+
+    /*
+     * This Id can be found on https://developer.amazon.com/edw/home.html#/ "Edit" the relevant
+     * Alexa Skill and put the relevant Application Ids in this Set.
+     */
+    private static final Set<String> SUPPORTED_APPLICATION_IDS = Collections.unmodifiableSet(new HashSet<>(
+            Collections.singletonList("amzn1.ask.skill.195ed8b2-5a91-403d-8aa5-f6c4837d066b")));
+
+    private static final String MAPS_API_KEY_ENV = "GOOGLE_MAPS_API_KEY";
+    private static final String KMS_KEY_ID_ENV = "KMS_KEY_ID";
+    private static final String EVENT_LOG_REDACTION_KEY_ENV = "EVENT_LOG_REDACTION_KEY";
+
+    private final Properties properties;
+    private final GoogleMapsService googleMapsService;
+    private final TransitHelperDao transitHelperDao;
+    private final DirectiveClient directiveClient;
+    private final WarmPool warmPool;
+
+    public CommuteHelperComponents(Properties properties) {
+        Validate.notNull(properties);
+        this.properties = properties;
+
+        long start = System.currentTimeMillis();
+        configureMetrics();
+        configureEventLog();
+        googleMapsService = new GoogleMapsService(createMapsApi(), createDirectionsCache(), createDepartureLadders(),
+                createBreakerSettings());
+        long mapsCreated = System.currentTimeMillis();
+        transitHelperDao = new TransitHelperDao(getSetting(KMS_KEY_ID_PROPERTY, KMS_KEY_ID_ENV));
+        long daoCreated = System.currentTimeMillis();
+        directiveClient = createDirectiveClient();
+        warmPool = createWarmPool();
+
+        log.info("Created GoogleMapsService in " + (mapsCreated - start) + " ms, "
+                + "TransitHelperDao in " + (daoCreated - mapsCreated) + " ms");
+    }
+
+    /**
+     * Loads the components from the application.properties on the classpath
+     */
+    public static CommuteHelperComponents fromClasspath() {
+        long start = System.currentTimeMillis();
+        Properties properties = loadProperties(CONFIG_FILE);
+        log.info("Loaded " + CONFIG_FILE + " in " + (System.currentTimeMillis() - start) + " ms");
+        return new CommuteHelperComponents(properties);
+    }
+
+    /**
+     * The Alexa application IDs the skill accepts requests for
+     */
+    public static Set<String> getSupportedApplicationIds() {
+        return SUPPORTED_APPLICATION_IDS;
+    }
+
+    public GoogleMapsService getGoogleMapsService() {
+        return googleMapsService;
+    }
+
+    public TransitHelperDao getTransitHelperDao() {
+        return transitHelperDao;
+    }
+
+    public DirectiveClient getDirectiveClient() {
+        return directiveClient;
+    }
+
+    public WarmPool getWarmPool() {
+        return warmPool;
+    }
+
+    /**
+     * How long an intent may take, see {@link CommuteHelperSpeechlet}
+     */
+    public long getRequestBudgetMillis() {
+        return Long.parseLong(properties.getProperty(REQUEST_BUDGET_PROPERTY,
+                String.valueOf(CommuteHelperSpeechlet.DEFAULT_REQUEST_BUDGET_MILLIS)).trim());
+    }
+
+    /**
+     * Returns a raw value from the configuration, or null if it's not set.
+     */
+    public String getProperty(String name) {
+        return properties.getProperty(name);
+    }
+
+    /**
+     * metricsSink is "emf" (the default) to write Embedded Metric Format to
+     * stdout for CloudWatch, "log" to write the same documents through log4j
+     * for local runs, or "none".
+     */
+    private void configureMetrics() {
+        String sinkName = properties.getProperty(METRICS_SINK_PROPERTY, "emf").trim();
+        long flushIntervalSeconds = Long.parseLong(
+                properties.getProperty(METRICS_FLUSH_INTERVAL_PROPERTY, "0").trim());
+        MetricsSink sink;
+
+        if ("log".equalsIgnoreCase(sinkName)) {
+            sink = new LogMetricsSink();
+        } else if ("none".equalsIgnoreCase(sinkName)) {
+            sink = document -> { };
+        } else {
+            sink = new StdoutMetricsSink();
+        }
+        Metrics.configure(sink, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void configureEventLog() {
+        EventLog.configure(
+                Integer.parseInt(properties.getProperty(EVENT_LOG_QUEUE_SIZE_PROPERTY,
+                        String.valueOf(EventLog.DEFAULT_QUEUE_SIZE)).trim()),
+                Integer.parseInt(properties.getProperty(EVENT_LOG_SAMPLE_RATE_PROPERTY,
+                        String.valueOf(EventLog.DEFAULT_VERBOSE_SAMPLE_RATE)).trim()));
+        EventLog.setRedactionKey(getSetting(EVENT_LOG_REDACTION_KEY_PROPERTY, EVENT_LOG_REDACTION_KEY_ENV));
+    }
+
+    /**
+     * mapsMode is "live" (the default) to call the Google Maps APIs, "record"
+     * to also append every response to mapsCorpusFile, or "replay" to serve
+     * the responses from mapsCorpusFile without any network calls, delayed
+     * by mapsReplayLatency ("none", "recorded" or a number of milliseconds).
+     */
+    private MapsApi createMapsApi() {
+        String mode = properties.getProperty(MAPS_MODE_PROPERTY, "live").trim();
+        Path corpusFile = Paths.get(properties.getProperty(MAPS_CORPUS_FILE_PROPERTY, "maps-corpus.dat").trim());
+
+        try {
+            if ("replay".equalsIgnoreCase(mode)) {
+                log.info("Replaying maps responses from " + corpusFile);
+                return new ReplayMapsApi(MapsCorpus.open(corpusFile),
+                        ReplayMapsApi.Latency.parse(properties.getProperty(MAPS_REPLAY_LATENCY_PROPERTY)));
+            }
+            MapsApi liveMapsApi = createLiveMapsApi();
+
+            if ("record".equalsIgnoreCase(mode)) {
+                log.info("Recording maps responses to " + corpusFile);
+                return new RecordingMapsApi(liveMapsApi, new MapsCorpusWriter(corpusFile));
+            }
+            return liveMapsApi;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to open maps corpus: " + corpusFile, ex);
+        }
+    }
+
+    /**
+     * googleMapsApiKey may list several comma separated keys, which are
+     * pooled. Unless mapsQpsPerKey is 0, every call goes through a governor
+     * holding each key to mapsQpsPerKey, with bursts of up to mapsBurstPerKey
+     * calls. Calls of a priority are rejected right away when
+     * mapsMaxQueueLength of them are waiting for quota.
+     */
+    private MapsApi createLiveMapsApi() {
+        String[] keys = getSetting(MAPS_API_KEY_PROPERTY, MAPS_API_KEY_ENV).split(",");
+        int qpsPerKey = Integer.parseInt(properties.getProperty(MAPS_QPS_PER_KEY_PROPERTY, "50").trim());
+
+        if (qpsPerKey <= 0) {
+            return new LiveMapsApi(keys[0].trim());
+        }
+        List<MapsApi> keyApis = new ArrayList<>(keys.length);
+
+        for (String key : keys) {
+            keyApis.add(new LiveMapsApi(key.trim(), qpsPerKey));
+        }
+        QpsGovernor governor = new QpsGovernor(keys.length, qpsPerKey,
+                Integer.parseInt(properties.getProperty(MAPS_BURST_PER_KEY_PROPERTY, "50").trim()),
+                Integer.parseInt(properties.getProperty(MAPS_MAX_QUEUE_LENGTH_PROPERTY, "100").trim()));
+        log.info("Governing maps calls over " + keys.length + " keys at " + qpsPerKey + " QPS each");
+        return new GovernedMapsApi(keyApis, governor);
+    }
+
+    /**
+     * Directions are shared between users whose endpoints are in the same
+     * geohash cells of directionsCacheGeohashPrecision characters and who ask
+     * within the same directionsCacheBucketSeconds. A precision of 0 disables
+     * the cache.
+     */
+    private DirectionsCache createDirectionsCache() {
+        int precision = Integer.parseInt(
+                properties.getProperty(DIRECTIONS_CACHE_PRECISION_PROPERTY, "0").trim());
+
+        if (precision <= 0) {
+            return null;
+        }
+        long bucketSeconds = Long.parseLong(
+                properties.getProperty(DIRECTIONS_CACHE_BUCKET_PROPERTY, "120").trim());
+        int maxEntries = Integer.parseInt(
+                properties.getProperty(DIRECTIONS_CACHE_MAX_ENTRIES_PROPERTY, "10000").trim());
+        log.info("Caching directions by geohash cells of precision " + precision
+                + " and departure buckets of " + bucketSeconds + " s");
+        return new DirectionsCache(precision, bucketSeconds, maxEntries);
+    }
+
+    /**
+     * Upcoming departures are kept per origin and destination, and topped up
+     * with departureLadderTopUpCalls Directions calls departureLadderSpacingMinutes
+     * apart once fewer than departureLadderMinDepartures are left. Departures
+     * fetched more than departureLadderMaxAgeMinutes ago are refetched, since
+     * real-time delays change them. A request without a deadline waits at most
+     * departureLadderMaxWaitMillis for an empty ladder to be topped up. A
+     * minimum of 0 disables the ladders.
+     */
+    private DepartureLadders createDepartureLadders() {
+        int minDepartures = Integer.parseInt(
+                properties.getProperty(DEPARTURE_LADDER_MIN_DEPARTURES_PROPERTY, "0").trim());
+
+        if (minDepartures <= 0) {
+            return null;
+        }
+        return new DepartureLadders(minDepartures,
+                Integer.parseInt(properties.getProperty(DEPARTURE_LADDER_TOP_UP_CALLS_PROPERTY, "2").trim()),
+                Long.parseLong(properties.getProperty(DEPARTURE_LADDER_SPACING_PROPERTY, "15").trim()),
+                Long.parseLong(properties.getProperty(DEPARTURE_LADDER_MAX_AGE_PROPERTY, "10").trim()),
+                DepartureLadders.DEFAULT_MAX_LADDERS,
+                Long.parseLong(properties.getProperty(DEPARTURE_LADDER_MAX_WAIT_PROPERTY,
+                        String.valueOf(DepartureLadders.DEFAULT_MAX_WAIT_MILLIS)).trim()));
+    }
+
+    /**
+     * A maps endpoint's circuit breaker opens when, out of at least
+     * mapsBreakerMinCalls calls in the last mapsBreakerWindowSeconds,
+     * mapsBreakerErrorRatePercent failed or mapsBreakerSlowCallRatePercent
+     * took mapsBreakerSlowCallMillis or more. It probes the endpoint again
+     * after mapsBreakerOpenSeconds.
+     */
+    private CircuitBreaker.Settings createBreakerSettings() {
+        return new CircuitBreaker.Settings(
+                Long.parseLong(properties.getProperty(MAPS_BREAKER_WINDOW_PROPERTY, "30").trim()),
+                Integer.parseInt(properties.getProperty(MAPS_BREAKER_MIN_CALLS_PROPERTY, "10").trim()),
+                Integer.parseInt(properties.getProperty(MAPS_BREAKER_ERROR_RATE_PROPERTY, "50").trim()),
+                Long.parseLong(properties.getProperty(MAPS_BREAKER_SLOW_CALL_PROPERTY, "3000").trim()),
+                Integer.parseInt(properties.getProperty(MAPS_BREAKER_SLOW_CALL_RATE_PROPERTY, "80").trim()),
+                Long.parseLong(properties.getProperty(MAPS_BREAKER_OPEN_PROPERTY, "15").trim()));
+    }
+
+    /**
+     * Progressive responses are sent unless progressiveResponses is "false"
+     */
+    private DirectiveClient createDirectiveClient() {
+        if ("false".equalsIgnoreCase(properties.getProperty(PROGRESSIVE_RESPONSES_PROPERTY, "true").trim())) {
+            return DirectiveClient.NONE;
+        }
+        return new HttpDirectiveClient(Integer.parseInt(
+                properties.getProperty(DIRECTIVE_TIMEOUT_PROPERTY, "1000").trim()));
+    }
+
+    /**
+     * A warm-up ping that's one of several holds its container for
+     * warmupHoldMillis. During the warmupSchedule windows, in
+     * warmupScheduleTimeZone, pings also prefetch the commutes of up to
+     * warmupPrefetchMaxUsers users who asked up to warmupPrefetchLeadMinutes
+     * later in the day, for no longer than warmupPrefetchBudgetMillis.
+     */
+    private WarmPool createWarmPool() {
+        WarmupSchedule schedule = WarmupSchedule.parse(
+                properties.getProperty(WARMUP_SCHEDULE_PROPERTY, ""),
+                properties.getProperty(WARMUP_SCHEDULE_TIMEZONE_PROPERTY, "America/Los_Angeles").trim());
+        CommutePrefetcher prefetcher = new CommutePrefetcher(googleMapsService, transitHelperDao,
+                new RecentCommuters(transitHelperDao), schedule,
+                Long.parseLong(properties.getProperty(WARMUP_PREFETCH_LEAD_PROPERTY, "30").trim()),
+                Integer.parseInt(properties.getProperty(WARMUP_PREFETCH_MAX_USERS_PROPERTY, "20").trim()),
+                Long.parseLong(properties.getProperty(WARMUP_PREFETCH_BUDGET_PROPERTY, "3000").trim()));
+        return new WarmPool(prefetcher,
+                Long.parseLong(properties.getProperty(WARMUP_HOLD_PROPERTY, "200").trim()));
+    }
+
+    static Properties loadProperties(String resource) {
+        Properties properties = new Properties();
+
+        try (InputStream in = CommuteHelperComponents.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                log.warn("Configuration " + resource + " not found on the classpath.");
+                return properties;
+            }
+            properties.load(in);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read configuration: " + resource, ex);
+        }
+        return properties;
+    }
+
+    private String getSetting(String property, String environmentVariable) {
+        String value = System.getenv(environmentVariable);
+
+        if (value == null || value.isEmpty()) {
+            value = properties.getProperty(property, "");
+        }
+
+        if (value.isEmpty()) {
+            log.warn("No value configured for " + property + ".");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.speechlet.Speechlet;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletToSpeechletV2Adapter;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+import com.amazon.speech.speechlet.verifier.ApplicationIdSpeechletRequestEnvelopeVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestVerifierWrapper;
+import com.amazon.speech.speechlet.verifier.TimestampSpeechletRequestVerifier;
+import com.ramnani.alexaskills.CommuteHelper.directives.CurrentRequest;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import com.ramnani.alexaskills.CommuteHelper.reminders.FileReminderStore;
+import com.ramnani.alexaskills.CommuteHelper.reminders.LogReminderSink;
+import com.ramnani.alexaskills.CommuteHelper.reminders.ReminderScheduler;
+import com.ramnani.alexaskills.CommuteHelper.reminders.TransitDepartureChecker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts the CommuteHelperSpeechlet behind an embedded HTTP server, as an
+ * alternative to running it as a Lambda function. The process stays up between
+ * requests, so JIT compiled code, clients and caches are kept warm.
+ *
+ * Requests are handled one thread per request. On a runtime with virtual
+ * threads, each request gets its own virtual thread, so requests blocked on
+ * Google Maps or DynamoDB don't hold on to platform threads. Otherwise a
+ * bounded pool of platform threads is used.
+ *
+ * Requests are verified the same way the Alexa servlet does: request
+ * signature, timestamp and application ID.
+ *
+ * Run with -Dlog4j.configuration=log4j-server.properties, since the default
+ * log4j configuration logs through the Lambda runtime.
+ */
+public class CommuteHelperServer {
+
+    private static final Logger log = Logger.getLogger(CommuteHelperServer.class);
+
+    public static final String PORT_PROPERTY = "serverPort";
+    public static final String MAX_CONCURRENT_REQUESTS_PROPERTY = "serverMaxConcurrentRequests";
+    public static final String MAX_REQUEST_BYTES_PROPERTY = "serverMaxRequestBytes";
+    public static final String IDLE_TIMEOUT_PROPERTY = "serverIdleTimeoutSeconds";
+    public static final String SHUTDOWN_GRACE_PROPERTY = "serverShutdownGraceSeconds";
+    public static final String VERIFY_SIGNATURES_PROPERTY = "serverVerifySignatures";
+    public static final String REMINDERS_JOURNAL_PROPERTY = "remindersJournalFile";
+    public static final String REMINDERS_RECHECK_LEAD_PROPERTY = "remindersRecheckLeadMinutes";
+    public static final String REMINDERS_WORKERS_PROPERTY = "remindersWorkerThreads";
+    public static final String REMINDERS_COMPACT_PROPERTY = "remindersJournalCompactRecords";
+
+    static final String SKILL_PATH = "/";
+    static final String PING_PATH = "/ping";
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 1000;
+    private static final int DEFAULT_MAX_REQUEST_BYTES = 64 * 1024;
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+    private static final int DEFAULT_SHUTDOWN_GRACE_SECONDS = 10;
+    private static final int DEFAULT_REMINDERS_RECHECK_LEAD_MINUTES = 10;
+    private static final int DEFAULT_REMINDERS_WORKERS = 8;
+
+    /**
+     * Size of the platform thread pool used when virtual threads aren't available
+     */
+    private static final int MAX_PLATFORM_THREADS = 200;
+
+    /**
+     * Alexa rejects requests whose timestamp is older than this
+     */
+    private static final long TIMESTAMP_TOLERANCE_SECONDS = 150;
+
+    private static final String SIGNATURE_HEADER = "Signature";
+    private static final String SIGNATURE_CERT_CHAIN_URL_HEADER = "SignatureCertChainUrl";
+
+    private final SpeechletV2 speechlet;
+    private final SpeechletRequestHandler requestHandler;
+    private final int port;
+    private final int maxRequestBytes;
+    private final int shutdownGraceSeconds;
+    private final boolean verifySignatures;
+    private final Semaphore requestPermits;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param speechlet The speechlet every request is dispatched to
+     * @param supportedApplicationIds Application IDs this server accepts requests for
+     * @param components Source of the server settings
+     */
+    public CommuteHelperServer(Speechlet speechlet,
+                               Set<String> supportedApplicationIds,
+                               CommuteHelperComponents components) {
+        Validate.notNull(speechlet);
+        Validate.notEmpty(supportedApplicationIds);
+        Validate.notNull(components);
+
+        this.speechlet = new SpeechletToSpeechletV2Adapter(speechlet);
+        this.port = getInt(components, PORT_PROPERTY, DEFAULT_PORT);
+        this.maxRequestBytes = getInt(components, MAX_REQUEST_BYTES_PROPERTY, DEFAULT_MAX_REQUEST_BYTES);
+        this.shutdownGraceSeconds = getInt(components, SHUTDOWN_GRACE_PROPERTY, DEFAULT_SHUTDOWN_GRACE_SECONDS);
+        this.verifySignatures = !"false".equalsIgnoreCase(components.getProperty(VERIFY_SIGNATURES_PROPERTY));
+        this.requestPermits = new Semaphore(
+                getInt(components, MAX_CONCURRENT_REQUESTS_PROPERTY, DEFAULT_MAX_CONCURRENT_REQUESTS));
+
+        List<SpeechletRequestEnvelopeVerifier> verifiers = Arrays.asList(
+                new ApplicationIdSpeechletRequestEnvelopeVerifier(supportedApplicationIds),
+                new SpeechletRequestVerifierWrapper(
+                        new TimestampSpeechletRequestVerifier(TIMESTAMP_TOLERANCE_SECONDS, TimeUnit.SECONDS)));
+        this.requestHandler = new SpeechletRequestHandler(verifiers);
+
+        configureKeepAlive(getInt(components, IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS),
+                requestPermits.availablePermits());
+    }
+
+    public static void main(String[] args) throws IOException {
+        CommuteHelperComponents components = CommuteHelperComponents.fromClasspath();
+        Set<String> applicationIds = CommuteHelperComponents.getSupportedApplicationIds();
+        Speechlet speechlet = new CommuteHelperSpeechlet(
+                components.getGoogleMapsService(), components.getTransitHelperDao(),
+                components.getDirectiveClient(), components.getRequestBudgetMillis());
+
+        if (!"false".equalsIgnoreCase(components.getProperty(CommuteHelperSpeechletRequestStreamHandler.PRIME_ON_STARTUP_PROPERTY))) {
+            new HandlerPrimer(new CommuteHelperSpeechletRequestStreamHandler(speechlet, applicationIds),
+                    applicationIds.iterator().next(),
+                    components.getGoogleMapsService(),
+                    components.getTransitHelperDao()).prime();
+        }
+        CommuteHelperServer server = new CommuteHelperServer(speechlet, applicationIds, components);
+        ReminderScheduler reminderScheduler = newReminderScheduler(components);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+
+            if (reminderScheduler != null) {
+                reminderScheduler.stop();
+            }
+        }, "server-shutdown"));
+
+        if (reminderScheduler != null) {
+            reminderScheduler.start();
+        }
+        server.start();
+    }
+
+    /**
+     * Reminders need a long-running process, so they're only scheduled in server
+     * mode, and only when a journal file to keep them in is configured.
+     *
+     * @return The scheduler, or null if reminders aren't enabled
+     */
+    static ReminderScheduler newReminderScheduler(CommuteHelperComponents components) {
+        String journalFile = components.getProperty(REMINDERS_JOURNAL_PROPERTY);
+
+        if (journalFile == null || journalFile.trim().isEmpty()) {
+            return null;
+        }
+        return new ReminderScheduler(
+                new FileReminderStore(Paths.get(journalFile.trim()), getInt(components, REMINDERS_COMPACT_PROPERTY,
+                        FileReminderStore.DEFAULT_COMPACT_AFTER_RECORDS)),
+                new TransitDepartureChecker(components.getGoogleMapsService(), components.getTransitHelperDao()),
+                new LogReminderSink(),
+                TimeUnit.MINUTES.toMillis(
+                        getInt(components, REMINDERS_RECHECK_LEAD_PROPERTY, DEFAULT_REMINDERS_RECHECK_LEAD_MINUTES)),
+                Executors.newFixedThreadPool(getInt(components, REMINDERS_WORKERS_PROPERTY, DEFAULT_REMINDERS_WORKERS)));
+    }
+
+    public synchronized void start() throws IOException {
+        Validate.validState(server == null, "Server already started");
+
+        executor = newRequestExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(SKILL_PATH, this::handleSkillRequest);
+        server.createContext(PING_PATH, this::handlePing);
+        server.setExecutor(executor);
+        server.start();
+
+        if (!verifySignatures) {
+            log.warn("Request signature verification is disabled.");
+        }
+        log.info("CommuteHelper server listening on port " + getPort());
+    }
+
+    /**
+     * Stops accepting connections, waits up to the shutdown grace period for the
+     * requests in flight to complete, and flushes the metrics.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        log.info("Stopping CommuteHelper server.");
+        server.stop(shutdownGraceSeconds);
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(shutdownGraceSeconds, TimeUnit.SECONDS)) {
+                log.warn("Requests still running after " + shutdownGraceSeconds + " seconds. Interrupting them.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        executor = null;
+        Metrics.flush();
+        log.info("CommuteHelper server stopped.");
+    }
+
+    /**
+     * @return The port the server is bound to, which is only known after start
+     *         when the configured port is 0
+     */
+    public synchronized int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    private void handleSkillRequest(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Method not allowed");
+                return;
+            }
+
+            if (!requestPermits.tryAcquire()) {
+                sendText(exchange, 503, "Too many requests");
+                return;
+            }
+
+            try {
+                byte[] request = readBody(exchange.getRequestBody());
+
+                if (request == null) {
+                    sendText(exchange, 413, "Request too large");
+                    return;
+                }
+
+                if (verifySignatures) {
+                    SpeechletRequestSignatureVerifier.checkRequestSignature(request,
+                            exchange.getRequestHeaders().getFirst(SIGNATURE_HEADER),
+                            exchange.getRequestHeaders().getFirst(SIGNATURE_CERT_CHAIN_URL_HEADER));
+                }
+                byte[] response;
+                CurrentRequest.set(request);
+
+                try {
+                    response = requestHandler.handleSpeechletCall(speechlet, request);
+                } finally {
+                    CurrentRequest.clear();
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (SecurityException | SpeechletRequestHandlerException ex) {
+                log.warn("Rejected request: " + ex.getMessage());
+                sendText(exchange, 400, "Bad request");
+            } catch (Exception ex) {
+                log.error("Unable to handle request", ex);
+                sendText(exchange, 500, "Internal error");
+            } finally {
+                requestPermits.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handlePing(HttpExchange exchange) throws IOException {
+        try {
+            sendText(exchange, 200, "OK");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return The request body, or null if it's larger than the configured limit
+     */
+    private byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > maxRequestBytes) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Uses Executors.newVirtualThreadPerTaskExecutor when the runtime has it. It's
+     * looked up reflectively because the skill is still built for Java 8.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("Handling requests on virtual threads.");
+            return executor;
+        } catch (ReflectiveOperationException ex) {
+            log.info("Virtual threads not available. Handling requests on up to "
+                    + MAX_PLATFORM_THREADS + " platform threads.");
+            return Executors.newFixedThreadPool(MAX_PLATFORM_THREADS);
+        }
+    }
+
+    /**
+     * The JDK server keeps HTTP/1.1 connections alive by default. Its idle
+     * timeout and the number of idle connections it keeps are system properties
+     * that are read once, so they're only set if nobody has set them already.
+     */
+    private static void configureKeepAlive(int idleTimeoutSeconds, int maxIdleConnections) {
+        setIfAbsent("sun.net.httpserver.idleInterval", String.valueOf(idleTimeoutSeconds));
+        setIfAbsent("sun.net.httpserver.maxIdleConnections", String.valueOf(maxIdleConnections));
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    private static int getInt(CommuteHelperComponents components, String property, int defaultValue) {
+        String value = components.getProperty(property);
+
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
+    }
+}
@@ -27,12 +27,20 @@ import com.amazon.speech.speechlet.SpeechletResponse;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
 import com.amazon.speech.ui.Reprompt;
 import com.amazon.speech.ui.SimpleCard;
+import com.google.maps.model.PlacesSearchResult;
 import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
 import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveClient;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import com.ramnani.alexaskills.CommuteHelper.warmup.RecentCommuters;
 import org.apache.commons.lang3.Validate;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 
 
@@ -40,9 +48,74 @@ public class CommuteHelperSpeechlet implements Speechlet {
 
     private static final Logger log = Logger.getLogger(CommuteHelperSpeechlet.class);
 
+    private static final String LAUNCH_REQUEST = "LaunchRequest";
+    private static final String COMPLETE_USER = "completeUser";
+    private static final String WORK_KEY = "work";
+
+    /**
+     * Alexa stops waiting for a response after about eight seconds
+     */
+    public static final long DEFAULT_REQUEST_BUDGET_MILLIS = 6000;
+
+    /**
+     * How much of the user each intent needs before it is handled
+     */
+    private enum UserRequirement {
+        /**
+         * Handled the same way whether or not the user exists
+         */
+        NONE,
+        /**
+         * The user has to exist, but the handler reads nothing of the user, or
+         * loads the rest lazily through the {@link UserContext}
+         */
+        EXISTS,
+        /**
+         * The handler needs the decrypted user
+         */
+        FULL_USER
+    }
+
+    /**
+     * Intents that aren't listed here need the full user
+     */
+    private static final Map<SkillIntent, UserRequirement> USER_REQUIREMENTS;
+
+    static {
+        Map<SkillIntent, UserRequirement> requirements = new EnumMap<>(SkillIntent.class);
+        requirements.put(SkillIntent.HELP, UserRequirement.NONE);
+        requirements.put(SkillIntent.GET_ARRIVAL_TIME, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.GET_TOTAL_TRANSIT_DURATION, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.GET_DIRECTIONS, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.UPDATE_HOME_ADDRESS, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.UPDATE_WORK_ADDRESS, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.PUT_POSTAL_ADDRESS, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.REPEAT, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.NEXT, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.PREVIOUS, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.YES, UserRequirement.EXISTS);
+        requirements.put(SkillIntent.NO, UserRequirement.EXISTS);
+        USER_REQUIREMENTS = Collections.unmodifiableMap(requirements);
+    }
+
+    /**
+     * Handles an intent of a user that passed its {@link UserRequirement}
+     */
+    @FunctionalInterface
+    private interface IntentHandler {
+        /**
+         * @param user The decrypted user if the intent needs the full user, otherwise null
+         */
+        SpeechletResponse handle(IntentRequest request, Session session, UserContext userContext,
+                                 TransitUser user) throws IOException;
+    }
+
     private static final String ERROR_STRING = "Sorry. I'm having some issues " +
             "giving you an answer right now.";
 
+    private static final String DEADLINE_EXCEEDED_STRING = "Sorry. That's taking me longer than " +
+            "it should. Please ask me again in a moment.";
+
     private TransitSpeechletManager transitSpeechletManager;
 
     private TransitHelperDao userStore;
@@ -51,92 +124,206 @@ public class CommuteHelperSpeechlet implements Speechlet {
 
     private GoogleMapsService googleMapsService;
 
+    /**
+     * Who asked for their commute when, for the warm-up pings to prefetch
+     */
+    private final RecentCommuters recentCommuters;
+
+    private final long requestBudgetMillis;
+
+    /**
+     * Built once, so dispatching an intent is a single lookup
+     */
+    private final Map<SkillIntent, IntentHandler> handlers;
 
     public CommuteHelperSpeechlet(GoogleMapsService googleMapsService,
                                   TransitHelperDao transitHelperDao) {
+        this(googleMapsService, transitHelperDao, DirectiveClient.NONE);
+    }
+
+    /**
+     * @param directiveClient Sends the progressive responses spoken while slow requests are handled
+     */
+    public CommuteHelperSpeechlet(GoogleMapsService googleMapsService,
+                                  TransitHelperDao transitHelperDao,
+                                  DirectiveClient directiveClient) {
+        this(googleMapsService, transitHelperDao, directiveClient, DEFAULT_REQUEST_BUDGET_MILLIS);
+    }
+
+    /**
+     * @param requestBudgetMillis How long an intent may take. The calls made
+     *                            for it are held to what's left of this, and
+     *                            when it runs out a short apology is returned.
+     */
+    public CommuteHelperSpeechlet(GoogleMapsService googleMapsService,
+                                  TransitHelperDao transitHelperDao,
+                                  DirectiveClient directiveClient,
+                                  long requestBudgetMillis) {
         Validate.notNull(googleMapsService);
+        Validate.notNull(transitHelperDao);
+        Validate.isTrue(requestBudgetMillis > 0, "requestBudgetMillis must be positive: %d", requestBudgetMillis);
 
         this.userStore = transitHelperDao;
         this.googleMapsService = googleMapsService;
-        transitSpeechletManager = new TransitSpeechletManager(googleMapsService);
+        transitSpeechletManager = new TransitSpeechletManager(googleMapsService, directiveClient);
         userSetupSpeechletManager = new UserSetupSpeechletManager(transitHelperDao, googleMapsService);
+        recentCommuters = new RecentCommuters(transitHelperDao);
+        this.requestBudgetMillis = requestBudgetMillis;
+        this.handlers = createHandlers();
+    }
+
+    private Map<SkillIntent, IntentHandler> createHandlers() {
+        Map<SkillIntent, IntentHandler> handlers = new EnumMap<>(SkillIntent.class);
+        handlers.put(SkillIntent.GET_NEXT_TRANSIT_TO_WORK, (request, session, userContext, user) -> {
+            SpeechletResponse response = transitSpeechletManager.handleNextTransitRequest(
+                    request.getIntent(), session, user);
+            recentCommuters.record(user.getUserId());
+            return response;
+        });
+        handlers.put(SkillIntent.GET_ARRIVAL_TIME, (request, session, userContext, user) ->
+                transitSpeechletManager.handleGetArrivalTimeRequest(request, session, request.getIntent(),
+                        userContext));
+        handlers.put(SkillIntent.GET_TOTAL_TRANSIT_DURATION, (request, session, userContext, user) ->
+                transitSpeechletManager.handleGetTotalTransitDurationRequest(session, request.getIntent(),
+                        userContext));
+        handlers.put(SkillIntent.GET_DIRECTIONS, (request, session, userContext, user) ->
+                transitSpeechletManager.handleGetDirectionsRequest(session, request.getIntent()));
+        handlers.put(SkillIntent.UPDATE_HOME_ADDRESS, (request, session, userContext, user) -> {
+            clearSessionAttributes(session);
+            return userSetupSpeechletManager.handleUpdateHomeAddressRequest(session);
+        });
+        handlers.put(SkillIntent.UPDATE_WORK_ADDRESS, (request, session, userContext, user) -> {
+            clearSessionAttributes(session);
+            return userSetupSpeechletManager.handleUpdateWorkAddressRequest(session);
+        });
+        handlers.put(SkillIntent.PUT_POSTAL_ADDRESS, (request, session, userContext, user) ->
+                userSetupSpeechletManager.handleUpdatePostalAddressRequest(session, request.getIntent()));
+        handlers.put(SkillIntent.GET_WORK_ADDRESS, (request, session, userContext, user) ->
+                userSetupSpeechletManager.handleGetWorkAddressRequest(user));
+        handlers.put(SkillIntent.GET_HOME_ADDRESS, (request, session, userContext, user) ->
+                userSetupSpeechletManager.handleGetHomeAddressRequest(user));
+        handlers.put(SkillIntent.REPEAT, (request, session, userContext, user) ->
+                transitSpeechletManager.handleRepeatSuggestionRequest(session, request.getIntent()));
+        handlers.put(SkillIntent.NEXT, (request, session, userContext, user) ->
+                transitSpeechletManager.handleNextSuggestionRequest(session, request.getIntent(), userContext));
+        handlers.put(SkillIntent.PREVIOUS, (request, session, userContext, user) ->
+                transitSpeechletManager.handlePreviousSuggestionRequest(session, request.getIntent()));
+        handlers.put(SkillIntent.YES, (request, session, userContext, user) ->
+                handleYesNoRequest(session, request.getIntent(), request, userContext));
+        handlers.put(SkillIntent.NO, (request, session, userContext, user) ->
+                handleYesNoRequest(session, request.getIntent(), request, userContext));
+        handlers.put(SkillIntent.HELP, (request, session, userContext, user) -> handleHelpRequest());
+        return Collections.unmodifiableMap(handlers);
     }
 
     @Override
     public void onSessionStarted(SessionStartedRequest sessionStartedRequest,
                                  Session session) throws SpeechletException {
-        log.info("onSessionStarted requestId=" + sessionStartedRequest.getRequestId() +
-                        " sessionId=" + session.getSessionId());
+        EventLog.event("session.started")
+                .field("requestId", sessionStartedRequest.getRequestId())
+                .field("sessionId", session.getSessionId())
+                .log();
     }
 
     @Override
     public SpeechletResponse onLaunch(LaunchRequest launchRequest,
                                       Session session) throws SpeechletException {
-        return getWelcomeResponse();
+        long start = System.nanoTime();
+        SpeechletResponse response = getWelcomeResponse();
+        Metrics.recordLatency(Metrics.INTENT, LAUNCH_REQUEST, start);
+        Metrics.flushIfDue();
+        return response;
     }
 
+    /**
+     * Records the latency, errors and session size of every intent around the
+     * actual handling done in {@link #handleIntent(IntentRequest, Session)}.
+     * The handling is held to the request's {@link Deadline}, and the share of
+     * it each stage used is recorded as well.
+     */
     @Override
     public SpeechletResponse onIntent(IntentRequest intentRequest, Session session) throws SpeechletException {
-        log.info("onIntent requestId=" + intentRequest.getRequestId() +
-                " sessionId=" + session.getSessionId());
+        String intentName = intentRequest.getIntent().getName();
+        long start = System.nanoTime();
+        Deadline deadline = Deadline.start(requestBudgetMillis);
+        EventLog.startRequest(intentName);
+        EventLog.event("intent")
+                .field("requestId", intentRequest.getRequestId())
+                .field("sessionId", session.getSessionId())
+                .log();
+
+        try {
+            return handleIntent(intentRequest, session);
+        } catch (RuntimeException | SpeechletException ex) {
+            if (deadline.isExpired()) {
+                return handleDeadlineExceeded(intentName, ex);
+            }
+            Metrics.recordError(Metrics.INTENT, intentName);
+            throw ex;
+        } finally {
+            deadline.endStage(intentName);
+            Deadline.clear();
+            EventLog.endRequest();
+            Metrics.recordLatency(Metrics.INTENT, intentName, start);
+            Metrics.recordSize(Metrics.SESSION, intentName, Metrics.ATTRIBUTES_SIZE,
+                    getSessionAttributesSize(session));
+            Metrics.flushIfDue();
+        }
+    }
+
+    private SpeechletResponse handleIntent(IntentRequest intentRequest, Session session) throws SpeechletException {
 
-        // check if the user exists in the database
         String user = session.getUser().getUserId();
         Intent intent = intentRequest.getIntent();
         String intentName = intent.getName();
+        SkillIntent skillIntent = SkillIntent.forName(intentName);
 
-        log.info("Intent Name: " + intentName);
-
-        if ("AMAZON.CancelIntent".equals(intent.getName()) ||
-                "AMAZON.StopIntent".equals(intent.getName())) {
+        if (skillIntent == SkillIntent.CANCEL || skillIntent == SkillIntent.STOP) {
             return handleExitIntentResponse();
         }
-        TransitUser transitUser = userStore.getUser(user);
-        tryUpdateTimezone(transitUser);
+        if (skillIntent == SkillIntent.GET_NEXT_TRANSIT_TO_WORK) {
+            // Spoken while the user is loaded and decrypted, not only once Directions is called
+            transitSpeechletManager.announceNextTransitRequest(intent);
+        }
+        UserContext userContext = new UserContext(user, session, userStore);
+        UserRequirement requirement = USER_REQUIREMENTS.getOrDefault(skillIntent, UserRequirement.FULL_USER);
+        TransitUser transitUser = null;
+
+        // check if the user exists, loading no more of the user than the intent needs
+        if (requirement == UserRequirement.FULL_USER) {
+            transitUser = userContext.getUser();
+            Deadline.current().endStage(Metrics.GET_USER);
+            tryCompleteUser(transitUser);
+            Deadline.current().endStage(COMPLETE_USER);
+
+            if (transitUser == null) {
+                EventLog.event("user.setup").field("userId", user).log();
+                return userSetupSpeechletManager.handleUserSetup(session, intent);
+            }
+        } else if (requirement == UserRequirement.EXISTS) {
+            boolean exists = userContext.exists();
+            Deadline.current().endStage(Metrics.GET_USER);
 
-        if (transitUser == null) {
-            log.info("User does not exist. Handling user setup. User: " + user);
-            return userSetupSpeechletManager.handleUserSetup(session, intent);
+            if (!exists) {
+                EventLog.event("user.setup").field("userId", user).log();
+                return userSetupSpeechletManager.handleUserSetup(session, intent);
+            }
         }
-        log.info("User exists. User: " + user);
+        EventLog.verbose("user.exists").field("userId", user).log();
 
         try {
-            if ("GetNextTransitToWork".equals(intentName)) {
-                return transitSpeechletManager.handleNextTransitRequest(intent, session, transitUser);
-            } else if ("GetArrivalTime".equals(intentName)) {
-                return transitSpeechletManager.handleGetArrivalTimeRequest(intentRequest, session, intent, transitUser);
-            } else if ("GetTotalTransitDuration".equals(intentName)) {
-                return transitSpeechletManager.handleGetTotalTransitDurationRequest(session, intent);
-            } else if ("GetDirections".equals(intentName)) {
-                return transitSpeechletManager.handleGetDirectionsRequest(session, intent);
-            } else if ("UpdateHomeAddress".equals(intentName)) {
-                clearSessionAttributes(session);
-                return userSetupSpeechletManager.handleUpdateHomeAddressRequest(session);
-            } else if ("UpdateWorkAddress".equals(intentName)) {
-                clearSessionAttributes(session);
-                return userSetupSpeechletManager.handleUpdateWorkAddressRequest(session);
-            } else if ("PutPostalAddress".equals(intentName)) {
-                return userSetupSpeechletManager.handleUpdatePostalAddressRequest(session, intent);
-            } else if ("GetWorkAddress".equals(intentName)) {
-                return userSetupSpeechletManager.handleGetWorkAddressRequest(user);
-            } else if ("GetHomeAddress".equals(intentName)) {
-                return userSetupSpeechletManager.handleGetHomeAddressRequest(user);
-            } else if ("AMAZON.RepeatIntent".equals(intentName)) {
-                return transitSpeechletManager.handleRepeatSuggestionRequest(session, intent);
-            } else if ("AMAZON.NextIntent".equals(intentName)) {
-                return transitSpeechletManager.handleNextSuggestionRequest(session, intent);
-            } else if ("AMAZON.PreviousIntent".equals(intentName)) {
-                return transitSpeechletManager.handlePreviousSuggestionRequest(session, intent);
-            } else if ("YesIntent".equals(intentName)
-                     || "NoIntent".equals(intentName)) {
-                return handleYesNoRequest(session, intent, intentRequest, transitUser);
-            } else if ("AMAZON.HelpIntent".equals(intentName)) {
-                return handleHelpRequest();
-            } else {
-                throw new IllegalArgumentException("Unrecognized intent: " + intent.getName());
+            IntentHandler handler = handlers.get(skillIntent);
+
+            if (handler == null) {
+                throw new IllegalArgumentException("Unrecognized intent: " + intentName);
             }
+            return handler.handle(intentRequest, session, userContext, transitUser);
         } catch (Exception ex) {
+            if (Deadline.current().isExpired()) {
+                return handleDeadlineExceeded(intentName, ex);
+            }
             log.error("Internal Server error handling the intent.", ex);
+            Metrics.recordError(Metrics.INTENT, intentName);
             return getInternalServerErrorResponse();
         }
     }
@@ -176,22 +363,23 @@ public class CommuteHelperSpeechlet implements Speechlet {
     private SpeechletResponse handleYesNoRequest(Session session,
                                                  Intent intent,
                                                  IntentRequest request,
-                                                 TransitUser user)
+                                                 UserContext userContext)
             throws IOException {
-        Map<String, Object> sessionAttributes = session.getAttributes();
-
-        if (sessionAttributes.containsKey(TransitSpeechletManager.SUGGESTION_ATTRIBUTE)) {
-            // User is in a Transit Suggestion related session
-            log.info("Handling suggestion.");
-            return transitSpeechletManager
-                    .handleYesNoIntentResponse(session, intent, request, user);
-        } else if (sessionAttributes.containsKey(UserSetupSpeechletManager.SETUP_ATTRIBUTE)) {
-            // User is in a Setup session
-            log.info("Handling address setup");
-            return userSetupSpeechletManager
-                    .handleVerifyPostalAddressRequest(session, intent);
+        switch (ConversationState.of(session)) {
+            case SUGGESTIONS:
+                EventLog.verbose("yesNo.suggestion").log();
+                return transitSpeechletManager
+                        .handleYesNoIntentResponse(session, intent, request, userContext);
+
+            case SETUP_HOME_ADDRESS:
+            case SETUP_WORK_ADDRESS:
+                EventLog.verbose("yesNo.setup").log();
+                return userSetupSpeechletManager
+                        .handleVerifyPostalAddressRequest(session, intent, userContext);
+
+            default:
+                return getInternalServerErrorResponse();
         }
-        return getInternalServerErrorResponse();
     }
 
     private SpeechletResponse handleHelpRequest() {
@@ -220,6 +408,19 @@ public class CommuteHelperSpeechlet implements Speechlet {
         return SpeechletResponse.newTellResponse(speech, card);
     }
 
+    /**
+     * Answers right away instead of letting Alexa time out on the request
+     */
+    private SpeechletResponse handleDeadlineExceeded(String intentName, Exception ex) {
+        log.warn("Ran out of time handling the intent: " + intentName, ex);
+        Metrics.recordCount(Metrics.INTENT, intentName, Metrics.DEADLINE_EXCEEDED);
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText(DEADLINE_EXCEEDED_STRING);
+        SimpleCard card = new SimpleCard();
+        card.setContent(DEADLINE_EXCEEDED_STRING);
+        return SpeechletResponse.newTellResponse(speech, card);
+    }
+
     private SpeechletResponse handleExitIntentResponse() {
         PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
         String byeText = "Bye. Have a nice ride.";
@@ -230,35 +431,153 @@ public class CommuteHelperSpeechlet implements Speechlet {
     }
 
     /**
-     * This is to update the existing user's timezone
-     * @param user
+     * Fills in what users set up before it was stored: the locations of home
+     * and work, then the timezone from the home location. The user is already
+     * loaded, so it's updated in memory and written once.
      */
-    private void tryUpdateTimezone(TransitUser user) {
+    private void tryCompleteUser(TransitUser user) {
         if (user == null) {
             return;
         }
+        boolean located = tryLocate(user);
+        boolean timezoneUpdated = tryUpdateTimezone(user);
+
+        if (!located && !timezoneUpdated) {
+            return;
+        }
+
+        try {
+            userStore.saveUser(user);
+        } catch (Exception ex) {
+            log.error("Unable to save the completed user.", ex);
+        }
+    }
+
+    /**
+     * Resolves the coordinates and place IDs missing from home and work
+     *
+     * @return If any were resolved
+     */
+    private boolean tryLocate(TransitUser user) {
+        boolean located = false;
+
+        try {
+            if (user.getHomeLocation() == null) {
+                PlacesSearchResult home = resolvePlace(user.getHomeAddress());
+
+                if (home != null) {
+                    user.setHomePlace(home.geometry.location, home.placeId);
+                    located = true;
+                }
+            }
+            Map<String, String> destinations = user.getDestinations();
+
+            if (destinations != null && destinations.containsKey(WORK_KEY)
+                    && user.getDestinationLatLng(WORK_KEY) == null) {
+                PlacesSearchResult work = resolvePlace(destinations.get(WORK_KEY));
+
+                if (work != null) {
+                    user.setDestinationPlace(WORK_KEY, work.geometry.location, work.placeId);
+                    located = true;
+                }
+            }
+        } catch (Exception ex) {
+            log.error("Unable to resolve the user's locations.", ex);
+        }
+
+        if (located) {
+            EventLog.event("user.located")
+                    .field("userId", user.getUserId())
+                    .field("home", user.getHomeLocation() != null)
+                    .field("work", user.getDestinationLatLng(WORK_KEY) != null)
+                    .log();
+        }
+        return located;
+    }
+
+    private PlacesSearchResult resolvePlace(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+        PlacesSearchResult place = googleMapsService.getPlace(address);
+
+        if (place == null || place.geometry == null || place.geometry.location == null) {
+            return null;
+        }
+        return place;
+    }
+
+    /**
+     * This is to update the existing user's timezone, from the home location
+     * when it's known
+     *
+     * @return If the timezone was updated
+     */
+    private boolean tryUpdateTimezone(TransitUser user) {
         String timezone = user.getTimeZone();
 
-        if (timezone == null || timezone.length() == 0) {
-            log.info("Trying to update timezone for user: " + user.getUserId());
-
-            try {
-                String homeAddress = user.getHomeAddress();
-                timezone = googleMapsService.getTimezoneFromAddress(homeAddress);
-                userStore.addOrUpdateTimezone(user.getUserId(), timezone);
-                log.info("Updated timezone: " + timezone +
-                        ". For user: " + user.getUserId());
-            } catch (Exception ex) {
-                log.error("Unable to update timezone.", ex);
+        if (timezone != null && timezone.length() != 0) {
+            return false;
+        }
+
+        try {
+            timezone = user.getHomeLatLng() != null
+                    ? googleMapsService.getTimezoneFromLocation(user.getHomeLatLng())
+                    : googleMapsService.getTimezoneFromAddress(user.getHomeAddress());
+
+            if (timezone == null) {
+                return false;
             }
+            user.setTimeZone(timezone);
+            EventLog.event("timezone.updated")
+                    .field("userId", user.getUserId())
+                    .field("timezone", timezone)
+                    .log();
+            return true;
+        } catch (Exception ex) {
+            log.error("Unable to update timezone.", ex);
+            return false;
         }
     }
 
+    /**
+     * Approximate size of the session attributes sent back to Alexa. Counts the
+     * characters of string values, which hold nearly all of the payload.
+     */
+    private long getSessionAttributesSize(Session session) {
+        Map<String, Object> attributes = session.getAttributes();
+
+        if (attributes == null) {
+            return 0;
+        }
+        long size = 0;
+
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            size += attribute.getKey().length();
+            Object value = attribute.getValue();
+
+            if (value instanceof String) {
+                size += ((String) value).length();
+            } else if (value != null) {
+                size += 8;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Clears the conversation state, but keeps remembering that the user exists
+     */
     private void clearSessionAttributes(Session session) {
         Map<String, Object> attributes = session.getAttributes();
 
         if (attributes != null) {
+            Object userKnown = attributes.get(UserContext.USER_KNOWN_ATTRIBUTE);
             attributes.clear();
+
+            if (userKnown != null) {
+                attributes.put(UserContext.USER_KNOWN_ATTRIBUTE, userKnown);
+            }
         }
     }
 }
@@ -16,39 +16,144 @@
 package com.ramnani.alexaskills.CommuteHelper;
 
 import com.amazon.speech.speechlet.Speechlet;
-import com.amazon.speech.speechlet.lambda.SpeechletRequestStreamHandler;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletToSpeechletV2Adapter;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.support.ClassPathXmlApplicationContext;
+import com.ramnani.alexaskills.CommuteHelper.directives.CurrentRequest;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveClient;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import com.ramnani.alexaskills.CommuteHelper.warmup.WarmPool;
+import com.ramnani.alexaskills.CommuteHelper.warmup.WarmupRequest;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Set;
 
 
-public class CommuteHelperSpeechletRequestStreamHandler extends SpeechletRequestStreamHandler {
+/**
+ * The Lambda entry point. It handles requests the same way as the SDK's
+ * SpeechletRequestStreamHandler, whose handleRequest can't be overridden, and
+ * also keeps the raw request available to the speechlet while it's handled,
+ * so that progressive responses can be sent for it.
+ *
+ * Warm-up pings are answered by the {@link WarmPool} without reaching the
+ * speechlet. Alexa requests are read and their responses written by the
+ * {@link StreamingSpeechletRequestHandler}, unless streamingEnvelope is off.
+ */
+public class CommuteHelperSpeechletRequestStreamHandler implements RequestStreamHandler {
+
+    static final String PRIME_ON_STARTUP_PROPERTY = "primeOnStartup";
+    static final String STREAMING_ENVELOPE_PROPERTY = "streamingEnvelope";
+
+    private static final Logger log = Logger.getLogger(CommuteHelperSpeechletRequestStreamHandler.class);
+
+    private final SpeechletV2 speechlet;
+    private final SpeechletRequestHandler speechletRequestHandler;
+    private final WarmPool containerWarmPool;
 
-    private static final Set<String> supportedApplicationIds;
-    private static final ApplicationContext appContext;
-    private static final GoogleMapsService googleMapsService;
-    private static final TransitHelperDao transitHelperDao;
+    /**
+     * The container's components, built when Lambda creates the handler.
+     * Handlers created with their speechlet, by the server or tests, don't
+     * load them.
+     */
+    private static final class Container {
 
-    static {
-        /*
-         * This Id can be found on https://developer.amazon.com/edw/home.html#/ "Edit" the relevant
-         * Alexa Skill and put the relevant Application Ids in this Set.
-         */
-        supportedApplicationIds = new HashSet<>();
-        supportedApplicationIds.add("amzn1.ask.skill.195ed8b2-5a91-403d-8aa5-f6c4837d066b");
-        appContext =  new ClassPathXmlApplicationContext("application-config.xml");
-        googleMapsService = (GoogleMapsService) appContext.getBean("googleMapsService");
-        transitHelperDao = (TransitHelperDao) appContext.getBean("transitHelperDao");
+        private static final GoogleMapsService googleMapsService;
+        private static final TransitHelperDao transitHelperDao;
+        private static final DirectiveClient directiveClient;
+        private static final WarmPool warmPool;
+        private static final boolean primeOnStartup;
+        private static final boolean streamingEnvelope;
+        private static final long requestBudgetMillis;
+
+        static {
+            long start = System.currentTimeMillis();
+            CommuteHelperComponents components = CommuteHelperComponents.fromClasspath();
+            googleMapsService = components.getGoogleMapsService();
+            transitHelperDao = components.getTransitHelperDao();
+            directiveClient = components.getDirectiveClient();
+            warmPool = components.getWarmPool();
+            requestBudgetMillis = components.getRequestBudgetMillis();
+            primeOnStartup = !"false".equalsIgnoreCase(components.getProperty(PRIME_ON_STARTUP_PROPERTY));
+            streamingEnvelope = !"false".equalsIgnoreCase(components.getProperty(STREAMING_ENVELOPE_PROPERTY));
+            log.info("Handler initialized in " + (System.currentTimeMillis() - start) + " ms");
+        }
     }
 
     public CommuteHelperSpeechletRequestStreamHandler() {
-        super(new CommuteHelperSpeechlet(googleMapsService, transitHelperDao), supportedApplicationIds);
+        this(new CommuteHelperSpeechlet(Container.googleMapsService, Container.transitHelperDao,
+                        Container.directiveClient, Container.requestBudgetMillis),
+                CommuteHelperComponents.getSupportedApplicationIds(), Container.warmPool,
+                Container.streamingEnvelope);
+
+        if (Container.primeOnStartup) {
+            new HandlerPrimer(this, CommuteHelperComponents.getSupportedApplicationIds().iterator().next(),
+                    Container.googleMapsService, Container.transitHelperDao).prime();
+        }
     }
 
     public CommuteHelperSpeechletRequestStreamHandler(Speechlet speechlet, Set<String> supportedApplicationIds) {
-        super(speechlet, supportedApplicationIds);
+        this(speechlet, supportedApplicationIds, new WarmPool(null, 0));
+    }
+
+    public CommuteHelperSpeechletRequestStreamHandler(Speechlet speechlet, Set<String> supportedApplicationIds,
+                                                      WarmPool warmPool) {
+        this(speechlet, supportedApplicationIds, warmPool, true);
     }
+
+    /**
+     * @param streamingEnvelope whether requests and responses are read and
+     *                          written by the {@link StreamingSpeechletRequestHandler}
+     *                          rather than bound by the SDK
+     */
+    public CommuteHelperSpeechletRequestStreamHandler(Speechlet speechlet, Set<String> supportedApplicationIds,
+                                                      WarmPool warmPool, boolean streamingEnvelope) {
+        this.speechlet = new SpeechletToSpeechletV2Adapter(speechlet);
+        this.speechletRequestHandler = streamingEnvelope
+                ? new StreamingSpeechletRequestHandler(supportedApplicationIds)
+                : new LambdaSpeechletRequestHandler(supportedApplicationIds);
+        this.containerWarmPool = warmPool;
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        byte[] request = IOUtils.toByteArray(input);
+        WarmupRequest warmup = WarmupRequest.parse(request);
+
+        if (warmup != null) {
+            output.write(containerWarmPool.onWarmup(warmup));
+            Metrics.flushIfDue();
+            EventLog.flush();
+            return;
+        }
+
+        // Lambda passes a context with every invocation, the primer's synthetic request has none
+        if (context != null) {
+            containerWarmPool.onRequest();
+        }
+        byte[] response;
+        CurrentRequest.set(request);
+
+        try {
+            response = speechletRequestHandler.handleSpeechletCall(speechlet, request);
+        } catch (SpeechletRequestHandlerException | SpeechletException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            CurrentRequest.clear();
+        }
+        output.write(response);
+        // The writer thread doesn't run while Lambda freezes the container
+        EventLog.flush();
+    }
+
 }
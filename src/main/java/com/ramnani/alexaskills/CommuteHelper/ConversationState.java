@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.speechlet.Session;
+
+import java.util.Map;
+
+/**
+ * Where the user is in the conversation. It's derived from the session
+ * attributes the managers already keep, so sessions started before a deploy
+ * carry on where they were.
+ */
+enum ConversationState {
+
+    /**
+     * Nothing to follow up on
+     */
+    NONE(null),
+    /**
+     * Waiting for, or confirming, the home address
+     */
+    SETUP_HOME_ADDRESS("homeAddressSetup"),
+    /**
+     * Waiting for, or confirming, the work address
+     */
+    SETUP_WORK_ADDRESS("workAddressSetup"),
+    /**
+     * Going through the transit suggestions in the session
+     */
+    SUGGESTIONS(null);
+
+    private final String setupAttributeValue;
+
+    ConversationState(String setupAttributeValue) {
+        this.setupAttributeValue = setupAttributeValue;
+    }
+
+    /**
+     * The value of {@link UserSetupSpeechletManager#SETUP_ATTRIBUTE} in the
+     * setup states, otherwise null
+     */
+    String getSetupAttributeValue() {
+        return setupAttributeValue;
+    }
+
+    boolean isSetup() {
+        return setupAttributeValue != null;
+    }
+
+    /**
+     * Suggestions take precedence over a setup that was left unfinished
+     */
+    static ConversationState of(Session session) {
+        Map<String, Object> attributes = session.getAttributes();
+
+        if (attributes == null) {
+            return NONE;
+        }
+        if (attributes.containsKey(TransitSpeechletManager.SUGGESTION_ATTRIBUTE)) {
+            return SUGGESTIONS;
+        }
+        return ofSetup(session);
+    }
+
+    /**
+     * The setup state of the session alone, or NONE outside of setup
+     */
+    static ConversationState ofSetup(Session session) {
+        Object setupAttribute = session.getAttribute(UserSetupSpeechletManager.SETUP_ATTRIBUTE);
+
+        if (SETUP_HOME_ADDRESS.setupAttributeValue.equals(setupAttribute)) {
+            return SETUP_HOME_ADDRESS;
+        }
+        if (SETUP_WORK_ADDRESS.setupAttributeValue.equals(setupAttribute)) {
+            return SETUP_WORK_ADDRESS;
+        }
+        return NONE;
+    }
+}
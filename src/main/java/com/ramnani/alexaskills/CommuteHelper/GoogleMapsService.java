@@ -15,15 +15,6 @@
  */
 package com.ramnani.alexaskills.CommuteHelper;
 
-import com.google.maps.DirectionsApi;
-import com.google.maps.DirectionsApiRequest;
-import com.google.maps.GeoApiContext;
-import com.google.maps.GeocodingApi;
-import com.google.maps.GeocodingApiRequest;
-import com.google.maps.PendingResult;
-import com.google.maps.PlacesApi;
-import com.google.maps.TextSearchRequest;
-import com.google.maps.TimeZoneApi;
 import com.google.maps.model.DirectionsLeg;
 import com.google.maps.model.DirectionsRoute;
 import com.google.maps.model.DirectionsStep;
@@ -32,84 +23,238 @@ import com.google.maps.model.GeocodingResult;
 import com.google.maps.model.LatLng;
 import com.google.maps.model.PlacesSearchResponse;
 import com.google.maps.model.PlacesSearchResult;
+import com.google.maps.model.StopDetails;
 import com.google.maps.model.TravelMode;
+import com.ramnani.alexaskills.CommuteHelper.deadline.DeadlineExceededException;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
+import com.ramnani.alexaskills.CommuteHelper.maps.AddressNormalizer;
+import com.ramnani.alexaskills.CommuteHelper.maps.CircuitBreaker;
+import com.ramnani.alexaskills.CommuteHelper.maps.DepartureLadders;
+import com.ramnani.alexaskills.CommuteHelper.maps.DirectionsCache;
+import com.ramnani.alexaskills.CommuteHelper.maps.DirectionsResponses;
+import com.ramnani.alexaskills.CommuteHelper.maps.FetchedRoutes;
+import com.ramnani.alexaskills.CommuteHelper.maps.Geohash;
+import com.ramnani.alexaskills.CommuteHelper.maps.LiveMapsApi;
+import com.ramnani.alexaskills.CommuteHelper.maps.MapsApi;
+import com.ramnani.alexaskills.CommuteHelper.maps.MapsThrottledException;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
 import org.apache.commons.lang3.Validate;
 import org.joda.time.DateTime;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.TimeZone;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 
 public class GoogleMapsService {
 
     private static final Logger log = LoggerFactory.getLogger(GoogleMapsService.class);
-    private GeoApiContext geoApiContext;
+    private final MapsApi mapsApi;
+    private final DirectionsCache directionsCache;
+    private final DepartureLadders departureLadders;
+    private final ConcurrentMap<String, LatLng> coordinates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PlacesSearchResult> places = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RecentRoutes> recentRoutes = new ConcurrentHashMap<>();
+    private final CircuitBreaker placesBreaker;
+    private final CircuitBreaker geocodingBreaker;
+    private final CircuitBreaker timezoneBreaker;
+    private final CircuitBreaker directionsBreaker;
     private static final String[] GENERIC_TRANSIT_TYPES = { "commute", "transit" };
+    private static final int MAX_COORDINATES = 10000;
+    private static final int MAX_PLACES = 10000;
+    private static final int MAX_RECENT_ROUTES = 10000;
+    private static final String CIRCUIT_OPEN = ".CircuitOpen";
+    private static final String PRIME_DIRECTIONS_RESPONSE = "fixtures/directions-prime.json";
+
+    /**
+     * Used to estimate how long a user walks to and from the stops. The
+     * detour factor accounts for streets not being straight lines.
+     */
+    private static final double WALKING_METERS_PER_SECOND = 1.25;
+    private static final double WALKING_DETOUR_FACTOR = 1.3;
 
     public GoogleMapsService(String apiKey) {
-        geoApiContext = new GeoApiContext();
-        geoApiContext.setApiKey(apiKey);
+        this(new LiveMapsApi(apiKey));
+    }
+
+    /**
+     * Uses the given maps API, e.g. one that records or replays the responses
+     */
+    public GoogleMapsService(MapsApi mapsApi) {
+        this(mapsApi, null);
+    }
+
+    /**
+     * Shares the transit directions between users whose endpoints fall in
+     * the same cells of the cache. No directions are cached if it's null.
+     */
+    public GoogleMapsService(MapsApi mapsApi, DirectionsCache directionsCache) {
+        this(mapsApi, directionsCache, null);
+    }
+
+    /**
+     * Also answers from the upcoming departures earlier Directions calls
+     * returned, unless departureLadders is null.
+     */
+    public GoogleMapsService(MapsApi mapsApi, DirectionsCache directionsCache,
+                             DepartureLadders departureLadders) {
+        this(mapsApi, directionsCache, departureLadders, CircuitBreaker.Settings.DEFAULT);
+    }
+
+    /**
+     * Each maps endpoint gets a circuit breaker with the given settings
+     */
+    public GoogleMapsService(MapsApi mapsApi, DirectionsCache directionsCache,
+                             DepartureLadders departureLadders, CircuitBreaker.Settings breakerSettings) {
+        Validate.notNull(mapsApi);
+        Validate.notNull(breakerSettings);
+        this.mapsApi = mapsApi;
+        this.directionsCache = directionsCache;
+        this.departureLadders = departureLadders;
+        this.placesBreaker = new CircuitBreaker(Metrics.PLACES, breakerSettings);
+        this.geocodingBreaker = new CircuitBreaker(Metrics.GEOCODING, breakerSettings);
+        this.timezoneBreaker = new CircuitBreaker(Metrics.TIMEZONE, breakerSettings);
+        this.directionsBreaker = new CircuitBreaker(Metrics.DIRECTIONS, breakerSettings);
     }
 
     public String getAddressOfPlace(String placeName) {
+        PlacesSearchResult place = getPlace(placeName);
+        return place == null ? null : place.formattedAddress;
+    }
+
+    /**
+     * Returns the top text search result for the place, including its
+     * formatted address and location. Returns null if nothing is found.
+     * Results are remembered by the canonical key of the place name.
+     */
+    public PlacesSearchResult getPlace(String placeName) {
         if (placeName == null || placeName.isEmpty()) {
             log.warn("placeName is null or empty.");
             return null;
         }
-        TextSearchRequest request = PlacesApi.textSearchQuery(geoApiContext, placeName);
-        PlacesSearchResponse response = request.awaitIgnoreError();
+        String key = addressKey(placeName);
+        PlacesSearchResult cached = places.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+        if (!isCallPermitted(placesBreaker)) {
+            return null;
+        }
+        PlacesSearchResponse response;
+        long start = System.nanoTime();
+
+        try {
+            response = mapsApi.textSearch(placeName);
+            placesBreaker.onSuccess(System.nanoTime() - start);
+        } catch (Exception ex) {
+            onFailure(placesBreaker, ex, start);
+            Metrics.recordDependencyError(Metrics.PLACES);
+            log.warn("Could not get response from places API for place: " + EventLog.redact(placeName), ex);
+            return null;
+        } finally {
+            Metrics.recordDependencyLatency(Metrics.PLACES, start);
+        }
 
         if (response == null) {
-            log.warn("Response from maps service returned null for place: " + placeName);
+            Metrics.recordDependencyError(Metrics.PLACES);
+            log.warn("Response from maps service returned null for place: " + EventLog.redact(placeName));
             return null;
         }
 
-        if (response.results.length == 0) {
-            log.warn("No results returned in response for place: " + placeName
-                    + ". Response: " + response.toString());
+        if (response.results.length == 0 || response.results[0] == null) {
+            EventLog.event("place.notFound")
+                    .address("place", placeName)
+                    .field("results", response.results.length)
+                    .log();
             return null;
         }
         PlacesSearchResult place = response.results[0];
-        log.info("Place returned from maps service: " + place.toString());
+        EventLog.verbose("place.found")
+                .address("place", placeName)
+                .field("placeId", place.placeId)
+                .field("results", response.results.length)
+                .log();
+
+        if (places.size() >= MAX_PLACES) {
+            places.clear();
+        }
+        places.put(key, place);
+        return place;
+    }
 
-        if (place == null) {
-            log.warn("No place returned as part of response result. Place: " + placeName
-                    + ". Response: " + response.toString());
+    /**
+     * Starts a timezone lookup for the location without blocking. The returned
+     * future completes with the timezone ID, or null if it could not be resolved.
+     */
+    public CompletableFuture<String> getTimezoneFromLocationAsync(LatLng location) {
+        Validate.notNull(location);
+        CompletableFuture<String> timezoneFuture = new CompletableFuture<>();
+
+        if (!isCallPermitted(timezoneBreaker)) {
+            timezoneFuture.complete(null);
+            return timezoneFuture;
         }
-        return place.formattedAddress;
+        long start = System.nanoTime();
+
+        mapsApi.getTimeZoneAsync(location).whenComplete((timeZone, ex) -> {
+            Metrics.recordDependencyLatency(Metrics.TIMEZONE, start);
+
+            if (ex != null) {
+                onFailure(timezoneBreaker, ex, start);
+                Metrics.recordDependencyError(Metrics.TIMEZONE);
+                log.error("Could not get response from timezone API for location: " + location, ex);
+                timezoneFuture.complete(null);
+            } else {
+                timezoneBreaker.onSuccess(System.nanoTime() - start);
+                timezoneFuture.complete(timeZone == null ? null : timeZone.getID());
+            }
+        });
+        return timezoneFuture;
     }
 
+    /**
+     * Geocodes the address, or takes its coordinates from an earlier lookup of
+     * any spelling of it, and looks up the timezone there
+     */
     public String getTimezoneFromAddress(String address) {
-        GeocodingApiRequest request = GeocodingApi.geocode(geoApiContext, address);
-        GeocodingResult[] result = null;
+        LatLng location = getCoordinates(address);
+        return location == null ? null : getTimezoneFromLocation(location);
+    }
 
-        try {
-            result = request.await();
-        } catch (Exception ex) {
-            log.error("Could not get response from geocoding API for address: " + address,
-                    ex);
-            return null;
-        }
+    /**
+     * Looks up the timezone at the location, or returns null if it could not
+     * be resolved
+     */
+    public String getTimezoneFromLocation(LatLng location) {
+        Validate.notNull(location);
 
-        if (result == null || result.length == 0) {
+        if (!isCallPermitted(timezoneBreaker)) {
             return null;
         }
-        LatLng location = result[0].geometry.location;
-        PendingResult<TimeZone> timeZonePendingResult = TimeZoneApi.getTimeZone(geoApiContext, location);
         TimeZone timeZone = null;
+        long start = System.nanoTime();
 
         try {
-            timeZone = timeZonePendingResult.await();
+            timeZone = mapsApi.getTimeZone(location);
+            timezoneBreaker.onSuccess(System.nanoTime() - start);
         } catch (Exception ex) {
-            log.error("Could not get response from timezone API for address: " + address,
-                    ex);
+            onFailure(timezoneBreaker, ex, start);
+            Metrics.recordDependencyError(Metrics.TIMEZONE);
+            log.error("Could not get response from timezone API for location: " + location, ex);
             return null;
+        } finally {
+            Metrics.recordDependencyLatency(Metrics.TIMEZONE, start);
         }
 
         if (timeZone == null) {
@@ -121,31 +266,428 @@ public class GoogleMapsService {
     public List<TransitSuggestion> getNextTransitToDestination(String transitType,
                                                                String homeAddress,
                                                                String destinationAddress) {
+        return getNextTransitToDestination(transitType, homeAddress, null, destinationAddress, null);
+    }
+
+    /**
+     * Routes between the stored coordinates of the endpoints, so that neither
+     * this service nor Directions geocodes them again. An endpoint whose
+     * location is null is routed from its address.
+     */
+    public List<TransitSuggestion> getNextTransitToDestination(String transitType,
+                                                               String homeAddress,
+                                                               LatLng homeLocation,
+                                                               String destinationAddress,
+                                                               LatLng destinationLocation) {
         Validate.notNull(transitType);
         Validate.notEmpty(transitType);
 
-        DirectionsApiRequest request = DirectionsApi.getDirections(geoApiContext, homeAddress, destinationAddress);
-        request.mode(TravelMode.TRANSIT);
-        request.alternatives(true);
-        request.departureTime(Instant.now());
-        DirectionsRoute[] routes = request.awaitIgnoreError();
+        LatLng origin = null;
+        LatLng destination = null;
+
+        if (directionsCache != null) {
+            origin = homeLocation != null ? homeLocation : getCoordinates(homeAddress);
+            destination = origin == null ? null
+                    : destinationLocation != null ? destinationLocation : getCoordinates(destinationAddress);
+        }
+        boolean isShared = origin != null && destination != null;
+        String routesKey = endpointKey(homeAddress, homeLocation) + "|"
+                + endpointKey(destinationAddress, destinationLocation);
+        FetchedRoutes fetched = isShared
+                ? getSharedTransitDirections(origin, destination)
+                : getUpcomingTransitDirections(endpointQuery(homeAddress, homeLocation),
+                        endpointQuery(destinationAddress, destinationLocation), routesKey);
+
+        if (!isShared) {
+            origin = null;
+            destination = null;
+        }
+
+        if (fetched == null) {
+            return getRecentSuggestions(routesKey, transitType);
+        }
+        DirectionsRoute[] routes = fetched.getRoutes();
+
+        if (routes.length > 0) {
+            rememberRoutes(routesKey, new RecentRoutes(fetched, origin, destination));
+        }
+        return toSuggestions(routes, transitType, origin, destination,
+                isShared || departureLadders != null);
+    }
 
+    private void rememberRoutes(String key, RecentRoutes routes) {
+        if (recentRoutes.size() >= MAX_RECENT_ROUTES) {
+            recentRoutes.clear();
+        }
+        recentRoutes.put(key, routes);
+    }
+
+    /**
+     * When Directions failed or its circuit breaker is open, answers with the
+     * departures of the most recent routes for the same addresses that
+     * haven't left yet. The suggestions carry the age of the routes.
+     */
+    private List<TransitSuggestion> getRecentSuggestions(String key, String transitType) {
+        RecentRoutes recent = recentRoutes.get(key);
+
+        if (recent == null) {
+            return null;
+        }
+        List<TransitSuggestion> suggestions = toSuggestions(recent.routes.getRoutes(), transitType,
+                recent.origin, recent.destination, true);
+
+        if (suggestions == null || suggestions.isEmpty()) {
+            return suggestions;
+        }
+        int ageMinutes = (int) TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis()
+                - recent.routes.getFetchedAtMillis());
+        EventLog.event("directions.recentRoutes")
+                .address("routes", key)
+                .field("ageMinutes", ageMinutes)
+                .log();
+
+        for (TransitSuggestion suggestion : suggestions) {
+            suggestion.setStaleMinutes(ageMinutes);
+        }
+        return suggestions;
+    }
+
+    /**
+     * The page of departures after the given time, for users browsing past
+     * the ones returned by {@link #getNextTransitToDestination(String, String, String)}.
+     * Only departures later than departedAfter are returned.
+     */
+    public List<TransitSuggestion> getTransitToDestinationDepartingAfter(String transitType,
+                                                                         String homeAddress,
+                                                                         String destinationAddress,
+                                                                         DateTime departedAfter) {
+        return getTransitToDestinationDepartingAfter(transitType, homeAddress, null,
+                destinationAddress, null, departedAfter);
+    }
+
+    /**
+     * Routes between the stored coordinates of the endpoints where they're
+     * known, see {@link #getNextTransitToDestination(String, String, LatLng, String, LatLng)}
+     */
+    public List<TransitSuggestion> getTransitToDestinationDepartingAfter(String transitType,
+                                                                         String homeAddress,
+                                                                         LatLng homeLocation,
+                                                                         String destinationAddress,
+                                                                         LatLng destinationLocation,
+                                                                         DateTime departedAfter) {
+        Validate.notEmpty(transitType);
+        Validate.notNull(departedAfter);
+
+        DirectionsRoute[] routes = getTransitDirections(endpointQuery(homeAddress, homeLocation),
+                endpointQuery(destinationAddress, destinationLocation),
+                new Instant(departedAfter.plusMinutes(1)));
+        List<TransitSuggestion> suggestions = toSuggestions(routes, transitType, null, null, false);
+
+        if (suggestions != null) {
+            suggestions.removeIf(suggestion -> !suggestion.getTransitStartTime().isAfter(departedAfter));
+        }
+        return suggestions;
+    }
+
+    /**
+     * @param origin The user's origin when the routes are shared between a
+     *               cell of users, otherwise null
+     * @param mayHaveLeft If the routes may be cached, so that departures the
+     *                    user can't make anymore have to be dropped
+     */
+    private List<TransitSuggestion> toSuggestions(DirectionsRoute[] routes, String transitType,
+                                                  LatLng origin, LatLng destination, boolean mayHaveLeft) {
         if (routes == null || routes.length == 0) {
             return null;
         }
-        Stream<DirectionsRoute> routeStream;
+        boolean isShared = origin != null && destination != null;
+        boolean isGenericTransitType = Arrays.asList(GENERIC_TRANSIT_TYPES).contains(transitType);
+        DateTime now = DateTime.now();
+        List<TransitSuggestion> suggestions = new ArrayList<>(routes.length);
+
+        for (DirectionsRoute route : routes) {
+            if (!isGenericTransitType && !isRouteATransitType(route, transitType)) {
+                continue;
+            }
+            TransitSuggestion suggestion = routeToSuggestionMap(route);
+
+            if (suggestion == null) {
+                continue;
+            }
+
+            if (isShared) {
+                adjustWalkingForEndpoints(suggestion, route, origin, destination);
+            }
 
-        if (!Arrays.asList(GENERIC_TRANSIT_TYPES).contains(transitType)) {
-            routeStream = Stream.of(routes).filter(r -> isRouteATransitType(r, transitType));
+            // Cached directions may be from a few minutes ago
+            if (mayHaveLeft) {
+                DateTime leavingTime = suggestion.getWalkingStartTime() != null
+                        ? suggestion.getWalkingStartTime() : suggestion.getTransitStartTime();
+
+                if (leavingTime.isBefore(now)) {
+                    continue;
+                }
+            }
+            suggestions.add(suggestion);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Reads the departures from the ladder of origin and destination if there
+     * are departure ladders, otherwise calls Directions.
+     *
+     * @param key Names the ladder, the same for every spelling of the endpoints
+     */
+    private FetchedRoutes getUpcomingTransitDirections(String origin, String destination, String key) {
+        if (departureLadders != null) {
+            return departureLadders.getUpcoming(key, origin, destination, this::getTransitDirections);
+        }
+        long now = System.currentTimeMillis();
+        DirectionsRoute[] routes = getTransitDirections(origin, destination, new Instant(now));
+        return routes == null ? null : new FetchedRoutes(routes, now);
+    }
+
+    private DirectionsRoute[] getTransitDirections(String origin, String destination, Instant departureTime) {
+        if (!isCallPermitted(directionsBreaker)) {
+            return null;
+        }
+        DirectionsRoute[] routes = null;
+        long start = System.nanoTime();
+
+        try {
+            routes = mapsApi.getTransitDirections(origin, destination, departureTime);
+            directionsBreaker.onSuccess(System.nanoTime() - start);
+        } catch (Exception ex) {
+            onFailure(directionsBreaker, ex, start);
+            log.warn("Could not get response from directions API from: " + EventLog.redact(origin)
+                    + " to: " + EventLog.redact(destination), ex);
+        } finally {
+            Metrics.recordDependencyLatency(Metrics.DIRECTIONS, start);
+        }
+
+        if (routes == null) {
+            Metrics.recordDependencyError(Metrics.DIRECTIONS);
+        }
+        return routes;
+    }
+
+    /**
+     * Returns the directions between the centers of the cells the endpoints
+     * fall in, from the cache when another user already asked for them in
+     * the current departure bucket. With departure ladders, the ladder of
+     * the two cells is used instead of the bucket.
+     */
+    private FetchedRoutes getSharedTransitDirections(LatLng origin, LatLng destination) {
+        long now = System.currentTimeMillis();
+        String originCell = directionsCache.cell(origin);
+        String destinationCell = directionsCache.cell(destination);
+
+        if (departureLadders != null) {
+            return getUpcomingTransitDirections(toQuery(Geohash.decode(originCell)),
+                    toQuery(Geohash.decode(destinationCell)), originCell + "|" + destinationCell);
+        }
+        String key = directionsCache.key(originCell, destinationCell, now);
+        FetchedRoutes cached = directionsCache.get(key, now);
+
+        if (cached != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Directions cache hit for " + key);
+            }
+            return cached;
+        }
+        DirectionsRoute[] routes = getTransitDirections(toQuery(Geohash.decode(originCell)),
+                toQuery(Geohash.decode(destinationCell)), new Instant(now));
+
+        if (routes == null) {
+            return null;
+        }
+
+        if (routes.length > 0) {
+            directionsCache.put(key, routes, now);
+        }
+        return new FetchedRoutes(routes, now);
+    }
+
+    private boolean isCallPermitted(CircuitBreaker breaker) {
+        if (breaker.tryAcquire()) {
+            return true;
+        }
+        // Counted rather than logged, the breaker logs when it opens and closes
+        Metrics.recordError(Metrics.DEPENDENCY, breaker.getName() + CIRCUIT_OPEN);
+        return false;
+    }
+
+    /**
+     * Calls held back by the QPS governor, or cut short by the deadline of
+     * the request, say nothing about the endpoint's health
+     */
+    private static void onFailure(CircuitBreaker breaker, Throwable ex, long startNanos) {
+        if (isNotAnEndpointFailure(ex) || isNotAnEndpointFailure(ex.getCause())) {
+            breaker.onIgnored();
         } else {
-            routeStream = Stream.of(routes);
+            breaker.onError(System.nanoTime() - startNanos);
+        }
+    }
+
+    private static boolean isNotAnEndpointFailure(Throwable ex) {
+        return ex instanceof MapsThrottledException || ex instanceof DeadlineExceededException;
+    }
+
+    /**
+     * The canonical key of the address, so that spellings of the same address
+     * share cache entries. Addresses that can't be normalized are their own key.
+     */
+    private static String addressKey(String address) {
+        String key = AddressNormalizer.normalize(address);
+        return key == null ? String.valueOf(address) : key;
+    }
+
+    /**
+     * Endpoints with stored coordinates are keyed by them, the rest by the
+     * canonical key of their address
+     */
+    private static String endpointKey(String address, LatLng location) {
+        return location == null ? addressKey(address) : toQuery(location);
+    }
+
+    private static String endpointQuery(String address, LatLng location) {
+        return location == null ? address : toQuery(location);
+    }
+
+    private static String toQuery(LatLng location) {
+        return String.format(Locale.ROOT, "%.6f,%.6f", location.lat, location.lng);
+    }
+
+    /**
+     * Geocodes the address, remembering the result. Returns null if the
+     * address could not be resolved.
+     */
+    private LatLng getCoordinates(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+        String key = addressKey(address);
+        LatLng location = coordinates.get(key);
+
+        if (location != null) {
+            return location;
+        }
+        if (!isCallPermitted(geocodingBreaker)) {
+            return null;
         }
-        return routeStream.map(this::routeToSuggestionMap)
-                          .filter(s -> s!=null)
-                          .collect(Collectors.toList());
+        GeocodingResult[] result;
+        long start = System.nanoTime();
+
+        try {
+            result = mapsApi.geocode(address);
+            geocodingBreaker.onSuccess(System.nanoTime() - start);
+        } catch (Exception ex) {
+            onFailure(geocodingBreaker, ex, start);
+            Metrics.recordDependencyError(Metrics.GEOCODING);
+            log.warn("Could not get response from geocoding API for address: "
+                    + EventLog.redact(address), ex);
+            return null;
+        } finally {
+            Metrics.recordDependencyLatency(Metrics.GEOCODING, start);
+        }
+
+        if (result == null || result.length == 0 || result[0].geometry == null) {
+            return null;
+        }
+        location = result[0].geometry.location;
+
+        if (coordinates.size() >= MAX_COORDINATES) {
+            coordinates.clear();
+        }
+        coordinates.put(key, location);
+        return location;
+    }
+
+    /**
+     * The shared route starts and ends at the cell centers. Replaces the walk
+     * to the first stop and the walk from the last stop with estimates for the
+     * user's own endpoints, and moves the leaving and arrival times to match.
+     */
+    void adjustWalkingForEndpoints(TransitSuggestion suggestion, DirectionsRoute route,
+                                   LatLng origin, LatLng destination) {
+        DirectionsStep[] steps = route.legs[0].steps;
+        DirectionsStep firstTransitStep = null;
+        DirectionsStep lastTransitStep = null;
+
+        for (DirectionsStep step : steps) {
+            if (step.travelMode == TravelMode.TRANSIT && step.transitDetails != null) {
+                if (firstTransitStep == null) {
+                    firstTransitStep = step;
+                }
+                lastTransitStep = step;
+            }
+        }
+
+        if (firstTransitStep == null) {
+            return;
+        }
+        StopDetails departureStop = firstTransitStep.transitDetails.departureStop;
+
+        if (departureStop != null && departureStop.location != null) {
+            long walkingSeconds = estimateWalkingSeconds(origin, departureStop.location);
+            suggestion.setWalkingDuration(durationOf(walkingSeconds));
+            suggestion.setWalkingStartTime(suggestion.getTransitStartTime().minusSeconds((int) walkingSeconds));
+
+            if (suggestion.getWalkingInstruction() == null) {
+                suggestion.setWalkingInstruction("Walk to " + departureStop.name);
+            }
+        }
+        StopDetails arrivalStop = lastTransitStep.transitDetails.arrivalStop;
+        DirectionsStep lastStep = steps[steps.length - 1];
+
+        if (arrivalStop != null && arrivalStop.location != null) {
+            long sharedSeconds = lastStep.travelMode == TravelMode.WALKING && lastStep.duration != null
+                    ? lastStep.duration.inSeconds : 0;
+            long walkingSeconds = estimateWalkingSeconds(arrivalStop.location, destination);
+            suggestion.setArrivalTime(suggestion.getArrivalTime().plusSeconds((int) (walkingSeconds - sharedSeconds)));
+        }
+        DateTime leavingTime = suggestion.getWalkingStartTime() != null
+                ? suggestion.getWalkingStartTime() : suggestion.getTransitStartTime();
+        long totalSeconds = (suggestion.getArrivalTime().getMillis() - leavingTime.getMillis()) / 1000;
+        suggestion.setTotalDuration(durationOf(totalSeconds));
+    }
+
+    private static long estimateWalkingSeconds(LatLng from, LatLng to) {
+        return Math.round(Geohash.distanceMeters(from, to) * WALKING_DETOUR_FACTOR / WALKING_METERS_PER_SECOND);
     }
 
-    private TransitSuggestion routeToSuggestionMap(DirectionsRoute route) {
+    private static Duration durationOf(long seconds) {
+        Duration duration = new Duration();
+        duration.inSeconds = seconds;
+        long minutes = Math.max(1, Math.round(seconds / 60.0));
+        duration.humanReadable = minutes + (minutes == 1 ? " min" : " mins");
+        return duration;
+    }
+
+    /**
+     * Loads and exercises the request building and route parsing code paths
+     * with a recorded Directions response, parsed as a live one would be.
+     * Nothing is sent to the maps API.
+     */
+    public void prime() {
+        mapsApi.prime();
+        DirectionsRoute[] routes;
+
+        try {
+            routes = DirectionsResponses.load(PRIME_DIRECTIONS_RESPONSE);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Could not prime the route parsing", ex);
+            return;
+        }
+
+        for (DirectionsRoute route : routes) {
+            isRouteATransitType(route, "bus");
+            routeToSuggestionMap(route);
+        }
+    }
+
+    TransitSuggestion routeToSuggestionMap(DirectionsRoute route) {
         DirectionsLeg[] legs = route.legs;
 
         if (legs == null || legs.length == 0) {
@@ -220,7 +762,7 @@ public class GoogleMapsService {
         return null;
     }
 
-    private boolean isRouteATransitType(DirectionsRoute route, String transitType) {
+    boolean isRouteATransitType(DirectionsRoute route, String transitType) {
         DirectionsLeg[] legs = route.legs;
 
         if (legs == null) {
@@ -249,4 +791,21 @@ public class GoogleMapsService {
         }
         return false;
     }
+
+    /**
+     * The last routes returned for a pair of addresses, kept to answer with
+     * while the maps API is unavailable
+     */
+    private static class RecentRoutes {
+
+        private final FetchedRoutes routes;
+        private final LatLng origin;
+        private final LatLng destination;
+
+        RecentRoutes(FetchedRoutes routes, LatLng origin, LatLng destination) {
+            this.routes = routes;
+            this.origin = origin;
+            this.destination = destination;
+        }
+    }
 }
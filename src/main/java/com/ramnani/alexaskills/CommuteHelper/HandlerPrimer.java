@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the hot code paths of a request with synthetic data while the handler is
+ * being initialized, so that class loading, JIT warm-up and client creation
+ * happen before the first user request instead of during it.
+ *
+ * Priming never fails initialization. A component that can't be primed is
+ * logged and skipped.
+ */
+public class HandlerPrimer {
+
+    private static final Logger log = Logger.getLogger(HandlerPrimer.class);
+
+    private static final String PRIME_TIMEZONE = "America/Los_Angeles";
+
+    private final RequestStreamHandler handler;
+    private final String applicationId;
+    private final GoogleMapsService googleMapsService;
+    private final TransitHelperDao transitHelperDao;
+
+    public HandlerPrimer(RequestStreamHandler handler,
+                         String applicationId,
+                         GoogleMapsService googleMapsService,
+                         TransitHelperDao transitHelperDao) {
+        Validate.notNull(handler);
+        Validate.notNull(applicationId);
+        Validate.notNull(googleMapsService);
+        Validate.notNull(transitHelperDao);
+
+        this.handler = handler;
+        this.applicationId = applicationId;
+        this.googleMapsService = googleMapsService;
+        this.transitHelperDao = transitHelperDao;
+    }
+
+    /**
+     * Primes each component in turn.
+     *
+     * @return Time in milliseconds spent priming each component, in the order they were primed
+     */
+    public Map<String, Long> prime() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        // The synthetic requests stay out of the metrics, which come back on even if a step throws an Error
+        Metrics.setEnabled(false);
+
+        try {
+            prime("jackson", timings, TransitSpeechletManager::primeSerialization);
+            prime("jodaTime", timings, () ->
+                    DateTime.now()
+                            .withZone(DateTimeZone.forID(PRIME_TIMEZONE))
+                            .toString(DateTimeFormat.forPattern("hh:mm a")));
+            prime("googleMaps", timings, googleMapsService::prime);
+            prime("dynamoDB", timings, transitHelperDao::prime);
+            prime("speechlet", timings, this::primeLaunchRequest);
+        } finally {
+            Metrics.setEnabled(true);
+        }
+
+        log.info("Priming completed. Time per component in ms: " + timings);
+        return timings;
+    }
+
+    /**
+     * Sends a LaunchRequest through the stream handler. This exercises request
+     * parsing, application ID verification, the speechlet, response building
+     * and response serialization without touching any backend.
+     */
+    private void primeLaunchRequest() throws Exception {
+        String request = "{\"version\":\"1.0\","
+                + "\"session\":{\"new\":false,\"sessionId\":\"prime-session\","
+                + "\"application\":{\"applicationId\":\"" + applicationId + "\"},"
+                + "\"attributes\":{},\"user\":{\"userId\":\"prime-user\"}},"
+                + "\"request\":{\"type\":\"LaunchRequest\",\"requestId\":\"prime-request\","
+                + "\"timestamp\":\"" + ISODateTimeFormat.dateTimeNoMillis().withZoneUTC().print(DateTime.now()) + "\","
+                + "\"locale\":\"en-US\"}}";
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)), output, null);
+    }
+
+    private void prime(String component, Map<String, Long> timings, PrimingStep step) {
+        long start = System.currentTimeMillis();
+
+        try {
+            step.run();
+        } catch (Exception ex) {
+            log.warn("Unable to prime " + component, ex);
+        }
+        timings.put(component, System.currentTimeMillis() - start);
+    }
+
+    private interface PrimingStep {
+        void run() throws Exception;
+    }
+}
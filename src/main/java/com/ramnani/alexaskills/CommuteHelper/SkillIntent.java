@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The intents of the interaction model. Intent names are resolved with a
+ * single lookup, so that handlers can be dispatched on the enum.
+ */
+enum SkillIntent {
+
+    GET_NEXT_TRANSIT_TO_WORK("GetNextTransitToWork"),
+    GET_ARRIVAL_TIME("GetArrivalTime"),
+    GET_TOTAL_TRANSIT_DURATION("GetTotalTransitDuration"),
+    GET_DIRECTIONS("GetDirections"),
+    UPDATE_HOME_ADDRESS("UpdateHomeAddress"),
+    UPDATE_WORK_ADDRESS("UpdateWorkAddress"),
+    PUT_POSTAL_ADDRESS("PutPostalAddress"),
+    PUT_STREET_ADDRESS("PutStreetAddress"),
+    GET_WORK_ADDRESS("GetWorkAddress"),
+    GET_HOME_ADDRESS("GetHomeAddress"),
+    YES("YesIntent"),
+    NO("NoIntent"),
+    REPEAT("AMAZON.RepeatIntent"),
+    NEXT("AMAZON.NextIntent"),
+    PREVIOUS("AMAZON.PreviousIntent"),
+    HELP("AMAZON.HelpIntent"),
+    CANCEL("AMAZON.CancelIntent"),
+    STOP("AMAZON.StopIntent"),
+    /**
+     * Any intent name that isn't one of the above, including null
+     */
+    UNKNOWN(null);
+
+    private static final Map<String, SkillIntent> BY_NAME = new HashMap<>();
+
+    static {
+        for (SkillIntent intent : values()) {
+            if (intent.intentName != null) {
+                BY_NAME.put(intent.intentName, intent);
+            }
+        }
+    }
+
+    private final String intentName;
+
+    SkillIntent(String intentName) {
+        this.intentName = intentName;
+    }
+
+    /**
+     * The name of the intent in the interaction model
+     */
+    String getIntentName() {
+        return intentName;
+    }
+
+    boolean isAddress() {
+        return this == PUT_POSTAL_ADDRESS || this == PUT_STREET_ADDRESS;
+    }
+
+    static SkillIntent forName(String intentName) {
+        SkillIntent intent = intentName == null ? null : BY_NAME.get(intentName);
+        return intent == null ? UNKNOWN : intent;
+    }
+}
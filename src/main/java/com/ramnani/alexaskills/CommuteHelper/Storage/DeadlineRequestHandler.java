@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.Storage;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.RequestHandler2;
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import com.ramnani.alexaskills.CommuteHelper.deadline.DeadlineExceededException;
+
+/**
+ * Holds each AWS call made for a request to the time left to its
+ * {@link Deadline}. The SDK aborts the call, retries included, when that
+ * runs out. Calls made without a deadline keep the client's timeouts.
+ */
+class DeadlineRequestHandler extends RequestHandler2 {
+
+    @Override
+    public AmazonWebServiceRequest beforeMarshalling(AmazonWebServiceRequest request) {
+        Deadline deadline = Deadline.current();
+
+        if (deadline == null) {
+            return request;
+        }
+        long remainingMillis = deadline.remainingMillis();
+
+        if (remainingMillis <= 0) {
+            throw new DeadlineExceededException("No time left for " + request.getClass().getSimpleName());
+        }
+        Integer timeout = request.getSdkClientExecutionTimeout();
+
+        if (timeout == null || timeout == 0 || timeout > remainingMillis) {
+            request.setSdkClientExecutionTimeout((int) Math.min(Integer.MAX_VALUE, remainingMillis));
+        }
+        return request;
+    }
+}
@@ -20,31 +20,114 @@ import com.amazonaws.services.dynamodbv2.datamodeling.AttributeEncryptor;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.encryption.providers.DirectKmsMaterialProvider;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.kms.AWSKMS;
 import com.amazonaws.services.kms.AWSKMSClient;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
 import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Data Access Object layer for The TransitUsers DynamoDB table. All user data
  * except the UserId is encrypted using a symmetric key procured from AWS
  * KMS (Key Management Service)
+ *
+ * The item signature covers every attribute, so reads that need an encrypted
+ * attribute load and verify the whole item through the mapper. Reads that only
+ * need the key or the plaintext TimeZone use a projection and skip decryption
+ * and the KMS call entirely.
+ *
+ * The RecentCommuters table records which users asked for their commute at
+ * which time of day. It holds nothing but the plaintext UserId, keyed by the
+ * time of day slot, and isn't encrypted.
+ *
+ * The DynamoDB and KMS calls made for a request are held to its deadline, see
+ * {@link DeadlineRequestHandler}.
  */
 public class TransitHelperDao {
 
-    AmazonDynamoDBClient dynamoDBClient;
-    DynamoDBMapper mapper;
+    private static final Logger log = Logger.getLogger(TransitHelperDao.class);
+
+    private static final String PRIME_USER_ID = "prime-user";
+    private static final String PROJECTED_GET = "getItemProjected";
+    private static final String PUT_RECENT_COMMUTER = "putRecentCommuter";
+    private static final String QUERY_RECENT_COMMUTERS = "queryRecentCommuters";
+
+    public static final String RECENT_COMMUTERS_TABLE_NAME = "RecentCommuters";
+    public static final String SLOT_ATTRIBUTE = "Slot";
+    public static final String EXPIRES_AT_ATTRIBUTE = "ExpiresAt";
+
+    private final String kmsKeyId;
+
+    volatile AmazonDynamoDBClient dynamoDBClient;
+    volatile DynamoDBMapper mapper;
     AWSKMS kms;
     DirectKmsMaterialProvider kmsMaterialProvider;
 
+    /**
+     * The AWS clients are created on first use rather than here, so that
+     * constructing the DAO doesn't add to the Lambda cold start.
+     */
     public TransitHelperDao(String kmsKeyId) {
-        dynamoDBClient = new AmazonDynamoDBClient();
-        kms = new AWSKMSClient();
+        this.kmsKeyId = kmsKeyId;
+    }
+
+    private DynamoDBMapper getMapper() {
+        if (mapper == null) {
+            initializeClients();
+        }
+        return mapper;
+    }
+
+    private AmazonDynamoDBClient getDynamoDBClient() {
+        if (dynamoDBClient == null) {
+            initializeClients();
+        }
+        return dynamoDBClient;
+    }
+
+    /**
+     * The no-argument clients keep talking to us-east-1 as they always have;
+     * the client builders, the only other way to add the deadline handler,
+     * resolve the region from the environment instead.
+     */
+    @SuppressWarnings("deprecation")
+    private synchronized void initializeClients() {
+        if (mapper != null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        AmazonDynamoDBClient client = new AmazonDynamoDBClient();
+        AWSKMSClient kmsClient = new AWSKMSClient();
+        DeadlineRequestHandler deadlineHandler = new DeadlineRequestHandler();
+        client.addRequestHandler(deadlineHandler);
+        kmsClient.addRequestHandler(deadlineHandler);
+        kms = kmsClient;
         kmsMaterialProvider = new DirectKmsMaterialProvider(kms, kmsKeyId);
-        mapper = new DynamoDBMapper(dynamoDBClient, DynamoDBMapperConfig.DEFAULT,
+        dynamoDBClient = client;
+        mapper = new DynamoDBMapper(client, DynamoDBMapperConfig.DEFAULT,
                 new AttributeEncryptor(kmsMaterialProvider));
+        log.info("Created DynamoDB and KMS clients in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Creates the AWS clients, builds the mapper's model of TransitUser and opens
+     * a connection to DynamoDB with a key-only read, so that the first request
+     * doesn't pay for them. Nothing is decrypted and KMS isn't called.
+     */
+    public void prime() {
+        initializeClients();
+        getMapper().generateCreateTableRequest(TransitUser.class);
+        containsUser(PRIME_USER_ID);
     }
 
     /**
@@ -53,8 +136,17 @@ public class TransitHelperDao {
     public TransitUser getUser(String userId) {
         Validate.notNull(userId);
         Validate.notEmpty(userId);
-        TransitUser user = mapper.load(TransitUser.class, userId);
-        return user;
+        long start = System.nanoTime();
+
+        try {
+            TransitUser user = getMapper().load(TransitUser.class, userId);
+            return user;
+        } catch (RuntimeException ex) {
+            Metrics.recordDependencyError(Metrics.GET_USER);
+            throw ex;
+        } finally {
+            Metrics.recordDependencyLatency(Metrics.GET_USER, start);
+        }
     }
 
     /**
@@ -71,7 +163,7 @@ public class TransitHelperDao {
         TransitUser user = new TransitUser();
         user.setUserId(userId);
         user.setHomeAddress(homeAddress);
-        mapper.save(user);
+        save(user);
         return user;
     }
 
@@ -97,12 +189,29 @@ public class TransitHelperDao {
         user.setHomeAddress(homeAddress);
         user.setDestinations(destinations);
         user.setTimeZone(timeZone);
-        mapper.save(user);
+        save(user);
+        return user;
+    }
+
+    /**
+     * Persist the complete state of a user that has already been built in
+     * memory. This is a single encrypted write, so callers should apply all
+     * their changes to the user before calling it.
+     *
+     * @return The TransitUser object that's written into the table
+     */
+    public TransitUser saveUser(TransitUser user) {
+        Validate.notNull(user);
+        Validate.notNull(user.getUserId());
+        Validate.notNull(user.getHomeAddress());
+
+        save(user);
         return user;
     }
 
     /**
-     * Update Home address of an existing user
+     * Update Home address of an existing user. The coordinates of the old
+     * address are cleared, to be resolved again from the new one.
      */
     public TransitUser updateHomeAddress(String userId, String homeAddress) {
         Validate.notNull(userId);
@@ -114,7 +223,8 @@ public class TransitHelperDao {
             throw new IllegalArgumentException("User does not exist: " + userId);
         }
         user.setHomeAddress(homeAddress);
-        mapper.save(user);
+        user.setHomePlace(null, null);
+        save(user);
         return user;
     }
 
@@ -122,7 +232,8 @@ public class TransitHelperDao {
      * Adds a destination for the user. If the destinationName already exists
      * for the specified user, the address will be updated. If the user with
      * the specified userID does not exist, then this method will throw an
-     * IllegalArgument Exception.
+     * IllegalArgument Exception. The coordinates of the destination's old
+     * address are cleared.
      */
     public void addOrUpdateDestination(String userId, String name,
                                        String destinationAddress) {
@@ -142,7 +253,8 @@ public class TransitHelperDao {
             user.setDestinations(destinations);
         }
         destinations.put(name, destinationAddress);
-        mapper.save(user);
+        user.setDestinationPlace(name, null, null);
+        save(user);
     }
 
     public void addOrUpdateTimezone(String userId, String timezone) {
@@ -155,7 +267,7 @@ public class TransitHelperDao {
             throw new IllegalArgumentException("User does not exist: " + userId);
         }
         user.setTimeZone(timezone);
-        mapper.save(user);
+        save(user);
     }
 
     /**
@@ -165,14 +277,170 @@ public class TransitHelperDao {
         Validate.notNull(userId);
         TransitUser deleteUser = new TransitUser();
         deleteUser.setUserId(userId);
-        mapper.delete(deleteUser);
+        getMapper().delete(deleteUser);
     }
 
     /**
-     * Checks if the user with the specified userId exists in the TransitUsers table
+     * Checks if the user with the specified userId exists in the TransitUsers table.
+     * Only the key is read, so nothing is decrypted.
      */
     public boolean containsUser(String userId) {
-        TransitUser user = getUser(userId);
-        return user != null;
+        Validate.notNull(userId);
+        Validate.notEmpty(userId);
+        return getProjectedItem(userId, TransitUser.USER_ID_ATTRIBUTE) != null;
+    }
+
+    /**
+     * Return the timezone of the user, or null if the user or the timezone does
+     * not exist. The timezone is stored in plaintext, so only that attribute is
+     * read and nothing is decrypted.
+     */
+    public String getTimeZone(String userId) {
+        Validate.notNull(userId);
+        Validate.notEmpty(userId);
+        Map<String, AttributeValue> item = getProjectedItem(userId, TransitUser.TIME_ZONE_ATTRIBUTE);
+
+        if (item == null || !item.containsKey(TransitUser.TIME_ZONE_ATTRIBUTE)) {
+            return null;
+        }
+        return item.get(TransitUser.TIME_ZONE_ATTRIBUTE).getS();
+    }
+
+    /**
+     * Return a user with only the attributes that are stored in plaintext, the
+     * UserId and the TimeZone, or null if the user does not exist. Nothing is
+     * decrypted, so this is much cheaper than {@link #getUser(String)}.
+     */
+    public TransitUser getUnencryptedAttributes(String userId) {
+        Validate.notNull(userId);
+        Validate.notEmpty(userId);
+        Map<String, AttributeValue> item = getProjectedItem(userId,
+                TransitUser.USER_ID_ATTRIBUTE, TransitUser.TIME_ZONE_ATTRIBUTE);
+
+        if (item == null) {
+            return null;
+        }
+        TransitUser user = new TransitUser();
+        user.setUserId(userId);
+
+        if (item.containsKey(TransitUser.TIME_ZONE_ATTRIBUTE)) {
+            user.setTimeZone(item.get(TransitUser.TIME_ZONE_ATTRIBUTE).getS());
+        }
+        return user;
+    }
+
+    /**
+     * Read only the specified attributes of the user's item without decrypting or
+     * verifying them. Must not be used for encrypted attributes.
+     */
+    private Map<String, AttributeValue> getProjectedItem(String userId, String... attributeNames) {
+        Map<String, String> expressionAttributeNames = new HashMap<>();
+        StringBuilder projection = new StringBuilder();
+
+        for (int i = 0; i < attributeNames.length; i++) {
+            String placeholder = "#a" + i;
+            expressionAttributeNames.put(placeholder, attributeNames[i]);
+
+            if (i > 0) {
+                projection.append(", ");
+            }
+            projection.append(placeholder);
+        }
+        GetItemRequest request = new GetItemRequest()
+                .withTableName(TransitUser.TABLE_NAME)
+                .withKey(Collections.singletonMap(TransitUser.USER_ID_ATTRIBUTE, new AttributeValue(userId)))
+                .withProjectionExpression(projection.toString())
+                .withExpressionAttributeNames(expressionAttributeNames);
+        long start = System.nanoTime();
+
+        try {
+            return getDynamoDBClient().getItem(request).getItem();
+        } catch (RuntimeException ex) {
+            Metrics.recordDependencyError(PROJECTED_GET);
+            throw ex;
+        } finally {
+            Metrics.recordDependencyLatency(PROJECTED_GET, start);
+        }
+    }
+
+    /**
+     * Records that the user asked for their commute in the time of day slot.
+     * A single plaintext write, nothing is encrypted and KMS isn't called.
+     *
+     * @param expiresAtSeconds Epoch seconds after which DynamoDB's TTL removes the item
+     */
+    public void putRecentCommuter(int slot, String userId, long expiresAtSeconds) {
+        Validate.notNull(userId);
+        Validate.notEmpty(userId);
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(SLOT_ATTRIBUTE, new AttributeValue().withN(String.valueOf(slot)));
+        item.put(TransitUser.USER_ID_ATTRIBUTE, new AttributeValue(userId));
+        item.put(EXPIRES_AT_ATTRIBUTE, new AttributeValue().withN(String.valueOf(expiresAtSeconds)));
+        long start = System.nanoTime();
+
+        try {
+            getDynamoDBClient().putItem(new PutItemRequest()
+                    .withTableName(RECENT_COMMUTERS_TABLE_NAME)
+                    .withItem(item));
+        } catch (RuntimeException ex) {
+            Metrics.recordDependencyError(PUT_RECENT_COMMUTER);
+            throw ex;
+        } finally {
+            Metrics.recordDependencyLatency(PUT_RECENT_COMMUTER, start);
+        }
+    }
+
+    /**
+     * Return up to max users who asked for their commute in the time of day
+     * slot and whose record hasn't expired. Only the keys are read.
+     */
+    public List<String> getRecentCommuters(int slot, int max) {
+        Validate.isTrue(max > 0, "max must be positive: %d", max);
+        Map<String, String> expressionAttributeNames = new HashMap<>();
+        expressionAttributeNames.put("#s", SLOT_ATTRIBUTE);
+        expressionAttributeNames.put("#u", TransitUser.USER_ID_ATTRIBUTE);
+        expressionAttributeNames.put("#e", EXPIRES_AT_ATTRIBUTE);
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":s", new AttributeValue().withN(String.valueOf(slot)));
+        expressionAttributeValues.put(":now", new AttributeValue().withN(
+                String.valueOf(System.currentTimeMillis() / 1000)));
+
+        // TTL deletes lazily, so expired items are filtered out too
+        QueryRequest request = new QueryRequest()
+                .withTableName(RECENT_COMMUTERS_TABLE_NAME)
+                .withKeyConditionExpression("#s = :s")
+                .withFilterExpression("#e > :now")
+                .withProjectionExpression("#u")
+                .withExpressionAttributeNames(expressionAttributeNames)
+                .withExpressionAttributeValues(expressionAttributeValues)
+                .withLimit(max);
+        long start = System.nanoTime();
+
+        try {
+            List<String> userIds = new ArrayList<>();
+
+            for (Map<String, AttributeValue> item : getDynamoDBClient().query(request).getItems()) {
+                userIds.add(item.get(TransitUser.USER_ID_ATTRIBUTE).getS());
+            }
+            return userIds;
+        } catch (RuntimeException ex) {
+            Metrics.recordDependencyError(QUERY_RECENT_COMMUTERS);
+            throw ex;
+        } finally {
+            Metrics.recordDependencyLatency(QUERY_RECENT_COMMUTERS, start);
+        }
+    }
+
+    private void save(TransitUser user) {
+        long start = System.nanoTime();
+
+        try {
+            getMapper().save(user);
+        } catch (RuntimeException ex) {
+            Metrics.recordDependencyError(Metrics.SAVE_USER);
+            throw ex;
+        } finally {
+            Metrics.recordDependencyLatency(Metrics.SAVE_USER, start);
+        }
     }
 }
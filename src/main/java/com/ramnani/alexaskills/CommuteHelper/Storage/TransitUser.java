@@ -17,21 +17,46 @@ package com.ramnani.alexaskills.CommuteHelper.Storage;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
 import com.amazonaws.services.dynamodbv2.datamodeling.encryption.DoNotEncrypt;
+import com.google.maps.model.LatLng;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
 
+import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 
-@DynamoDBTable(tableName="TransitUsers")
+/**
+ * A user of the skill. The coordinates and place IDs of home and of each
+ * destination are resolved once, when the address is set up, and stored
+ * encrypted next to the addresses. They are stored as "lat,lng" strings.
+ * Users set up before they were stored get them on their next request.
+ */
+@DynamoDBTable(tableName=TransitUser.TABLE_NAME)
 public class TransitUser {
 
+    public static final String TABLE_NAME = "TransitUsers";
+    public static final String USER_ID_ATTRIBUTE = "UserId";
+    public static final String HOME_ADDRESS_ATTRIBUTE = "HomeAddress";
+    public static final String TIME_ZONE_ATTRIBUTE = "TimeZone";
+    public static final String DESTINATIONS_ATTRIBUTE = "Destinations";
+    public static final String HOME_LOCATION_ATTRIBUTE = "HomeLocation";
+    public static final String HOME_PLACE_ID_ATTRIBUTE = "HomePlaceId";
+    public static final String DESTINATION_LOCATIONS_ATTRIBUTE = "DestinationLocations";
+    public static final String DESTINATION_PLACE_IDS_ATTRIBUTE = "DestinationPlaceIds";
+
     private String userId;
     private String homeAddress;
     private String timeZone;
     private Map<String, String> destinations;
+    private String homeLocation;
+    private String homePlaceId;
+    private Map<String, String> destinationLocations;
+    private Map<String, String> destinationPlaceIds;
 
-    @DynamoDBAttribute(attributeName="Destinations")
+    @DynamoDBAttribute(attributeName=DESTINATIONS_ATTRIBUTE)
     public Map<String, String> getDestinations() {
         return destinations;
     }
@@ -39,7 +64,7 @@ public class TransitUser {
         this.destinations = destinations;
     }
 
-    @DynamoDBHashKey(attributeName="UserId")
+    @DynamoDBHashKey(attributeName=USER_ID_ATTRIBUTE)
     public String getUserId() {
         return userId;
     }
@@ -47,7 +72,7 @@ public class TransitUser {
         this.userId = userId;
     }
 
-    @DynamoDBAttribute(attributeName="HomeAddress")
+    @DynamoDBAttribute(attributeName=HOME_ADDRESS_ATTRIBUTE)
     public String getHomeAddress() {
         return homeAddress;
     }
@@ -56,7 +81,7 @@ public class TransitUser {
     }
 
     @DoNotEncrypt
-    @DynamoDBAttribute(attributeName="TimeZone")
+    @DynamoDBAttribute(attributeName=TIME_ZONE_ATTRIBUTE)
     public String getTimeZone() {
         return timeZone;
     }
@@ -64,11 +89,119 @@ public class TransitUser {
         this.timeZone = timeZone;
     }
 
+    @DynamoDBAttribute(attributeName=HOME_LOCATION_ATTRIBUTE)
+    public String getHomeLocation() {
+        return homeLocation;
+    }
+    public void setHomeLocation(String homeLocation) {
+        this.homeLocation = homeLocation;
+    }
+
+    @DynamoDBAttribute(attributeName=HOME_PLACE_ID_ATTRIBUTE)
+    public String getHomePlaceId() {
+        return homePlaceId;
+    }
+    public void setHomePlaceId(String homePlaceId) {
+        this.homePlaceId = homePlaceId;
+    }
+
+    @DynamoDBAttribute(attributeName=DESTINATION_LOCATIONS_ATTRIBUTE)
+    public Map<String, String> getDestinationLocations() {
+        return destinationLocations;
+    }
+    public void setDestinationLocations(Map<String, String> destinationLocations) {
+        this.destinationLocations = destinationLocations;
+    }
+
+    @DynamoDBAttribute(attributeName=DESTINATION_PLACE_IDS_ATTRIBUTE)
+    public Map<String, String> getDestinationPlaceIds() {
+        return destinationPlaceIds;
+    }
+    public void setDestinationPlaceIds(Map<String, String> destinationPlaceIds) {
+        this.destinationPlaceIds = destinationPlaceIds;
+    }
+
+    /**
+     * The coordinates of home, or null if they haven't been resolved
+     */
+    @DynamoDBIgnore
+    public LatLng getHomeLatLng() {
+        return parseLocation(homeLocation);
+    }
+
+    /**
+     * The coordinates of the named destination, or null if they haven't been resolved
+     */
+    public LatLng getDestinationLatLng(String name) {
+        return destinationLocations == null ? null : parseLocation(destinationLocations.get(name));
+    }
+
+    /**
+     * Sets where home is. A null location clears it, so that it's resolved
+     * again from the home address.
+     */
+    public void setHomePlace(LatLng location, String placeId) {
+        this.homeLocation = formatLocation(location);
+        this.homePlaceId = location == null ? null : placeId;
+    }
+
+    /**
+     * Sets where the named destination is. A null location clears it, so that
+     * it's resolved again from the destination's address.
+     */
+    public void setDestinationPlace(String name, LatLng location, String placeId) {
+        destinationLocations = put(destinationLocations, name, formatLocation(location));
+        destinationPlaceIds = put(destinationPlaceIds, name, location == null ? null : placeId);
+    }
+
+    /**
+     * DynamoDB doesn't store empty maps, so a map left empty becomes null
+     */
+    private static Map<String, String> put(Map<String, String> map, String key, String value) {
+        if (value == null) {
+            if (map != null) {
+                map.remove(key);
+            }
+            return map == null || map.isEmpty() ? null : map;
+        }
+        if (map == null) {
+            map = new HashMap<>();
+        }
+        map.put(key, value);
+        return map;
+    }
+
+    public static String formatLocation(LatLng location) {
+        return location == null ? null : String.format(Locale.ROOT, "%.6f,%.6f", location.lat, location.lng);
+    }
+
+    public static LatLng parseLocation(String location) {
+        if (location == null) {
+            return null;
+        }
+        int comma = location.indexOf(',');
+
+        if (comma < 0) {
+            return null;
+        }
+
+        try {
+            return new LatLng(Double.parseDouble(location.substring(0, comma)),
+                    Double.parseDouble(location.substring(comma + 1)));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Addresses are redacted, since users end up in the logs
+     */
     @Override
     public String toString() {
         return "UserId: " + userId + "\t" +
-               "Home Address: " + homeAddress + "\t" +
-               "Destinations: " + destinations + "\t" +
+               "Home Address: " + EventLog.redact(homeAddress) + "\t" +
+               "Destinations: " + (destinations == null ? null : destinations.keySet()) + "\t" +
+               "Located: " + (homeLocation != null) + "\t" +
                "Timezone: " + timeZone;
     }
 }
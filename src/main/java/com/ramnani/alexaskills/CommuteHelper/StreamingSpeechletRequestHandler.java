@@ -0,0 +1,733 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.Application;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.Speechlet;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletToSpeechletV2Adapter;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.User;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.amazon.speech.speechlet.verifier.CardSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.OutputSpeechSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletResponseVerifier;
+import com.amazon.speech.ui.Card;
+import com.amazon.speech.ui.OutputSpeech;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.SimpleCard;
+import com.amazon.speech.ui.SsmlOutputSpeech;
+import com.ramnani.alexaskills.CommuteHelper.directives.CurrentRequest;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveTarget;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.io.JsonStringEncoder;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles speechlet calls like the SDK's LambdaSpeechletRequestHandler, with
+ * the same application ID check, without binding the whole envelope to and
+ * from objects. The request is read with a streaming parser that keeps only
+ * what the speechlet uses: the application and user IDs, the session
+ * attributes, the locale, the intent with its slots, and the endpoint and
+ * token for directives, which it sets on the {@link CurrentRequest}. The
+ * response is written from pre-serialized fragments around its text.
+ *
+ * Other request types, such as AudioPlayer or System requests, are handled
+ * by the SDK. Responses with directives, or with speech or cards other than
+ * the plain text or SSML and simple cards the skill builds, are serialized
+ * by the SDK. Either way, the response gets the SDK's response checks.
+ */
+class StreamingSpeechletRequestHandler extends LambdaSpeechletRequestHandler {
+
+    private static final Logger log = Logger.getLogger(StreamingSpeechletRequestHandler.class);
+
+    static final String VERSION = "1.0";
+
+    private static final String LAUNCH_REQUEST = "LaunchRequest";
+    private static final String INTENT_REQUEST = "IntentRequest";
+    private static final String SESSION_STARTED_REQUEST = "SessionStartedRequest";
+    private static final String SESSION_ENDED_REQUEST = "SessionEndedRequest";
+
+    private static final byte[] ENVELOPE_START = bytes("{\"version\":\"" + VERSION + "\"");
+    private static final byte[] RESPONSE_START = bytes(",\"response\":{");
+    private static final byte[] PLAIN_TEXT_SPEECH = bytes("\"outputSpeech\":{\"type\":\"PlainText\"");
+    private static final byte[] SSML_SPEECH = bytes("\"outputSpeech\":{\"type\":\"SSML\"");
+    private static final byte[] TEXT = bytes(",\"text\":");
+    private static final byte[] SSML = bytes(",\"ssml\":");
+    private static final byte[] SIMPLE_CARD = bytes("\"card\":{\"type\":\"Simple\"");
+    private static final byte[] TITLE = bytes(",\"title\":");
+    private static final byte[] CONTENT = bytes(",\"content\":");
+    private static final byte[] REPROMPT = bytes("\"reprompt\":{");
+    private static final byte[] END_SESSION = bytes("\"shouldEndSession\":true}");
+    private static final byte[] KEEP_SESSION = bytes("\"shouldEndSession\":false}");
+    private static final byte[] SESSION_ATTRIBUTES = bytes(",\"sessionAttributes\":{");
+    private static final byte[] NULL = bytes("null");
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+
+    private static final int BUFFER_SIZE = 2048;
+
+    /**
+     * The SDK's response size limit, checked against the written bytes
+     * rather than by serializing the response again
+     */
+    static final int MAX_RESPONSE_SIZE = 24576;
+
+    /**
+     * The SDK's other response verifiers, which only look at the response
+     */
+    private static final List<SpeechletResponseVerifier> responseVerifiers = Collections.unmodifiableList(
+            Arrays.asList(new OutputSpeechSpeechletResponseVerifier(), new CardSpeechletResponseVerifier()));
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Set<String> supportedApplicationIds;
+
+    StreamingSpeechletRequestHandler(Set<String> supportedApplicationIds) {
+        super(supportedApplicationIds);
+        this.supportedApplicationIds = Collections.unmodifiableSet(new HashSet<>(supportedApplicationIds));
+    }
+
+    /**
+     * Speechlets other than a {@link Speechlet} wrapped in the SDK's adapter
+     * are handled by the SDK
+     */
+    @Override
+    public byte[] handleSpeechletCall(SpeechletV2 speechletV2, byte[] requestBytes)
+            throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        if (!(speechletV2 instanceof SpeechletToSpeechletV2Adapter)) {
+            return super.handleSpeechletCall(speechletV2, requestBytes);
+        }
+        Speechlet speechlet = ((SpeechletToSpeechletV2Adapter) speechletV2).getSpeechlet();
+        Envelope envelope = Envelope.parse(requestBytes);
+
+        if (envelope.requestType == null || !envelope.isSupportedType()) {
+            return super.handleSpeechletCall(speechletV2, requestBytes);
+        }
+
+        if (!isSupportedApplication(envelope)) {
+            throw new SpeechletRequestHandlerException(String.format(
+                    "Could not validate SpeechletRequest %s, application ID not supported, rejecting request",
+                    envelope.requestId));
+        }
+        CurrentRequest.setDirectiveTarget(
+                DirectiveTarget.fromFields(envelope.requestId, envelope.apiEndpoint, envelope.apiAccessToken));
+        Session session = envelope.toSession();
+
+        if (session != null && session.isNew()) {
+            speechlet.onSessionStarted(SessionStartedRequest.builder()
+                    .withRequestId(envelope.requestId)
+                    .withLocale(envelope.locale)
+                    .build(), session);
+        }
+        SpeechletResponse response = null;
+
+        switch (envelope.requestType) {
+            case LAUNCH_REQUEST:
+                response = speechlet.onLaunch(LaunchRequest.builder()
+                        .withRequestId(envelope.requestId)
+                        .withTimestamp(envelope.timestamp)
+                        .withLocale(envelope.locale)
+                        .build(), session);
+                break;
+            case INTENT_REQUEST:
+                response = speechlet.onIntent(IntentRequest.builder()
+                        .withRequestId(envelope.requestId)
+                        .withTimestamp(envelope.timestamp)
+                        .withLocale(envelope.locale)
+                        .withIntent(envelope.toIntent())
+                        .build(), session);
+                break;
+            case SESSION_ENDED_REQUEST:
+                speechlet.onSessionEnded(SessionEndedRequest.builder()
+                        .withRequestId(envelope.requestId)
+                        .withTimestamp(envelope.timestamp)
+                        .withLocale(envelope.locale)
+                        .withReason(envelope.reason)
+                        .build(), session);
+                break;
+            default:
+                // A session started request only starts the session
+                break;
+        }
+        // Like the SDK, the attributes are only sent back while the session stays open
+        boolean keepSession = !SESSION_ENDED_REQUEST.equals(envelope.requestType)
+                && (response == null || !response.getShouldEndSession());
+        Map<String, Object> attributes = session != null && keepSession ? session.getAttributes() : null;
+        byte[] responseBytes = writeResponse(response, attributes);
+        verifyResponse(envelope.requestId, response, attributes, session, responseBytes.length);
+        return responseBytes;
+    }
+
+    /**
+     * The checks the SDK runs on every response. Like the SDK, an oversized
+     * response is logged, and a response a verifier rejects is not sent.
+     */
+    private static void verifyResponse(String requestId, SpeechletResponse response,
+                                       Map<String, Object> attributes, Session session, int size)
+            throws SpeechletRequestHandlerException {
+        if (size > MAX_RESPONSE_SIZE) {
+            log.warn("Speechlet response with size of " + size + " bytes exceeds the maximum allowed size of "
+                    + MAX_RESPONSE_SIZE + " bytes and will be rejected by the Alexa service");
+        }
+        SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+        envelope.setVersion(VERSION);
+        envelope.setResponse(response);
+        envelope.setSessionAttributes(attributes);
+
+        for (SpeechletResponseVerifier verifier : responseVerifiers) {
+            if (!verifier.verify(envelope, session)) {
+                throw new SpeechletRequestHandlerException(String.format(
+                        "Could not validate SpeechletResponse %s using verifier %s, rejecting response",
+                        requestId, verifier.getClass().getSimpleName()));
+            }
+        }
+    }
+
+    /**
+     * The same check as the SDK's ApplicationIdSpeechletRequestEnvelopeVerifier:
+     * the session's application ID if there's one, otherwise the one in the
+     * System context.
+     */
+    private boolean isSupportedApplication(Envelope envelope) {
+        if (supportedApplicationIds.isEmpty()) {
+            return true;
+        }
+
+        if (envelope.sessionApplicationId != null) {
+            return supportedApplicationIds.contains(envelope.sessionApplicationId);
+        }
+        return envelope.contextApplicationId != null
+                && supportedApplicationIds.contains(envelope.contextApplicationId);
+    }
+
+    /**
+     * Writes the response envelope the same way the SDK serializes it, or
+     * leaves it to the SDK if the response has parts the fragments don't cover
+     */
+    static byte[] writeResponse(SpeechletResponse response, Map<String, Object> attributes) throws IOException {
+        if (response != null && !isWritable(response)) {
+            log.debug("Response not covered by the fragments, serializing it with the SDK");
+            SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+            envelope.setVersion(VERSION);
+            envelope.setResponse(response);
+            envelope.setSessionAttributes(attributes);
+            return envelope.toJsonBytes();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        out.write(ENVELOPE_START);
+
+        if (response != null) {
+            out.write(RESPONSE_START);
+
+            if (response.getOutputSpeech() != null) {
+                writeSpeech(out, response.getOutputSpeech());
+                out.write(',');
+            }
+
+            if (response.getCard() != null) {
+                SimpleCard card = (SimpleCard) response.getCard();
+                out.write(SIMPLE_CARD);
+                writeField(out, TITLE, card.getTitle());
+                writeField(out, CONTENT, card.getContent());
+                out.write('}');
+                out.write(',');
+            }
+
+            if (response.getReprompt() != null) {
+                out.write(REPROMPT);
+
+                if (response.getReprompt().getOutputSpeech() != null) {
+                    writeSpeech(out, response.getReprompt().getOutputSpeech());
+                }
+                out.write('}');
+                out.write(',');
+            }
+            out.write(response.getShouldEndSession() ? END_SESSION : KEEP_SESSION);
+        }
+
+        if (attributes != null) {
+            out.write(SESSION_ATTRIBUTES);
+            boolean first = true;
+
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeString(out, attribute.getKey());
+                out.write(':');
+                writeValue(out, attribute.getValue());
+            }
+            out.write('}');
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    private static boolean isWritable(SpeechletResponse response) {
+        if (response.getDirectives() != null && !response.getDirectives().isEmpty()) {
+            return false;
+        }
+        Card card = response.getCard();
+
+        if (card != null && card.getClass() != SimpleCard.class) {
+            return false;
+        }
+        return isWritable(response.getOutputSpeech())
+                && (response.getReprompt() == null || isWritable(response.getReprompt().getOutputSpeech()));
+    }
+
+    private static boolean isWritable(OutputSpeech speech) {
+        return speech == null
+                || (speech.getId() == null
+                    && (speech.getClass() == PlainTextOutputSpeech.class
+                        || speech.getClass() == SsmlOutputSpeech.class));
+    }
+
+    private static void writeSpeech(ByteArrayOutputStream out, OutputSpeech speech) throws IOException {
+        if (speech instanceof PlainTextOutputSpeech) {
+            out.write(PLAIN_TEXT_SPEECH);
+            writeField(out, TEXT, ((PlainTextOutputSpeech) speech).getText());
+        } else {
+            out.write(SSML_SPEECH);
+            writeField(out, SSML, ((SsmlOutputSpeech) speech).getSsml());
+        }
+        out.write('}');
+    }
+
+    /**
+     * Null fields are left out, as the SDK does
+     */
+    private static void writeField(ByteArrayOutputStream out, byte[] name, String value) throws IOException {
+        if (value != null) {
+            out.write(name);
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) throws IOException {
+        out.write('"');
+        out.write(JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        out.write('"');
+    }
+
+    /**
+     * The skill keeps strings, integers and booleans in the session, anything
+     * else goes through the mapper
+     */
+    private static void writeValue(ByteArrayOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            out.write(bytes(value.toString()));
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else {
+            out.write(mapper.writeValueAsBytes(value));
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The fields of a request envelope the skill uses
+     */
+    static final class Envelope {
+
+        boolean hasSession;
+        boolean isNew;
+        String sessionId;
+        String sessionApplicationId;
+        String contextApplicationId;
+        String apiEndpoint;
+        String apiAccessToken;
+        String userId;
+        String accessToken;
+        Map<String, Object> attributes;
+        String requestType;
+        String requestId;
+        Date timestamp;
+        Locale locale;
+        String intentName;
+        Map<String, Slot> slots;
+        SessionEndedRequest.Reason reason;
+
+        static Envelope parse(byte[] request) throws IOException {
+            Envelope envelope = new Envelope();
+
+            try (JsonParser parser = jsonFactory.createJsonParser(request)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("The request isn't a JSON object");
+                }
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+
+                    switch (field) {
+                        case "session":
+                            if (token == JsonToken.START_OBJECT) {
+                                envelope.hasSession = true;
+                                envelope.readSession(parser);
+                            }
+                            break;
+                        case "context":
+                            envelope.readContext(parser, token);
+                            break;
+                        case "request":
+                            if (token == JsonToken.START_OBJECT) {
+                                envelope.readRequest(parser);
+                            }
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+            }
+            return envelope;
+        }
+
+        boolean isSupportedType() {
+            switch (requestType) {
+                case LAUNCH_REQUEST:
+                case INTENT_REQUEST:
+                case SESSION_STARTED_REQUEST:
+                case SESSION_ENDED_REQUEST:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        Session toSession() {
+            if (!hasSession) {
+                return null;
+            }
+            return Session.builder()
+                    .withIsNew(isNew)
+                    .withSessionId(sessionId)
+                    .withApplication(sessionApplicationId == null ? null : new Application(sessionApplicationId))
+                    .withUser(userId == null && accessToken == null ? null
+                            : User.builder().withUserId(userId).withAccessToken(accessToken).build())
+                    .withAttributes(attributes == null ? new LinkedHashMap<>() : attributes)
+                    .build();
+        }
+
+        Intent toIntent() {
+            if (intentName == null && slots == null) {
+                return null;
+            }
+            return Intent.builder()
+                    .withName(intentName)
+                    .withSlots(slots == null ? Collections.<String, Slot>emptyMap() : slots)
+                    .build();
+        }
+
+        private void readSession(JsonParser parser) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                switch (field) {
+                    case "new":
+                        isNew = token == JsonToken.VALUE_TRUE;
+                        break;
+                    case "sessionId":
+                        sessionId = text(parser, token);
+                        break;
+                    case "application":
+                        sessionApplicationId = readApplicationId(parser, token);
+                        break;
+                    case "user":
+                        readUser(parser, token);
+                        break;
+                    case "attributes":
+                        if (token == JsonToken.START_OBJECT) {
+                            attributes = new LinkedHashMap<>();
+                            readObject(parser, attributes);
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        private void readUser(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_OBJECT) {
+                return;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+
+                if ("userId".equals(field)) {
+                    userId = text(parser, valueToken);
+                } else if ("accessToken".equals(field)) {
+                    accessToken = text(parser, valueToken);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        /**
+         * Only context.System is read: its application, for requests without a
+         * session, and the endpoint and token for directives
+         */
+        private void readContext(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_OBJECT) {
+                return;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken systemToken = parser.nextToken();
+
+                if (!"System".equals(field) || systemToken != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String systemField = parser.getCurrentName();
+                    JsonToken valueToken = parser.nextToken();
+
+                    if ("application".equals(systemField)) {
+                        contextApplicationId = readApplicationId(parser, valueToken);
+                    } else if ("apiEndpoint".equals(systemField)) {
+                        apiEndpoint = text(parser, valueToken);
+                    } else if ("apiAccessToken".equals(systemField)) {
+                        apiAccessToken = text(parser, valueToken);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+
+        private void readRequest(JsonParser parser) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                switch (field) {
+                    case "type":
+                        requestType = text(parser, token);
+                        break;
+                    case "requestId":
+                        requestId = text(parser, token);
+                        break;
+                    case "timestamp":
+                        timestamp = parseTimestamp(text(parser, token));
+                        break;
+                    case "locale":
+                        String languageTag = text(parser, token);
+                        locale = languageTag == null ? null : Locale.forLanguageTag(languageTag);
+                        break;
+                    case "intent":
+                        readIntent(parser, token);
+                        break;
+                    case "reason":
+                        reason = parseReason(text(parser, token));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        private void readIntent(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_OBJECT) {
+                return;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+
+                if ("name".equals(field)) {
+                    intentName = text(parser, valueToken);
+                } else if ("slots".equals(field) && valueToken == JsonToken.START_OBJECT) {
+                    slots = new HashMap<>();
+                    readSlots(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        private void readSlots(JsonParser parser) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String name = null;
+                String value = null;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken valueToken = parser.nextToken();
+
+                    if ("name".equals(field)) {
+                        name = text(parser, valueToken);
+                    } else if ("value".equals(field)) {
+                        value = text(parser, valueToken);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                slots.put(key, Slot.builder().withName(name).withValue(value).build());
+            }
+        }
+
+        private static String readApplicationId(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String applicationId = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+
+                if ("applicationId".equals(field)) {
+                    applicationId = text(parser, valueToken);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return applicationId;
+        }
+
+        /**
+         * Reads the fields of an object into the map, with the same value
+         * types as the SDK's untyped binding
+         */
+        private static void readObject(JsonParser parser, Map<String, Object> target) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                target.put(field, readValue(parser, parser.nextToken()));
+            }
+        }
+
+        private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+            switch (token) {
+                case START_OBJECT:
+                    Map<String, Object> object = new LinkedHashMap<>();
+                    readObject(parser, object);
+                    return object;
+                case START_ARRAY:
+                    List<Object> array = new ArrayList<>();
+                    JsonToken element;
+
+                    while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        array.add(readValue(parser, element));
+                    }
+                    return array;
+                case VALUE_STRING:
+                    return parser.getText();
+                case VALUE_NUMBER_INT:
+                    return parser.getNumberValue();
+                case VALUE_NUMBER_FLOAT:
+                    return parser.getDoubleValue();
+                case VALUE_TRUE:
+                    return Boolean.TRUE;
+                case VALUE_FALSE:
+                    return Boolean.FALSE;
+                default:
+                    return null;
+            }
+        }
+
+        private static String text(JsonParser parser, JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return null;
+            }
+            return parser.getText();
+        }
+
+        private static Date parseTimestamp(String timestamp) {
+            if (timestamp == null) {
+                return null;
+            }
+
+            try {
+                return Date.from(Instant.parse(timestamp));
+            } catch (DateTimeParseException ex) {
+                log.warn("Unable to parse the request timestamp " + timestamp);
+                return null;
+            }
+        }
+
+        private static SessionEndedRequest.Reason parseReason(String reason) {
+            if (reason == null) {
+                return null;
+            }
+
+            try {
+                return SessionEndedRequest.Reason.valueOf(reason);
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -23,12 +23,20 @@ import com.amazon.speech.speechlet.SpeechletResponse;
 import com.amazon.speech.ui.*;
 import com.google.maps.model.Duration;
 import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import com.ramnani.alexaskills.CommuteHelper.directives.CurrentRequest;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveClient;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveTarget;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
+import com.ramnani.alexaskills.CommuteHelper.traveltime.TravelTimeEstimate;
+import com.ramnani.alexaskills.CommuteHelper.traveltime.TravelTimeModel;
 import com.ramnani.alexaskills.CommuteHelper.utils.SpeechletUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.log4j.Logger;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
+import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -36,10 +44,14 @@ import org.joda.time.format.DateTimeFormatter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
@@ -57,7 +69,12 @@ public class TransitSpeechletManager {
 
     private static final String REPROMPT_INTENT_ATTRIBUTE = "repromptIntent";
 
-    private static final String INDEX_ATTRIBUTE = "index";
+    static final String INDEX_ATTRIBUTE = "index";
+
+    /**
+     * The transit type asked for, to fetch later departures with
+     */
+    static final String TRANSIT_TYPE_ATTRIBUTE = "transitType";
 
     private static final String PREVIOUS_RESPONSE_ATTRIBUTE = "previousResponse";
 
@@ -70,29 +87,117 @@ public class TransitSpeechletManager {
     private static final String ERROR_STRING = "Sorry. I'm having some issues " +
             "giving you an answer right now.";
 
-    private static Map<String, String> REPROMPT_QUESTIONS;
+    /**
+     * The follow-up questions, keyed by the intent a Yes to them is handled as
+     */
+    private static final Map<SkillIntent, String> REPROMPT_QUESTIONS;
+
+    private static final String NEXT_OPTION_QUESTION = " Would you like to hear the next option?";
+
+    /**
+     * After these, the next option is always offered if there is one
+     */
+    private static final Set<SkillIntent> NEXT_OPTION_INTENTS = Collections.unmodifiableSet(EnumSet.of(
+            SkillIntent.NEXT, SkillIntent.PREVIOUS, SkillIntent.REPEAT, SkillIntent.GET_NEXT_TRANSIT_TO_WORK));
+
+    /**
+     * The questions to choose from after each intent, which are all of them
+     * except the one the user just had answered. Indexed by whether there is a
+     * previous suggestion, then by the intent's ordinal.
+     */
+    private static final SkillIntent[][][] REPROMPT_CHOICES;
+
+    static {
+        Map<SkillIntent, String> questions = new EnumMap<>(SkillIntent.class);
+        questions.put(SkillIntent.GET_ARRIVAL_TIME,
+                      " Would you like to know the arrival time?");
+        questions.put(SkillIntent.GET_TOTAL_TRANSIT_DURATION,
+                      " Would you like to know how long it will take to reach your destination?");
+        questions.put(SkillIntent.GET_DIRECTIONS,
+                      " Would you like to get directions to your transit stop?");
+        questions.put(SkillIntent.PREVIOUS,
+                      " Would you like to hear the previous option again?");
+        questions.put(SkillIntent.REPEAT,
+                      " Would you like me to repeat this option?");
+        REPROMPT_QUESTIONS = Collections.unmodifiableMap(questions);
+
+        SkillIntent[] intents = SkillIntent.values();
+        REPROMPT_CHOICES = new SkillIntent[2][intents.length][];
+
+        for (int hasPrevious = 0; hasPrevious < 2; hasPrevious++) {
+            for (SkillIntent current : intents) {
+                List<SkillIntent> choices = new ArrayList<>(questions.keySet());
+                choices.remove(current);
+
+                if (hasPrevious == 0) {
+                    choices.remove(SkillIntent.PREVIOUS);
+                }
+                REPROMPT_CHOICES[hasPrevious][current.ordinal()] = choices.toArray(new SkillIntent[0]);
+            }
+        }
+    }
 
     private static final String TIME_FORMAT = "hh:mm a";
 
-    private ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Shared by all instances so that serializers built while priming are reused
+     */
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final TypeReference<List<TransitSuggestion>> SUGGESTION_LIST_TYPE =
+            new TypeReference<List<TransitSuggestion>>(){};
 
     private GoogleMapsService googleMapsService;
 
+    private DirectiveClient directiveClient;
+
+    private TravelTimeModel travelTimeModel;
+
     public TransitSpeechletManager(GoogleMapsService googleMapsService) {
+        this(googleMapsService, DirectiveClient.NONE);
+    }
+
+    public TransitSpeechletManager(GoogleMapsService googleMapsService, DirectiveClient directiveClient) {
+        this(googleMapsService, directiveClient, new TravelTimeModel());
+    }
+
+    public TransitSpeechletManager(GoogleMapsService googleMapsService,
+                                   DirectiveClient directiveClient,
+                                   TravelTimeModel travelTimeModel) {
         Validate.notNull(googleMapsService);
+        Validate.notNull(directiveClient);
+        Validate.notNull(travelTimeModel);
         this.googleMapsService = googleMapsService;
+        this.directiveClient = directiveClient;
+        this.travelTimeModel = travelTimeModel;
+    }
 
-        REPROMPT_QUESTIONS = new HashMap<>();
-        REPROMPT_QUESTIONS.put("GetArrivalTime",
-                               " Would you like to know the arrival time?");
-        REPROMPT_QUESTIONS.put("GetTotalTransitDuration",
-                               " Would you like to know how long it will take to reach your destination?");
-        REPROMPT_QUESTIONS.put("GetDirections",
-                               " Would you like to get directions to your transit stop?");
-        REPROMPT_QUESTIONS.put("AMAZON.PreviousIntent",
-                               " Would you like to hear the previous option again?");
-        REPROMPT_QUESTIONS.put("AMAZON.RepeatIntent",
-                               " Would you like me to repeat this option?");
+    /**
+     * Round trips a synthetic suggestion list through the session serialization,
+     * so that the mapper has its serializers and deserializers built before the
+     * first real request.
+     */
+    static void primeSerialization() throws IOException {
+        DateTime now = DateTime.now();
+        Duration duration = new Duration();
+        duration.inSeconds = 600;
+        duration.humanReadable = "10 mins";
+        TransitSuggestion suggestion = new TransitSuggestion("Bus", now, now.plusMinutes(5),
+                now.plusMinutes(15), duration, duration, duration,
+                "Walk to stop", "Bus towards destination", "1", 0);
+
+        readSuggestions(writeSuggestions(Arrays.asList(suggestion, suggestion)));
+    }
+
+    /**
+     * Serializes suggestions into the session attribute format
+     */
+    static String writeSuggestions(List<TransitSuggestion> suggestions) throws IOException {
+        return mapper.writeValueAsString(suggestions);
+    }
+
+    static List<TransitSuggestion> readSuggestions(String suggestionsText) throws IOException {
+        return mapper.readValue(suggestionsText, SUGGESTION_LIST_TYPE);
     }
 
     public SpeechletResponse handleNextTransitRequest(Intent intent,
@@ -108,7 +213,7 @@ public class TransitSpeechletManager {
         }
 
         if (StringUtils.isBlank(transitType)) {
-            log.info("Transit type not provided with session: " + session.getSessionId());
+            EventLog.event("transitType.missing").field("sessionId", session.getSessionId()).log();
             String output = "Please specify your preferred mode of transport. For example, you can ask,"
                     + " When's the next bus to work ?";
             Reprompt reprompt = SpeechletUtils.getReprompt(output);
@@ -117,36 +222,85 @@ public class TransitSpeechletManager {
             return SpeechletResponse.newAskResponse(speech, reprompt);
         }
         Map<String, String> destinations = user.getDestinations();
-        log.info("Destinations : " + destinations.toString() + ". User: " + user.getUserId());
 
         if (destinations == null || !destinations.containsKey(WORK_KEY)) {
             log.error("Sorry. Work address does not exist for user: " + user.getUserId());
             return getErrorResponse("Work address does not exist");
         }
         String workAddress = destinations.get(WORK_KEY);
+        EventLog.verbose("transit.request")
+                .field("userId", user.getUserId())
+                .field("transitType", transitType)
+                .address("home", homeAddress)
+                .address("work", workAddress)
+                .field("destinations", destinations.size())
+                .log();
 
         List<TransitSuggestion> suggestions = googleMapsService
-                        .getNextTransitToDestination(transitType, homeAddress, workAddress);
+                        .getNextTransitToDestination(transitType, homeAddress, user.getHomeLatLng(),
+                                workAddress, user.getDestinationLatLng(WORK_KEY));
 
         if (suggestions == null || suggestions.size() == 0) {
+            // Out of time rather than out of options, so don't say there are none
+            Deadline.check("transit suggestions");
             log.warn("No Suggestions for user: " + user.getUserId());
             String speechText =
                     "Sorry. There are no available transit options " +
                             "for your destination at this time.";
             return getErrorResponse(speechText);
         }
-        session.setAttribute(SUGGESTION_ATTRIBUTE, mapper.writeValueAsString(suggestions));
+        DateTimeZone timeZone = DateTimeZone.forID(
+                user.getTimeZone() == null ? DEFAULT_TIMEZONE : user.getTimeZone());
+
+        for (TransitSuggestion observed : suggestions) {
+            travelTimeModel.record(user.getUserId(), WORK_KEY, transitType, observed, timeZone);
+        }
+        session.setAttribute(SUGGESTION_ATTRIBUTE, writeSuggestions(suggestions));
         session.setAttribute(INDEX_ATTRIBUTE, 0);
+        session.setAttribute(TRANSIT_TYPE_ATTRIBUTE, transitType);
         TransitSuggestion suggestion = suggestions.get(0);
-        SpeechletResponse response = suggestionToDetailedResponse(suggestion, session,
-                "Your next " + transitType + " is ", intent);
+        String introText = "Your next " + transitType + " is ";
+
+        if (suggestion.getStaleMinutes() > 0) {
+            int staleMinutes = suggestion.getStaleMinutes();
+            introText = "I can't reach the transit service right now. As of " + staleMinutes
+                    + (staleMinutes == 1 ? " minute" : " minutes") + " ago, your next " + transitType + " was ";
+        }
+        SpeechletResponse response = suggestionToDetailedResponse(suggestion, session, introText, intent);
         return response;
     }
 
+    /**
+     * Lets the user know the skill is on it, before the user is loaded for
+     * {@link #handleNextTransitRequest(Intent, Session, TransitUser)}
+     */
+    public void announceNextTransitRequest(Intent intent) {
+        Slot slot = intent.getSlot(SLOT_TRANSIT);
+        String transitType = slot == null ? null : slot.getValue();
+
+        if (StringUtils.isNotBlank(transitType)) {
+            sendProgressiveResponse("Let me check the next " + transitType + ".");
+        }
+    }
+
+    /**
+     * Lets the user know the skill is on it while the slow calls are in flight
+     */
+    private void sendProgressiveResponse(String speech) {
+        DirectiveTarget target = CurrentRequest.getDirectiveTarget();
+
+        if (target != null) {
+            directiveClient.speak(target, speech);
+        }
+    }
+
+    /**
+     * Only the user's timezone is needed, which is read without decrypting the user
+     */
     public SpeechletResponse handleGetArrivalTimeRequest(IntentRequest request,
                                                          Session session,
                                                          Intent intent,
-                                                         TransitUser user)
+                                                         UserContext userContext)
             throws IOException {
         TransitSuggestion suggestion = getCurrentTransitSuggestion(session);
 
@@ -157,8 +311,11 @@ public class TransitSpeechletManager {
         DateTimeFormatter formatter = DateTimeFormat.forPattern(TIME_FORMAT)
                 .withLocale(request.getLocale());
 
-        String timezone =
-                user.getTimeZone() == null ? DEFAULT_TIMEZONE : user.getTimeZone();
+        String timezone = userContext.getTimeZone();
+
+        if (timezone == null) {
+            timezone = DEFAULT_TIMEZONE;
+        }
 
         StringBuilder arrivalTimeOutput = new StringBuilder();
         String output = "You will arrive at " + suggestion.getArrivalTime()
@@ -169,12 +326,17 @@ public class TransitSpeechletManager {
                 "Arrival Time", session, intent);
     }
 
+    /**
+     * Without a suggestion in the session, answers with the user's typical
+     * travel time at this time of the week, if it has been learnt
+     */
     public SpeechletResponse handleGetTotalTransitDurationRequest(Session session,
-                                                                  Intent intent) throws IOException {
+                                                                  Intent intent,
+                                                                  UserContext userContext) throws IOException {
         TransitSuggestion suggestion = getCurrentTransitSuggestion(session);
 
         if (suggestion == null) {
-            return getTryAgainResponse(HELP_STRING);
+            return getTypicalDurationResponse(session, userContext);
         }
         Duration totalDuration = suggestion.getTotalDuration();
 
@@ -189,6 +351,39 @@ public class TransitSpeechletManager {
                 "Transit Duration", session, intent);
     }
 
+    /**
+     * Names the destination and the vehicle type of the routes the estimate
+     * was learnt from
+     */
+    private SpeechletResponse getTypicalDurationResponse(Session session, UserContext userContext) {
+        String timezone = userContext.getTimeZone();
+        DateTime now = DateTime.now(DateTimeZone.forID(timezone == null ? DEFAULT_TIMEZONE : timezone));
+        TravelTimeEstimate estimate = travelTimeModel.estimate(userContext.getUserId(),
+                (String) session.getAttribute(TRANSIT_TYPE_ATTRIBUTE), now);
+
+        if (estimate == null) {
+            return getTryAgainResponse(HELP_STRING);
+        }
+        String destination = estimate.getDestination() == null ? WORK_KEY : estimate.getDestination();
+        String vehicleType = estimate.getVehicleType() == null
+                ? SLOT_TRANSIT : estimate.getVehicleType().toLowerCase(Locale.US);
+        StringBuilder output = new StringBuilder("At this time, it usually takes you ");
+
+        if (estimate.isBeyondRange()) {
+            output.append("over an hour and a half to get to ").append(destination);
+        } else {
+            long minutes = Math.round(estimate.getTotalMinutes());
+            long deviation = Math.round(estimate.getTotalDeviationMinutes());
+            output.append("about ").append(minutes).append(" minutes to get to ").append(destination);
+
+            if (deviation > 0) {
+                output.append(", give or take ").append(deviation).append(" minutes");
+            }
+        }
+        output.append(". Ask me when's your next ").append(vehicleType).append(" for the exact time.");
+        return SpeechletUtils.getNewTellResponse(output.toString(), "Transit Duration");
+    }
+
     public SpeechletResponse handleGetDirectionsRequest(Session session,
                                                         Intent intent) throws IOException {
         TransitSuggestion suggestion = getCurrentTransitSuggestion(session);
@@ -227,18 +422,85 @@ public class TransitSpeechletManager {
 
     }
 
-    public SpeechletResponse handleNextSuggestionRequest(Session session, Intent intent)
+    /**
+     * Past the end of the suggestions in the session, fetches the departures
+     * after the last one. The user is only loaded then.
+     */
+    public SpeechletResponse handleNextSuggestionRequest(Session session, Intent intent, UserContext userContext)
             throws IOException {
         TransitSuggestion suggestion;
 
         try {
             suggestion = getTransitSuggestionFromSession(session, 1);
         } catch (IndexOutOfBoundsException ex) {
-            return getNoMoreTransitOptionsResposne();
+            suggestion = getNextPage(session, userContext);
+
+            if (suggestion == null) {
+                return getNoMoreTransitOptionsResposne();
+            }
         }
         return suggestionToDetailedResponse(suggestion, session, "Your next option is ", intent);
     }
 
+    /**
+     * Appends the departures after the last suggestion in the session and
+     * moves to the first of them. Only the current and previous suggestions
+     * are kept from the earlier pages, so the session stays small however far
+     * the user browses.
+     *
+     * @return The first new suggestion, or null if there are none
+     */
+    private TransitSuggestion getNextPage(Session session, UserContext userContext) throws IOException {
+        String transitType = (String) session.getAttribute(TRANSIT_TYPE_ATTRIBUTE);
+        String suggestionsText = (String) session.getAttribute(SUGGESTION_ATTRIBUTE);
+
+        if (transitType == null || suggestionsText == null) {
+            return null;
+        }
+        List<TransitSuggestion> suggestions = readSuggestions(suggestionsText);
+        TransitUser user = userContext.getUser();
+
+        if (suggestions.isEmpty() || user == null || StringUtils.isBlank(user.getHomeAddress())
+                || user.getDestinations() == null || !user.getDestinations().containsKey(WORK_KEY)) {
+            return null;
+        }
+        sendProgressiveResponse("Let me check the later options.");
+        DateTime lastDeparture = getLastDeparture(suggestions);
+        List<TransitSuggestion> page = googleMapsService.getTransitToDestinationDepartingAfter(transitType,
+                user.getHomeAddress(), user.getHomeLatLng(), user.getDestinations().get(WORK_KEY),
+                user.getDestinationLatLng(WORK_KEY), lastDeparture);
+
+        if (page == null || page.isEmpty()) {
+            EventLog.event("suggestions.exhausted")
+                    .field("userId", user.getUserId())
+                    .field("after", lastDeparture)
+                    .log();
+            return null;
+        }
+        List<TransitSuggestion> kept = new ArrayList<>(
+                suggestions.subList(Math.max(0, suggestions.size() - 2), suggestions.size()));
+        int index = kept.size();
+        kept.addAll(page);
+        session.setAttribute(SUGGESTION_ATTRIBUTE, writeSuggestions(kept));
+        session.setAttribute(INDEX_ATTRIBUTE, index);
+        return page.get(0);
+    }
+
+    /**
+     * The latest transit departure of the suggestions, skipping the ones
+     * without any, e.g. walking the whole way, or now if none has one
+     */
+    private static DateTime getLastDeparture(List<TransitSuggestion> suggestions) {
+        for (int i = suggestions.size() - 1; i >= 0; i--) {
+            DateTime departure = suggestions.get(i).getTransitStartTime();
+
+            if (departure != null) {
+                return departure;
+            }
+        }
+        return DateTime.now();
+    }
+
     public SpeechletResponse handlePreviousSuggestionRequest(Session session, Intent intent)
             throws IOException {
         TransitSuggestion suggestion;
@@ -268,39 +530,39 @@ public class TransitSpeechletManager {
     public SpeechletResponse handleYesNoIntentResponse(Session session,
                                                        Intent intent,
                                                        IntentRequest request,
-                                                       TransitUser user)
+                                                       UserContext userContext)
             throws IOException {
-        String intentName = intent.getName();
+        SkillIntent skillIntent = SkillIntent.forName(intent.getName());
 
-        if (intentName.equals("YesIntent") &&
+        if (skillIntent == SkillIntent.YES &&
             session.getAttributes().containsKey(REPROMPT_INTENT_ATTRIBUTE) &&
             session.getAttributes().containsKey(SUGGESTION_ATTRIBUTE)) {
             String repromptIntent = (String)session.getAttribute(REPROMPT_INTENT_ATTRIBUTE);
 
-            switch (repromptIntent) {
-                case "GetArrivalTime":
-                    return handleGetArrivalTimeRequest(request, session, intent, user);
+            switch (SkillIntent.forName(repromptIntent)) {
+                case GET_ARRIVAL_TIME:
+                    return handleGetArrivalTimeRequest(request, session, intent, userContext);
 
-                case "GetTotalTransitDuration":
-                    return handleGetTotalTransitDurationRequest(session, intent);
+                case GET_TOTAL_TRANSIT_DURATION:
+                    return handleGetTotalTransitDurationRequest(session, intent, userContext);
 
-                case "GetDirections":
+                case GET_DIRECTIONS:
                     return handleGetDirectionsRequest(session, intent);
 
-                case "AMAZON.RepeatIntent":
+                case REPEAT:
                     return handleRepeatSuggestionRequest(session, intent);
 
-                case "AMAZON.NextIntent":
-                    return handleNextSuggestionRequest(session, intent);
+                case NEXT:
+                    return handleNextSuggestionRequest(session, intent, userContext);
 
-                case "AMAZON.PreviousIntent":
+                case PREVIOUS:
                     return handlePreviousSuggestionRequest(session, intent);
 
                 default:
                     return getErrorResponse(ERROR_STRING);
             }
 
-        } else if (intentName.equals("NoIntent")) {
+        } else if (skillIntent == SkillIntent.NO) {
             return SpeechletUtils.getNewTellResponse("Bye. Have a nice ride. ",
                     "Have a safe ride.");
         } else {
@@ -314,13 +576,20 @@ public class TransitSpeechletManager {
         return SpeechletResponse.newTellResponse(outputSpeech);
     }
 
-    private SpeechletResponse suggestionToDetailedResponse(TransitSuggestion suggestion,
+    SpeechletResponse suggestionToDetailedResponse(TransitSuggestion suggestion,
                                                            Session session, String introText,
                                                            Intent intent) {
         StringBuilder outputSpeechBuilder = new StringBuilder();
         String transitType = suggestion.getTransitType();
 
-        log.info("Retrieved Transit Suggestion: \n" + suggestion.toString());
+        EventLog.verbose("suggestion")
+                .field("transitType", transitType)
+                .field("transitId", suggestion.getTransitId())
+                .field("departure", suggestion.getTransitStartTime())
+                .field("arrival", suggestion.getArrivalTime())
+                .field("switches", suggestion.getNumOfSwitches())
+                .field("staleMinutes", suggestion.getStaleMinutes())
+                .log();
 
         if (introText != null) {
             outputSpeechBuilder.append(introText);
@@ -389,8 +658,7 @@ public class TransitSpeechletManager {
             return null;
         }
         String suggestionsText = (String) session.getAttribute(SUGGESTION_ATTRIBUTE);
-        List<TransitSuggestion> suggestions = mapper.readValue(suggestionsText,
-                new TypeReference<List<TransitSuggestion>>(){});
+        List<TransitSuggestion> suggestions = readSuggestions(suggestionsText);
 
         int idx = (Integer) session.getAttribute(INDEX_ATTRIBUTE);
         idx += indexAdd;
@@ -400,8 +668,7 @@ public class TransitSpeechletManager {
             log.warn(err);
             throw new IndexOutOfBoundsException(err);
         }
-        log.info("Setting Session Attribute: " +
-                INDEX_ATTRIBUTE+" to index: " + idx);
+        EventLog.verbose("suggestion.index").field("index", idx).log();
         session.setAttribute(INDEX_ATTRIBUTE, idx);
         TransitSuggestion suggestion = suggestions.get(idx);
         return suggestion;
@@ -414,45 +681,26 @@ public class TransitSpeechletManager {
      * experience since alexa will not reprompt the same
      * question that she just answered.
      */
-    private String generateRepromptQuestion(Session session, Intent intent) {
-        Map<String, String> repromptMap = new HashMap<>(REPROMPT_QUESTIONS);
-
-        Map<String, Object> attributes = session.getAttributes();
-        String intentName = intent.getName();
-
-        if (intentName.equals("YesIntent")) {
-            intentName = (String) attributes.get(REPROMPT_INTENT_ATTRIBUTE);
-        }
-
-        String[] nextOptionIntents = { "AMAZON.NextIntent",
-                                       "AMAZON.PreviousIntent",
-                                       "AMAZON.RepeatIntent",
-                                       "GetNextTransitToWork" };
+    String generateRepromptQuestion(Session session, Intent intent) {
+        SkillIntent current = SkillIntent.forName(intent.getName());
 
-        // Always give the next option if the current intent is one of the above
-        if (nextSuggestionExists(session) &&
-            Arrays.asList(nextOptionIntents).contains(intentName))
-        {
-            session.setAttribute(REPROMPT_INTENT_ATTRIBUTE, "AMAZON.NextIntent");
-            return " Would you like to hear the next option?";
+        if (current == SkillIntent.YES) {
+            current = SkillIntent.forName((String) session.getAttribute(REPROMPT_INTENT_ATTRIBUTE));
         }
 
-        // Remove PreviousOption reprompt if no more previous suggestions exist
-        if (!previousSuggestionExists(session)) {
-            repromptMap.remove("AMAZON.PreviousIntent");
+        // Always give the next option if the current intent is one of NEXT_OPTION_INTENTS
+        if (NEXT_OPTION_INTENTS.contains(current) && nextSuggestionExists(session)) {
+            session.setAttribute(REPROMPT_INTENT_ATTRIBUTE, SkillIntent.NEXT.getIntentName());
+            return NEXT_OPTION_QUESTION;
         }
-
-        if (repromptMap.containsKey(intentName)) {
-            // Return a reprompt question that doesn't reprompt for the current intent.
-            repromptMap.remove(intentName);
-        }
-
-        String randomIntent = getRandomKey(repromptMap);
-        session.setAttribute(REPROMPT_INTENT_ATTRIBUTE, randomIntent);
-        return repromptMap.get(randomIntent);
+        // The previous option isn't offered if there is no previous suggestion
+        SkillIntent[] choices = REPROMPT_CHOICES[previousSuggestionExists(session) ? 1 : 0][current.ordinal()];
+        SkillIntent choice = choices[ThreadLocalRandom.current().nextInt(choices.length)];
+        session.setAttribute(REPROMPT_INTENT_ATTRIBUTE, choice.getIntentName());
+        return REPROMPT_QUESTIONS.get(choice);
     }
 
-    private SpeechletResponse addRepromptQuestionAndReturnResponse(
+    SpeechletResponse addRepromptQuestionAndReturnResponse(
             StringBuilder stringBuilder, String cardTitle, Session session, Intent intent) {
         String actualOutput = stringBuilder.toString();
         actualOutput = actualOutput.replace("&", "and");
@@ -481,12 +729,12 @@ public class TransitSpeechletManager {
         try {
             if (attributes.containsKey(SUGGESTION_ATTRIBUTE)) {
                 String suggestionsText = (String) session.getAttribute(SUGGESTION_ATTRIBUTE);
-                List<TransitSuggestion> suggestions = mapper.readValue(suggestionsText,
-                        new TypeReference<List<TransitSuggestion>>(){});
+                List<TransitSuggestion> suggestions = readSuggestions(suggestionsText);
                 int idx = (Integer) session.getAttribute(INDEX_ATTRIBUTE);
 
+                // Later departures can be fetched past the last one
                 if (idx >= suggestions.size() - 1) {
-                    return false;
+                    return attributes.containsKey(TRANSIT_TYPE_ATTRIBUTE);
                 }
                 return true;
             }
@@ -519,11 +767,4 @@ public class TransitSpeechletManager {
         }
         return false;
     }
-
-    private String getRandomKey(Map<String, String> map) {
-        List<String> keys = new ArrayList<>(map.keySet());
-        Random random = new Random();
-        int idx = random.nextInt(keys.size());
-        return keys.get(idx);
-    }
 }
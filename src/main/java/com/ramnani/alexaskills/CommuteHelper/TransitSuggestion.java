@@ -82,6 +82,12 @@ public class TransitSuggestion {
      */
     private int numOfSwitches;
 
+    /**
+     * How many minutes old the directions are, when the maps API was
+     * unavailable and older directions were used. Not kept in the session.
+     */
+    private int staleMinutes;
+
     public TransitSuggestion() {
     }
 
@@ -133,16 +139,20 @@ public class TransitSuggestion {
     public String toString() {
         return "Transit Type : " + getTransitType() + "\n" +
                "Walking Start Time: " + getWalkingStartTime() + "\n" +
-               "Walking Duration: " + getWalkingDuration().humanReadable + "\n" +
-               "Transit Duration: " + getTransitDuration().humanReadable + "\n" +
+               "Walking Duration: " + humanReadable(getWalkingDuration()) + "\n" +
+               "Transit Duration: " + humanReadable(getTransitDuration()) + "\n" +
                "Walking Instruction: " + getWalkingInstruction() + "\n" +
                "Transit Instruction: " + getTransitInstruction() + "\n" +
                "Transit ID: " + getTransitId() + "\n" +
                "Number of Switches: " + getNumOfSwitches() +"\n" +
-               "Total Duration: " + getTotalDuration().humanReadable + "\n" +
+               "Total Duration: " + humanReadable(getTotalDuration()) + "\n" +
                "Arrival Time: " + getArrivalTime() + "\n";
     }
 
+    private static String humanReadable(Duration duration) {
+        return duration == null ? null : duration.humanReadable;
+    }
+
     public String getTransitType() {
         return transitType;
     }
@@ -230,4 +240,14 @@ public class TransitSuggestion {
     public void setNumOfSwitches(int numOfSwitches) {
         this.numOfSwitches = numOfSwitches;
     }
+
+    @JsonIgnore
+    public int getStaleMinutes() {
+        return staleMinutes;
+    }
+
+    @JsonIgnore
+    public void setStaleMinutes(int staleMinutes) {
+        this.staleMinutes = staleMinutes;
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.speechlet.Session;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The user of a single request, loaded lazily and only as far as the handler
+ * needs it. Whether the user exists is remembered in the session, so follow-up
+ * turns don't read the user again just to check that.
+ *
+ * Not thread-safe. A new instance is used for every request.
+ */
+public class UserContext {
+
+    public static final String USER_KNOWN_ATTRIBUTE = "userKnown";
+
+    private final String userId;
+    private final Session session;
+    private final TransitHelperDao userStore;
+
+    private TransitUser user;
+    private boolean userLoaded;
+    private TransitUser unencryptedUser;
+    private boolean unencryptedUserLoaded;
+
+    public UserContext(String userId, Session session, TransitHelperDao userStore) {
+        Validate.notNull(userId);
+        Validate.notNull(session);
+        Validate.notNull(userStore);
+
+        this.userId = userId;
+        this.session = session;
+        this.userStore = userStore;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Answered from the session if possible, otherwise from whatever has been
+     * loaded already, and only then with a read that doesn't decrypt anything.
+     */
+    public boolean exists() {
+        if (Boolean.TRUE.equals(session.getAttribute(USER_KNOWN_ATTRIBUTE))) {
+            return true;
+        }
+
+        if (userLoaded) {
+            return user != null;
+        }
+        return getUnencryptedUser() != null;
+    }
+
+    /**
+     * @return The timezone of the user, without decrypting the user's item
+     */
+    public String getTimeZone() {
+        if (userLoaded) {
+            return user == null ? null : user.getTimeZone();
+        }
+        TransitUser plaintextUser = getUnencryptedUser();
+        return plaintextUser == null ? null : plaintextUser.getTimeZone();
+    }
+
+    /**
+     * @return The fully loaded and decrypted user, or null if the user does not exist
+     */
+    public TransitUser getUser() {
+        if (!userLoaded) {
+            user = userStore.getUser(userId);
+            userLoaded = true;
+            rememberIfKnown(user);
+        }
+        return user;
+    }
+
+    private TransitUser getUnencryptedUser() {
+        if (!unencryptedUserLoaded) {
+            unencryptedUser = userStore.getUnencryptedAttributes(userId);
+            unencryptedUserLoaded = true;
+            rememberIfKnown(unencryptedUser);
+        }
+        return unencryptedUser;
+    }
+
+    private void rememberIfKnown(TransitUser loadedUser) {
+        if (loadedUser != null) {
+            session.setAttribute(USER_KNOWN_ATTRIBUTE, true);
+        }
+    }
+}
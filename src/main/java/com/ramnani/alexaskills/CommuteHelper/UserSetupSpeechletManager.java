@@ -23,14 +23,18 @@ import com.amazon.speech.speechlet.User;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
 import com.amazon.speech.ui.Reprompt;
 import com.amazon.speech.ui.SimpleCard;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResult;
 import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
 import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
 import org.apache.commons.lang3.Validate;
 import org.apache.log4j.Logger;
 
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -42,21 +46,49 @@ public class UserSetupSpeechletManager {
     public static final String SETUP_ATTRIBUTE = "setupAttribute";
     private static final String HOME_ADDRESS_ATTRIBUTE = "homeAddress";
     private static final String WORK_ADDRESS_ATTRIBUTE = "workAddress";
+    private static final String HOME_TIMEZONE_ATTRIBUTE = "homeTimeZone";
+    private static final String LOCATION_SUFFIX = "Location";
+    private static final String PLACE_ID_SUFFIX = "PlaceId";
 
-    private static final String SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS = "homeAddressSetup";
-    private static final String SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS = "workAddressSetup";
+    private static final String SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS =
+            ConversationState.SETUP_HOME_ADDRESS.getSetupAttributeValue();
+    private static final String SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS =
+            ConversationState.SETUP_WORK_ADDRESS.getSetupAttributeValue();
 
-    private static final String[] ADDRESS_INTENTS = {"PutPostalAddress", "PutStreetAddress"};
-    private static final String YES_INTENT = "YesIntent";
-    private static final String NO_INTENT = "NoIntent";
     private static final String ADDRESS_SLOT = "address";
     private static final String WORK_KEY = "work";
+    private static final int MAX_PENDING_TIMEZONES = 1000;
 
     private static final Logger log = Logger.getLogger(UserSetupSpeechletManager.class);
 
     private TransitHelperDao userStore;
     private GoogleMapsService googleMaps;
 
+    /**
+     * The timezone lookups started while verifying a home address, by user,
+     * to be picked up on the turns after it
+     */
+    private final Map<String, PendingTimezone> pendingTimezones =
+            new LinkedHashMap<String, PendingTimezone>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PendingTimezone> eldest) {
+                    return size() > MAX_PENDING_TIMEZONES;
+                }
+            };
+
+    /**
+     * A timezone lookup and the home location it was started for
+     */
+    private static final class PendingTimezone {
+        private final String location;
+        private final CompletableFuture<String> timezone;
+
+        PendingTimezone(String location, CompletableFuture<String> timezone) {
+            this.location = location;
+            this.timezone = timezone;
+        }
+    }
+
     public UserSetupSpeechletManager(TransitHelperDao userStore, GoogleMapsService googleMaps) {
         Validate.notNull(userStore);
         Validate.notNull(googleMaps);
@@ -71,7 +103,7 @@ public class UserSetupSpeechletManager {
         Validate.notNull(attributes);
 
         if (!attributes.containsKey(SETUP_ATTRIBUTE)) {
-            log.info("Prompting user to setup home address.");
+            EventLog.event("setup.prompt").log();
             session.setAttribute(SETUP_ATTRIBUTE, SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS);
             String homeAddressMessage = "In order to give you transit information, " +
                     "I first need your home address, with zip code. For example, you can say, my home address " +
@@ -79,7 +111,7 @@ public class UserSetupSpeechletManager {
             String cardTitle = "Home Address";
             return getNewAskResponse(homeAddressMessage, cardTitle);
         }
-        log.info("User setup has started");
+        EventLog.verbose("setup.started").log();
         return handleAddressInputResponse(session, intent);
     }
 
@@ -109,54 +141,60 @@ public class UserSetupSpeechletManager {
         Validate.notNull(session);
         Validate.notNull(intent);
 
-        String setupAttribute = (String) session.getAttribute(SETUP_ATTRIBUTE);
-        log.info("Setup Attribute on update postal address request: " + setupAttribute);
+        ConversationState state = ConversationState.ofSetup(session);
+        EventLog.verbose("setup.postalAddress").field("state", state).log();
 
-        if (setupAttribute == null) {
-            return getTryAgainResponse();
-        }
+        switch (state) {
+            case SETUP_HOME_ADDRESS:
+                return verifyAddressResponse(intent, session, HOME_ADDRESS_ATTRIBUTE, "home");
+
+            case SETUP_WORK_ADDRESS:
+                return verifyAddressResponse(intent, session, WORK_ADDRESS_ATTRIBUTE, WORK_KEY);
 
-        if (setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS)) {
-            return verifyAddressResponse(intent, session, HOME_ADDRESS_ATTRIBUTE, "home");
-        } else if (setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS)) {
-            return verifyAddressResponse(intent, session, WORK_ADDRESS_ATTRIBUTE, WORK_KEY);
+            default:
+                return getTryAgainResponse();
         }
-        return getTryAgainResponse();
     }
 
-    public SpeechletResponse handleVerifyPostalAddressRequest(Session session, Intent intent) {
+    /**
+     * The user is only loaded once the new address has been confirmed
+     */
+    public SpeechletResponse handleVerifyPostalAddressRequest(Session session, Intent intent,
+                                                              UserContext userContext) {
         Validate.notNull(session);
         Validate.notNull(intent);
+        Validate.notNull(userContext);
 
-        String intentName = intent.getName();
-
-        if (intentName.equals(YES_INTENT)) {
-            String setupAttribute = (String) session.getAttribute(SETUP_ATTRIBUTE);
+        if (SkillIntent.forName(intent.getName()) == SkillIntent.YES) {
+            ConversationState state = ConversationState.ofSetup(session);
             User user = session.getUser();
             String userId = user.getUserId();
-            log.info("Update address attribute: " + setupAttribute + ", User: " + userId);
+            EventLog.verbose("setup.updateAddress")
+                    .field("state", state)
+                    .field("userId", userId)
+                    .log();
 
-            if (setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS)) {
+            if (state == ConversationState.SETUP_HOME_ADDRESS) {
                 String homeAddressValue = (String) session.getAttribute(HOME_ADDRESS_ATTRIBUTE);
 
                 if (homeAddressValue == null) {
                     return getTryAgainResponse();
                 }
-                return updateHomeAddressInDatabaseAndRespond(userId, homeAddressValue);
-            } else if (setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS)) {
+                return updateHomeAddressInDatabaseAndRespond(session, userContext.getUser(), homeAddressValue);
+            } else if (state == ConversationState.SETUP_WORK_ADDRESS) {
                 String workAddressValue = (String) session.getAttribute(WORK_ADDRESS_ATTRIBUTE);
 
                 if (workAddressValue == null) {
                     return getTryAgainResponse();
                 }
-                return updateWorkAddressInDatabaseAndRespond(userId, workAddressValue);
+                return updateWorkAddressInDatabaseAndRespond(session, userContext.getUser(), workAddressValue);
             }
         }
         return getNewAskResponse("Ok. Let's try again with the address", "Try again.");
     }
 
-    public SpeechletResponse handleGetWorkAddressRequest(String userId) {
-        return getAddress(userId, user -> {
+    public SpeechletResponse handleGetWorkAddressRequest(TransitUser transitUser) {
+        return getAddress(transitUser, user -> {
             String destinationNotExistMessage = "Sorry, I cannot find your work address." +
                     " To add or update your work address, you can say, change my work address. ";
             String destinationNotExistTitle = "Work Address not found.";
@@ -176,8 +214,8 @@ public class UserSetupSpeechletManager {
         });
     }
 
-    public SpeechletResponse handleGetHomeAddressRequest(String userId) {
-        return getAddress(userId, user -> {
+    public SpeechletResponse handleGetHomeAddressRequest(TransitUser transitUser) {
+        return getAddress(transitUser, user -> {
             String homeNotExistMessage = "Sorry, I cannot find your home address." +
                     " To add or update your home address, you can say, change my work address. ";
             String homeNotExistTitle = "Home Address not found.";
@@ -191,11 +229,12 @@ public class UserSetupSpeechletManager {
         });
     }
 
-    private SpeechletResponse getAddress(String userId,
+    /**
+     * Builds the address response from the user that was already loaded for this
+     * request, instead of reading and decrypting the item again.
+     */
+    private SpeechletResponse getAddress(TransitUser user,
                                          Function<TransitUser, SpeechletResponse> addressResponse) {
-        Validate.notNull(userId);
-        TransitUser user = userStore.getUser(userId);
-
         if (user == null) {
             return getNewTellResponse("Sorry, I cannot find your information. ",
                     "User not found");
@@ -203,20 +242,28 @@ public class UserSetupSpeechletManager {
         return addressResponse.apply(user);
     }
 
-    private SpeechletResponse updateHomeAddressInDatabaseAndRespond(String userId, String homeAddress) {
+    /**
+     * Applies the new home address, its location and its timezone to the
+     * already loaded user and persists it with a single write.
+     */
+    private SpeechletResponse updateHomeAddressInDatabaseAndRespond(Session session,
+                                                                    TransitUser user,
+                                                                    String homeAddress) {
         try {
-            log.info("Updating home address.");
-            TransitUser updatedUser = userStore.updateHomeAddress(userId, homeAddress);
-            log.info("Updated user home address: " + updatedUser.getHomeAddress());
-
-            log.info("Updating timezone.");
+            user.setHomeAddress(homeAddress);
+            user.setHomePlace(getLocation(session, HOME_ADDRESS_ATTRIBUTE),
+                    getPlaceId(session, HOME_ADDRESS_ATTRIBUTE));
+            String timezone = getHomeTimezone(session, homeAddress);
 
-            try {
-                String timezone = googleMaps.getTimezoneFromAddress(homeAddress);
-                userStore.addOrUpdateTimezone(userId, timezone);
-            } catch (Exception e1) {
-                log.error("Could not update timezone.", e1);
+            if (timezone != null) {
+                user.setTimeZone(timezone);
             }
+            TransitUser updatedUser = userStore.saveUser(user);
+            EventLog.event("homeAddress.updated")
+                    .field("userId", updatedUser.getUserId())
+                    .address("home", updatedUser.getHomeAddress())
+                    .field("timezone", updatedUser.getTimeZone())
+                    .log();
             return getNewTellResponse("OK. I changed your home address.", "Home address changed");
         } catch (Exception ex) {
             log.error("Could not update home address: ", ex);
@@ -224,10 +271,23 @@ public class UserSetupSpeechletManager {
         }
     }
 
-    private SpeechletResponse updateWorkAddressInDatabaseAndRespond(String userId, String workAddress) {
+    private SpeechletResponse updateWorkAddressInDatabaseAndRespond(Session session, TransitUser user,
+                                                                    String workAddress) {
         try {
-            userStore.addOrUpdateDestination(userId, WORK_KEY, workAddress);
-            log.info("Updated user home address: " + workAddress);
+            Map<String, String> destinations = user.getDestinations();
+
+            if (destinations == null) {
+                destinations = new HashMap<>();
+                user.setDestinations(destinations);
+            }
+            destinations.put(WORK_KEY, workAddress);
+            user.setDestinationPlace(WORK_KEY, getLocation(session, WORK_ADDRESS_ATTRIBUTE),
+                    getPlaceId(session, WORK_ADDRESS_ATTRIBUTE));
+            userStore.saveUser(user);
+            EventLog.event("workAddress.updated")
+                    .field("userId", user.getUserId())
+                    .address("work", workAddress)
+                    .log();
             return getNewTellResponse("OK. I changed your work address.", "Home work changed");
         } catch (Exception ex) {
             log.error("Could not update work address: ", ex);
@@ -236,56 +296,47 @@ public class UserSetupSpeechletManager {
     }
 
     /**
-     * Here, we're using a combination of intent name and session attributes to drive
-     * the user setup conversation
+     * The setup conversation, as transitions from the setup state on the intent:
+     *
+     * SETUP_HOME_ADDRESS: an address is verified, Yes moves on to SETUP_WORK_ADDRESS
+     * and No asks again.
+     * SETUP_WORK_ADDRESS: an address is verified, Yes saves the user and No asks again.
      */
     private SpeechletResponse handleAddressInputResponse(Session session,
                                                          Intent intent) {
-        String setupAttribute = (String) session.getAttribute(SETUP_ATTRIBUTE);
-        String intentName = intent.getName();
-        log.info("Intent Name: " + intentName
-                + "\tSetup Attribute: " + setupAttribute);
-
-        if (Arrays.asList(ADDRESS_INTENTS).contains(intentName) &&
-                setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS))
-        {
-            return verifyAddressResponse(intent, session,
-                    HOME_ADDRESS_ATTRIBUTE, "home");
-        }
-        else if (intentName.equals(YES_INTENT) &&
-                setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS))
-        {
-            session.setAttribute(SETUP_ATTRIBUTE, SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS);
-            return getNewAskResponse("Ok. Now tell me your work address, with zip code. For example, you can say" +
-                    ", my work address is Twenty Four Hundred Martin Street, Seattle, Washington," +
-                            " Nine Eight One One Four",
-                    "Work Address");
-        }
-        else if (intentName.equals(NO_INTENT) &&
-                setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_HOME_ADDRESS))
-        {
-            return getNewAskResponse("Ok. Let's try again with your Home Address.", "Home Address");
-        }
-        else if (Arrays.asList(ADDRESS_INTENTS).contains(intentName) &&
-                setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS))
-        {
-            return verifyAddressResponse(intent, session,
-                    WORK_ADDRESS_ATTRIBUTE, WORK_KEY);
-        }
-        else if (intentName.equals(NO_INTENT) &&
-                setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS))
-        {
-            return getNewAskResponse("Ok. Let's try again with your Work Address.", "Work Address");
-        }
-        else if (intentName.equals(YES_INTENT) &&
-                setupAttribute.equals(SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS))
-        {
-            // Finally the setup process has completed. Let's add the details in the database
-            return addUserToDatabaseAndReturnSuccess(session);
-        }
-        else
-        {
-            return getTryAgainResponse();
+        ConversationState state = ConversationState.ofSetup(session);
+        SkillIntent skillIntent = SkillIntent.forName(intent.getName());
+        EventLog.verbose("setup.verify").field("state", state).log();
+
+        switch (state) {
+            case SETUP_HOME_ADDRESS:
+                if (skillIntent.isAddress()) {
+                    return verifyAddressResponse(intent, session, HOME_ADDRESS_ATTRIBUTE, "home");
+                } else if (skillIntent == SkillIntent.YES) {
+                    session.setAttribute(SETUP_ATTRIBUTE, SETUP_ATTRIBUTE_VALUE_WORK_ADDRESS);
+                    keepResolvedTimezone(session);
+                    return getNewAskResponse("Ok. Now tell me your work address, with zip code. For example, " +
+                                    "you can say, my work address is Twenty Four Hundred Martin Street, Seattle," +
+                                    " Washington, Nine Eight One One Four",
+                            "Work Address");
+                } else if (skillIntent == SkillIntent.NO) {
+                    return getNewAskResponse("Ok. Let's try again with your Home Address.", "Home Address");
+                }
+                return getTryAgainResponse();
+
+            case SETUP_WORK_ADDRESS:
+                if (skillIntent.isAddress()) {
+                    return verifyAddressResponse(intent, session, WORK_ADDRESS_ATTRIBUTE, WORK_KEY);
+                } else if (skillIntent == SkillIntent.YES) {
+                    // Finally the setup process has completed. Let's add the details in the database
+                    return addUserToDatabaseAndReturnSuccess(session);
+                } else if (skillIntent == SkillIntent.NO) {
+                    return getNewAskResponse("Ok. Let's try again with your Work Address.", "Work Address");
+                }
+                return getTryAgainResponse();
+
+            default:
+                return getTryAgainResponse();
         }
     }
 
@@ -296,33 +347,44 @@ public class UserSetupSpeechletManager {
 
         Map<String, String> destinations = new HashMap<>();
         destinations.put(WORK_KEY, workAddress);
-        TransitUser user = null;
-        String timeZone = null;
+        String timeZone = getHomeTimezone(session, homeAddress);
 
-        try {
-            timeZone = googleMaps.getTimezoneFromAddress(homeAddress);
-        } catch (Exception ex) {
-            log.error("Unable to obtain time zone from google maps API.", ex);
-        }
+        TransitUser user = new TransitUser();
+        user.setUserId(userId);
+        user.setHomeAddress(homeAddress);
+        user.setDestinations(destinations);
+        user.setTimeZone(timeZone);
+        user.setHomePlace(getLocation(session, HOME_ADDRESS_ATTRIBUTE), getPlaceId(session, HOME_ADDRESS_ATTRIBUTE));
+        user.setDestinationPlace(WORK_KEY, getLocation(session, WORK_ADDRESS_ATTRIBUTE),
+                getPlaceId(session, WORK_ADDRESS_ATTRIBUTE));
 
         try {
-            log.info("Attempting to insert user: " + userId);
-            user = userStore.upsertUser(userId, homeAddress, destinations, timeZone);
-            log.info("Inserted user: " + user);
+            Validate.notNull(timeZone);
+            userStore.saveUser(user);
         } catch (Exception ex) {
             log.error("Could not insert user into the TransitUsers table.", ex);
             return getNewAskResponse("Sorry. I'm having some issues entering your details. Please try again. ",
                     "Try again. ");
 
         }
-        log.info("User setup successful. User: " + user);
+        EventLog.event("setup.completed")
+                .field("userId", userId)
+                .address("home", homeAddress)
+                .address("work", workAddress)
+                .field("timezone", timeZone)
+                .field("located", user.getHomeLocation() != null)
+                .log();
         return getNewAskResponse("OK. I have everything I need. Now I can help you with " +
                         "transit information. For example, you can ask me, \'When\'s my next bus to work.\'",
                 "User Setup completed.");
     }
 
     /**
-     * Verify from the user whether the address is correctly understood
+     * Verify from the user whether the address is correctly understood. The
+     * location and place ID of the resolved address are kept in the session,
+     * to be stored with the address once it's confirmed. For a home address,
+     * the timezone lookup is started from the location and left running while
+     * the user confirms, see {@link #getHomeTimezone(Session, String)}.
      */
     private SpeechletResponse verifyAddressResponse(Intent intent,
                                                     Session session,
@@ -330,20 +392,129 @@ public class UserSetupSpeechletManager {
                                                     String addressName) {
         Slot slot = intent.getSlot(ADDRESS_SLOT);
         String addressValue = slot.getValue();
-        log.info("Setting address: " + addressValue);
-        String resolvedAddress = googleMaps.getAddressOfPlace(addressValue);
+        EventLog.verbose("address.heard").address("address", addressValue).log();
+        PlacesSearchResult place = googleMaps.getPlace(addressValue);
+        String resolvedAddress = place == null ? null : place.formattedAddress;
 
         if (resolvedAddress == null || resolvedAddress.isEmpty()) {
             return getNewAskResponse("Sorry. I could not find this address. Please try again. ",
                     "Try Again.");
         }
-        log.info("Understood address from user to be: " + resolvedAddress);
+        EventLog.verbose("address.resolved").address("address", resolvedAddress).log();
         session.setAttribute(attribute, resolvedAddress);
+        setPlaceAttributes(session, attribute, place);
+
+        if (HOME_ADDRESS_ATTRIBUTE.equals(attribute)) {
+            session.removeAttribute(HOME_TIMEZONE_ATTRIBUTE);
+            startTimezoneLookup(session);
+        }
         return getNewAskResponse("Ok. I understood your " +
                         addressName + " address to be, " + resolvedAddress + ". Is this correct?",
                         addressName + " address");
     }
 
+    private void startTimezoneLookup(Session session) {
+        String userId = session.getUser().getUserId();
+        LatLng location = getLocation(session, HOME_ADDRESS_ATTRIBUTE);
+
+        synchronized (pendingTimezones) {
+            pendingTimezones.remove(userId);
+
+            if (location != null) {
+                pendingTimezones.put(userId, new PendingTimezone(TransitUser.formatLocation(location),
+                        googleMaps.getTimezoneFromLocationAsync(location)));
+            }
+        }
+    }
+
+    /**
+     * Moves the timezone into the session if its lookup has finished, so that
+     * a later turn handled by another container has it too
+     */
+    private void keepResolvedTimezone(Session session) {
+        String timezone = takeResolvedTimezone(session);
+
+        if (timezone != null) {
+            session.setAttribute(HOME_TIMEZONE_ATTRIBUTE, timezone);
+        }
+    }
+
+    /**
+     * @return The timezone looked up for the home location in the session, or
+     *         null if the lookup hasn't finished, failed or was started elsewhere
+     */
+    private String takeResolvedTimezone(Session session) {
+        String userId = session.getUser().getUserId();
+        PendingTimezone pending;
+
+        synchronized (pendingTimezones) {
+            pending = pendingTimezones.get(userId);
+
+            if (pending == null || !pending.timezone.isDone()) {
+                return null;
+            }
+            pendingTimezones.remove(userId);
+        }
+        String location = (String) session.getAttribute(HOME_ADDRESS_ATTRIBUTE + LOCATION_SUFFIX);
+
+        if (!pending.location.equals(location) || pending.timezone.isCompletedExceptionally()) {
+            return null;
+        }
+        return pending.timezone.join();
+    }
+
+    private static void setPlaceAttributes(Session session, String attribute, PlacesSearchResult place) {
+        LatLng location = place.geometry == null ? null : place.geometry.location;
+
+        if (location == null) {
+            session.removeAttribute(attribute + LOCATION_SUFFIX);
+            session.removeAttribute(attribute + PLACE_ID_SUFFIX);
+            return;
+        }
+        session.setAttribute(attribute + LOCATION_SUFFIX, TransitUser.formatLocation(location));
+
+        if (place.placeId == null) {
+            session.removeAttribute(attribute + PLACE_ID_SUFFIX);
+        } else {
+            session.setAttribute(attribute + PLACE_ID_SUFFIX, place.placeId);
+        }
+    }
+
+    private static LatLng getLocation(Session session, String attribute) {
+        return TransitUser.parseLocation((String) session.getAttribute(attribute + LOCATION_SUFFIX));
+    }
+
+    private static String getPlaceId(Session session, String attribute) {
+        return (String) session.getAttribute(attribute + PLACE_ID_SUFFIX);
+    }
+
+    /**
+     * Returns the timezone resolved while the user confirmed the home address.
+     * Only when that lookup hasn't finished, or ran in another container, it's
+     * looked up again at the home location, or from the address if the
+     * location isn't in the session either.
+     */
+    private String getHomeTimezone(Session session, String homeAddress) {
+        String timezone = (String) session.getAttribute(HOME_TIMEZONE_ATTRIBUTE);
+
+        if (timezone == null || timezone.isEmpty()) {
+            timezone = takeResolvedTimezone(session);
+        }
+        if (timezone != null && !timezone.isEmpty()) {
+            return timezone;
+        }
+        EventLog.verbose("timezone.pending").log();
+        LatLng location = getLocation(session, HOME_ADDRESS_ATTRIBUTE);
+
+        try {
+            return location == null ? googleMaps.getTimezoneFromAddress(homeAddress)
+                    : googleMaps.getTimezoneFromLocation(location);
+        } catch (Exception ex) {
+            log.error("Unable to obtain time zone from google maps API.", ex);
+            return null;
+        }
+    }
+
     private SpeechletResponse getTryAgainResponse() {
         return getNewAskResponse("Sorry. I did not understand. Please try again. ",
                 "Try Again.");
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.deadline;
+
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The time left to answer the request being handled on the current thread.
+ * Alexa gives up on a response after a few seconds, so every call made for
+ * the request is bounded by what's left of the budget, and fails with a
+ * {@link DeadlineExceededException} once it's spent.
+ *
+ * Without a deadline on the thread, as in background work, calls aren't bounded.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private final long startNanos;
+    private final long budgetNanos;
+    private volatile long stageStartNanos;
+
+    Deadline(long budgetMillis, long startNanos) {
+        Validate.isTrue(budgetMillis > 0, "budgetMillis must be positive: %d", budgetMillis);
+        this.startNanos = startNanos;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.stageStartNanos = startNanos;
+    }
+
+    /**
+     * Starts the deadline of a request on the current thread
+     */
+    public static Deadline start(long budgetMillis) {
+        Deadline deadline = new Deadline(budgetMillis, System.nanoTime());
+        current.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * @return The deadline of the current thread, or null if there's none
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    public static void clear() {
+        current.remove();
+    }
+
+    /**
+     * Runs the supplier with the given deadline, e.g. on a pool thread doing
+     * work a request waits for
+     */
+    public static <T> T call(Deadline deadline, Supplier<T> supplier) {
+        Deadline previous = current.get();
+        current.set(deadline);
+
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @throws DeadlineExceededException If the current thread's deadline has passed
+     */
+    public static void check(String what) {
+        Deadline deadline = current.get();
+
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("No time left for " + what);
+        }
+    }
+
+    /**
+     * @return The time left to the current thread's deadline, or defaultMillis
+     * if there's none
+     */
+    public static long remainingMillis(long defaultMillis) {
+        Deadline deadline = current.get();
+        return deadline == null ? defaultMillis : deadline.remainingMillis();
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(budgetNanos - (System.nanoTime() - startNanos)));
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - startNanos >= budgetNanos;
+    }
+
+    /**
+     * Records the latency of the stage that just ended, and the percentage of
+     * the whole budget it used. The next stage starts now.
+     */
+    public void endStage(String stage) {
+        long now = System.nanoTime();
+        long stageStart = stageStartNanos;
+        stageStartNanos = now;
+        Metrics.recordLatency(Metrics.STAGE, stage, stageStart);
+        Metrics.recordValue(Metrics.STAGE, stage, Metrics.BUDGET_USED, (now - stageStart) * 100 / budgetNanos);
+    }
+}
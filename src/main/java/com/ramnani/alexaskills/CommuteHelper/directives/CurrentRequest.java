@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.directives;
+
+/**
+ * Keeps the raw request being handled on the current thread, so that the
+ * speechlet can send directives for it. The request handlers set it around
+ * each speechlet call, and a handler that already parsed the request can set
+ * its directive target so the request isn't parsed again.
+ */
+public final class CurrentRequest {
+
+    private static final ThreadLocal<Request> REQUEST = new ThreadLocal<>();
+
+    private CurrentRequest() {
+    }
+
+    public static void set(byte[] request) {
+        REQUEST.set(new Request(request));
+    }
+
+    /**
+     * Sets the directive target read from the current request, null if it
+     * can't receive directives
+     */
+    public static void setDirectiveTarget(DirectiveTarget target) {
+        Request request = REQUEST.get();
+
+        if (request == null) {
+            request = new Request(null);
+            REQUEST.set(request);
+        }
+        request.target = target;
+        request.isTargetRead = true;
+    }
+
+    public static void clear() {
+        REQUEST.remove();
+    }
+
+    /**
+     * Returns the directive target of the current request, or null if there's
+     * no request or it can't receive directives. Unless a handler set it, the
+     * request is only parsed for this when it's called.
+     */
+    public static DirectiveTarget getDirectiveTarget() {
+        Request request = REQUEST.get();
+
+        if (request == null) {
+            return null;
+        }
+
+        if (!request.isTargetRead) {
+            request.target = DirectiveTarget.fromRequest(request.bytes);
+            request.isTargetRead = true;
+        }
+        return request.target;
+    }
+
+    private static final class Request {
+
+        private final byte[] bytes;
+        private DirectiveTarget target;
+        private boolean isTargetRead;
+
+        Request(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.directives;
+
+/**
+ * Sends directives to the Alexa directive service while a request is still
+ * being handled, e.g. a progressive response to speak while the skill waits
+ * on a slow dependency.
+ */
+public interface DirectiveClient {
+
+    /**
+     * Sends nothing
+     */
+    DirectiveClient NONE = (target, speech) -> { };
+
+    /**
+     * Asks Alexa to speak the text before the response to the request is sent.
+     * Doesn't wait for the directive to be delivered, and never fails the request.
+     */
+    void speak(DirectiveTarget target, String speech);
+}
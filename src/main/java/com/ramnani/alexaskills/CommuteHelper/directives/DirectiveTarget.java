@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.directives;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * The request a directive belongs to, and where and how to send it. Alexa
+ * passes the endpoint and token in context.System of every request, but
+ * version 1.2 of the Alexa Skills Kit doesn't deserialize them, so they are
+ * read from the raw request, skipping everything else in it.
+ */
+public class DirectiveTarget {
+
+    private static final Logger log = Logger.getLogger(DirectiveTarget.class);
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final String requestId;
+    private final String apiEndpoint;
+    private final String apiAccessToken;
+
+    public DirectiveTarget(String requestId, String apiEndpoint, String apiAccessToken) {
+        Validate.notEmpty(requestId);
+        Validate.notEmpty(apiEndpoint);
+        Validate.notEmpty(apiAccessToken);
+        this.requestId = requestId;
+        this.apiEndpoint = apiEndpoint;
+        this.apiAccessToken = apiAccessToken;
+    }
+
+    /**
+     * Returns the target for the raw request, or null if the request can't
+     * receive directives, e.g. because it's from the simulator.
+     */
+    public static DirectiveTarget fromRequest(byte[] request) {
+        if (request == null) {
+            return null;
+        }
+        String requestId = null;
+        String[] api = new String[2];
+
+        try (JsonParser parser = jsonFactory.createJsonParser(request)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if ("request".equals(field) && token == JsonToken.START_OBJECT) {
+                    requestId = readTextFields(parser, "requestId")[0];
+                } else if ("context".equals(field) && token == JsonToken.START_OBJECT) {
+                    api = readSystem(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to read directive target from request", ex);
+            return null;
+        }
+        return fromFields(requestId, api[0], api[1]);
+    }
+
+    /**
+     * Returns the target for fields already read from the request, or null if
+     * any is missing
+     */
+    public static DirectiveTarget fromFields(String requestId, String apiEndpoint, String apiAccessToken) {
+        if (isEmpty(requestId) || isEmpty(apiEndpoint) || isEmpty(apiAccessToken)) {
+            return null;
+        }
+        return new DirectiveTarget(requestId, apiEndpoint, apiAccessToken);
+    }
+
+    /**
+     * @return The apiEndpoint and apiAccessToken of context.System
+     */
+    private static String[] readSystem(JsonParser parser) throws IOException {
+        String[] api = new String[2];
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+
+            if (parser.nextToken() == JsonToken.START_OBJECT && "System".equals(field)) {
+                api = readTextFields(parser, "apiEndpoint", "apiAccessToken");
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return api;
+    }
+
+    /**
+     * Reads the rest of the current object, keeping the text values of the
+     * named fields
+     */
+    private static String[] readTextFields(JsonParser parser, String... names) throws IOException {
+        String[] values = new String[names.length];
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(field) && token == JsonToken.VALUE_STRING) {
+                    values[i] = parser.getText();
+                }
+            }
+            parser.skipChildren();
+        }
+        return values;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public String getApiEndpoint() {
+        return apiEndpoint;
+    }
+
+    public String getApiAccessToken() {
+        return apiAccessToken;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.directives;
+
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Posts directives to the Alexa directive service on a small pool of
+ * background threads. A directive that can't be sent within the timeout, or
+ * while the pool is backed up, is dropped: a late progressive response is no
+ * better than none. Connections to the service are kept alive between
+ * directives.
+ */
+public class HttpDirectiveClient implements DirectiveClient {
+
+    private static final Logger log = Logger.getLogger(HttpDirectiveClient.class);
+
+    static final String DIRECTIVES_PATH = "/v1/directives";
+
+    private static final int THREADS = 4;
+    private static final int QUEUE_SIZE = 100;
+    private static final int DRAIN_BUFFER_SIZE = 512;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final int timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    public HttpDirectiveClient(int timeoutMillis) {
+        Validate.isTrue(timeoutMillis > 0, "Timeout must be positive: %d", timeoutMillis);
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "directives-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void speak(DirectiveTarget target, String speech) {
+        Validate.notNull(target);
+        Validate.notEmpty(speech);
+
+        try {
+            executor.execute(() -> send(target, speech));
+        } catch (RejectedExecutionException ex) {
+            Metrics.recordDependencyError(Metrics.DIRECTIVES);
+            log.warn("Dropped progressive response for request: " + target.getRequestId());
+        }
+    }
+
+    private void send(DirectiveTarget target, String speech) {
+        long start = System.nanoTime();
+
+        try {
+            byte[] body = mapper.writeValueAsBytes(speakDirective(target.getRequestId(), speech));
+            HttpURLConnection connection =
+                    (HttpURLConnection) new URL(target.getApiEndpoint() + DIRECTIVES_PATH).openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Authorization", "Bearer " + target.getApiAccessToken());
+            connection.setRequestProperty("Content-Type", "application/json");
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            drain(connection, status);
+
+            if (status / 100 != 2) {
+                Metrics.recordDependencyError(Metrics.DIRECTIVES);
+                log.warn("Directive service returned " + status + " for request: " + target.getRequestId());
+            }
+        } catch (IOException ex) {
+            Metrics.recordDependencyError(Metrics.DIRECTIVES);
+            log.warn("Could not send progressive response for request: " + target.getRequestId(), ex);
+        } finally {
+            Metrics.recordDependencyLatency(Metrics.DIRECTIVES, start);
+        }
+    }
+
+    /**
+     * Reads the response to its end and closes it, rather than disconnecting,
+     * so that the connection is kept alive for the next directive
+     */
+    private static void drain(HttpURLConnection connection, int status) throws IOException {
+        try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+            if (in == null) {
+                return;
+            }
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+
+    static Map<String, Object> speakDirective(String requestId, String speech) {
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("requestId", requestId);
+
+        Map<String, Object> directive = new LinkedHashMap<>();
+        directive.put("type", "VoicePlayer.Speak");
+        directive.put("speech", speech);
+
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("header", header);
+        envelope.put("directive", directive);
+        return envelope;
+    }
+}
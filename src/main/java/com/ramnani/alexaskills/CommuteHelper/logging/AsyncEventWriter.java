@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.logging;
+
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Formats and writes events on a daemon thread. The queue is bounded, and
+ * events that don't fit are dropped and counted rather than blocking the
+ * request that logged them.
+ */
+class AsyncEventWriter {
+
+    private static final String THREAD_NAME = "event-log-writer";
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final BlockingQueue<Event> queue;
+    private final Consumer<String> output;
+    private final Thread thread;
+
+    AsyncEventWriter(int queueSize, Consumer<String> output) {
+        Validate.isTrue(queueSize > 0, "queueSize must be positive: %d", queueSize);
+        Validate.notNull(output);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.output = output;
+        this.thread = new Thread(this::run, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return false if the queue is full and the event was dropped
+     */
+    boolean offer(Event event) {
+        if (queue.offer(event)) {
+            return true;
+        }
+        Metrics.recordCount(Metrics.EVENT_LOG, event.getName(), Metrics.DROPPED);
+        return false;
+    }
+
+    /**
+     * Writes the queued events on the calling thread
+     */
+    void drain() {
+        List<Event> events = new ArrayList<>(queue.size());
+        queue.drainTo(events);
+
+        for (Event event : events) {
+            write(event);
+        }
+    }
+
+    /**
+     * Stops the writer thread, letting it finish the event it's writing, and
+     * writes the queued events
+     */
+    void close() {
+        thread.interrupt();
+
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    int getQueueLength() {
+        return queue.size();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                write(queue.take());
+            }
+        } catch (InterruptedException ex) {
+            // closed
+        }
+    }
+
+    private void write(Event event) {
+        try {
+            output.accept(event.format());
+        } catch (RuntimeException ex) {
+            Metrics.recordCount(Metrics.EVENT_LOG, event.getName(), Metrics.DROPPED);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A structured log event, built on the request thread and formatted on the
+ * writer thread of the {@link EventLog}. Field values are kept as they are
+ * until then, so they must not be changed after {@link #log()}. Values that
+ * are expensive to compute can be given as suppliers.
+ */
+public class Event {
+
+    /**
+     * Returned for verbose events that weren't sampled, every call on it is a no-op
+     */
+    static final Event DISCARDED = new Event(null, null) {
+        @Override
+        public Event field(String name, Object value) {
+            return this;
+        }
+
+        @Override
+        public Event lazy(String name, Supplier<?> value) {
+            return this;
+        }
+
+        @Override
+        public Event address(String name, String address) {
+            return this;
+        }
+
+        @Override
+        public void log() {
+        }
+    };
+
+    private final String name;
+    private final String intent;
+    private final List<Object> fields = new ArrayList<>(8);
+
+    Event(String name, String intent) {
+        this.name = name;
+        this.intent = intent;
+    }
+
+    public Event field(String name, Object value) {
+        fields.add(name);
+        fields.add(value);
+        return this;
+    }
+
+    /**
+     * The value is only computed if the event is written
+     */
+    public Event lazy(String name, Supplier<?> value) {
+        return field(name, value);
+    }
+
+    /**
+     * An address, or any other text the user said, is only written redacted
+     */
+    public Event address(String name, String address) {
+        return field(name, (Supplier<String>) () -> EventLog.redact(address));
+    }
+
+    public void log() {
+        EventLog.write(this);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Formats the event as space separated name=value pairs
+     */
+    String format() {
+        StringBuilder line = new StringBuilder(64 + fields.size() * 16);
+        line.append("event=").append(name);
+
+        if (intent != null) {
+            line.append(" intent=").append(intent);
+        }
+
+        for (int i = 0; i < fields.size(); i += 2) {
+            line.append(' ').append(fields.get(i)).append('=');
+            appendValue(line, fields.get(i + 1));
+        }
+        return line.toString();
+    }
+
+    private static void appendValue(StringBuilder line, Object value) {
+        String text;
+
+        try {
+            if (value instanceof Supplier) {
+                value = ((Supplier<?>) value).get();
+            }
+            text = value == null ? "-" : value.toString();
+        } catch (RuntimeException ex) {
+            text = "<" + ex.getClass().getSimpleName() + ">";
+        }
+
+        if (text.isEmpty() || text.indexOf(' ') >= 0 || text.indexOf('"') >= 0 || text.indexOf('=') >= 0
+                || text.indexOf('\n') >= 0) {
+            line.append('"').append(text.replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        } else {
+            line.append(text);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.logging;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Structured events logged on the request path. The request thread only
+ * queues the event; it's formatted and written through log4j by a writer
+ * thread, and dropped when the writer falls behind.
+ *
+ * Verbose events are sampled per intent: they're kept for the first and then
+ * every verboseSampleRate-th request of each intent, so that rare intents are
+ * sampled as well. Addresses are only written redacted, as a keyed hash
+ * under the deployment's redaction key, or not at all without one.
+ */
+public final class EventLog {
+
+    private static final Logger log = Logger.getLogger(EventLog.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    public static final int DEFAULT_VERBOSE_SAMPLE_RATE = 10;
+
+    private static final String NO_INTENT = "none";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String REDACTED = "addr-redacted";
+    private static final int REDACTED_HASH_BYTES = 8;
+
+    private static final ThreadLocal<Mac> redactionMac = new ThreadLocal<>();
+
+    private static volatile SecretKeySpec redactionKey;
+
+    private static final ThreadLocal<Request> request = new ThreadLocal<>();
+
+    private static final ConcurrentMap<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+
+    private static volatile AsyncEventWriter writer = new AsyncEventWriter(DEFAULT_QUEUE_SIZE, log::info);
+
+    private static volatile int verboseSampleRate = DEFAULT_VERBOSE_SAMPLE_RATE;
+
+    private EventLog() {
+    }
+
+    /**
+     * @param queueSize How many events can wait for the writer before new ones are dropped
+     * @param sampleRate One in this many requests of an intent logs its verbose
+     *                   events. 1 logs all of them, 0 none.
+     */
+    public static synchronized void configure(int queueSize, int sampleRate) {
+        Validate.isTrue(sampleRate >= 0, "sampleRate must not be negative: %d", sampleRate);
+        AsyncEventWriter previous = writer;
+        writer = new AsyncEventWriter(queueSize, log::info);
+        verboseSampleRate = sampleRate;
+        requestCounts.clear();
+        previous.close();
+    }
+
+    /**
+     * @param secret The deployment's secret for hashing addresses, or null or
+     *               empty to leave addresses out of the logs
+     */
+    public static void setRedactionKey(String secret) {
+        redactionKey = secret == null || secret.isEmpty() ? null
+                : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    /**
+     * Starts the events of a request for the intent on the current thread, and
+     * decides whether its verbose events are kept
+     */
+    public static void startRequest(String intent) {
+        request.set(new Request(intent, isSampled(intent)));
+    }
+
+    public static void endRequest() {
+        request.remove();
+    }
+
+    /**
+     * An event that is always written
+     */
+    public static Event event(String name) {
+        Request current = request.get();
+        return new Event(name, current == null ? null : current.intent);
+    }
+
+    /**
+     * An event that is only written for the sampled requests. Outside of a
+     * request it's sampled by its name.
+     */
+    public static Event verbose(String name) {
+        Request current = request.get();
+
+        if (current == null) {
+            return isSampled(name) ? new Event(name, null) : Event.DISCARDED;
+        }
+        return current.verbose ? new Event(name, current.intent) : Event.DISCARDED;
+    }
+
+    /**
+     * Replaces an address with a keyed hash of it, which is enough to tell
+     * whether two events were about the same address but can't be reversed by
+     * hashing candidate addresses without the key. Without a key, the address
+     * is dropped.
+     */
+    public static String redact(String address) {
+        if (address == null) {
+            return null;
+        }
+        SecretKeySpec key = redactionKey;
+
+        if (key == null) {
+            return REDACTED;
+        }
+        byte[] hash;
+
+        try {
+            Mac mac = redactionMac.get();
+
+            if (mac == null) {
+                mac = Mac.getInstance(HMAC_ALGORITHM);
+                redactionMac.set(mac);
+            }
+            mac.init(key);
+            hash = mac.doFinal(address.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException ex) {
+            return REDACTED;
+        }
+        StringBuilder redacted = new StringBuilder("addr-");
+
+        for (int i = 0; i < REDACTED_HASH_BYTES; i++) {
+            redacted.append(Character.forDigit((hash[i] >> 4) & 0xF, 16))
+                    .append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+        return redacted.toString();
+    }
+
+    /**
+     * Writes the queued events on the calling thread, e.g. before a Lambda
+     * container is frozen
+     */
+    public static void flush() {
+        writer.drain();
+    }
+
+    static void write(Event event) {
+        writer.offer(event);
+    }
+
+    private static boolean isSampled(String key) {
+        int rate = verboseSampleRate;
+
+        if (rate <= 1) {
+            return rate == 1;
+        }
+        AtomicLong count = requestCounts.get(key == null ? NO_INTENT : key);
+
+        if (count == null) {
+            count = requestCounts.computeIfAbsent(key == null ? NO_INTENT : key, k -> new AtomicLong());
+        }
+        return count.getAndIncrement() % rate == 0;
+    }
+
+    private static final class Request {
+        private final String intent;
+        private final boolean verbose;
+
+        Request(String intent, boolean verbose) {
+            this.intent = intent;
+            this.verbose = verbose;
+        }
+    }
+}
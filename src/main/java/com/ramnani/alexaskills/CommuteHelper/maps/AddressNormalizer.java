@@ -0,0 +1,252 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a free-form US address into a canonical key, so that spellings of the
+ * same place share cache entries: "1 Main Street East, Apt 5, Seattle, WA
+ * 98101, USA" and "1 main st e seattle washington" have the same key. The
+ * key is only for lookups, the address itself is still what's sent to Google.
+ *
+ * Case, accents and punctuation are dropped, street suffixes, directions and
+ * ordinals are abbreviated, and unit numbers and the country are removed. The
+ * state and the five digit postal code are moved to the end of the key, so
+ * "1 Main St 98101" and "1 Main St 10001" stay apart. An address with neither
+ * could be in any city and has no key.
+ */
+public final class AddressNormalizer {
+
+    private static final Pattern COMPONENT_SEPARATOR = Pattern.compile("[,;\\n]");
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^a-z0-9#\\-]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern POSTAL_CODE = Pattern.compile("\\d{5}(-\\d{4})?");
+    private static final Pattern HAS_DIGIT = Pattern.compile(".*\\d.*");
+
+    private static final String[][] STREET_WORD_ABBREVIATIONS = {
+            { "avenue", "ave" }, { "av", "ave" }, { "street", "st" }, { "road", "rd" },
+            { "boulevard", "blvd" }, { "drive", "dr" }, { "lane", "ln" }, { "place", "pl" },
+            { "court", "ct" }, { "parkway", "pkwy" }, { "highway", "hwy" }, { "terrace", "ter" },
+            { "circle", "cir" }, { "square", "sq" }, { "plaza", "plz" }, { "expressway", "expy" },
+            { "freeway", "fwy" }, { "trail", "trl" }, { "crescent", "cres" }, { "alley", "aly" },
+            { "north", "n" }, { "south", "s" }, { "east", "e" }, { "west", "w" },
+            { "northeast", "ne" }, { "northwest", "nw" }, { "southeast", "se" }, { "southwest", "sw" },
+            { "first", "1st" }, { "second", "2nd" }, { "third", "3rd" }, { "fourth", "4th" },
+            { "fifth", "5th" }, { "sixth", "6th" }, { "seventh", "7th" }, { "eighth", "8th" },
+            { "ninth", "9th" }, { "tenth", "10th" },
+    };
+
+    private static final String[][] STATE_ABBREVIATIONS = {
+            { "alabama", "al" }, { "alaska", "ak" }, { "arizona", "az" }, { "arkansas", "ar" },
+            { "california", "ca" }, { "colorado", "co" }, { "connecticut", "ct" }, { "delaware", "de" },
+            { "district of columbia", "dc" }, { "florida", "fl" }, { "georgia", "ga" }, { "hawaii", "hi" },
+            { "idaho", "id" }, { "illinois", "il" }, { "indiana", "in" }, { "iowa", "ia" },
+            { "kansas", "ks" }, { "kentucky", "ky" }, { "louisiana", "la" }, { "maine", "me" },
+            { "maryland", "md" }, { "massachusetts", "ma" }, { "michigan", "mi" }, { "minnesota", "mn" },
+            { "mississippi", "ms" }, { "missouri", "mo" }, { "montana", "mt" }, { "nebraska", "ne" },
+            { "nevada", "nv" }, { "new hampshire", "nh" }, { "new jersey", "nj" }, { "new mexico", "nm" },
+            { "new york", "ny" }, { "north carolina", "nc" }, { "north dakota", "nd" }, { "ohio", "oh" },
+            { "oklahoma", "ok" }, { "oregon", "or" }, { "pennsylvania", "pa" }, { "rhode island", "ri" },
+            { "south carolina", "sc" }, { "south dakota", "sd" }, { "tennessee", "tn" }, { "texas", "tx" },
+            { "utah", "ut" }, { "vermont", "vt" }, { "virginia", "va" }, { "washington", "wa" },
+            { "west virginia", "wv" }, { "wisconsin", "wi" }, { "wyoming", "wy" },
+    };
+
+    private static final String[][] COUNTRY_NAMES = {
+            { "us", "us" }, { "usa", "us" }, { "united states", "us" }, { "united states of america", "us" },
+    };
+
+    private static final Set<String> UNIT_DESIGNATORS = new HashSet<>(Arrays.asList(
+            "#", "apt", "apartment", "unit", "suite", "ste", "room", "rm", "fl", "floor", "bldg", "building"));
+
+    private static final int MAX_NAME_TOKENS = 4;
+
+    /**
+     * Kept between the tokens of comma separated components
+     */
+    private static final String SEPARATOR = ",";
+
+    private static final Map<String, String> STREET_WORDS = toMap(STREET_WORD_ABBREVIATIONS);
+
+    private static final Map<String, String> COUNTRIES = toMap(COUNTRY_NAMES);
+
+    /**
+     * State names and abbreviations, to their abbreviation
+     */
+    private static final Map<String, String> STATES;
+
+    /**
+     * Without commas, abbreviations like "ne" or "in" are more likely part of
+     * the street, so only full names are taken as the state
+     */
+    private static final Map<String, String> STATE_NAMES = toMap(STATE_ABBREVIATIONS);
+
+    static {
+        Map<String, String> states = new HashMap<>(STATE_NAMES);
+
+        for (String[] state : STATE_ABBREVIATIONS) {
+            states.put(state[1], state[1]);
+        }
+        STATES = Collections.unmodifiableMap(states);
+    }
+
+    private AddressNormalizer() {
+    }
+
+    /**
+     * @return The canonical key of the address, or null if it's null, has no
+     *         words or names neither a state nor a postal code
+     */
+    public static String normalize(String address) {
+        if (address == null) {
+            return null;
+        }
+        String text = MARKS.matcher(Normalizer.normalize(address, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .replace(".", "")
+                .replace("'", "")
+                .replace("#", " # ")
+                .replace("&", " and ");
+        List<String> tokens = new ArrayList<>();
+
+        for (String component : COMPONENT_SEPARATOR.split(text)) {
+            if (!tokens.isEmpty() && !SEPARATOR.equals(tokens.get(tokens.size() - 1))) {
+                tokens.add(SEPARATOR);
+            }
+
+            for (String token : TOKEN_SEPARATOR.split(component)) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        removeUnits(tokens);
+        trimSeparators(tokens);
+        removeTrailingName(tokens, COUNTRIES, 0);
+        trimSeparators(tokens);
+        String postalCode = removePostalCode(tokens);
+        trimSeparators(tokens);
+        int firstSeparator = tokens.indexOf(SEPARATOR);
+        // The state has to follow the street, which is at least "1 Main St"
+        // when there are no commas to tell them apart
+        String state = firstSeparator > 0
+                ? removeTrailingName(tokens, STATES, firstSeparator + 1)
+                : removeTrailingName(tokens, STATE_NAMES, 3);
+
+        if (state == null && postalCode == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(address.length());
+
+        for (String token : tokens) {
+            if (SEPARATOR.equals(token)) {
+                continue;
+            }
+
+            if (key.length() > 0) {
+                key.append(' ');
+            }
+            key.append(STREET_WORDS.getOrDefault(token, token));
+        }
+
+        if (key.length() == 0) {
+            return null;
+        }
+        key.append('|').append(state == null ? "" : state)
+                .append('|').append(postalCode == null ? "" : postalCode);
+        return key.toString();
+    }
+
+    /**
+     * Removes unit designators with the unit that follows them, like "apt 5"
+     * or "# 12b". "fl 33101" is Florida rather than a floor.
+     */
+    private static void removeUnits(List<String> tokens) {
+        for (int i = 1; i < tokens.size() - 1; i++) {
+            String unit = tokens.get(i + 1);
+
+            if (UNIT_DESIGNATORS.contains(tokens.get(i)) && !SEPARATOR.equals(unit)
+                    && (unit.length() == 1 || HAS_DIGIT.matcher(unit).matches())
+                    && !POSTAL_CODE.matcher(unit).matches()) {
+                tokens.remove(i + 1);
+                tokens.remove(i);
+                i--;
+            }
+        }
+    }
+
+    /**
+     * Removes the last postal code after the house number
+     *
+     * @return Its first five digits, or null if there's none
+     */
+    private static String removePostalCode(List<String> tokens) {
+        for (int i = tokens.size() - 1; i > 0; i--) {
+            if (POSTAL_CODE.matcher(tokens.get(i)).matches()) {
+                return tokens.remove(i).substring(0, 5);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the longest of the names the tokens end with, as long as at
+     * least minRemaining tokens are left
+     *
+     * @return What the name removed maps to, or null
+     */
+    private static String removeTrailingName(List<String> tokens, Map<String, String> names, int minRemaining) {
+        for (int length = Math.min(MAX_NAME_TOKENS, tokens.size() - minRemaining); length > 0; length--) {
+            List<String> tail = tokens.subList(tokens.size() - length, tokens.size());
+            String value = names.get(String.join(" ", tail));
+
+            if (value != null) {
+                tail.clear();
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the separators left at the end by removing the last component
+     */
+    private static void trimSeparators(List<String> tokens) {
+        while (!tokens.isEmpty() && SEPARATOR.equals(tokens.get(tokens.size() - 1))) {
+            tokens.remove(tokens.size() - 1);
+        }
+    }
+
+    private static Map<String, String> toMap(String[][] pairs) {
+        Map<String, String> map = new HashMap<>();
+
+        for (String[] pair : pairs) {
+            map.put(pair[0], pair[1]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+}
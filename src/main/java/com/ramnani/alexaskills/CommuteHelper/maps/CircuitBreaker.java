@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling an endpoint that is failing or slow, so that requests fail
+ * fast instead of each waiting out the client timeout.
+ *
+ * The outcomes of the calls are counted in a rolling window. Once the window
+ * has enough calls and too many of them failed or were slow, the breaker
+ * opens and rejects calls. After a while, it lets a single probe call
+ * through: the breaker closes if the probe succeeds, and opens again if not.
+ * Only these state changes are logged, not the calls rejected while open.
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = Logger.getLogger(CircuitBreaker.class);
+
+    private static final int BUCKETS = 10;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * When a breaker opens, and for how long
+     */
+    public static class Settings {
+
+        public static final Settings DEFAULT = new Settings(30, 10, 50, 3000, 80, 15);
+
+        private final long windowMillis;
+        private final int minCalls;
+        private final int errorRatePercent;
+        private final long slowCallMillis;
+        private final int slowCallRatePercent;
+        private final long openMillis;
+
+        public Settings(long windowSeconds, int minCalls, int errorRatePercent, long slowCallMillis,
+                        int slowCallRatePercent, long openSeconds) {
+            Validate.isTrue(windowSeconds >= BUCKETS, "The window must be at least %d seconds", BUCKETS);
+            Validate.isTrue(minCalls > 0, "minCalls must be positive: %d", minCalls);
+            Validate.isTrue(errorRatePercent > 0 && errorRatePercent <= 100, "Invalid error rate: %d", errorRatePercent);
+            Validate.isTrue(slowCallMillis > 0, "slowCallMillis must be positive: %d", slowCallMillis);
+            Validate.isTrue(slowCallRatePercent > 0 && slowCallRatePercent <= 100,
+                    "Invalid slow call rate: %d", slowCallRatePercent);
+            Validate.isTrue(openSeconds > 0, "openSeconds must be positive: %d", openSeconds);
+            this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+            this.minCalls = minCalls;
+            this.errorRatePercent = errorRatePercent;
+            this.slowCallMillis = slowCallMillis;
+            this.slowCallRatePercent = slowCallRatePercent;
+            this.openMillis = TimeUnit.SECONDS.toMillis(openSeconds);
+        }
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final LongSupplier clock;
+    private final long bucketMillis;
+
+    // The rolling window, one bucket per tenth of it
+    private final long[] bucketEpochs = new long[BUCKETS];
+    private final int[] calls = new int[BUCKETS];
+    private final int[] errors = new int[BUCKETS];
+    private final int[] slowCalls = new int[BUCKETS];
+
+    private State state = State.CLOSED;
+    private long openedAtMillis;
+    private boolean isProbing;
+
+    public CircuitBreaker(String name, Settings settings) {
+        this(name, settings, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, Settings settings, LongSupplier clock) {
+        Validate.notEmpty(name);
+        Validate.notNull(settings);
+        Validate.notNull(clock);
+        this.name = name;
+        this.settings = settings;
+        this.clock = clock;
+        this.bucketMillis = settings.windowMillis / BUCKETS;
+    }
+
+    /**
+     * @return Whether the call may be made. Every permitted call must be
+     *         followed by {@link #onSuccess(long)} or {@link #onError(long)}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        long now = clock.getAsLong();
+
+        if (state == State.OPEN && now - openedAtMillis >= settings.openMillis) {
+            state = State.HALF_OPEN;
+            isProbing = false;
+        }
+
+        if (state == State.HALF_OPEN && !isProbing) {
+            isProbing = true;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess(long latencyNanos) {
+        boolean isSlow = TimeUnit.NANOSECONDS.toMillis(latencyNanos) >= settings.slowCallMillis;
+
+        if (state == State.HALF_OPEN) {
+            if (isSlow) {
+                log.warn("Reopening the circuit breaker of " + name + ", the probe call was slow");
+                open();
+            } else {
+                close();
+            }
+            return;
+        }
+        record(false, isSlow);
+    }
+
+    public synchronized void onError(long latencyNanos) {
+        if (state == State.HALF_OPEN) {
+            log.warn("Reopening the circuit breaker of " + name + ", the probe call failed");
+            open();
+            return;
+        }
+        record(true, TimeUnit.NANOSECONDS.toMillis(latencyNanos) >= settings.slowCallMillis);
+    }
+
+    /**
+     * For a permitted call that wasn't made after all, e.g. because it was
+     * throttled
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            isProbing = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void record(boolean isError, boolean isSlow) {
+        if (state != State.CLOSED) {
+            // A call permitted before the breaker opened
+            return;
+        }
+        long epoch = clock.getAsLong() / bucketMillis;
+        int bucket = (int) (epoch % BUCKETS);
+
+        if (bucketEpochs[bucket] != epoch) {
+            bucketEpochs[bucket] = epoch;
+            calls[bucket] = 0;
+            errors[bucket] = 0;
+            slowCalls[bucket] = 0;
+        }
+        calls[bucket]++;
+        errors[bucket] += isError ? 1 : 0;
+        slowCalls[bucket] += isSlow ? 1 : 0;
+
+        int windowCalls = 0;
+        int windowErrors = 0;
+        int windowSlowCalls = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            if (epoch - bucketEpochs[i] < BUCKETS) {
+                windowCalls += calls[i];
+                windowErrors += errors[i];
+                windowSlowCalls += slowCalls[i];
+            }
+        }
+
+        if (windowCalls >= settings.minCalls
+                && (windowErrors * 100 >= settings.errorRatePercent * windowCalls
+                    || windowSlowCalls * 100 >= settings.slowCallRatePercent * windowCalls)) {
+            log.warn("Opening the circuit breaker of " + name + " after " + windowErrors + " errors and "
+                    + windowSlowCalls + " slow calls out of " + windowCalls);
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtMillis = clock.getAsLong();
+        isProbing = false;
+    }
+
+    private void close() {
+        log.info("Closing the circuit breaker of " + name);
+        state = State.CLOSED;
+        isProbing = false;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketEpochs[i] = 0;
+            calls[i] = 0;
+            errors[i] = 0;
+            slowCalls[i] = 0;
+        }
+    }
+}
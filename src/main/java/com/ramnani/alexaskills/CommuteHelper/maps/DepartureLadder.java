@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.DirectionsStep;
+import com.google.maps.model.TravelMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The known upcoming departures between an origin and a destination, in
+ * order of their first transit departure. Departures are dropped once they
+ * have left, or once they're too old to trust their real-time times.
+ * The routes are shared, so they must not be modified.
+ */
+class DepartureLadder {
+
+    private static final CompletableFuture<Void> NO_TOP_UP = CompletableFuture.completedFuture(null);
+
+    private final List<Rung> rungs = new ArrayList<>();
+    private boolean isToppingUp;
+
+    /**
+     * Completes once the top up in flight has added departures, or finished
+     */
+    private CompletableFuture<Void> topUp;
+
+    /**
+     * @return The routes departing at or after now, fetched after
+     *         minFetchedAtMillis, with the fetch time of the oldest
+     */
+    synchronized FetchedRoutes getUpcoming(long nowMillis, long minFetchedAtMillis) {
+        rungs.removeIf(rung -> rung.departureMillis < nowMillis || rung.fetchedAtMillis < minFetchedAtMillis);
+        DirectionsRoute[] routes = new DirectionsRoute[rungs.size()];
+        long fetchedAtMillis = nowMillis;
+
+        for (int i = 0; i < routes.length; i++) {
+            Rung rung = rungs.get(i);
+            routes[i] = rung.route;
+            fetchedAtMillis = Math.min(fetchedAtMillis, rung.fetchedAtMillis);
+        }
+        return new FetchedRoutes(routes, fetchedAtMillis);
+    }
+
+    /**
+     * Adds the routes that aren't known yet, keeping the ladder in order
+     */
+    synchronized void add(DirectionsRoute[] routes, long fetchedAtMillis) {
+        if (routes == null) {
+            return;
+        }
+
+        for (DirectionsRoute route : routes) {
+            DirectionsStep transitStep = firstTransitStep(route);
+
+            if (transitStep == null) {
+                continue;
+            }
+            Rung rung = new Rung(route, transitStep, fetchedAtMillis);
+            int index = 0;
+            boolean isKnown = false;
+
+            while (index < rungs.size() && rungs.get(index).departureMillis <= rung.departureMillis) {
+                if (rungs.get(index).id.equals(rung.id)) {
+                    isKnown = true;
+                    break;
+                }
+                index++;
+            }
+
+            if (!isKnown) {
+                rungs.add(index, rung);
+            }
+        }
+    }
+
+    /**
+     * When the ladder should be topped up from, the last known departure or now
+     */
+    synchronized long getLastDepartureMillis(long nowMillis) {
+        return rungs.isEmpty() ? nowMillis : Math.max(nowMillis, rungs.get(rungs.size() - 1).departureMillis);
+    }
+
+    /**
+     * @return false if a top up is already in flight
+     */
+    synchronized boolean startTopUp() {
+        if (isToppingUp) {
+            return false;
+        }
+        isToppingUp = true;
+        topUp = new CompletableFuture<>();
+        return true;
+    }
+
+    /**
+     * @return Completes when the top up in flight has added departures or
+     *         finished, or completed if there's none
+     */
+    synchronized CompletableFuture<Void> getTopUp() {
+        return topUp == null ? NO_TOP_UP : topUp;
+    }
+
+    /**
+     * Lets the requests waiting for the top up go once there are departures,
+     * while its remaining calls are still in flight
+     */
+    void releaseWaiters() {
+        CompletableFuture<Void> waited;
+
+        synchronized (this) {
+            if (rungs.isEmpty()) {
+                return;
+            }
+            waited = topUp;
+        }
+
+        if (waited != null) {
+            waited.complete(null);
+        }
+    }
+
+    void finishTopUp() {
+        CompletableFuture<Void> finished;
+
+        synchronized (this) {
+            finished = topUp;
+            topUp = null;
+            isToppingUp = false;
+        }
+
+        if (finished != null) {
+            finished.complete(null);
+        }
+    }
+
+    synchronized int size() {
+        return rungs.size();
+    }
+
+    private static DirectionsStep firstTransitStep(DirectionsRoute route) {
+        if (route.legs == null || route.legs.length == 0 || route.legs[0].steps == null) {
+            return null;
+        }
+
+        for (DirectionsStep step : route.legs[0].steps) {
+            if (step.travelMode == TravelMode.TRANSIT) {
+                return step.transitDetails == null || step.transitDetails.departureTime == null ? null : step;
+            }
+        }
+        return null;
+    }
+
+    private static class Rung {
+
+        private final DirectionsRoute route;
+        private final long departureMillis;
+        private final long fetchedAtMillis;
+
+        /**
+         * The line and departure, so the same departure returned by two
+         * calls is only kept once
+         */
+        private final String id;
+
+        Rung(DirectionsRoute route, DirectionsStep transitStep, long fetchedAtMillis) {
+            this.route = route;
+            this.departureMillis = transitStep.transitDetails.departureTime.getMillis();
+            this.fetchedAtMillis = fetchedAtMillis;
+            String line = transitStep.transitDetails.line == null ? "" : transitStep.transitDetails.line.shortName;
+            this.id = line + "@" + departureMillis + ":" + route.summary;
+        }
+    }
+}
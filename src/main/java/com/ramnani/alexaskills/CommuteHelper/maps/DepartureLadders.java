@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.joda.time.Instant;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a departure ladder per origin and destination, so that most requests
+ * are answered from the departures an earlier Directions call returned.
+ * When fewer than minDepartures upcoming departures are known, the ladder is
+ * topped up with Directions calls at later departure times, sent concurrently.
+ * A request that still has a departure to offer doesn't wait for the top up.
+ * One that finds the ladder empty waits until a top up call has added
+ * departures, even if another request started it, but no longer than its
+ * {@link Deadline}, or maxWaitMillis without one. The first call of a top up
+ * started by such a request is held to its deadline and priority, the others
+ * are sent along with it at {@link MapsPriority#PREFETCH}. Top up calls
+ * never run on the request's thread; when the executor is saturated, the calls
+ * that don't fit are skipped.
+ */
+public class DepartureLadders {
+
+    private static final Logger log = Logger.getLogger(DepartureLadders.class);
+
+    public static final int DEFAULT_MAX_LADDERS = 10000;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 3000;
+
+    private static final int THREADS = 4;
+    private static final int QUEUE_SIZE = 100;
+
+    /**
+     * Fetches transit directions departing at the given time. Returns null if
+     * the call failed.
+     */
+    public interface Fetcher {
+        DirectionsRoute[] fetch(String origin, String destination, Instant departureTime);
+    }
+
+    private final int minDepartures;
+    private final int topUpCalls;
+    private final long spacingMillis;
+    private final long maxAgeMillis;
+    private final int maxLadders;
+    private final long maxWaitMillis;
+    private final Executor executor;
+    private final ConcurrentMap<String, DepartureLadder> ladders = new ConcurrentHashMap<>();
+
+    public DepartureLadders(int minDepartures, int topUpCalls, long spacingMinutes, long maxAgeMinutes,
+                            int maxLadders, long maxWaitMillis) {
+        this(minDepartures, topUpCalls, spacingMinutes, maxAgeMinutes, maxLadders, maxWaitMillis, newExecutor());
+    }
+
+    DepartureLadders(int minDepartures, int topUpCalls, long spacingMinutes, long maxAgeMinutes,
+                     int maxLadders, long maxWaitMillis, Executor executor) {
+        Validate.isTrue(minDepartures > 0, "minDepartures must be positive: %d", minDepartures);
+        Validate.isTrue(topUpCalls > 0, "topUpCalls must be positive: %d", topUpCalls);
+        Validate.isTrue(spacingMinutes > 0, "spacingMinutes must be positive: %d", spacingMinutes);
+        Validate.isTrue(maxAgeMinutes > 0, "maxAgeMinutes must be positive: %d", maxAgeMinutes);
+        Validate.isTrue(maxLadders > 0, "maxLadders must be positive: %d", maxLadders);
+        Validate.isTrue(maxWaitMillis > 0, "maxWaitMillis must be positive: %d", maxWaitMillis);
+        Validate.notNull(executor);
+        this.minDepartures = minDepartures;
+        this.topUpCalls = topUpCalls;
+        this.spacingMillis = TimeUnit.MINUTES.toMillis(spacingMinutes);
+        this.maxAgeMillis = TimeUnit.MINUTES.toMillis(maxAgeMinutes);
+        this.maxLadders = maxLadders;
+        this.maxWaitMillis = maxWaitMillis;
+        this.executor = executor;
+    }
+
+    private static Executor newExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "departure-ladder-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns the upcoming departures from origin to destination, calling
+     * Directions only when none are known, or null if none could be fetched
+     */
+    public FetchedRoutes getUpcoming(String origin, String destination, Fetcher fetcher) {
+        return getUpcoming(origin + "|" + destination, origin, destination, fetcher);
+    }
+
+    /**
+     * @param key Names the ladder, for when different origin and destination
+     *            strings name the same endpoints
+     */
+    public FetchedRoutes getUpcoming(String key, String origin, String destination, Fetcher fetcher) {
+        long now = System.currentTimeMillis();
+        DepartureLadder ladder = getLadder(key);
+        FetchedRoutes routes = ladder.getUpcoming(now, now - maxAgeMillis);
+        int known = routes.getRoutes().length;
+
+        if (known >= minDepartures) {
+            return routes;
+        }
+
+        if (!ladder.startTopUp()) {
+            if (known > 0) {
+                return routes;
+            }
+            // Another request is topping up an empty ladder, wait for it rather than call too
+            return awaitTopUp(ladder, origin, destination, now, Deadline.current());
+        }
+        // Only a request finding the ladder empty waits for the top up, until a call has added departures
+        MapsPriority priority = known == 0 ? MapsPriority.current() : MapsPriority.PREFETCH;
+        Deadline deadline = known == 0 ? Deadline.current() : null;
+        topUp(ladder, origin, destination, fetcher, now, priority, deadline);
+
+        if (known > 0) {
+            return routes;
+        }
+        return awaitTopUp(ladder, origin, destination, now, deadline);
+    }
+
+    private FetchedRoutes awaitTopUp(DepartureLadder ladder, String origin, String destination,
+                                         long now, Deadline deadline) {
+        if (!await(ladder.getTopUp(), deadline)) {
+            log.warn("Gave up waiting for the departures from: " + EventLog.redact(origin)
+                    + " to: " + EventLog.redact(destination));
+            return null;
+        }
+        FetchedRoutes routes = ladder.getUpcoming(now, now - maxAgeMillis);
+        return routes.getRoutes().length == 0 ? null : routes;
+    }
+
+    private void topUp(DepartureLadder ladder, String origin, String destination, Fetcher fetcher,
+                       long now, MapsPriority priority, Deadline deadline) {
+        long from = ladder.getLastDepartureMillis(now);
+        List<CompletableFuture<Void>> calls = new ArrayList<>(topUpCalls);
+
+        for (int i = 0; i < topUpCalls; i++) {
+            Instant departureTime = new Instant(from + i * spacingMillis);
+            // The calls after the first don't hold up a waiting request
+            MapsPriority callPriority = i == 0 ? priority : MapsPriority.PREFETCH;
+            Deadline callDeadline = i == 0 ? deadline : null;
+
+            try {
+                calls.add(CompletableFuture.runAsync(() -> fetch(ladder, origin, destination, fetcher,
+                        departureTime, now, callPriority, callDeadline), executor));
+            } catch (RejectedExecutionException ex) {
+                log.warn("Skipped " + (topUpCalls - i) + " top up calls, the executor is saturated");
+                break;
+            }
+        }
+
+        if (calls.isEmpty()) {
+            ladder.finishTopUp();
+            return;
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[calls.size()]))
+                .whenComplete((result, ex) -> {
+                    ladder.finishTopUp();
+
+                    if (ex != null) {
+                        log.warn("Could not top up the departures from: " + EventLog.redact(origin)
+                                + " to: " + EventLog.redact(destination), ex);
+                    }
+                });
+    }
+
+    private static void fetch(DepartureLadder ladder, String origin, String destination, Fetcher fetcher,
+                              Instant departureTime, long now, MapsPriority priority, Deadline deadline) {
+        ladder.add(Deadline.call(deadline,
+                () -> MapsPriority.call(priority, () -> fetcher.fetch(origin, destination, departureTime))), now);
+        ladder.releaseWaiters();
+    }
+
+    /**
+     * @return false if the deadline, or maxWaitMillis without one, passed or
+     *         the thread was interrupted first
+     */
+    private boolean await(CompletableFuture<Void> topUp, Deadline deadline) {
+        long waitMillis = deadline == null ? maxWaitMillis : deadline.remainingMillis();
+
+        try {
+            topUp.get(waitMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private DepartureLadder getLadder(String key) {
+        DepartureLadder ladder = ladders.get(key);
+
+        if (ladder != null) {
+            return ladder;
+        }
+
+        if (ladders.size() >= maxLadders) {
+            Iterator<String> keys = ladders.keySet().iterator();
+
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        return ladders.computeIfAbsent(key, k -> new DepartureLadder());
+    }
+
+    public int size() {
+        return ladders.size();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.LatLng;
+import org.apache.commons.lang3.Validate;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches transit directions by the geohash cells of their endpoints and a
+ * departure time bucket, so that users living or working close to each
+ * other share the same Directions results. The directions are requested
+ * between the cell centers; callers adjust the walks at either end for the
+ * user's actual endpoints.
+ *
+ * An entry is only used within the departure bucket it was fetched in. The
+ * cached routes are shared, so they must not be modified.
+ */
+public class DirectionsCache {
+
+    private final int precision;
+    private final long bucketMillis;
+    private final int maxEntries;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public DirectionsCache(int precision, long bucketSeconds, int maxEntries) {
+        Validate.isTrue(precision > 0 && precision <= Geohash.MAX_PRECISION, "Invalid precision: %d", precision);
+        Validate.isTrue(bucketSeconds > 0, "Bucket must be positive: %d", bucketSeconds);
+        Validate.isTrue(maxEntries > 0, "maxEntries must be positive: %d", maxEntries);
+        this.precision = precision;
+        this.bucketMillis = TimeUnit.SECONDS.toMillis(bucketSeconds);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The cell the location falls in, at the configured precision
+     */
+    public String cell(LatLng location) {
+        return Geohash.encode(location, precision);
+    }
+
+    public String key(String originCell, String destinationCell, long departureMillis) {
+        return originCell + ":" + destinationCell + ":" + (departureMillis / bucketMillis);
+    }
+
+    /**
+     * @return The routes cached for the key, or null
+     */
+    public FetchedRoutes get(String key, long nowMillis) {
+        Entry entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAtMillis <= nowMillis) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.routes;
+    }
+
+    /**
+     * @param fetchedAtMillis When the routes were fetched, which also picks
+     *                        their departure bucket
+     */
+    public void put(String key, DirectionsRoute[] routes, long fetchedAtMillis) {
+        if (entries.size() >= maxEntries) {
+            evict(fetchedAtMillis);
+        }
+        long expiresAtMillis = (fetchedAtMillis / bucketMillis + 1) * bucketMillis;
+        entries.put(key, new Entry(new FetchedRoutes(routes, fetchedAtMillis), expiresAtMillis));
+    }
+
+    /**
+     * Drops the expired entries, or an arbitrary one if none has expired
+     */
+    private void evict(long nowMillis) {
+        entries.values().removeIf(entry -> entry.expiresAtMillis <= nowMillis);
+
+        if (entries.size() >= maxEntries) {
+            Iterator<String> keys = entries.keySet().iterator();
+
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+
+        private final FetchedRoutes routes;
+        private final long expiresAtMillis;
+
+        Entry(FetchedRoutes routes, long expiresAtMillis) {
+            this.routes = routes;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
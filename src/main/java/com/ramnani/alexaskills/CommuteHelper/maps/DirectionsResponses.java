@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.maps.internal.DateTimeAdapter;
+import com.google.maps.internal.DistanceAdapter;
+import com.google.maps.internal.DurationAdapter;
+import com.google.maps.internal.FareAdapter;
+import com.google.maps.internal.LatLngAdapter;
+import com.google.maps.internal.SafeEnumAdapter;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.Distance;
+import com.google.maps.model.Duration;
+import com.google.maps.model.Fare;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.TravelMode;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads Directions API responses checked in as classpath resources, parsed
+ * the same way the maps client parses a live response.
+ */
+public final class DirectionsResponses {
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(DateTime.class, new DateTimeAdapter())
+            .registerTypeAdapter(Distance.class, new DistanceAdapter())
+            .registerTypeAdapter(Duration.class, new DurationAdapter())
+            .registerTypeAdapter(Fare.class, new FareAdapter())
+            .registerTypeAdapter(LatLng.class, new LatLngAdapter())
+            .registerTypeAdapter(TravelMode.class, new SafeEnumAdapter<>(TravelMode.UNKNOWN))
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .create();
+
+    private DirectionsResponses() {
+    }
+
+    /**
+     * @return The routes of the response in the given classpath resource
+     */
+    public static DirectionsRoute[] load(String resource) throws IOException {
+        try (InputStream in = DirectionsResponses.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Directions response not found: " + resource);
+            }
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            return gson.fromJson(reader, Response.class).routes;
+        }
+    }
+
+    private static class Response {
+        private DirectionsRoute[] routes;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Directions routes with the time they were fetched, the oldest fetch when
+ * they come from several calls. The routes are shared, so they must not be
+ * modified.
+ */
+public class FetchedRoutes {
+
+    private final DirectionsRoute[] routes;
+    private final long fetchedAtMillis;
+
+    public FetchedRoutes(DirectionsRoute[] routes, long fetchedAtMillis) {
+        Validate.notNull(routes);
+        this.routes = routes;
+        this.fetchedAtMillis = fetchedAtMillis;
+    }
+
+    public DirectionsRoute[] getRoutes() {
+        return routes;
+    }
+
+    public long getFetchedAtMillis() {
+        return fetchedAtMillis;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.LatLng;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Geohash encoding of coordinates. A geohash names a cell of the map, and each
+ * extra character divides the cell into 32; at precision 7 a cell is about
+ * 150 by 150 meters.
+ */
+public final class Geohash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    public static final int MAX_PRECISION = 12;
+
+    private Geohash() {
+    }
+
+    public static String encode(LatLng location, int precision) {
+        Validate.notNull(location);
+        Validate.isTrue(precision > 0 && precision <= MAX_PRECISION, "Invalid precision: %d", precision);
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        char[] hash = new char[precision];
+        boolean isLongitude = true;
+
+        for (int i = 0; i < precision; i++) {
+            int index = 0;
+
+            for (int bit = 0; bit < 5; bit++) {
+                index <<= 1;
+
+                if (isLongitude) {
+                    double middle = (minLng + maxLng) / 2;
+
+                    if (location.lng >= middle) {
+                        index |= 1;
+                        minLng = middle;
+                    } else {
+                        maxLng = middle;
+                    }
+                } else {
+                    double middle = (minLat + maxLat) / 2;
+
+                    if (location.lat >= middle) {
+                        index |= 1;
+                        minLat = middle;
+                    } else {
+                        maxLat = middle;
+                    }
+                }
+                isLongitude = !isLongitude;
+            }
+            hash[i] = BASE32[index];
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Returns the center of the cell
+     */
+    public static LatLng decode(String geohash) {
+        Validate.notEmpty(geohash);
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        boolean isLongitude = true;
+
+        for (int i = 0; i < geohash.length(); i++) {
+            int index = indexOf(geohash.charAt(i));
+
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean isUpper = ((index >> bit) & 1) == 1;
+
+                if (isLongitude) {
+                    double middle = (minLng + maxLng) / 2;
+
+                    if (isUpper) {
+                        minLng = middle;
+                    } else {
+                        maxLng = middle;
+                    }
+                } else {
+                    double middle = (minLat + maxLat) / 2;
+
+                    if (isUpper) {
+                        minLat = middle;
+                    } else {
+                        maxLat = middle;
+                    }
+                }
+                isLongitude = !isLongitude;
+            }
+        }
+        return new LatLng((minLat + maxLat) / 2, (minLng + maxLng) / 2);
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < BASE32.length; i++) {
+            if (BASE32[i] == c) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid geohash character: " + c);
+    }
+
+    /**
+     * Great-circle distance between two points, in meters
+     */
+    public static double distanceMeters(LatLng from, LatLng to) {
+        double lat1 = Math.toRadians(from.lat);
+        double lat2 = Math.toRadians(to.lat);
+        double dLat = lat2 - lat1;
+        double dLng = Math.toRadians(to.lng - from.lng);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * 6371000 * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
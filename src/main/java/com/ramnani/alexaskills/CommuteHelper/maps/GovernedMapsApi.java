@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.GeocodingResult;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResponse;
+import org.apache.commons.lang3.Validate;
+import org.joda.time.Instant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Spreads the maps calls over a pool of API keys, each held to its own quota
+ * by the governor. A call waits for quota according to the priority of the
+ * calling thread, see {@link MapsPriority}, and fails with a
+ * {@link MapsThrottledException} if none is left in time.
+ */
+public class GovernedMapsApi implements MapsApi {
+
+    private final List<MapsApi> keys;
+    private final QpsGovernor governor;
+
+    /**
+     * @param keys One maps API per key, in the order of the governor's keys
+     */
+    public GovernedMapsApi(List<? extends MapsApi> keys, QpsGovernor governor) {
+        Validate.notEmpty(keys);
+        Validate.notNull(governor);
+        this.keys = new ArrayList<>(keys);
+        this.governor = governor;
+    }
+
+    @Override
+    public PlacesSearchResponse textSearch(String query) throws Exception {
+        return acquire().textSearch(query);
+    }
+
+    @Override
+    public GeocodingResult[] geocode(String address) throws Exception {
+        return acquire().geocode(address);
+    }
+
+    @Override
+    public TimeZone getTimeZone(LatLng location) throws Exception {
+        return acquire().getTimeZone(location);
+    }
+
+    /**
+     * Waits for quota on the calling thread, and only then starts the lookup
+     */
+    @Override
+    public CompletableFuture<TimeZone> getTimeZoneAsync(LatLng location) {
+        try {
+            return acquire().getTimeZoneAsync(location);
+        } catch (MapsThrottledException ex) {
+            CompletableFuture<TimeZone> future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+            return future;
+        }
+    }
+
+    @Override
+    public DirectionsRoute[] getTransitDirections(String origin, String destination, Instant departureTime)
+            throws Exception {
+        return acquire().getTransitDirections(origin, destination, departureTime);
+    }
+
+    @Override
+    public void prime() {
+        for (MapsApi key : keys) {
+            key.prime();
+        }
+    }
+
+    private MapsApi acquire() throws MapsThrottledException {
+        return keys.get(governor.acquire(MapsPriority.current()));
+    }
+}
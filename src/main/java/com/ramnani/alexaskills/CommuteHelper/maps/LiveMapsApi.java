@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.DirectionsApi;
+import com.google.maps.GeoApiContext;
+import com.google.maps.GeocodingApi;
+import com.google.maps.PendingResult;
+import com.google.maps.PlacesApi;
+import com.google.maps.TimeZoneApi;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.GeocodingResult;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResponse;
+import com.google.maps.model.TravelMode;
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import com.ramnani.alexaskills.CommuteHelper.deadline.DeadlineExceededException;
+import org.joda.time.Instant;
+
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends the requests to the Google Maps web services. A call made for a
+ * request with a {@link Deadline} waits no longer than the time left to it,
+ * and is cancelled when that runs out.
+ */
+public class LiveMapsApi implements MapsApi {
+
+    private final GeoApiContext geoApiContext;
+
+    public LiveMapsApi(String apiKey) {
+        geoApiContext = new GeoApiContext();
+        geoApiContext.setApiKey(apiKey);
+    }
+
+    /**
+     * Lets the client send up to qps requests per second, when the rate is
+     * governed in front of it
+     */
+    public LiveMapsApi(String apiKey, int qps) {
+        this(apiKey);
+        geoApiContext.setQueryRateLimit(qps);
+    }
+
+    @Override
+    public PlacesSearchResponse textSearch(String query) throws Exception {
+        return await(PlacesApi.textSearchQuery(geoApiContext, query));
+    }
+
+    @Override
+    public GeocodingResult[] geocode(String address) throws Exception {
+        return await(GeocodingApi.geocode(geoApiContext, address));
+    }
+
+    @Override
+    public TimeZone getTimeZone(LatLng location) throws Exception {
+        return await(TimeZoneApi.getTimeZone(geoApiContext, location));
+    }
+
+    @Override
+    public CompletableFuture<TimeZone> getTimeZoneAsync(LatLng location) {
+        CompletableFuture<TimeZone> future = new CompletableFuture<>();
+
+        TimeZoneApi.getTimeZone(geoApiContext, location).setCallback(new PendingResult.Callback<TimeZone>() {
+            @Override
+            public void onResult(TimeZone timeZone) {
+                future.complete(timeZone);
+            }
+
+            @Override
+            public void onFailure(Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public DirectionsRoute[] getTransitDirections(String origin, String destination, Instant departureTime)
+            throws Exception {
+        return await(DirectionsApi.getDirections(geoApiContext, origin, destination)
+                .mode(TravelMode.TRANSIT)
+                .alternatives(true)
+                .departureTime(departureTime));
+    }
+
+    @Override
+    public void prime() {
+        DirectionsApi.getDirections(geoApiContext, "origin", "destination")
+                .mode(TravelMode.TRANSIT)
+                .alternatives(true)
+                .departureTime(Instant.now());
+        PlacesApi.textSearchQuery(geoApiContext, "place");
+        GeocodingApi.geocode(geoApiContext, "address");
+    }
+
+    private static <T> T await(PendingResult<T> pending) throws Exception {
+        Deadline deadline = Deadline.current();
+
+        if (deadline == null) {
+            return pending.await();
+        }
+        long remainingMillis = deadline.remainingMillis();
+
+        if (remainingMillis <= 0) {
+            throw new DeadlineExceededException("No time left for the maps call");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        pending.setCallback(new PendingResult.Callback<T>() {
+            @Override
+            public void onResult(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+
+        try {
+            return future.get(remainingMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            pending.cancel();
+            throw new DeadlineExceededException("Maps call cancelled after " + remainingMillis + " ms");
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+}
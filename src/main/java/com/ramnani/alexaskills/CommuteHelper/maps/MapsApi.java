@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.GeocodingResult;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResponse;
+import org.joda.time.Instant;
+
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The raw maps API calls made by GoogleMapsService. The live implementation
+ * sends them to Google, the others record them to, or replay them from, a
+ * {@link MapsCorpus}.
+ */
+public interface MapsApi {
+
+    PlacesSearchResponse textSearch(String query) throws Exception;
+
+    GeocodingResult[] geocode(String address) throws Exception;
+
+    TimeZone getTimeZone(LatLng location) throws Exception;
+
+    CompletableFuture<TimeZone> getTimeZoneAsync(LatLng location);
+
+    /**
+     * Transit directions with alternatives, departing at the given time
+     */
+    DirectionsRoute[] getTransitDirections(String origin, String destination, Instant departureTime)
+            throws Exception;
+
+    /**
+     * Loads the classes used to make requests, without sending any
+     */
+    default void prime() {
+    }
+}
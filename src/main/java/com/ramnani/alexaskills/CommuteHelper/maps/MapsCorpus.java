@@ -0,0 +1,308 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.maps.model.LatLng;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read-only corpus of recorded maps API responses. The file is memory-mapped
+ * and indexed by request key when it's opened, and a response is only decoded
+ * when it's replayed.
+ *
+ * The file starts with {@link #MAGIC} and {@link #VERSION}, followed by one
+ * record per response, as written by {@link MapsCorpusWriter}:
+ * <pre>
+ *   int keyLength, byte[] key, long recordedAtMillis, long latencyMicros,
+ *   int valueLength, byte[] value
+ * </pre>
+ * Keys and values are UTF-8, values are the JSON of the response objects. A
+ * key recorded more than once is replayed round-robin.
+ */
+public class MapsCorpus {
+
+    private static final Logger log = Logger.getLogger(MapsCorpus.class);
+
+    static final int MAGIC = 0x43484D43;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+
+    /**
+     * Serializes the maps model classes, whose Joda and Currency fields Gson
+     * can't handle by reflection. Only used for the corpus, so the format
+     * doesn't need to match the web service responses.
+     */
+    static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(DateTime.class, new DateTimeAdapter().nullSafe())
+            .registerTypeAdapter(LocalTime.class, new LocalTimeAdapter().nullSafe())
+            .registerTypeAdapter(Currency.class, new CurrencyAdapter().nullSafe())
+            .create();
+
+    private final MappedByteBuffer buffer;
+    private final Map<String, Entries> index;
+    private final int size;
+
+    private MapsCorpus(MappedByteBuffer buffer, Map<String, Entries> index, int size) {
+        this.buffer = buffer;
+        this.index = index;
+        this.size = size;
+    }
+
+    /**
+     * Maps the corpus file into memory and indexes its records. A truncated
+     * last record, e.g. from a recording that was killed, is ignored.
+     */
+    public static MapsCorpus open(Path file) throws IOException {
+        Validate.notNull(file);
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Maps corpus is larger than 2 GB: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer reader = buffer.duplicate();
+
+        if (reader.remaining() < HEADER_BYTES || reader.getInt() != MAGIC) {
+            throw new IOException("Not a maps corpus: " + file);
+        }
+        int version = reader.getInt();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported maps corpus version " + version + ": " + file);
+        }
+        Map<String, Entries> index = new HashMap<>();
+        int size = 0;
+
+        while (reader.hasRemaining()) {
+            Entry entry = readEntry(reader);
+
+            if (entry == null) {
+                log.warn("Ignoring truncated record at offset " + reader.position() + " of " + file);
+                break;
+            }
+            index.computeIfAbsent(entry.key, key -> new Entries()).add(entry);
+            size++;
+        }
+        log.info("Loaded " + size + " maps responses for " + index.size() + " requests from " + file);
+        return new MapsCorpus(buffer, index, size);
+    }
+
+    private static Entry readEntry(ByteBuffer reader) {
+        if (reader.remaining() < 4) {
+            return null;
+        }
+        int keyLength = reader.getInt();
+
+        if (keyLength < 0 || reader.remaining() < keyLength + 20) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        reader.get(key);
+        long recordedAtMillis = reader.getLong();
+        long latencyMicros = reader.getLong();
+        int valueLength = reader.getInt();
+
+        if (valueLength < 0 || reader.remaining() < valueLength) {
+            return null;
+        }
+        int valueOffset = reader.position();
+        reader.position(valueOffset + valueLength);
+        return new Entry(new String(key, StandardCharsets.UTF_8), recordedAtMillis, latencyMicros,
+                valueOffset, valueLength);
+    }
+
+    /**
+     * Returns the next recorded response for the request, or null if it was
+     * never recorded.
+     */
+    public Entry next(String key) {
+        Entries entries = index.get(key);
+        return entries == null ? null : entries.next();
+    }
+
+    /**
+     * Decodes the recorded response. Every call returns new objects, so they
+     * can be modified by the caller.
+     */
+    public <T> T read(Entry entry, Class<T> type) {
+        byte[] value = new byte[entry.valueLength];
+        ByteBuffer reader = buffer.duplicate();
+        reader.position(entry.valueOffset);
+        reader.get(value);
+        return GSON.fromJson(new String(value, StandardCharsets.UTF_8), type);
+    }
+
+    /**
+     * The number of recorded responses
+     */
+    public int size() {
+        return size;
+    }
+
+    static String placesKey(String query) {
+        return "places\t" + query;
+    }
+
+    static String geocodeKey(String address) {
+        return "geocode\t" + address;
+    }
+
+    static String timeZoneKey(LatLng location) {
+        return String.format(Locale.ROOT, "timezone\t%.6f,%.6f", location.lat, location.lng);
+    }
+
+    /**
+     * The departure time isn't part of the key, replayed routes are moved to
+     * the requested departure time instead.
+     */
+    static String transitDirectionsKey(String origin, String destination) {
+        return "directions\ttransit\t" + origin + "\t" + destination;
+    }
+
+    /**
+     * A recorded response
+     */
+    public static class Entry {
+
+        private final String key;
+        private final long recordedAtMillis;
+        private final long latencyMicros;
+        private final int valueOffset;
+        private final int valueLength;
+
+        Entry(String key, long recordedAtMillis, long latencyMicros, int valueOffset, int valueLength) {
+            this.key = key;
+            this.recordedAtMillis = recordedAtMillis;
+            this.latencyMicros = latencyMicros;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getRecordedAtMillis() {
+            return recordedAtMillis;
+        }
+
+        public long getLatencyMicros() {
+            return latencyMicros;
+        }
+    }
+
+    private static class Entries {
+
+        private final List<Entry> entries = new ArrayList<>(1);
+        private final AtomicInteger next = new AtomicInteger();
+
+        void add(Entry entry) {
+            entries.add(entry);
+        }
+
+        Entry next() {
+            if (entries.size() == 1) {
+                return entries.get(0);
+            }
+            return entries.get((next.getAndIncrement() & Integer.MAX_VALUE) % entries.size());
+        }
+    }
+
+    private static class DateTimeAdapter extends TypeAdapter<DateTime> {
+
+        @Override
+        public void write(JsonWriter out, DateTime value) throws IOException {
+            out.beginObject();
+            out.name("millis").value(value.getMillis());
+            out.name("zone").value(value.getZone().getID());
+            out.endObject();
+        }
+
+        @Override
+        public DateTime read(JsonReader in) throws IOException {
+            long millis = 0;
+            DateTimeZone zone = DateTimeZone.UTC;
+            in.beginObject();
+
+            while (in.hasNext()) {
+                String name = in.nextName();
+
+                if ("millis".equals(name)) {
+                    millis = in.nextLong();
+                } else if ("zone".equals(name) && in.peek() != JsonToken.NULL) {
+                    zone = DateTimeZone.forID(in.nextString());
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new DateTime(millis, zone);
+        }
+    }
+
+    private static class LocalTimeAdapter extends TypeAdapter<LocalTime> {
+
+        @Override
+        public void write(JsonWriter out, LocalTime value) throws IOException {
+            out.value(value.toString());
+        }
+
+        @Override
+        public LocalTime read(JsonReader in) throws IOException {
+            return LocalTime.parse(in.nextString());
+        }
+    }
+
+    private static class CurrencyAdapter extends TypeAdapter<Currency> {
+
+        @Override
+        public void write(JsonWriter out, Currency value) throws IOException {
+            out.value(value.getCurrencyCode());
+        }
+
+        @Override
+        public Currency read(JsonReader in) throws IOException {
+            return Currency.getInstance(in.nextString());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Appends recorded responses to a corpus file in the format read by
+ * {@link MapsCorpus}. Every record is flushed when it's written, so a corpus
+ * recorded by a process that is killed stays readable.
+ */
+public class MapsCorpusWriter implements Closeable {
+
+    private final DataOutputStream out;
+
+    public MapsCorpusWriter(Path file) throws IOException {
+        Validate.notNull(file);
+        boolean isNew = !Files.exists(file) || Files.size(file) == 0;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true)));
+
+        if (isNew) {
+            out.writeInt(MapsCorpus.MAGIC);
+            out.writeInt(MapsCorpus.VERSION);
+            out.flush();
+        }
+    }
+
+    public synchronized void append(String key, long recordedAtMillis, long latencyMicros, String value)
+            throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(keyBytes.length);
+        out.write(keyBytes);
+        out.writeLong(recordedAtMillis);
+        out.writeLong(latencyMicros);
+        out.writeInt(valueBytes.length);
+        out.write(valueBytes);
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import java.util.function.Supplier;
+
+/**
+ * Who a maps call is made for. When the quota runs short, interactive calls
+ * go before prefetching, which goes before batch work. The lower classes also
+ * leave part of each key's burst to the higher ones, and give up later.
+ *
+ * The priority is set for the calling thread, and is interactive by default.
+ */
+public enum MapsPriority {
+
+    /**
+     * A user is waiting for the answer
+     */
+    INTERACTIVE(0.0, 250),
+
+    /**
+     * Fetching ahead what users will likely ask for
+     */
+    PREFETCH(0.2, 2000),
+
+    /**
+     * Background work like rechecking reminders
+     */
+    BATCH(0.5, 10000);
+
+    private static final ThreadLocal<MapsPriority> current = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    private final double reservedFraction;
+    private final long maxWaitMillis;
+
+    MapsPriority(double reservedFraction, long maxWaitMillis) {
+        this.reservedFraction = reservedFraction;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * The fraction of a key's burst this class leaves to the higher ones
+     */
+    double getReservedFraction() {
+        return reservedFraction;
+    }
+
+    long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public static MapsPriority current() {
+        return current.get();
+    }
+
+    /**
+     * Makes the maps calls of the supplier with the given priority
+     */
+    public static <T> T call(MapsPriority priority, Supplier<T> supplier) {
+        MapsPriority previous = current.get();
+        current.set(priority);
+
+        try {
+            return supplier.get();
+        } finally {
+            current.set(previous);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token buckets for a pool of API keys, each with its own quota. A call takes
+ * a token from the first key that has one, waiting for a refill up to the
+ * maximum wait of its priority, or the time left to the request's
+ * {@link Deadline} if that's shorter. While calls of a higher priority are
+ * waiting, lower ones don't take tokens. Waiting calls park on a lock
+ * condition rather than a monitor, so a virtual thread waiting for quota
+ * doesn't pin its carrier thread.
+ */
+public class QpsGovernor {
+
+    private static final MapsPriority[] PRIORITIES = MapsPriority.values();
+
+    private final double tokensPerMilli;
+    private final double burst;
+    private final int maxQueueLength;
+    private final double[] tokens;
+    private final long[] refilledAtMillis;
+    private final int[] waiting = new int[PRIORITIES.length];
+    private int nextKey;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a waiting call leaves the queue, which may let the lower
+     * priorities take tokens
+     */
+    private final Condition queueChanged = lock.newCondition();
+
+    /**
+     * @param keys How many API keys are pooled
+     * @param qpsPerKey The quota of each key
+     * @param burstPerKey How many calls a key can make at once after being idle
+     * @param maxQueueLength Calls of a priority are rejected right away when
+     *                       this many are already waiting
+     */
+    public QpsGovernor(int keys, double qpsPerKey, int burstPerKey, int maxQueueLength) {
+        Validate.isTrue(keys > 0, "keys must be positive: %d", keys);
+        Validate.isTrue(qpsPerKey > 0, "qpsPerKey must be positive: %f", qpsPerKey);
+        Validate.isTrue(burstPerKey > 0, "burstPerKey must be positive: %d", burstPerKey);
+        Validate.isTrue(maxQueueLength > 0, "maxQueueLength must be positive: %d", maxQueueLength);
+        this.tokensPerMilli = qpsPerKey / 1000;
+        this.burst = burstPerKey;
+        this.maxQueueLength = maxQueueLength;
+        this.tokens = new double[keys];
+        this.refilledAtMillis = new long[keys];
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < keys; i++) {
+            tokens[i] = burstPerKey;
+            refilledAtMillis[i] = now;
+        }
+    }
+
+    /**
+     * Waits for a token of any key
+     *
+     * @return The index of the key to make the call with
+     * @throws MapsThrottledException If no token became available in time
+     */
+    public int acquire(MapsPriority priority) throws MapsThrottledException {
+        Validate.notNull(priority);
+        String name = priority.name();
+        long start = System.nanoTime();
+        long maxWaitMillis = Math.min(priority.getMaxWaitMillis(), Deadline.remainingMillis(Long.MAX_VALUE));
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        int level = priority.ordinal();
+
+        lock.lock();
+
+        try {
+            if (waiting[level] >= maxQueueLength) {
+                Metrics.recordCount(Metrics.MAPS_PRIORITY, name, Metrics.REJECTIONS);
+                throw new MapsThrottledException(waiting[level] + " " + name + " maps calls are already waiting");
+            }
+            int key = isHigherPriorityWaiting(level) ? -1 : takeToken(priority, System.currentTimeMillis());
+
+            if (key >= 0) {
+                return key;
+            }
+            waiting[level]++;
+            Metrics.recordValue(Metrics.MAPS_PRIORITY, name, Metrics.QUEUE_DEPTH, waiting[level]);
+
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+
+                    if (!isHigherPriorityWaiting(level)) {
+                        key = takeToken(priority, now);
+
+                        if (key >= 0) {
+                            return key;
+                        }
+                    }
+
+                    if (now >= deadline) {
+                        Metrics.recordCount(Metrics.MAPS_PRIORITY, name, Metrics.REJECTIONS);
+                        throw new MapsThrottledException("No maps quota left for a " + name + " call");
+                    }
+                    queueChanged.awaitNanos(TimeUnit.MILLISECONDS.toNanos(
+                            Math.max(1, Math.min(deadline - now, millisUntilToken(priority)))));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MapsThrottledException("Interrupted while waiting for maps quota");
+            } finally {
+                waiting[level]--;
+                queueChanged.signalAll();
+                Metrics.recordLatency(Metrics.MAPS_PRIORITY, name, start);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueLength(MapsPriority priority) {
+        lock.lock();
+
+        try {
+            return waiting[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isHigherPriorityWaiting(int level) {
+        for (int i = 0; i < level; i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes a token from the next key that has one beyond the reserve of the priority
+     *
+     * @return The key, or -1 if none has
+     */
+    private int takeToken(MapsPriority priority, long now) {
+        double needed = tokensNeeded(priority);
+
+        for (int i = 0; i < tokens.length; i++) {
+            int key = (nextKey + i) % tokens.length;
+            refill(key, now);
+
+            if (tokens[key] >= needed) {
+                tokens[key]--;
+                nextKey = (key + 1) % tokens.length;
+                return key;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * One token plus the reserve of the higher priorities, as long as a full
+     * bucket has that many
+     */
+    private double tokensNeeded(MapsPriority priority) {
+        return Math.min(burst, 1 + burst * priority.getReservedFraction());
+    }
+
+    private void refill(int key, long now) {
+        tokens[key] = Math.min(burst, tokens[key] + (now - refilledAtMillis[key]) * tokensPerMilli);
+        refilledAtMillis[key] = now;
+    }
+
+    private long millisUntilToken(MapsPriority priority) {
+        double needed = tokensNeeded(priority);
+        double mostTokens = 0;
+
+        for (double keyTokens : tokens) {
+            mostTokens = Math.max(mostTokens, keyTokens);
+        }
+        return (long) Math.ceil((needed - mostTokens) / tokensPerMilli);
+    }
+}
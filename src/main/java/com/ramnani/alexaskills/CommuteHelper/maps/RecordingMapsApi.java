@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.GeocodingResult;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResponse;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.joda.time.Instant;
+
+import java.io.IOException;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passes the requests on to another MapsApi, usually the live one, and writes
+ * every successful response with its latency to a corpus. Failed requests
+ * aren't recorded, and failing to record never fails the request.
+ */
+public class RecordingMapsApi implements MapsApi {
+
+    private static final Logger log = Logger.getLogger(RecordingMapsApi.class);
+
+    private final MapsApi delegate;
+    private final MapsCorpusWriter writer;
+
+    public RecordingMapsApi(MapsApi delegate, MapsCorpusWriter writer) {
+        Validate.notNull(delegate);
+        Validate.notNull(writer);
+        this.delegate = delegate;
+        this.writer = writer;
+    }
+
+    @Override
+    public PlacesSearchResponse textSearch(String query) throws Exception {
+        long start = System.nanoTime();
+        PlacesSearchResponse response = delegate.textSearch(query);
+        record(MapsCorpus.placesKey(query), System.currentTimeMillis(), start, response);
+        return response;
+    }
+
+    @Override
+    public GeocodingResult[] geocode(String address) throws Exception {
+        long start = System.nanoTime();
+        GeocodingResult[] results = delegate.geocode(address);
+        record(MapsCorpus.geocodeKey(address), System.currentTimeMillis(), start, results);
+        return results;
+    }
+
+    @Override
+    public TimeZone getTimeZone(LatLng location) throws Exception {
+        long start = System.nanoTime();
+        TimeZone timeZone = delegate.getTimeZone(location);
+        record(MapsCorpus.timeZoneKey(location), System.currentTimeMillis(), start,
+                timeZone == null ? null : timeZone.getID());
+        return timeZone;
+    }
+
+    @Override
+    public CompletableFuture<TimeZone> getTimeZoneAsync(LatLng location) {
+        long start = System.nanoTime();
+
+        return delegate.getTimeZoneAsync(location).whenComplete((timeZone, ex) -> {
+            if (ex == null && timeZone != null) {
+                record(MapsCorpus.timeZoneKey(location), System.currentTimeMillis(), start, timeZone.getID());
+            }
+        });
+    }
+
+    @Override
+    public DirectionsRoute[] getTransitDirections(String origin, String destination, Instant departureTime)
+            throws Exception {
+        long start = System.nanoTime();
+        DirectionsRoute[] routes = delegate.getTransitDirections(origin, destination, departureTime);
+        // Recorded at the departure time, which replay moves the routes away from
+        record(MapsCorpus.transitDirectionsKey(origin, destination), departureTime.getMillis(), start, routes);
+        return routes;
+    }
+
+    @Override
+    public void prime() {
+        delegate.prime();
+    }
+
+    private void record(String key, long recordedAtMillis, long startNanos, Object response) {
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+
+        if (response == null) {
+            return;
+        }
+
+        try {
+            writer.append(key, recordedAtMillis, latencyMicros, MapsCorpus.GSON.toJson(response));
+        } catch (IOException | RuntimeException ex) {
+            log.error("Could not record maps response for " + key, ex);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.DirectionsStep;
+import com.google.maps.model.GeocodingResult;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResponse;
+import com.google.maps.model.TransitDetails;
+import org.apache.commons.lang3.Validate;
+import org.joda.time.DateTime;
+import org.joda.time.Instant;
+
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the requests from a recorded corpus, without any network calls. A
+ * request that was never recorded fails with an IllegalStateException, which
+ * GoogleMapsService handles like any other failed call.
+ *
+ * Replayed routes are moved to the requested departure time, so the
+ * suggestions are as far in the future as they were when recorded.
+ */
+public class ReplayMapsApi implements MapsApi {
+
+    private static final ScheduledExecutorService DELAYED_RESPONSES =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "maps-replay");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final MapsCorpus corpus;
+    private final Latency latency;
+
+    public ReplayMapsApi(MapsCorpus corpus, Latency latency) {
+        Validate.notNull(corpus);
+        Validate.notNull(latency);
+        this.corpus = corpus;
+        this.latency = latency;
+    }
+
+    @Override
+    public PlacesSearchResponse textSearch(String query) throws Exception {
+        MapsCorpus.Entry entry = replay(MapsCorpus.placesKey(query));
+        return corpus.read(entry, PlacesSearchResponse.class);
+    }
+
+    @Override
+    public GeocodingResult[] geocode(String address) throws Exception {
+        MapsCorpus.Entry entry = replay(MapsCorpus.geocodeKey(address));
+        return corpus.read(entry, GeocodingResult[].class);
+    }
+
+    @Override
+    public TimeZone getTimeZone(LatLng location) throws Exception {
+        MapsCorpus.Entry entry = replay(MapsCorpus.timeZoneKey(location));
+        return TimeZone.getTimeZone(corpus.read(entry, String.class));
+    }
+
+    @Override
+    public CompletableFuture<TimeZone> getTimeZoneAsync(LatLng location) {
+        CompletableFuture<TimeZone> future = new CompletableFuture<>();
+        MapsCorpus.Entry entry = corpus.next(MapsCorpus.timeZoneKey(location));
+
+        if (entry == null) {
+            future.completeExceptionally(notRecorded(MapsCorpus.timeZoneKey(location)));
+            return future;
+        }
+        TimeZone timeZone = TimeZone.getTimeZone(corpus.read(entry, String.class));
+        long delayMicros = latency.delayMicros(entry);
+
+        if (delayMicros <= 0) {
+            future.complete(timeZone);
+        } else {
+            DELAYED_RESPONSES.schedule(() -> future.complete(timeZone), delayMicros, TimeUnit.MICROSECONDS);
+        }
+        return future;
+    }
+
+    @Override
+    public DirectionsRoute[] getTransitDirections(String origin, String destination, Instant departureTime)
+            throws Exception {
+        MapsCorpus.Entry entry = replay(MapsCorpus.transitDirectionsKey(origin, destination));
+        DirectionsRoute[] routes = corpus.read(entry, DirectionsRoute[].class);
+        reanchor(routes, departureTime.getMillis() - entry.getRecordedAtMillis());
+        return routes;
+    }
+
+    private MapsCorpus.Entry replay(String key) throws InterruptedException {
+        MapsCorpus.Entry entry = corpus.next(key);
+
+        if (entry == null) {
+            throw notRecorded(key);
+        }
+        long delayMicros = latency.delayMicros(entry);
+
+        if (delayMicros > 0) {
+            TimeUnit.MICROSECONDS.sleep(delayMicros);
+        }
+        return entry;
+    }
+
+    private static IllegalStateException notRecorded(String key) {
+        return new IllegalStateException("No recorded maps response for " + key.replace('\t', ' '));
+    }
+
+    /**
+     * Moves every time in the routes by the offset
+     */
+    static void reanchor(DirectionsRoute[] routes, long offsetMillis) {
+        if (routes == null || offsetMillis == 0) {
+            return;
+        }
+
+        for (DirectionsRoute route : routes) {
+            if (route.legs == null) {
+                continue;
+            }
+
+            for (DirectionsLeg leg : route.legs) {
+                leg.departureTime = shift(leg.departureTime, offsetMillis);
+                leg.arrivalTime = shift(leg.arrivalTime, offsetMillis);
+                reanchor(leg.steps, offsetMillis);
+            }
+        }
+    }
+
+    private static void reanchor(DirectionsStep[] steps, long offsetMillis) {
+        if (steps == null) {
+            return;
+        }
+
+        for (DirectionsStep step : steps) {
+            TransitDetails details = step.transitDetails;
+
+            if (details != null) {
+                details.departureTime = shift(details.departureTime, offsetMillis);
+                details.arrivalTime = shift(details.arrivalTime, offsetMillis);
+            }
+            reanchor(step.steps, offsetMillis);
+        }
+    }
+
+    private static DateTime shift(DateTime time, long offsetMillis) {
+        return time == null ? null : time.plus(offsetMillis);
+    }
+
+    /**
+     * How long a replayed response takes
+     */
+    public static class Latency {
+
+        private final boolean recorded;
+        private final long fixedMicros;
+
+        private Latency(boolean recorded, long fixedMicros) {
+            this.recorded = recorded;
+            this.fixedMicros = fixedMicros;
+        }
+
+        /**
+         * Responses are returned immediately
+         */
+        public static Latency none() {
+            return new Latency(false, 0);
+        }
+
+        /**
+         * Responses take as long as they took when they were recorded
+         */
+        public static Latency recorded() {
+            return new Latency(true, 0);
+        }
+
+        /**
+         * Every response takes the given time
+         */
+        public static Latency fixed(long millis) {
+            Validate.isTrue(millis >= 0, "Latency can't be negative: %d", millis);
+            return new Latency(false, TimeUnit.MILLISECONDS.toMicros(millis));
+        }
+
+        /**
+         * Parses "none", "recorded" or a number of milliseconds
+         */
+        public static Latency parse(String value) {
+            String latency = value == null ? "" : value.trim();
+
+            if (latency.isEmpty() || "none".equalsIgnoreCase(latency)) {
+                return none();
+            }
+
+            if ("recorded".equalsIgnoreCase(latency)) {
+                return recorded();
+            }
+
+            try {
+                return fixed(Long.parseLong(latency));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid replay latency: " + value, ex);
+            }
+        }
+
+        long delayMicros(MapsCorpus.Entry entry) {
+            return recorded ? entry.getLatencyMicros() : fixedMicros;
+        }
+    }
+}
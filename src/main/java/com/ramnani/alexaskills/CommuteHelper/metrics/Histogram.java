@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, thread-safe histogram with HDR-style log-linear buckets. Every
+ * power of two is split into 16 linear sub-buckets, so a recorded value is
+ * reported with a relative error of at most about 6%, using a few hundred
+ * counters regardless of how many values are recorded.
+ *
+ * Values are non-negative longs, e.g. latencies in microseconds or sizes in bytes.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values above this (about 19 hours in microseconds) are recorded as this value
+     */
+    static final long MAX_VALUE = (1L << 36) - 1;
+
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long recordedValue) {
+        long value = Math.max(0, Math.min(recordedValue, MAX_VALUE));
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+
+        long max = maxValue.get();
+
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getSum() {
+        return totalSum.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the representative value of the bucket containing the given
+     * percentile (0 to 100), or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(representativeValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Copies the current state into a new histogram and resets this one. Values
+     * recorded concurrently end up in exactly one of the two.
+     */
+    public Histogram snapshotAndReset() {
+        Histogram snapshot = new Histogram();
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.getAndSet(i, 0);
+
+            if (count > 0) {
+                totalCount.addAndGet(-count);
+                snapshot.counts.set(i, count);
+                snapshot.totalCount.addAndGet(count);
+            }
+        }
+        snapshot.totalSum.set(totalSum.getAndSet(0));
+        snapshot.maxValue.set(maxValue.getAndSet(0));
+        return snapshot;
+    }
+
+    /**
+     * Calls the visitor with the representative value and the count of every
+     * non-empty bucket, in increasing order of value.
+     */
+    public void forEachBucket(BucketVisitor visitor) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+
+            if (count > 0) {
+                visitor.visit(representativeValue(i), count);
+            }
+        }
+    }
+
+    public interface BucketVisitor {
+        void visit(long value, long count);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long subBucket = (index & (SUB_BUCKET_COUNT - 1)) + SUB_BUCKET_COUNT;
+        return subBucket << shift;
+    }
+
+    static long representativeValue(int index) {
+        long lowest = lowestValue(index);
+        long width = lowestValue(index + 1) - lowest;
+        return lowest + (width - 1) / 2;
+    }
+}
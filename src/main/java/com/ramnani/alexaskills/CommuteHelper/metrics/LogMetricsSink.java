@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.metrics;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes metric documents through log4j, for local runs where the documents
+ * are only read by people.
+ */
+public class LogMetricsSink implements MetricsSink {
+
+    private static final Logger log = Logger.getLogger(LogMetricsSink.class);
+
+    @Override
+    public void emit(String document) {
+        log.info(document);
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.metrics;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide metrics for the skill. Latencies and sizes are kept in
+ * {@link Histogram}s and errors in counters, grouped by a single dimension such
+ * as the intent name or the downstream dependency. On flush, every group with
+ * data is written to the {@link MetricsSink} as one CloudWatch Embedded Metric
+ * Format document, and the group is reset.
+ *
+ * Each document reports p50, p90, p99, max and count of every histogram as
+ * metrics, and also carries the non-empty histogram buckets so that
+ * distributions can be re-aggregated from the logs.
+ */
+public final class Metrics {
+
+    private static final Logger log = Logger.getLogger(Metrics.class);
+
+    public static final String NAMESPACE = "CommuteHelper";
+
+    public static final String INTENT = "Intent";
+    public static final String DEPENDENCY = "Dependency";
+    public static final String SESSION = "Session";
+    public static final String MAPS_PRIORITY = "MapsPriority";
+    public static final String STAGE = "Stage";
+    public static final String EVENT_LOG = "EventLog";
+    public static final String WARM_POOL = "WarmPool";
+
+    public static final String LATENCY = "Latency";
+    public static final String ERRORS = "Errors";
+    public static final String ATTRIBUTES_SIZE = "AttributesSize";
+    public static final String QUEUE_DEPTH = "QueueDepth";
+    public static final String REJECTIONS = "Rejections";
+    public static final String BUDGET_USED = "BudgetUsedPercent";
+    public static final String DEADLINE_EXCEEDED = "DeadlineExceeded";
+    public static final String DROPPED = "Dropped";
+    public static final String COLD_START = "ColdStart";
+    public static final String WARM_HIT = "WarmHit";
+    public static final String PREWARMED = "Prewarmed";
+    public static final String PREFETCHED = "Prefetched";
+
+    public static final String GET_USER = "getUser";
+    public static final String SAVE_USER = "mapper.save";
+    public static final String DIRECTIONS = "Directions";
+    public static final String PLACES = "Places";
+    public static final String GEOCODING = "Geocoding";
+    public static final String TIMEZONE = "TimeZone";
+    public static final String DIRECTIVES = "Directives";
+
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final ConcurrentMap<String, MetricGroup> groups = new ConcurrentHashMap<>();
+
+    private static final AtomicLong lastFlushMillis = new AtomicLong(System.currentTimeMillis());
+
+    private static volatile MetricsSink sink = new StdoutMetricsSink();
+
+    private static volatile long flushIntervalMillis = 0;
+
+    private static volatile boolean enabled = true;
+
+    private Metrics() {
+    }
+
+    /**
+     * @param metricsSink Where flushed documents are written
+     * @param flushInterval Minimum time between two flushes done by {@link #flushIfDue()}.
+     *                      Zero flushes on every call.
+     */
+    public static void configure(MetricsSink metricsSink, long flushInterval, TimeUnit unit) {
+        Validate.notNull(metricsSink);
+        Validate.isTrue(flushInterval >= 0);
+        sink = metricsSink;
+        flushIntervalMillis = unit.toMillis(flushInterval);
+    }
+
+    /**
+     * Turns recording and flushing on or off, e.g. to keep synthetic priming
+     * requests out of the metrics
+     */
+    public static void setEnabled(boolean isEnabled) {
+        enabled = isEnabled;
+    }
+
+    /**
+     * Records the time elapsed since startNanos, a value of {@link System#nanoTime()}
+     */
+    public static void recordLatency(String dimension, String name, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        getGroup(dimension, name).histogram(LATENCY, Unit.MILLISECONDS).record(micros);
+    }
+
+    public static void recordDependencyLatency(String dependency, long startNanos) {
+        recordLatency(DEPENDENCY, dependency, startNanos);
+    }
+
+    public static void recordDependencyError(String dependency) {
+        recordError(DEPENDENCY, dependency);
+    }
+
+    public static void recordError(String dimension, String name) {
+        if (!enabled) {
+            return;
+        }
+        getGroup(dimension, name).counter(ERRORS).incrementAndGet();
+    }
+
+    public static void recordSize(String dimension, String name, String metric, long bytes) {
+        if (!enabled) {
+            return;
+        }
+        getGroup(dimension, name).histogram(metric, Unit.BYTES).record(bytes);
+    }
+
+    /**
+     * Records a sample of a count, like a queue depth, as a distribution
+     */
+    public static void recordValue(String dimension, String name, String metric, long value) {
+        if (!enabled) {
+            return;
+        }
+        getGroup(dimension, name).histogram(metric, Unit.COUNT).record(value);
+    }
+
+    public static void recordCount(String dimension, String name, String metric) {
+        if (!enabled) {
+            return;
+        }
+        getGroup(dimension, name).counter(metric).incrementAndGet();
+    }
+
+    /**
+     * Flushes if the configured interval has passed since the last flush
+     */
+    public static void flushIfDue() {
+        long last = lastFlushMillis.get();
+        long now = System.currentTimeMillis();
+
+        if (now - last >= flushIntervalMillis && lastFlushMillis.compareAndSet(last, now)) {
+            flush();
+        }
+    }
+
+    public static void flush() {
+        if (!enabled) {
+            return;
+        }
+        lastFlushMillis.set(System.currentTimeMillis());
+
+        for (MetricGroup group : groups.values()) {
+            try {
+                String document = group.snapshotToDocument();
+
+                if (document != null) {
+                    sink.emit(document);
+                }
+            } catch (Exception ex) {
+                log.error("Unable to flush metrics for " + group.dimensionName + "=" + group.dimensionValue, ex);
+            }
+        }
+    }
+
+    private static MetricGroup getGroup(String dimension, String name) {
+        String key = dimension + "\u0000" + name;
+        MetricGroup group = groups.get(key);
+
+        if (group == null) {
+            group = groups.computeIfAbsent(key, k -> new MetricGroup(dimension, name));
+        }
+        return group;
+    }
+
+    private enum Unit {
+        MILLISECONDS("Milliseconds", 1000.0),
+        BYTES("Bytes", 1.0),
+        COUNT("Count", 1.0);
+
+        private final String name;
+        private final double divisor;
+
+        Unit(String name, double divisor) {
+            this.name = name;
+            this.divisor = divisor;
+        }
+    }
+
+    private static class UnitHistogram {
+        private final Unit unit;
+        private final Histogram histogram = new Histogram();
+
+        UnitHistogram(Unit unit) {
+            this.unit = unit;
+        }
+    }
+
+    private static class MetricGroup {
+        private final String dimensionName;
+        private final String dimensionValue;
+        private final ConcurrentMap<String, UnitHistogram> histograms = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        MetricGroup(String dimensionName, String dimensionValue) {
+            this.dimensionName = dimensionName;
+            this.dimensionValue = dimensionValue;
+        }
+
+        Histogram histogram(String metric, Unit unit) {
+            UnitHistogram histogram = histograms.get(metric);
+
+            if (histogram == null) {
+                histogram = histograms.computeIfAbsent(metric, m -> new UnitHistogram(unit));
+            }
+            return histogram.histogram;
+        }
+
+        AtomicLong counter(String metric) {
+            AtomicLong counter = counters.get(metric);
+
+            if (counter == null) {
+                counter = counters.computeIfAbsent(metric, m -> new AtomicLong());
+            }
+            return counter;
+        }
+
+        /**
+         * @return The EMF document for the data recorded since the last call, or
+         *         null if nothing was recorded
+         */
+        String snapshotToDocument() throws Exception {
+            Map<String, Object> document = new LinkedHashMap<>();
+            List<Map<String, String>> metricDefinitions = new ArrayList<>();
+            document.put(dimensionName, dimensionValue);
+
+            for (Map.Entry<String, UnitHistogram> entry : histograms.entrySet()) {
+                String metric = entry.getKey();
+                Unit unit = entry.getValue().unit;
+                Histogram snapshot = entry.getValue().histogram.snapshotAndReset();
+
+                if (snapshot.getCount() == 0) {
+                    continue;
+                }
+
+                for (double percentile : PERCENTILES) {
+                    String name = metric + "P" + (int) percentile;
+                    document.put(name, snapshot.getValueAtPercentile(percentile) / unit.divisor);
+                    metricDefinitions.add(metricDefinition(name, unit.name));
+                }
+                document.put(metric + "Max", snapshot.getMax() / unit.divisor);
+                metricDefinitions.add(metricDefinition(metric + "Max", unit.name));
+                document.put(metric + "Count", snapshot.getCount());
+                metricDefinitions.add(metricDefinition(metric + "Count", "Count"));
+
+                List<Double> values = new ArrayList<>();
+                List<Long> counts = new ArrayList<>();
+                snapshot.forEachBucket((value, count) -> {
+                    values.add(value / unit.divisor);
+                    counts.add(count);
+                });
+                Map<String, Object> buckets = new LinkedHashMap<>();
+                buckets.put("Values", values);
+                buckets.put("Counts", counts);
+                document.put(metric + "Histogram", buckets);
+            }
+
+            for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+                long count = entry.getValue().getAndSet(0);
+
+                if (count > 0) {
+                    document.put(entry.getKey(), count);
+                    metricDefinitions.add(metricDefinition(entry.getKey(), "Count"));
+                }
+            }
+
+            if (metricDefinitions.isEmpty()) {
+                return null;
+            }
+            Map<String, Object> directive = new LinkedHashMap<>();
+            directive.put("Namespace", NAMESPACE);
+            directive.put("Dimensions", Collections.singletonList(Collections.singletonList(dimensionName)));
+            directive.put("Metrics", metricDefinitions);
+
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("Timestamp", System.currentTimeMillis());
+            metadata.put("CloudWatchMetrics", Collections.singletonList(directive));
+
+            Map<String, Object> emf = new LinkedHashMap<>();
+            emf.put("_aws", metadata);
+            emf.putAll(document);
+            return mapper.writeValueAsString(emf);
+        }
+
+        private static Map<String, String> metricDefinition(String name, String unit) {
+            Map<String, String> definition = new LinkedHashMap<>();
+            definition.put("Name", name);
+            definition.put("Unit", unit);
+            return definition;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.metrics;
+
+/**
+ * Writes metric documents to standard output, where Lambda forwards them to
+ * CloudWatch Logs unchanged so that CloudWatch can extract the metrics. The
+ * log4j appender can't be used for this because it prefixes every line.
+ */
+public class StdoutMetricsSink implements MetricsSink {
+
+    @Override
+    public void emit(String document) {
+        System.out.println(document);
+    }
+}
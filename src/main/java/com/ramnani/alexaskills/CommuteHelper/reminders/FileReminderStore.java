@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the reminders in an append-only journal of saves and deletes. The
+ * journal is buffered and only written on {@link #flush()}, which the scheduler
+ * calls once per tick, so a burst of reminders costs one write. Loading
+ * replays the journal and rewrites it with only the pending reminders, and so
+ * does a flush once compactAfterRecords records were superseded by later ones,
+ * through a temporary file that is atomically renamed over the journal.
+ */
+public class FileReminderStore implements ReminderStore, Closeable {
+
+    private static final Logger log = Logger.getLogger(FileReminderStore.class);
+
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+
+    public static final int DEFAULT_COMPACT_AFTER_RECORDS = 10000;
+
+    private final Path file;
+    private final int compactAfterRecords;
+    private DataOutputStream out;
+
+    /**
+     * The pending reminders, which a compaction keeps
+     */
+    private final Map<String, Reminder> pending = new LinkedHashMap<>();
+    private long journalRecords;
+
+    public FileReminderStore(Path file) {
+        this(file, DEFAULT_COMPACT_AFTER_RECORDS);
+    }
+
+    public FileReminderStore(Path file, int compactAfterRecords) {
+        Validate.notNull(file);
+        Validate.isTrue(compactAfterRecords > 0, "compactAfterRecords must be positive: %d", compactAfterRecords);
+        this.file = file;
+        this.compactAfterRecords = compactAfterRecords;
+    }
+
+    @Override
+    public synchronized void save(Reminder reminder) throws IOException {
+        DataOutputStream journal = journal();
+        journal.writeByte(SAVE);
+        write(journal, reminder);
+        pending.put(reminder.getUserId(), reminder);
+        journalRecords++;
+    }
+
+    @Override
+    public synchronized void delete(String userId) throws IOException {
+        DataOutputStream journal = journal();
+        journal.writeByte(DELETE);
+        journal.writeUTF(userId);
+        pending.remove(userId);
+        journalRecords++;
+    }
+
+    @Override
+    public synchronized Collection<Reminder> loadAll() throws IOException {
+        Map<String, Reminder> reminders = new LinkedHashMap<>();
+
+        if (Files.exists(file)) {
+            try (InputStream fileIn = Files.newInputStream(file);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+                while (true) {
+                    byte op = in.readByte();
+
+                    if (op == SAVE) {
+                        Reminder reminder = read(in);
+                        reminders.put(reminder.getUserId(), reminder);
+                    } else if (op == DELETE) {
+                        reminders.remove(in.readUTF());
+                    } else {
+                        throw new IOException("Corrupt reminder journal: " + file);
+                    }
+                }
+            } catch (EOFException ex) {
+                // end of the journal, or a record cut short by a crash
+            }
+        }
+        pending.clear();
+        pending.putAll(reminders);
+        compact();
+        log.info("Loaded " + reminders.size() + " pending reminders from " + file);
+        return reminders.values();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (journalRecords - pending.size() >= compactAfterRecords) {
+            log.info("Compacting the reminder journal " + file + " from " + journalRecords + " records to "
+                    + pending.size());
+            compact();
+        } else if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the pending reminders
+     */
+    private void compact() throws IOException {
+        close();
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream compactedOut = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(compacted)))) {
+            for (Reminder reminder : pending.values()) {
+                compactedOut.writeByte(SAVE);
+                write(compactedOut, reminder);
+            }
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalRecords = pending.size();
+    }
+
+    synchronized long getJournalRecords() {
+        return journalRecords;
+    }
+
+    private DataOutputStream journal() throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true)));
+        }
+        return out;
+    }
+
+    private static void write(DataOutputStream out, Reminder reminder) throws IOException {
+        out.writeUTF(reminder.getUserId());
+        out.writeUTF(reminder.getTransitType());
+        out.writeLong(reminder.getLeaveAtMillis());
+        out.writeBoolean(reminder.isChecked());
+    }
+
+    private static Reminder read(DataInputStream in) throws IOException {
+        return new Reminder(in.readUTF(), in.readUTF(), in.readLong(), in.readBoolean());
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes due reminders to the log, for local runs and until a notification
+ * channel is configured
+ */
+public class LogReminderSink implements ReminderSink {
+
+    private static final Logger log = Logger.getLogger(LogReminderSink.class);
+
+    @Override
+    public void deliver(Reminder reminder) {
+        log.info("Time to leave: " + reminder);
+    }
+}
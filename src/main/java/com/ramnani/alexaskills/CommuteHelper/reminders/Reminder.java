@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A pending "time to leave" reminder for a user. Reminders are kept in the
+ * buckets of a {@link TimingWheel} as an intrusive linked list, so a pending
+ * reminder costs this object, its user ID and one index entry, and nothing else.
+ */
+public class Reminder {
+
+    private final String userId;
+    private final String transitType;
+
+    /**
+     * When the user should leave
+     */
+    private volatile long leaveAtMillis;
+
+    /**
+     * Whether the departure has been re-checked, and the reminder is now waiting
+     * to be delivered at leaveAtMillis
+     */
+    private volatile boolean checked;
+
+    private volatile boolean cancelled;
+
+    /**
+     * The time the reminder is due in the wheel, and the next reminder in its
+     * bucket. Only used while holding the wheel's lock.
+     */
+    long dueAtMillis;
+    Reminder next;
+
+    public Reminder(String userId, String transitType, long leaveAtMillis, boolean checked) {
+        Validate.notEmpty(userId);
+        Validate.notEmpty(transitType);
+        this.userId = userId;
+        this.transitType = transitType.intern();
+        this.leaveAtMillis = leaveAtMillis;
+        this.checked = checked;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTransitType() {
+        return transitType;
+    }
+
+    public long getLeaveAtMillis() {
+        return leaveAtMillis;
+    }
+
+    public boolean isChecked() {
+        return checked;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void checked(long leaveAtMillis) {
+        this.leaveAtMillis = leaveAtMillis;
+        this.checked = true;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public String toString() {
+        return "Reminder{userId=" + userId + ", transitType=" + transitType
+                + ", leaveAtMillis=" + leaveAtMillis + ", checked=" + checked + "}";
+    }
+}
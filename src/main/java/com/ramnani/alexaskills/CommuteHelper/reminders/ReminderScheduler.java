@@ -0,0 +1,288 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules "time to leave" reminders. Each user has at most one pending
+ * reminder, which goes through two steps:
+ * <ol>
+ *   <li>Shortly before the user has to leave, the departure is re-checked,
+ *       since the transit schedule may have changed since it was set.</li>
+ *   <li>At the re-checked time, the reminder is handed to the sink.</li>
+ * </ol>
+ * The reminders wait in a {@link TimingWheel}, advanced by a single ticker
+ * thread. Due reminders are handed to the workers in batches, so a burst of
+ * reminders doesn't hold up the ticker, and the re-checks are spread over the
+ * second half of the lead time by user, so that reminders set for the same
+ * minute don't all call the Directions API at once.
+ */
+public class ReminderScheduler {
+
+    private static final Logger log = Logger.getLogger(ReminderScheduler.class);
+
+    static final long TICK_MILLIS = 1000;
+    private static final int BATCH_SIZE = 256;
+
+    private final ReminderStore store;
+    private final DepartureChecker departureChecker;
+    private final ReminderSink sink;
+    private final long recheckLeadMillis;
+    private final Executor workers;
+
+    /**
+     * Guarded by itself
+     */
+    private final TimingWheel wheel;
+
+    /**
+     * The store is only written from within compute calls on the user's
+     * entry, so that its writes for a user happen in the same order as the
+     * changes to the map
+     */
+    private final ConcurrentMap<String, Reminder> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService ticker;
+
+    /**
+     * @param recheckLeadMillis How long before the user has to leave the departure is re-checked
+     * @param workers Runs the re-checks and deliveries
+     */
+    public ReminderScheduler(ReminderStore store,
+                             DepartureChecker departureChecker,
+                             ReminderSink sink,
+                             long recheckLeadMillis,
+                             Executor workers) {
+        Validate.notNull(store);
+        Validate.notNull(departureChecker);
+        Validate.notNull(sink);
+        Validate.isTrue(recheckLeadMillis >= 0, "Lead time can't be negative: %d", recheckLeadMillis);
+        Validate.notNull(workers);
+        this.store = store;
+        this.departureChecker = departureChecker;
+        this.sink = sink;
+        this.recheckLeadMillis = recheckLeadMillis;
+        this.workers = workers;
+        this.wheel = new TimingWheel(TICK_MILLIS, System.currentTimeMillis());
+    }
+
+    /**
+     * Loads the pending reminders from the store and starts the ticker.
+     * Reminders that came due while stopped are handled on the first tick.
+     */
+    public synchronized void start() throws IOException {
+        Validate.validState(ticker == null, "Reminder scheduler already started");
+
+        for (Reminder reminder : store.loadAll()) {
+            pending.put(reminder.getUserId(), reminder);
+            enqueue(reminder);
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reminder-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tickSafely, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        log.info("Reminder scheduler started with " + pending.size() + " pending reminders.");
+    }
+
+    public synchronized void stop() {
+        if (ticker == null) {
+            return;
+        }
+        ticker.shutdown();
+        ticker = null;
+        flushStore();
+    }
+
+    /**
+     * Reminds the user to leave at the given time, replacing any reminder the
+     * user already has
+     */
+    public void schedule(String userId, String transitType, long leaveAtMillis) {
+        Reminder reminder = new Reminder(userId, transitType, leaveAtMillis, false);
+
+        pending.compute(userId, (id, previous) -> {
+            if (previous != null) {
+                previous.cancel();
+            }
+            save(reminder);
+            return reminder;
+        });
+        enqueue(reminder);
+    }
+
+    /**
+     * @return Whether the user had a pending reminder
+     */
+    public boolean cancel(String userId) {
+        boolean[] cancelled = { false };
+
+        pending.computeIfPresent(userId, (id, reminder) -> {
+            reminder.cancel();
+            delete(id);
+            cancelled[0] = true;
+            return null;
+        });
+        return cancelled[0];
+    }
+
+    public Reminder getPendingReminder(String userId) {
+        return pending.get(userId);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void enqueue(Reminder reminder) {
+        long dueAtMillis = reminder.isChecked() ? reminder.getLeaveAtMillis() : recheckAt(reminder);
+
+        synchronized (wheel) {
+            wheel.add(reminder, dueAtMillis);
+        }
+    }
+
+    /**
+     * Between the lead time and half of it before the user has to leave,
+     * depending on the user
+     */
+    long recheckAt(Reminder reminder) {
+        long spread = Math.floorMod(reminder.getUserId().hashCode(), recheckLeadMillis / 2 + 1);
+        return reminder.getLeaveAtMillis() - recheckLeadMillis + spread;
+    }
+
+    private void tickSafely() {
+        try {
+            tick(System.currentTimeMillis());
+        } catch (RuntimeException ex) {
+            log.error("Error advancing the reminders.", ex);
+        }
+    }
+
+    void tick(long nowMillis) {
+        List<Reminder> due;
+
+        synchronized (wheel) {
+            due = wheel.advance(nowMillis);
+        }
+
+        for (int i = 0; i < due.size(); i += BATCH_SIZE) {
+            List<Reminder> batch = due.subList(i, Math.min(i + BATCH_SIZE, due.size()));
+            workers.execute(() -> process(batch));
+        }
+        flushStore();
+    }
+
+    private void process(List<Reminder> batch) {
+        for (Reminder reminder : batch) {
+            if (reminder.isCancelled()) {
+                continue;
+            }
+
+            try {
+                if (reminder.isChecked()) {
+                    deliver(reminder);
+                } else {
+                    recheck(reminder);
+                }
+            } catch (RuntimeException ex) {
+                log.error("Error handling reminder: " + reminder, ex);
+            }
+        }
+    }
+
+    private void recheck(Reminder reminder) {
+        long leaveAtMillis = departureChecker.recheck(reminder);
+
+        if (reminder.isCancelled()) {
+            // replaced or cancelled while being checked
+            return;
+        }
+
+        if (leaveAtMillis < 0) {
+            log.info("No departure left for reminder: " + reminder);
+            remove(reminder);
+            return;
+        }
+        Reminder current = pending.computeIfPresent(reminder.getUserId(), (userId, pendingReminder) -> {
+            if (pendingReminder == reminder) {
+                reminder.checked(leaveAtMillis);
+                save(reminder);
+            }
+            return pendingReminder;
+        });
+
+        if (current == reminder) {
+            enqueue(reminder);
+        }
+    }
+
+    private void deliver(Reminder reminder) {
+        if (remove(reminder)) {
+            sink.deliver(reminder);
+        }
+    }
+
+    private boolean remove(Reminder reminder) {
+        boolean[] removed = { false };
+
+        pending.computeIfPresent(reminder.getUserId(), (userId, pendingReminder) -> {
+            if (pendingReminder != reminder) {
+                return pendingReminder;
+            }
+            delete(userId);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void save(Reminder reminder) {
+        try {
+            store.save(reminder);
+        } catch (IOException ex) {
+            log.error("Unable to persist reminder: " + reminder, ex);
+        }
+    }
+
+    private void delete(String userId) {
+        try {
+            store.delete(userId);
+        } catch (IOException ex) {
+            log.error("Unable to delete persisted reminder for user: " + userId, ex);
+        }
+    }
+
+    private void flushStore() {
+        try {
+            store.flush();
+        } catch (IOException ex) {
+            log.error("Unable to flush reminders.", ex);
+        }
+    }
+}
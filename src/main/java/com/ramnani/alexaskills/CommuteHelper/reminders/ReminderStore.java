@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Keeps the pending reminders, so that they survive a restart
+ */
+public interface ReminderStore {
+
+    /**
+     * Adds or replaces the user's reminder
+     */
+    void save(Reminder reminder) throws IOException;
+
+    void delete(String userId) throws IOException;
+
+    /**
+     * Returns every pending reminder
+     */
+    Collection<Reminder> loadAll() throws IOException;
+
+    /**
+     * Makes the changes so far durable
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel, as in the classic Linux kernel timers. Level 0
+ * has a bucket per tick for the next 64 ticks, and every level above covers 64
+ * times the span of the one below. A reminder is added to the coarsest level
+ * it fits in, and moved down a level each time the level below wraps around,
+ * so adding is constant time and advancing costs only the reminders that are
+ * due, however many are pending.
+ *
+ * With 1 second ticks, the four levels cover about 194 days. Reminders further
+ * out are kept in the last bucket of the top level until they fit.
+ *
+ * Not thread-safe.
+ */
+public class TimingWheel {
+
+    private static final int LEVEL_BITS = 6;
+    private static final int SLOTS = 1 << LEVEL_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA_TICKS = (1L << (LEVEL_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Reminder[][] buckets = new Reminder[LEVELS][SLOTS];
+
+    /**
+     * Every tick before this one has been advanced past
+     */
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        Validate.isTrue(tickMillis > 0, "Tick must be positive: %d", tickMillis);
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Adds the reminder to be returned by the first {@link #advance(long)} to
+     * its due time. A reminder that is already due is returned by the next one.
+     */
+    public void add(Reminder reminder, long dueAtMillis) {
+        reminder.dueAtMillis = dueAtMillis;
+        insert(reminder);
+        size++;
+    }
+
+    private void insert(Reminder reminder) {
+        long tick = Math.max(reminder.dueAtMillis / tickMillis, currentTick);
+        long delta = Math.min(tick - currentTick, MAX_DELTA_TICKS);
+        tick = currentTick + delta;
+        int level = 0;
+
+        while (delta >= (1L << (LEVEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (tick >>> (LEVEL_BITS * level)) & SLOT_MASK;
+        reminder.next = buckets[level][slot];
+        buckets[level][slot] = reminder;
+    }
+
+    /**
+     * Removes and returns the reminders due at or before the given time,
+     * including cancelled ones, which the caller is expected to skip.
+     */
+    public List<Reminder> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<Reminder> due = new ArrayList<>();
+
+        while (currentTick <= targetTick) {
+            cascade();
+            int slot = (int) currentTick & SLOT_MASK;
+            Reminder reminder = buckets[0][slot];
+            buckets[0][slot] = null;
+
+            while (reminder != null) {
+                Reminder next = reminder.next;
+                reminder.next = null;
+                due.add(reminder);
+                reminder = next;
+            }
+            currentTick++;
+
+            if (size == due.size()) {
+                // nothing else is pending, so skip the empty ticks
+                currentTick = Math.max(currentTick, targetTick + 1);
+            }
+        }
+        size -= due.size();
+        return due;
+    }
+
+    /**
+     * When a level wraps around, moves the reminders in the next bucket of each
+     * level above it down to the levels they now fit in
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (LEVEL_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) (currentTick >>> (LEVEL_BITS * level)) & SLOT_MASK;
+            Reminder reminder = buckets[level][slot];
+            buckets[level][slot] = null;
+
+            while (reminder != null) {
+                Reminder next = reminder.next;
+                insert(reminder);
+                reminder = next;
+            }
+        }
+    }
+
+    /**
+     * The number of reminders in the wheel, including cancelled ones that
+     * haven't come due yet
+     */
+    public int size() {
+        return size;
+    }
+}
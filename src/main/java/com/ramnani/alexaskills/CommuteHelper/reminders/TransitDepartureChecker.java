@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import com.ramnani.alexaskills.CommuteHelper.GoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import com.ramnani.alexaskills.CommuteHelper.TransitSuggestion;
+import com.ramnani.alexaskills.CommuteHelper.maps.MapsPriority;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+import org.joda.time.DateTime;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asks the Directions API for the user's transit to work around the time the
+ * reminder was scheduled for, and reminds the user to leave for the departure
+ * nearest to it that can still be made. The rechecks are batch work, so users
+ * asking for their next bus go first.
+ */
+public class TransitDepartureChecker implements DepartureChecker {
+
+    private static final Logger log = Logger.getLogger(TransitDepartureChecker.class);
+
+    private static final String WORK_KEY = "work";
+
+    /**
+     * How much earlier than scheduled the departure may now leave
+     */
+    static final long SLACK_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final GoogleMapsService googleMapsService;
+    private final TransitHelperDao transitHelperDao;
+
+    public TransitDepartureChecker(GoogleMapsService googleMapsService, TransitHelperDao transitHelperDao) {
+        Validate.notNull(googleMapsService);
+        Validate.notNull(transitHelperDao);
+        this.googleMapsService = googleMapsService;
+        this.transitHelperDao = transitHelperDao;
+    }
+
+    @Override
+    public long recheck(Reminder reminder) {
+        TransitUser user = transitHelperDao.getUser(reminder.getUserId());
+        Map<String, String> destinations = user == null ? null : user.getDestinations();
+
+        if (destinations == null || !destinations.containsKey(WORK_KEY)) {
+            log.warn("User or work address no longer exists for reminder: " + reminder);
+            return -1;
+        }
+        long now = System.currentTimeMillis();
+        DateTime departedAfter = new DateTime(Math.max(now, reminder.getLeaveAtMillis() - SLACK_MILLIS));
+        List<TransitSuggestion> suggestions = MapsPriority.call(MapsPriority.BATCH,
+                () -> googleMapsService.getTransitToDestinationDepartingAfter(
+                        reminder.getTransitType(), user.getHomeAddress(), user.getHomeLatLng(),
+                        destinations.get(WORK_KEY), user.getDestinationLatLng(WORK_KEY), departedAfter));
+
+        if (suggestions == null) {
+            // keep the time the reminder was scheduled with, rather than not reminding at all
+            return reminder.getLeaveAtMillis();
+        }
+
+        long nearest = -1;
+
+        for (TransitSuggestion suggestion : suggestions) {
+            long leaveAt = now + suggestion.getLeavingTimeInSeconds() * 1000L;
+
+            if (leaveAt >= now && (nearest < 0 || Math.abs(leaveAt - reminder.getLeaveAtMillis())
+                    < Math.abs(nearest - reminder.getLeaveAtMillis()))) {
+                nearest = leaveAt;
+            }
+        }
+        return nearest;
+    }
+}
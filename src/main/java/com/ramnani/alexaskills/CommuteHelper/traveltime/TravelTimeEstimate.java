@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.traveltime;
+
+/**
+ * Typical travel times of a user at some time of the week, in minutes, with
+ * their standard deviations, and the destination and vehicle type of the
+ * trips they were learnt from. Trips that usually take longer than the
+ * model's range only have their observations.
+ */
+public class TravelTimeEstimate {
+
+    private final int observations;
+    private final String destination;
+    private final String vehicleType;
+    private final boolean beyondRange;
+    private final double totalMinutes;
+    private final double totalDeviationMinutes;
+    private final double walkingMinutes;
+    private final double transitMinutes;
+
+    TravelTimeEstimate(int observations, String destination, String vehicleType, double totalMinutes,
+                       double totalDeviationMinutes, double walkingMinutes, double transitMinutes) {
+        this(observations, destination, vehicleType, false, totalMinutes, totalDeviationMinutes,
+                walkingMinutes, transitMinutes);
+    }
+
+    /**
+     * An estimate of trips that usually take {@link #getRangeMinutes()} or more
+     */
+    TravelTimeEstimate(int observations, String destination, String vehicleType) {
+        this(observations, destination, vehicleType, true, UserTravelTimes.RANGE_MINUTES, 0, 0, 0);
+    }
+
+    private TravelTimeEstimate(int observations, String destination, String vehicleType, boolean beyondRange,
+                               double totalMinutes, double totalDeviationMinutes,
+                               double walkingMinutes, double transitMinutes) {
+        this.observations = observations;
+        this.destination = destination;
+        this.vehicleType = vehicleType;
+        this.beyondRange = beyondRange;
+        this.totalMinutes = totalMinutes;
+        this.totalDeviationMinutes = totalDeviationMinutes;
+        this.walkingMinutes = walkingMinutes;
+        this.transitMinutes = transitMinutes;
+    }
+
+    /**
+     * How many suggestions the estimate is based on, weighted towards recent ones
+     */
+    public int getObservations() {
+        return observations;
+    }
+
+    /**
+     * The name of the user's destination, e.g. "work"
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * The vehicle type of the routes, as the Directions API names it, e.g. "Bus"
+     */
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    /**
+     * If the trips usually take {@link #getRangeMinutes()} or more, in which
+     * case only the observations are known
+     */
+    public boolean isBeyondRange() {
+        return beyondRange;
+    }
+
+    /**
+     * The longest travel time that's estimated
+     */
+    public static int getRangeMinutes() {
+        return UserTravelTimes.RANGE_MINUTES;
+    }
+
+    public double getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    public double getTotalDeviationMinutes() {
+        return totalDeviationMinutes;
+    }
+
+    public double getWalkingMinutes() {
+        return walkingMinutes;
+    }
+
+    public double getTransitMinutes() {
+        return transitMinutes;
+    }
+
+    @Override
+    public String toString() {
+        return "TravelTimeEstimate{observations=" + observations
+                + ", destination=" + destination
+                + ", vehicleType=" + vehicleType
+                + ", beyondRange=" + beyondRange
+                + ", totalMinutes=" + totalMinutes
+                + ", totalDeviationMinutes=" + totalDeviationMinutes
+                + ", walkingMinutes=" + walkingMinutes
+                + ", transitMinutes=" + transitMinutes + "}";
+    }
+}
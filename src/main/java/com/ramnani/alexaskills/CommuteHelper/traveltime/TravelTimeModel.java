@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.traveltime;
+
+import com.google.maps.model.Duration;
+import com.ramnani.alexaskills.CommuteHelper.TransitSuggestion;
+import org.apache.commons.lang3.Validate;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Learns how long each user's commute typically takes by transit type, day of
+ * the week and time of day, from the suggestions the Directions API returns,
+ * so that the travel time can be answered without calling it. Each departure
+ * is counted once, and stale suggestions aren't counted. Recording a
+ * suggestion increments three counters.
+ *
+ * The model is kept in memory, so it's learnt per container or server. A user
+ * takes at most {@value #MAX_BYTES_PER_TYPE} bytes of histograms per transit
+ * type, for up to {@value #MAX_TRANSIT_TYPES} types, and only as many users
+ * as configured are kept. Past that, arbitrary users are dropped.
+ */
+public class TravelTimeModel {
+
+    public static final int DEFAULT_MAX_USERS = 100000;
+
+    static final int MAX_BYTES_PER_TYPE = UserTravelTimes.DAYS * UserTravelTimes.PERIODS_PER_DAY
+            * 3 * (UserTravelTimes.BINS + 1);
+
+    static final int MAX_TRANSIT_TYPES = 4;
+
+    private static final int MIN_OBSERVATIONS = 3;
+
+    private final int maxUsers;
+    private final ConcurrentMap<String, ConcurrentMap<String, UserTravelTimes>> users = new ConcurrentHashMap<>();
+
+    public TravelTimeModel() {
+        this(DEFAULT_MAX_USERS);
+    }
+
+    public TravelTimeModel(int maxUsers) {
+        Validate.isTrue(maxUsers > 0, "maxUsers must be positive: %d", maxUsers);
+        this.maxUsers = maxUsers;
+    }
+
+    /**
+     * Records the durations of the suggestion for the transit type the user
+     * asked for, in the slot of its leaving time in the user's timezone
+     *
+     * @param destination The name of the destination the suggestion goes to, e.g. "work"
+     */
+    public void record(String userId, String destination, String transitType, TransitSuggestion suggestion,
+                       DateTimeZone timeZone) {
+        Validate.notNull(userId);
+        Validate.notBlank(destination);
+        Validate.notBlank(transitType);
+        Validate.notNull(suggestion);
+        Validate.notNull(timeZone);
+        DateTime leavingTime = suggestion.getWalkingStartTime() != null
+                ? suggestion.getWalkingStartTime() : suggestion.getTransitStartTime();
+
+        if (leavingTime == null || suggestion.getTotalDuration() == null
+                || suggestion.getStaleMinutes() > 0) {
+            return;
+        }
+        ConcurrentMap<String, UserTravelTimes> types = users.get(userId);
+
+        if (types == null) {
+            evictIfFull();
+            types = users.computeIfAbsent(userId, id -> new ConcurrentHashMap<>());
+        }
+        String type = transitType.toLowerCase(Locale.US);
+        UserTravelTimes travelTimes = types.get(type);
+
+        if (travelTimes == null) {
+            if (types.size() >= MAX_TRANSIT_TYPES) {
+                return;
+            }
+            travelTimes = types.computeIfAbsent(type, t -> new UserTravelTimes());
+        }
+
+        if (!travelTimes.firstSeen(departure(suggestion, leavingTime))) {
+            return;
+        }
+        travelTimes.record(slot(leavingTime.withZone(timeZone)), destination, suggestion.getTransitType(),
+                seconds(suggestion.getTotalDuration()),
+                seconds(suggestion.getWalkingDuration()),
+                seconds(suggestion.getTransitDuration()));
+    }
+
+    /**
+     * @param transitType The transit type, or null for the one observed most
+     *                    often at that time of the week
+     * @return The user's typical travel times when leaving at the given time,
+     *         or null if not enough has been observed at that time of the week
+     */
+    public TravelTimeEstimate estimate(String userId, String transitType, DateTime leavingTime) {
+        ConcurrentMap<String, UserTravelTimes> types = users.get(userId);
+
+        if (types == null) {
+            return null;
+        }
+        int slot = slot(leavingTime);
+
+        if (transitType != null) {
+            UserTravelTimes travelTimes = types.get(transitType.toLowerCase(Locale.US));
+            return travelTimes == null ? null : travelTimes.estimate(slot, MIN_OBSERVATIONS);
+        }
+        TravelTimeEstimate best = null;
+
+        for (UserTravelTimes travelTimes : types.values()) {
+            TravelTimeEstimate estimate = travelTimes.estimate(slot, MIN_OBSERVATIONS);
+
+            if (estimate != null && (best == null || estimate.getObservations() > best.getObservations())) {
+                best = estimate;
+            }
+        }
+        return best;
+    }
+
+    private void evictIfFull() {
+        if (users.size() < maxUsers) {
+            return;
+        }
+        Iterator<String> iterator = users.keySet().iterator();
+
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static long departure(TransitSuggestion suggestion, DateTime leavingTime) {
+        DateTime departureTime = suggestion.getTransitStartTime() != null
+                ? suggestion.getTransitStartTime() : leavingTime;
+        return departureTime.getMillis() * 31 + Objects.hashCode(suggestion.getTransitId());
+    }
+
+    private static int slot(DateTime time) {
+        return UserTravelTimes.slot(time.getDayOfWeek(), time.getHourOfDay());
+    }
+
+    private static long seconds(Duration duration) {
+        return duration == null ? -1 : duration.inSeconds;
+    }
+}
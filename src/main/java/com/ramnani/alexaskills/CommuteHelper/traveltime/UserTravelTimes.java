@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.traveltime;
+
+/**
+ * The travel time histograms of one user and transit type. There's a slot per
+ * day of the week and three hour period of the day, allocated the first time a
+ * suggestion falls in it, so a user who only commutes on weekday mornings has
+ * five slots. Each slot holds three histograms, for the total, walking and transit
+ * duration, of {@link #BINS} byte counters each, and a counter of the durations of
+ * {@link #RANGE_MINUTES} minutes or more, which aren't binned.
+ *
+ * When a counter would overflow, all counters of that histogram are halved,
+ * which also lets the histogram follow changes in the user's commute.
+ *
+ * The last {@value #RECENT_DEPARTURES} recorded departures are remembered, so
+ * the same bus seen again when the user asks twice or pages through the
+ * suggestions is only counted once, along with the destination and vehicle
+ * type of the last one.
+ */
+class UserTravelTimes {
+
+    static final int DAYS = 7;
+    static final int PERIODS_PER_DAY = 8;
+    static final int BINS = 32;
+    static final int BIN_MINUTES = 3;
+    static final int RANGE_MINUTES = BINS * BIN_MINUTES;
+
+    /**
+     * The bins and the overflow counter after them
+     */
+    private static final int COUNTERS = BINS + 1;
+
+    static final int TOTAL = 0;
+    static final int WALKING = 1;
+    static final int TRANSIT = 2;
+    private static final int DURATIONS = 3;
+
+    static final int RECENT_DEPARTURES = 16;
+
+    private static final int MAX_COUNT = 255;
+
+    private final byte[][] slots = new byte[DAYS * PERIODS_PER_DAY][];
+    private final long[] recentDepartures = new long[RECENT_DEPARTURES];
+    private int nextDeparture;
+    private String destination;
+    private String vehicleType;
+
+    /**
+     * @param dayOfWeek 1 (Monday) to 7, as in Joda time
+     */
+    static int slot(int dayOfWeek, int hourOfDay) {
+        return (dayOfWeek - 1) * PERIODS_PER_DAY + hourOfDay * PERIODS_PER_DAY / 24;
+    }
+
+    /**
+     * @return False if the departure is one of the recently recorded ones,
+     *         otherwise remembers it and returns true
+     */
+    synchronized boolean firstSeen(long departure) {
+        for (long recent : recentDepartures) {
+            if (recent == departure) {
+                return false;
+            }
+        }
+        recentDepartures[nextDeparture] = departure;
+        nextDeparture = (nextDeparture + 1) % RECENT_DEPARTURES;
+        return true;
+    }
+
+    /**
+     * Durations are in seconds, and negative when unknown
+     */
+    synchronized void record(int slot, String destination, String vehicleType,
+                             long totalSeconds, long walkingSeconds, long transitSeconds) {
+        byte[] counts = slots[slot];
+
+        if (counts == null) {
+            counts = new byte[DURATIONS * COUNTERS];
+            slots[slot] = counts;
+        }
+        this.destination = destination;
+        this.vehicleType = vehicleType;
+        increment(counts, TOTAL, totalSeconds);
+        increment(counts, WALKING, walkingSeconds);
+        increment(counts, TRANSIT, transitSeconds);
+    }
+
+    private static void increment(byte[] counts, int duration, long seconds) {
+        if (seconds < 0) {
+            return;
+        }
+        int offset = duration * COUNTERS;
+        int bin = offset + (int) Math.min(seconds / 60 / BIN_MINUTES, BINS);
+
+        if ((counts[bin] & 0xFF) == MAX_COUNT) {
+            for (int i = offset; i < offset + COUNTERS; i++) {
+                counts[i] = (byte) ((counts[i] & 0xFF) >>> 1);
+            }
+        }
+        counts[bin]++;
+    }
+
+    /**
+     * When most trips took {@link #RANGE_MINUTES} or more, the estimate only
+     * says so. When some but not most did, the binned ones would understate
+     * the typical time, so there's no estimate.
+     *
+     * @return The estimate for the slot, or null if it has fewer observations than required
+     */
+    synchronized TravelTimeEstimate estimate(int slot, int minObservations) {
+        byte[] counts = slots[slot];
+
+        if (counts == null) {
+            return null;
+        }
+        double[] total = moments(counts, TOTAL);
+        int overflow = counts[TOTAL * COUNTERS + BINS] & 0xFF;
+
+        if (total[0] + overflow < minObservations) {
+            return null;
+        }
+        if (overflow > total[0]) {
+            return new TravelTimeEstimate((int) total[0] + overflow, destination, vehicleType);
+        }
+        if (overflow > 0) {
+            return null;
+        }
+        return new TravelTimeEstimate((int) total[0], destination, vehicleType, total[1], Math.sqrt(total[2]),
+                moments(counts, WALKING)[1], moments(counts, TRANSIT)[1]);
+    }
+
+    /**
+     * @return The count, mean and variance of the binned durations of a
+     *         histogram, in minutes at the bin centers
+     */
+    private static double[] moments(byte[] counts, int duration) {
+        int offset = duration * COUNTERS;
+        double count = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+
+        for (int i = 0; i < BINS; i++) {
+            int binCount = counts[offset + i] & 0xFF;
+            double minutes = (i + 0.5) * BIN_MINUTES;
+            count += binCount;
+            sum += binCount * minutes;
+            sumOfSquares += binCount * minutes * minutes;
+        }
+
+        if (count == 0) {
+            return new double[] { 0, 0, 0 };
+        }
+        double mean = sum / count;
+        return new double[] { count, mean, Math.max(0, sumOfSquares / count - mean * mean) };
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.warmup;
+
+import com.ramnani.alexaskills.CommuteHelper.GoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import com.ramnani.alexaskills.CommuteHelper.logging.EventLog;
+import com.ramnani.alexaskills.CommuteHelper.maps.MapsPriority;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the next departures of the commuters likely to ask soon, during the
+ * scheduled times of day, so that their requests are answered from the
+ * departure ladders and directions cache of a warm container. The user is
+ * loaded too, which also warms the DynamoDB and KMS clients.
+ *
+ * Every pinged container prefetches the same commuters, since any of them may
+ * get the commuter's request. The calls are made at PREFETCH priority, so they
+ * only take the maps quota user requests leave.
+ */
+public class CommutePrefetcher {
+
+    private static final Logger log = Logger.getLogger(CommutePrefetcher.class);
+
+    private static final String WORK_KEY = "work";
+    private static final String TRANSIT_TYPE = "transit";
+
+    private final GoogleMapsService googleMapsService;
+    private final TransitHelperDao transitHelperDao;
+    private final RecentCommuters recentCommuters;
+    private final WarmupSchedule schedule;
+    private final long leadMillis;
+    private final int maxUsers;
+    private final long budgetMillis;
+
+    /**
+     * @param leadMinutes Commuters who asked up to this long after the current
+     *                    time of day are prefetched
+     * @param maxUsers Most commuters prefetched per ping
+     * @param budgetMillis How long a ping may spend prefetching
+     */
+    public CommutePrefetcher(GoogleMapsService googleMapsService, TransitHelperDao transitHelperDao,
+                             RecentCommuters recentCommuters, WarmupSchedule schedule,
+                             long leadMinutes, int maxUsers, long budgetMillis) {
+        Validate.notNull(googleMapsService);
+        Validate.notNull(transitHelperDao);
+        Validate.notNull(recentCommuters);
+        Validate.notNull(schedule);
+        Validate.isTrue(leadMinutes >= 0, "leadMinutes must not be negative: %d", leadMinutes);
+        Validate.isTrue(budgetMillis > 0, "budgetMillis must be positive: %d", budgetMillis);
+
+        this.googleMapsService = googleMapsService;
+        this.transitHelperDao = transitHelperDao;
+        this.recentCommuters = recentCommuters;
+        this.schedule = schedule;
+        this.leadMillis = TimeUnit.MINUTES.toMillis(leadMinutes);
+        this.maxUsers = maxUsers;
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * @return How many commutes were fetched
+     */
+    public int prefetch(long nowMillis) {
+        if (!schedule.isActive(nowMillis)) {
+            return 0;
+        }
+        Deadline deadline = Deadline.start(budgetMillis);
+        List<String> userIds = Collections.emptyList();
+        int prefetched = 0;
+
+        try {
+            userIds = recentCommuters.dueWithin(nowMillis, leadMillis, maxUsers);
+
+            for (String userId : userIds) {
+                if (deadline.isExpired()) {
+                    break;
+                }
+                if (prefetch(userId)) {
+                    prefetched++;
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Unable to read the recent commuters.", ex);
+        } finally {
+            Deadline.clear();
+        }
+        EventLog.event("warmup.prefetched")
+                .field("due", userIds.size())
+                .field("prefetched", prefetched)
+                .log();
+        return prefetched;
+    }
+
+    private boolean prefetch(String userId) {
+        try {
+            TransitUser user = transitHelperDao.getUser(userId);
+            Map<String, String> destinations = user == null ? null : user.getDestinations();
+
+            if (destinations == null || !destinations.containsKey(WORK_KEY)) {
+                return false;
+            }
+            return MapsPriority.call(MapsPriority.PREFETCH,
+                    () -> googleMapsService.getNextTransitToDestination(TRANSIT_TYPE,
+                            user.getHomeAddress(), user.getHomeLatLng(),
+                            destinations.get(WORK_KEY), user.getDestinationLatLng(WORK_KEY))) != null;
+        } catch (Exception ex) {
+            log.warn("Unable to prefetch the commute of user: " + userId, ex);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.warmup;
+
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The users who recently asked for their commute, by the time of day they
+ * asked at. Commuters tend to ask at the same time every day, so the ones who
+ * asked shortly after the current time of day are likely to ask again soon.
+ *
+ * Kept in the RecentCommuters table, keyed by {@value #SLOT_MINUTES} minute
+ * slots of the UTC day, so that any container can find them. A record expires
+ * after {@value #RETENTION_DAYS} days. A user is written once per slot per
+ * container, later requests in the same slot don't write again.
+ */
+public class RecentCommuters {
+
+    private static final Logger log = Logger.getLogger(RecentCommuters.class);
+
+    static final int SLOT_MINUTES = 15;
+    static final int RETENTION_DAYS = 14;
+    static final int MAX_RECORDED = 1000;
+
+    private static final long SLOT_MILLIS = TimeUnit.MINUTES.toMillis(SLOT_MINUTES);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int SLOTS = (int) (DAY_MILLIS / SLOT_MILLIS);
+
+    private final TransitHelperDao transitHelperDao;
+
+    /**
+     * The slot and day each user was last written for by this container
+     */
+    private final Map<String, Long> recorded = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_RECORDED;
+        }
+    };
+
+    public RecentCommuters(TransitHelperDao transitHelperDao) {
+        Validate.notNull(transitHelperDao);
+        this.transitHelperDao = transitHelperDao;
+    }
+
+    public void record(String userId) {
+        record(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * A failed write is logged and otherwise ignored, it only costs the
+     * user a prefetch
+     */
+    void record(String userId, long nowMillis) {
+        Validate.notNull(userId);
+        long absoluteSlot = Math.floorDiv(nowMillis, SLOT_MILLIS);
+
+        synchronized (recorded) {
+            Long previous = recorded.put(userId, absoluteSlot);
+
+            if (previous != null && previous == absoluteSlot) {
+                return;
+            }
+        }
+        long expiresAtSeconds = TimeUnit.MILLISECONDS.toSeconds(nowMillis + TimeUnit.DAYS.toMillis(RETENTION_DAYS));
+
+        try {
+            transitHelperDao.putRecentCommuter(slotOf(nowMillis), userId, expiresAtSeconds);
+        } catch (RuntimeException ex) {
+            log.warn("Unable to record the commute of user: " + userId, ex);
+
+            synchronized (recorded) {
+                recorded.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * The commuters who asked in the slots from now's to leadMillis later,
+     * earliest slot first, at most max of them
+     */
+    public List<String> dueWithin(long nowMillis, long leadMillis, int max) {
+        Validate.isTrue(leadMillis >= 0, "leadMillis must not be negative: %d", leadMillis);
+        Set<String> due = new LinkedHashSet<>();
+        int slots = (int) Math.min(SLOTS, leadMillis / SLOT_MILLIS + 1);
+        int firstSlot = slotOf(nowMillis);
+
+        for (int i = 0; i < slots && due.size() < max; i++) {
+            due.addAll(transitHelperDao.getRecentCommuters((firstSlot + i) % SLOTS, max - due.size()));
+        }
+        return new ArrayList<>(due);
+    }
+
+    static int slotOf(long millis) {
+        return (int) (Math.floorMod(millis, DAY_MILLIS) / SLOT_MILLIS);
+    }
+}
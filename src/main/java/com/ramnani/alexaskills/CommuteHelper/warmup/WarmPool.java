@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.warmup;
+
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import org.apache.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers the warm-up pings of a container, and counts whether the requests
+ * of real traffic found the container cold or warm. A warm hit on a container
+ * that a ping started is also counted as prewarmed.
+ */
+public class WarmPool {
+
+    private static final Logger log = Logger.getLogger(WarmPool.class);
+
+    static final String PING = "Ping";
+    static final String REQUEST = "Request";
+
+    private final CommutePrefetcher prefetcher;
+    private final long holdMillis;
+    private final AtomicBoolean invoked = new AtomicBoolean();
+    private volatile boolean startedByPing;
+
+    /**
+     * @param prefetcher Prefetches commutes on pings, or null to only keep the container warm
+     * @param holdMillis How long a ping that's one of several holds the container,
+     *                   so that the others are sent to other containers
+     */
+    public WarmPool(CommutePrefetcher prefetcher, long holdMillis) {
+        this.prefetcher = prefetcher;
+        this.holdMillis = holdMillis;
+    }
+
+    /**
+     * @return The response to the ping
+     */
+    public byte[] onWarmup(WarmupRequest warmup) {
+        boolean coldStart = recordInvocation(PING);
+
+        if (coldStart) {
+            startedByPing = true;
+        }
+        long start = System.currentTimeMillis();
+        int prefetched = 0;
+
+        if (prefetcher != null) {
+            prefetched = prefetcher.prefetch(start);
+            Metrics.recordValue(Metrics.WARM_POOL, PING, Metrics.PREFETCHED, prefetched);
+        }
+        long remainingHold = holdMillis - (System.currentTimeMillis() - start);
+
+        if (warmup.getConcurrency() > 1 && remainingHold > 0) {
+            try {
+                Thread.sleep(remainingHold);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Warm-up ping, cold start: " + coldStart + ", prefetched: " + prefetched);
+        return ("{\"warm\":true,\"coldStart\":" + coldStart + ",\"prefetched\":" + prefetched + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counts a request of real traffic
+     */
+    public void onRequest() {
+        boolean coldStart = recordInvocation(REQUEST);
+
+        if (!coldStart && startedByPing) {
+            Metrics.recordCount(Metrics.WARM_POOL, REQUEST, Metrics.PREWARMED);
+        }
+    }
+
+    /**
+     * @return If this is the container's first invocation
+     */
+    private boolean recordInvocation(String name) {
+        boolean coldStart = invoked.compareAndSet(false, true);
+        Metrics.recordCount(Metrics.WARM_POOL, name, coldStart ? Metrics.COLD_START : Metrics.WARM_HIT);
+        return coldStart;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.warmup;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A scheduled ping that keeps containers warm, rather than an Alexa request:
+ *
+ * {"warmup": {"concurrency": 4}}
+ *
+ * The scheduler sends concurrency pings at the same time, and each of them
+ * holds its container for a moment so that they land on as many containers.
+ */
+public class WarmupRequest {
+
+    private static final Logger log = Logger.getLogger(WarmupRequest.class);
+
+    static final String WARMUP_FIELD = "warmup";
+    private static final String CONCURRENCY_FIELD = "concurrency";
+    private static final byte[] MARKER = ("\"" + WARMUP_FIELD + "\"").getBytes(StandardCharsets.UTF_8);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final int concurrency;
+
+    WarmupRequest(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * How many containers the scheduler is pinging at once
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns the ping, or null if the request is anything else. Requests
+     * without the warmup field anywhere in them are told apart without
+     * being parsed.
+     */
+    public static WarmupRequest parse(byte[] request) {
+        if (request == null || indexOf(request, MARKER) < 0) {
+            return null;
+        }
+        JsonNode root;
+
+        try {
+            root = mapper.readTree(new String(request, StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            log.warn("Unable to parse a request mentioning " + WARMUP_FIELD, ex);
+            return null;
+        }
+
+        if (root == null || !root.isObject() || !root.has(WARMUP_FIELD) || root.has("request")) {
+            return null;
+        }
+        JsonNode concurrency = root.get(WARMUP_FIELD).get(CONCURRENCY_FIELD);
+        return new WarmupRequest(concurrency == null ? 1 : Math.max(1, concurrency.getIntValue()));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target) {
+        outer:
+        for (int i = 0; i <= bytes.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.warmup;
+
+import org.apache.commons.lang3.Validate;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The times of day warm-up pings also prefetch commutes, e.g.
+ * "06:00-09:30,16:00-19:00" in the commuters' timezone. A window may wrap
+ * around midnight. An empty schedule never prefetches.
+ */
+public class WarmupSchedule {
+
+    private final List<int[]> windows;
+    private final DateTimeZone timeZone;
+
+    WarmupSchedule(List<int[]> windows, DateTimeZone timeZone) {
+        this.windows = windows;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * @throws IllegalArgumentException If a window isn't two HH:mm times separated by a dash
+     */
+    public static WarmupSchedule parse(String schedule, String timeZoneId) {
+        Validate.notNull(timeZoneId);
+        List<int[]> windows = new ArrayList<>();
+
+        if (schedule != null) {
+            for (String window : schedule.split(",")) {
+                if (window.trim().isEmpty()) {
+                    continue;
+                }
+                String[] times = window.trim().split("-");
+                Validate.isTrue(times.length == 2, "Invalid warm-up window: %s", window);
+                windows.add(new int[] {
+                        LocalTime.parse(times[0].trim()).getMillisOfDay(),
+                        LocalTime.parse(times[1].trim()).getMillisOfDay() });
+            }
+        }
+        return new WarmupSchedule(Collections.unmodifiableList(windows), DateTimeZone.forID(timeZoneId));
+    }
+
+    public boolean isActive(long nowMillis) {
+        int timeOfDay = new LocalTime(nowMillis, timeZone).getMillisOfDay();
+
+        for (int[] window : windows) {
+            boolean inWindow = window[0] <= window[1]
+                    ? timeOfDay >= window[0] && timeOfDay < window[1]
+                    : timeOfDay >= window[0] || timeOfDay < window[1];
+
+            if (inWindow) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit Tests for CommuteHelperComponents
+ */
+public class CommuteHelperComponentsTest {
+
+    @Test
+    public void createsServicesWithoutContactingAws() {
+        Properties properties = new Properties();
+        properties.setProperty(CommuteHelperComponents.MAPS_API_KEY_PROPERTY, "key");
+        properties.setProperty(CommuteHelperComponents.KMS_KEY_ID_PROPERTY, "kmsKey");
+        CommuteHelperComponents components = new CommuteHelperComponents(properties);
+        assertNotNull(components.getGoogleMapsService());
+        assertNotNull(components.getTransitHelperDao());
+    }
+
+    @Test
+    public void loadsPropertiesFromClasspath() {
+        Properties properties = CommuteHelperComponents.loadProperties(CommuteHelperComponents.CONFIG_FILE);
+        assertEquals("", properties.getProperty(CommuteHelperComponents.KMS_KEY_ID_PROPERTY));
+    }
+
+    @Test
+    public void missingConfigurationIsEmpty() {
+        Properties properties = CommuteHelperComponents.loadProperties("does-not-exist.properties");
+        assertNull(properties.getProperty(CommuteHelperComponents.MAPS_API_KEY_PROPERTY));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import org.apache.commons.io.IOUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for CommuteHelperServer
+ */
+public class CommuteHelperServerTest {
+
+    private static final String APPLICATION_ID = "test-application";
+
+    private CommuteHelperServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(CommuteHelperComponents.METRICS_SINK_PROPERTY, "none");
+        properties.setProperty(CommuteHelperServer.PORT_PROPERTY, "0");
+        properties.setProperty(CommuteHelperServer.MAX_REQUEST_BYTES_PROPERTY, "2048");
+        properties.setProperty(CommuteHelperServer.SHUTDOWN_GRACE_PROPERTY, "0");
+        properties.setProperty(CommuteHelperServer.VERIFY_SIGNATURES_PROPERTY, "false");
+        CommuteHelperComponents components = new CommuteHelperComponents(properties);
+
+        server = new CommuteHelperServer(
+                new CommuteHelperSpeechlet(components.getGoogleMapsService(), components.getTransitHelperDao()),
+                Collections.singleton(APPLICATION_ID), components);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void handlesLaunchRequest() throws IOException {
+        HttpURLConnection connection = post(launchRequest(APPLICATION_ID));
+        assertEquals(200, connection.getResponseCode());
+        String response = IOUtils.toString(connection.getInputStream(), "UTF-8");
+        assertTrue(response.contains("outputSpeech"));
+    }
+
+    @Test
+    public void rejectsOtherApplications() throws IOException {
+        assertEquals(400, post(launchRequest("other-application")).getResponseCode());
+    }
+
+    @Test
+    public void rejectsLargeRequests() throws IOException {
+        StringBuilder request = new StringBuilder();
+
+        while (request.length() <= 2048) {
+            request.append("padding ");
+        }
+        assertEquals(413, post(request.toString()).getResponseCode());
+    }
+
+    @Test
+    public void answersPing() throws IOException {
+        HttpURLConnection connection = open(CommuteHelperServer.PING_PATH);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(405, open(CommuteHelperServer.SKILL_PATH).getResponseCode());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        URL url = new URL("http://localhost:" + server.getPort() + path);
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private HttpURLConnection post(String body) throws IOException {
+        HttpURLConnection connection = open(CommuteHelperServer.SKILL_PATH);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private static String launchRequest(String applicationId) {
+        return "{\"version\":\"1.0\","
+                + "\"session\":{\"new\":true,\"sessionId\":\"test-session\","
+                + "\"application\":{\"applicationId\":\"" + applicationId + "\"},"
+                + "\"attributes\":{},\"user\":{\"userId\":\"test-user\"}},"
+                + "\"request\":{\"type\":\"LaunchRequest\",\"requestId\":\"test-request\","
+                + "\"timestamp\":\"" + ISODateTimeFormat.dateTimeNoMillis().withZoneUTC().print(DateTime.now()) + "\","
+                + "\"locale\":\"en-US\"}}";
+    }
+}
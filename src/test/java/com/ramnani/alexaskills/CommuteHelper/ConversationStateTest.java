@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.User;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.LatencyDistribution;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubGoogleMapsService;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Unit Tests for ConversationState and the reprompt choices
+ */
+public class ConversationStateTest {
+
+    @Test
+    public void statesAreDerivedFromTheSessionAttributes() {
+        Map<String, Object> attributes = new HashMap<>();
+        assertEquals(ConversationState.NONE, ConversationState.of(session(attributes)));
+
+        attributes.put(UserSetupSpeechletManager.SETUP_ATTRIBUTE, "workAddressSetup");
+        assertEquals(ConversationState.SETUP_WORK_ADDRESS, ConversationState.of(session(attributes)));
+
+        attributes.put(TransitSpeechletManager.SUGGESTION_ATTRIBUTE, "[]");
+        assertEquals(ConversationState.SUGGESTIONS, ConversationState.of(session(attributes)));
+        assertEquals(ConversationState.SETUP_WORK_ADDRESS, ConversationState.ofSetup(session(attributes)));
+    }
+
+    @Test
+    public void intentNamesResolveToTheirIntent() {
+        for (SkillIntent intent : SkillIntent.values()) {
+            if (intent != SkillIntent.UNKNOWN) {
+                assertEquals(intent, SkillIntent.forName(intent.getIntentName()));
+            }
+        }
+        assertEquals(SkillIntent.UNKNOWN, SkillIntent.forName("NotAnIntent"));
+        assertEquals(SkillIntent.UNKNOWN, SkillIntent.forName(null));
+    }
+
+    @Test
+    public void repromptNeverAsksWhatWasJustAnswered() {
+        TransitSpeechletManager manager = new TransitSpeechletManager(
+                new StubGoogleMapsService(LatencyDistribution.NONE));
+        Intent intent = Intent.builder()
+                .withName("GetDirections")
+                .withSlots(Collections.<String, Slot>emptyMap())
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            Session session = session(new HashMap<>());
+            assertNotNull(manager.generateRepromptQuestion(session, intent));
+
+            Object repromptIntent = session.getAttribute("repromptIntent");
+            assertNotEquals("GetDirections", repromptIntent);
+            // There are no suggestions, so no previous one to offer
+            assertNotEquals("AMAZON.PreviousIntent", repromptIntent);
+        }
+    }
+
+    private static Session session(Map<String, Object> attributes) {
+        return Session.builder()
+                .withSessionId("SessionId.conversation")
+                .withUser(User.builder().withUserId("user").build())
+                .withAttributes(attributes)
+                .build();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.Speechlet;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletToSpeechletV2Adapter;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.Reprompt;
+import com.amazon.speech.ui.SimpleCard;
+import com.amazon.speech.ui.SsmlOutputSpeech;
+import com.ramnani.alexaskills.CommuteHelper.directives.CurrentRequest;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveTarget;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for StreamingSpeechletRequestHandler, against the SDK's handling
+ * of the same requests
+ */
+public class StreamingSpeechletRequestHandlerTest {
+
+    private static final String APPLICATION_ID = "amzn1.ask.skill.test";
+    private static final Set<String> APPLICATION_IDS = Collections.singleton(APPLICATION_ID);
+
+    private static final String INTENT_REQUEST = "{\"version\":\"1.0\","
+            + "\"session\":{\"new\":true,\"sessionId\":\"SessionId.1\","
+            + "\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},"
+            + "\"attributes\":{\"index\":1,\"stage\":\"home\",\"flags\":[true,2.5],\"nested\":{\"a\":null}},"
+            + "\"user\":{\"userId\":\"amzn1.ask.account.user\"}},"
+            + "\"context\":{\"System\":{\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},"
+            + "\"device\":{\"supportedInterfaces\":{}}}},"
+            + "\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"EdwRequestId.1\","
+            + "\"timestamp\":\"2017-03-01T08:15:00Z\",\"locale\":\"en-US\","
+            + "\"intent\":{\"name\":\"GetNextTransitToWork\","
+            + "\"slots\":{\"transitType\":{\"name\":\"transitType\",\"value\":\"bus\"},"
+            + "\"empty\":{\"name\":\"empty\"}}}}}";
+
+    @Test
+    public void intentRequestIsReadAndAnsweredAsTheSdkWould() throws Exception {
+        RecordingSpeechlet streaming = new RecordingSpeechlet(askResponse());
+        RecordingSpeechlet sdk = new RecordingSpeechlet(askResponse());
+
+        byte[] expected = new LambdaSpeechletRequestHandler(APPLICATION_IDS)
+                .handleSpeechletCall(v2(sdk), bytes(INTENT_REQUEST));
+        byte[] actual = new StreamingSpeechletRequestHandler(APPLICATION_IDS)
+                .handleSpeechletCall(v2(streaming), bytes(INTENT_REQUEST));
+
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+
+        assertTrue(streaming.sessionStarted);
+        IntentRequest request = streaming.intentRequest;
+        assertEquals("EdwRequestId.1", request.getRequestId());
+        assertEquals(sdk.intentRequest.getTimestamp(), request.getTimestamp());
+        assertEquals(Locale.US, request.getLocale());
+        assertEquals("GetNextTransitToWork", request.getIntent().getName());
+        assertEquals("bus", request.getIntent().getSlot("transitType").getValue());
+        assertEquals(null, request.getIntent().getSlot("empty").getValue());
+
+        Session session = streaming.session;
+        assertEquals("SessionId.1", session.getSessionId());
+        assertEquals(APPLICATION_ID, session.getApplication().getApplicationId());
+        assertEquals("amzn1.ask.account.user", session.getUser().getUserId());
+        assertEquals("home", session.getAttribute("stage"));
+        assertEquals(Arrays.asList(true, 2.5), session.getAttribute("flags"));
+    }
+
+    @Test
+    public void attributesAreLeftOutWhenTheSessionEnds() throws Exception {
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText("Your next bus is at 8:30.");
+
+        byte[] actual = new StreamingSpeechletRequestHandler(APPLICATION_IDS)
+                .handleSpeechletCall(v2(new RecordingSpeechlet(SpeechletResponse.newTellResponse(speech))),
+                        bytes(INTENT_REQUEST));
+
+        assertEquals("{\"version\":\"1.0\",\"response\":{\"outputSpeech\":{\"type\":\"PlainText\","
+                + "\"text\":\"Your next bus is at 8:30.\"},\"shouldEndSession\":true}}",
+                new String(actual, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void sessionEndedRequestHasNoResponse() throws Exception {
+        String request = "{\"version\":\"1.0\",\"session\":{\"new\":false,\"sessionId\":\"SessionId.1\","
+                + "\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},"
+                + "\"user\":{\"userId\":\"amzn1.ask.account.user\"}},"
+                + "\"request\":{\"type\":\"SessionEndedRequest\",\"requestId\":\"EdwRequestId.2\","
+                + "\"timestamp\":\"2017-03-01T08:15:00Z\",\"reason\":\"USER_INITIATED\"}}";
+        RecordingSpeechlet streaming = new RecordingSpeechlet(null);
+
+        byte[] expected = new LambdaSpeechletRequestHandler(APPLICATION_IDS)
+                .handleSpeechletCall(v2(new RecordingSpeechlet(null)), bytes(request));
+        byte[] actual = new StreamingSpeechletRequestHandler(APPLICATION_IDS)
+                .handleSpeechletCall(v2(streaming), bytes(request));
+
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+        assertFalse(streaming.sessionStarted);
+        assertEquals(SessionEndedRequest.Reason.USER_INITIATED, streaming.sessionEndedRequest.getReason());
+    }
+
+    @Test
+    public void directiveTargetIsReadWithTheEnvelope() throws Exception {
+        String request = INTENT_REQUEST.replace("\"device\":{", "\"apiEndpoint\":\"https://api.amazonalexa.com\","
+                + "\"apiAccessToken\":\"token-1\",\"device\":{");
+        RecordingSpeechlet streaming = new RecordingSpeechlet(askResponse());
+
+        try {
+            new StreamingSpeechletRequestHandler(APPLICATION_IDS).handleSpeechletCall(v2(streaming), bytes(request));
+        } finally {
+            CurrentRequest.clear();
+        }
+        DirectiveTarget target = streaming.directiveTarget;
+        assertEquals("EdwRequestId.1", target.getRequestId());
+        assertEquals("https://api.amazonalexa.com", target.getApiEndpoint());
+        assertEquals("token-1", target.getApiAccessToken());
+    }
+
+    @Test(expected = SpeechletRequestHandlerException.class)
+    public void otherApplicationsAreRejected() throws Exception {
+        new StreamingSpeechletRequestHandler(Collections.singleton("amzn1.ask.skill.other"))
+                .handleSpeechletCall(v2(new RecordingSpeechlet(askResponse())), bytes(INTENT_REQUEST));
+    }
+
+    private static SpeechletResponse askResponse() {
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText("Your next bus leaves \"Pine St\" at 8:30, caf\u00e9 included.\n");
+
+        SimpleCard card = new SimpleCard();
+        card.setTitle("Transit");
+        card.setContent("Bus 49 </speak>");
+
+        SsmlOutputSpeech repromptSpeech = new SsmlOutputSpeech();
+        repromptSpeech.setSsml("<speak>Would you like the next option?</speak>");
+        Reprompt reprompt = new Reprompt();
+        reprompt.setOutputSpeech(repromptSpeech);
+
+        return SpeechletResponse.newAskResponse(speech, reprompt, card);
+    }
+
+    private static SpeechletV2 v2(Speechlet speechlet) {
+        return new SpeechletToSpeechletV2Adapter(speechlet);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records what it's called with and updates the session like the
+     * suggestion conversation does
+     */
+    private static class RecordingSpeechlet implements Speechlet {
+
+        private final SpeechletResponse response;
+
+        private boolean sessionStarted;
+        private IntentRequest intentRequest;
+        private SessionEndedRequest sessionEndedRequest;
+        private Session session;
+        private DirectiveTarget directiveTarget;
+
+        RecordingSpeechlet(SpeechletResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onSessionStarted(SessionStartedRequest request, Session session) {
+            sessionStarted = true;
+        }
+
+        @Override
+        public SpeechletResponse onLaunch(LaunchRequest request, Session session) {
+            this.session = session;
+            return response;
+        }
+
+        @Override
+        public SpeechletResponse onIntent(IntentRequest request, Session session) {
+            this.intentRequest = request;
+            this.session = session;
+            this.directiveTarget = CurrentRequest.getDirectiveTarget();
+            session.setAttribute("index", 2);
+            session.setAttribute("previousResponse", "Say \"next\" for the 8:45 bus");
+            session.setAttribute("isSuggestion", true);
+            return response;
+        }
+
+        @Override
+        public void onSessionEnded(SessionEndedRequest request, Session session) {
+            this.sessionEndedRequest = request;
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.User;
+import com.google.maps.model.LatLng;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import com.ramnani.alexaskills.CommuteHelper.directives.CurrentRequest;
+import com.ramnani.alexaskills.CommuteHelper.directives.DirectiveClient;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.LatencyDistribution;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubGoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubTransitHelperDao;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.ramnani.alexaskills.CommuteHelper.maps.TransitRouteBuilder.duration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for TransitSpeechletManager
+ */
+public class TransitSpeechletManagerTest {
+
+    private static final String REQUEST = "{\"context\":{\"System\":{"
+            + "\"apiEndpoint\":\"https://api.amazonalexa.com\",\"apiAccessToken\":\"token-1\"}},"
+            + "\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"EdwRequestId.1\"}}";
+
+    private final List<String> spoken = new ArrayList<>();
+
+    /**
+     * Records the directives, and whether the Directions call had started when each was sent
+     */
+    private final StubGoogleMapsService maps = new StubGoogleMapsService(LatencyDistribution.NONE) {
+        @Override
+        public List<TransitSuggestion> getNextTransitToDestination(String transitType, String homeAddress,
+                                                                   LatLng homeLocation, String destinationAddress,
+                                                                   LatLng destinationLocation) {
+            spoken.add("directions");
+            return super.getNextTransitToDestination(transitType, homeAddress, homeLocation,
+                    destinationAddress, destinationLocation);
+        }
+    };
+
+    private final DirectiveClient directiveClient =
+            (target, speech) -> spoken.add(target.getRequestId() + ": " + speech);
+
+    @After
+    public void tearDown() {
+        CurrentRequest.clear();
+    }
+
+    @Test
+    public void progressiveResponseIsSentBeforeTheUserIsLoaded() throws Exception {
+        CurrentRequest.set(REQUEST.getBytes(StandardCharsets.UTF_8));
+        StubTransitHelperDao dao = new StubTransitHelperDao(LatencyDistribution.NONE) {
+            @Override
+            public TransitUser getUser(String userId) {
+                spoken.add("user");
+                return super.getUser(userId);
+            }
+        };
+        dao.saveUser(user());
+        CommuteHelperSpeechlet speechlet = new CommuteHelperSpeechlet(maps, dao, directiveClient);
+        IntentRequest request = IntentRequest.builder()
+                .withRequestId("EdwRequestId.1")
+                .withIntent(nextBusIntent())
+                .build();
+
+        assertNotNull(speechlet.onIntent(request, session()));
+        assertEquals(3, spoken.size());
+        assertEquals("EdwRequestId.1: Let me check the next bus.", spoken.get(0));
+        assertEquals("user", spoken.get(1));
+        assertEquals("directions", spoken.get(2));
+    }
+
+    @Test
+    public void noProgressiveResponseWithoutApiAccess() throws Exception {
+        TransitSpeechletManager manager = new TransitSpeechletManager(maps, directiveClient);
+
+        assertNotNull(manager.handleNextTransitRequest(nextBusIntent(), session(), user()));
+        assertTrue(spoken.size() == 1 && "directions".equals(spoken.get(0)));
+    }
+
+    @Test
+    public void nextIntentPastTheLastSuggestionFetchesLaterDepartures() throws Exception {
+        TransitSpeechletManager manager = new TransitSpeechletManager(maps, directiveClient);
+        StubTransitHelperDao dao = new StubTransitHelperDao(LatencyDistribution.NONE);
+        dao.saveUser(user());
+        Session session = session();
+        UserContext userContext = new UserContext("user-1", session, dao);
+        Intent next = Intent.builder().withName("AMAZON.NextIntent").build();
+
+        manager.handleNextTransitRequest(nextBusIntent(), session, user());
+        List<TransitSuggestion> firstPage = suggestions(session);
+        manager.handleNextSuggestionRequest(session, next, userContext);
+        manager.handleNextSuggestionRequest(session, next, userContext);
+        assertEquals(2, session.getAttribute(TransitSpeechletManager.INDEX_ATTRIBUTE));
+
+        manager.handleNextSuggestionRequest(session, next, userContext);
+        List<TransitSuggestion> suggestions = suggestions(session);
+
+        // The current and previous suggestions are kept, followed by the new page
+        assertEquals(5, suggestions.size());
+        assertEquals(2, session.getAttribute(TransitSpeechletManager.INDEX_ATTRIBUTE));
+        assertEquals(firstPage.get(2).getTransitStartTime().getMillis(),
+                suggestions.get(1).getTransitStartTime().getMillis());
+        assertTrue(suggestions.get(2).getTransitStartTime().isAfter(suggestions.get(1).getTransitStartTime()));
+    }
+
+    @Test
+    public void laterDeparturesFollowTheLastSuggestionWithATransitDeparture() throws Exception {
+        List<DateTime> departedAfter = new ArrayList<>();
+        StubGoogleMapsService laterMaps = new StubGoogleMapsService(LatencyDistribution.NONE) {
+            @Override
+            public List<TransitSuggestion> getTransitToDestinationDepartingAfter(String transitType,
+                    String homeAddress, LatLng homeLocation, String destinationAddress, LatLng destinationLocation,
+                    DateTime after) {
+                departedAfter.add(after);
+                return super.getTransitToDestinationDepartingAfter(transitType, homeAddress, homeLocation,
+                        destinationAddress, destinationLocation, after);
+            }
+        };
+        TransitSpeechletManager manager = new TransitSpeechletManager(laterMaps, directiveClient);
+        StubTransitHelperDao dao = new StubTransitHelperDao(LatencyDistribution.NONE);
+        dao.saveUser(user());
+        Session session = session();
+        DateTime departure = DateTime.now().plusMinutes(10);
+        TransitSuggestion bus = suggestion(departure);
+        // as read back from a session that has none for it
+        TransitSuggestion walk = suggestion(departure.plusMinutes(10));
+        walk.setTransitStartTime(null);
+        session.setAttribute(TransitSpeechletManager.SUGGESTION_ATTRIBUTE,
+                TransitSpeechletManager.writeSuggestions(Arrays.asList(bus, walk)));
+        session.setAttribute(TransitSpeechletManager.INDEX_ATTRIBUTE, 1);
+        session.setAttribute(TransitSpeechletManager.TRANSIT_TYPE_ATTRIBUTE, "bus");
+
+        assertNotNull(manager.handleNextSuggestionRequest(session,
+                Intent.builder().withName("AMAZON.NextIntent").build(),
+                new UserContext("user-1", session, dao)));
+        assertEquals(1, departedAfter.size());
+        assertEquals(departure.getMillis(), departedAfter.get(0).getMillis());
+    }
+
+    private static TransitSuggestion suggestion(DateTime transitStart) {
+        DateTime walkingStart = DateTime.now();
+        return new TransitSuggestion("Bus", walkingStart, transitStart, walkingStart.plusMinutes(30),
+                duration(1800), duration(300), duration(1500), "Walk to 3rd Ave & Pike St",
+                "Bus towards Downtown Seattle", "49", 0);
+    }
+
+    private static List<TransitSuggestion> suggestions(Session session) throws Exception {
+        return TransitSpeechletManager.readSuggestions(
+                (String) session.getAttribute(TransitSpeechletManager.SUGGESTION_ATTRIBUTE));
+    }
+
+    private static Intent nextBusIntent() {
+        Slot transit = Slot.builder().withName("transit").withValue("bus").build();
+        return Intent.builder()
+                .withName("GetNextTransitToWork")
+                .withSlots(Collections.singletonMap("transit", transit))
+                .build();
+    }
+
+    private static Session session() {
+        return Session.builder()
+                .withSessionId("SessionId.1")
+                .withUser(User.builder().withUserId("user-1").build())
+                .build();
+    }
+
+    private static TransitUser user() {
+        TransitUser user = new TransitUser();
+        user.setUserId("user-1");
+        user.setHomeAddress("1509 Blakeley Street, Seattle, WA 98105, USA");
+        user.setDestinations(Collections.singletonMap("work", "2400 Martin Street, Seattle, WA 98114, USA"));
+        return user;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.User;
+import com.google.maps.model.LatLng;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.LatencyDistribution;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubGoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubTransitHelperDao;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit Tests for UserSetupSpeechletManager
+ */
+public class UserSetupSpeechletManagerTest {
+
+    private final AtomicInteger synchronousLookups = new AtomicInteger();
+    private final StubTransitHelperDao userStore = new StubTransitHelperDao(LatencyDistribution.NONE);
+
+    @Test
+    public void timezoneLookedUpWhileTheUserConfirmsIsUsed() {
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        UserSetupSpeechletManager manager = new UserSetupSpeechletManager(userStore, maps(lookup));
+        Session session = session();
+
+        setUp(manager, session, () -> lookup.complete("America/New_York"));
+
+        assertEquals("America/New_York", userStore.getTimeZone("user-1"));
+        assertEquals(0, synchronousLookups.get());
+    }
+
+    @Test
+    public void unfinishedLookupFallsBackToASynchronousOne() {
+        UserSetupSpeechletManager manager = new UserSetupSpeechletManager(userStore,
+                maps(new CompletableFuture<>()));
+
+        setUp(manager, session(), () -> { });
+
+        assertEquals("America/Los_Angeles", userStore.getTimeZone("user-1"));
+        assertEquals(1, synchronousLookups.get());
+    }
+
+    /**
+     * Goes through the setup conversation, running whileConfirming after the
+     * home address was heard
+     */
+    private static void setUp(UserSetupSpeechletManager manager, Session session, Runnable whileConfirming) {
+        manager.handleUserSetup(session, intent("GetNextTransitToWork"));
+        manager.handleUserSetup(session, address("1509 Blakeley Street"));
+        whileConfirming.run();
+        manager.handleUserSetup(session, intent("YesIntent"));
+        manager.handleUserSetup(session, address("2400 Martin Street"));
+        manager.handleUserSetup(session, intent("YesIntent"));
+    }
+
+    private StubGoogleMapsService maps(CompletableFuture<String> lookup) {
+        return new StubGoogleMapsService(LatencyDistribution.NONE) {
+            @Override
+            public CompletableFuture<String> getTimezoneFromLocationAsync(LatLng location) {
+                return lookup;
+            }
+
+            @Override
+            public String getTimezoneFromLocation(LatLng location) {
+                synchronousLookups.incrementAndGet();
+                return super.getTimezoneFromLocation(location);
+            }
+        };
+    }
+
+    private static Intent address(String address) {
+        Slot slot = Slot.builder().withName("address").withValue(address).build();
+        return Intent.builder()
+                .withName("PutPostalAddress")
+                .withSlots(Collections.singletonMap("address", slot))
+                .build();
+    }
+
+    private static Intent intent(String name) {
+        return Intent.builder().withName(name).build();
+    }
+
+    private static Session session() {
+        return Session.builder()
+                .withSessionId("SessionId.1")
+                .withUser(User.builder().withUserId("user-1").build())
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.deadline;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit Tests for Deadline
+ */
+public class DeadlineTest {
+
+    @After
+    public void tearDown() {
+        Deadline.clear();
+    }
+
+    @Test
+    public void callsAreUnboundedWithoutADeadline() {
+        assertNull(Deadline.current());
+        assertEquals(500, Deadline.remainingMillis(500));
+        Deadline.check("the call");
+    }
+
+    @Test
+    public void checkFailsOnceTheBudgetIsSpent() throws Exception {
+        Deadline deadline = Deadline.start(20);
+        assertFalse(deadline.isExpired());
+        Deadline.check("the first call");
+
+        Thread.sleep(30);
+        assertTrue(deadline.isExpired());
+        assertEquals(0, Deadline.remainingMillis(500));
+
+        try {
+            Deadline.check("the second call");
+            fail("The deadline has passed");
+        } catch (DeadlineExceededException expected) {
+        }
+    }
+
+    @Test
+    public void callCarriesTheDeadlineToAnotherThread() throws Exception {
+        Deadline deadline = Deadline.start(1000);
+        Deadline[] seen = new Deadline[2];
+
+        Thread thread = new Thread(() -> {
+            seen[0] = Deadline.call(deadline, Deadline::current);
+            seen[1] = Deadline.current();
+        });
+        thread.start();
+        thread.join();
+
+        assertSame(deadline, seen[0]);
+        assertNull(seen[1]);
+    }
+}
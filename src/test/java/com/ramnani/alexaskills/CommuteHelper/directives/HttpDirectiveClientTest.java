@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.directives;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit Tests for HttpDirectiveClient
+ */
+public class HttpDirectiveClientTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private HttpServer directiveService;
+    private final BlockingQueue<String[]> received = new ArrayBlockingQueue<>(10);
+
+    @Before
+    public void setUp() throws Exception {
+        // a local stand-in for the Alexa directive service
+        directiveService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        directiveService.createContext(HttpDirectiveClient.DIRECTIVES_PATH, exchange -> {
+            received.add(new String[] {
+                    exchange.getRequestHeaders().getFirst("Authorization"),
+                    new String(IOUtils.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8)
+            });
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        directiveService.start();
+    }
+
+    @After
+    public void tearDown() {
+        directiveService.stop(0);
+    }
+
+    @Test
+    public void speakPostsVoicePlayerDirective() throws Exception {
+        String endpoint = "http://localhost:" + directiveService.getAddress().getPort();
+        DirectiveTarget target = DirectiveTarget.fromRequest(request(endpoint).getBytes(StandardCharsets.UTF_8));
+
+        new HttpDirectiveClient(1000).speak(target, "Let me check the next bus.");
+        String[] directive = received.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(directive);
+        assertEquals("Bearer token-1", directive[0]);
+        JsonNode body = mapper.readTree(directive[1]);
+        assertEquals("EdwRequestId.1", body.path("header").path("requestId").getTextValue());
+        assertEquals("VoicePlayer.Speak", body.path("directive").path("type").getTextValue());
+        assertEquals("Let me check the next bus.", body.path("directive").path("speech").getTextValue());
+    }
+
+    @Test
+    public void requestWithoutApiAccessHasNoTarget() {
+        String request = "{\"request\":{\"requestId\":\"EdwRequestId.1\"},\"context\":{\"System\":{}}}";
+
+        assertNull(DirectiveTarget.fromRequest(request.getBytes(StandardCharsets.UTF_8)));
+        assertNull(DirectiveTarget.fromRequest("not json".getBytes(StandardCharsets.UTF_8)));
+        assertNull(DirectiveTarget.fromRequest(null));
+    }
+
+    static String request(String apiEndpoint) {
+        return "{\"version\":\"1.0\","
+                + "\"context\":{\"System\":{\"apiEndpoint\":\"" + apiEndpoint + "\",\"apiAccessToken\":\"token-1\"}},"
+                + "\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"EdwRequestId.1\"}}";
+    }
+}
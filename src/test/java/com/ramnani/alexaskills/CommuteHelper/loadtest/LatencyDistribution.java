@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.loadtest;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency of a stubbed dependency. Remote call latencies are long tailed, so
+ * they're drawn from a log-normal distribution fitted to a median and a p99.
+ */
+public class LatencyDistribution {
+
+    /**
+     * The 99th percentile of the standard normal distribution
+     */
+    private static final double Z_99 = 2.326;
+
+    public static final LatencyDistribution NONE = new LatencyDistribution(0, 0);
+
+    private final double mu;
+    private final double sigma;
+    private final boolean none;
+
+    /**
+     * @param medianMillis Median latency
+     * @param p99Millis 99th percentile latency, at least the median
+     */
+    public LatencyDistribution(double medianMillis, double p99Millis) {
+        Validate.isTrue(medianMillis >= 0);
+        Validate.isTrue(p99Millis >= medianMillis);
+
+        this.none = medianMillis == 0;
+        this.mu = none ? 0 : Math.log(medianMillis);
+        this.sigma = none ? 0 : Math.log(p99Millis / medianMillis) / Z_99;
+    }
+
+    public long nextMillis() {
+        if (none) {
+            return 0;
+        }
+        return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * Blocks the calling thread for one latency sample, like a remote call would
+     */
+    public void sleep() {
+        long millis = nextMillis();
+
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.loadtest;
+
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.google.maps.model.LatLng;
+import com.ramnani.alexaskills.CommuteHelper.CommuteHelperSpeechlet;
+import com.ramnani.alexaskills.CommuteHelper.CommuteHelperSpeechletRequestStreamHandler;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Histogram;
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import org.apache.commons.lang3.Validate;
+import org.apache.log4j.PropertyConfigurator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives synthetic multi-turn Alexa conversations through
+ * CommuteHelperSpeechletRequestStreamHandler.handleRequest at a fixed
+ * concurrency, with Google Maps and DynamoDB replaced by in-process stubs.
+ * Reports throughput, latency percentiles and allocation per scenario.
+ *
+ * Run with: gradle loadTest -PloadTestArgs="concurrency=32 durationSeconds=60"
+ * See {@link Options} for all settings.
+ */
+public class LoadHarness {
+
+    static final String APPLICATION_ID = "amzn1.ask.skill.load-test";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> ATTRIBUTES_TYPE =
+            new TypeReference<Map<String, Object>>(){};
+
+    private final Options options;
+    private final List<Scenario> scenarios;
+    private final RequestStreamHandler handler;
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final AtomicLong nextScenario = new AtomicLong();
+
+    private Map<String, ScenarioStats> stats;
+
+    public LoadHarness(Options options, List<Scenario> scenarios) {
+        Validate.notNull(options);
+        Validate.notEmpty(scenarios);
+
+        this.options = options;
+        this.scenarios = scenarios;
+
+        StubTransitHelperDao userStore = new StubTransitHelperDao(
+                new LatencyDistribution(options.dbMedianMillis, options.dbP99Millis));
+
+        for (int i = 0; i < options.users; i++) {
+            userStore.seedUser(existingUser("user-" + i));
+        }
+        StubGoogleMapsService maps = new StubGoogleMapsService(
+                new LatencyDistribution(options.mapsMedianMillis, options.mapsP99Millis));
+        handler = new CommuteHelperSpeechletRequestStreamHandler(
+                new CommuteHelperSpeechlet(maps, userStore), Collections.singleton(APPLICATION_ID));
+
+        // keep the metrics code on the request path, but don't write the documents
+        Metrics.configure(document -> { }, 0, TimeUnit.SECONDS);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    public static void main(String[] args) throws Exception {
+        PropertyConfigurator.configure(LoadHarness.class.getClassLoader().getResource("log4j-loadtest.properties"));
+        Options options = Options.parse(args);
+        LoadHarness harness = new LoadHarness(options, Scenario.defaultScenarios());
+
+        System.out.println("Warming up for " + options.warmupSeconds + " s with " + options.concurrency + " workers");
+        harness.run(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+        System.out.println("Measuring for " + options.durationSeconds + " s");
+        harness.run(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+        System.out.println(harness.report());
+    }
+
+    /**
+     * Runs conversations on all workers until the duration has passed, replacing
+     * the statistics of the previous run.
+     *
+     * @return Statistics per scenario name
+     */
+    public Map<String, ScenarioStats> run(long durationMillis) throws Exception {
+        Map<String, ScenarioStats> runStats = new LinkedHashMap<>();
+
+        for (Scenario scenario : scenarios) {
+            runStats.put(scenario.getName(), new ScenarioStats(scenario.getName()));
+        }
+        long deadline = System.currentTimeMillis() + durationMillis;
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < options.concurrency; i++) {
+            futures.add(workers.submit(() -> {
+                do {
+                    Scenario scenario = scenarios.get((int) (nextScenario.getAndIncrement() % scenarios.size()));
+                    runConversation(scenario, runStats.get(scenario.getName()));
+                } while (System.currentTimeMillis() < deadline);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        for (ScenarioStats scenarioStats : runStats.values()) {
+            scenarioStats.elapsedNanos = elapsedNanos;
+        }
+        stats = runStats;
+        return runStats;
+    }
+
+    public String report() {
+        Validate.validState(stats != null, "Nothing has been run");
+        StringBuilder report = new StringBuilder(String.format(
+                "%-18s %9s %9s %9s %8s %8s %8s %8s %7s %9s %9s%n",
+                "scenario", "sessions", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms",
+                "errors", "KB/req", "MB/s"));
+
+        for (ScenarioStats scenarioStats : stats.values()) {
+            Histogram latency = scenarioStats.latencyMicros;
+            double seconds = scenarioStats.elapsedNanos / 1e9;
+            long requests = scenarioStats.requests.get();
+            long bytes = scenarioStats.allocatedBytes.get();
+            report.append(String.format("%-18s %9d %9d %9.1f %8.2f %8.2f %8.2f %8.2f %7d %9.1f %9.1f%n",
+                    scenarioStats.name,
+                    scenarioStats.sessions.get(),
+                    requests,
+                    requests / seconds,
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(90) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getMax() / 1000.0,
+                    scenarioStats.errors.get(),
+                    requests == 0 ? 0 : bytes / 1024.0 / requests,
+                    bytes / 1024.0 / 1024.0 / seconds));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Sends every turn of the scenario in one session, carrying the session
+     * attributes of each response over to the next request. Latency and
+     * allocation are measured around handleRequest only, so building and
+     * parsing the envelopes isn't counted.
+     */
+    private void runConversation(Scenario scenario, ScenarioStats scenarioStats) throws Exception {
+        String userId = scenario.isExistingUser()
+                ? "user-" + ThreadLocalRandom.current().nextInt(options.users)
+                : "new-user-" + UUID.randomUUID();
+        String sessionId = "SessionId." + UUID.randomUUID();
+        Map<String, Object> attributes = new HashMap<>();
+        boolean newSession = true;
+
+        List<Scenario.Turn> turns = scenario.getTurns();
+
+        for (int i = 0; i < turns.size(); i++) {
+            Scenario.Turn turn = turns.get(i);
+            byte[] request = mapper.writeValueAsBytes(envelope(sessionId, newSession, userId, attributes, turn));
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            boolean failed = false;
+
+            try {
+                handler.handleRequest(new ByteArrayInputStream(request), response, null);
+            } catch (Exception ex) {
+                failed = true;
+            }
+            scenarioStats.latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            scenarioStats.allocatedBytes.addAndGet(threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+            scenarioStats.requests.incrementAndGet();
+
+            JsonNode responseEnvelope = failed ? null : mapper.readTree(response.toByteArray());
+
+            if (responseEnvelope == null || !responseEnvelope.has("response")) {
+                scenarioStats.errors.incrementAndGet();
+                break;
+            }
+            JsonNode sessionAttributes = responseEnvelope.get("sessionAttributes");
+            attributes = sessionAttributes == null
+                    ? new HashMap<>()
+                    : mapper.<Map<String, Object>>readValue(sessionAttributes, ATTRIBUTES_TYPE);
+            newSession = false;
+
+            if (responseEnvelope.get("response").path("shouldEndSession").getBooleanValue()) {
+                // the conversation went off script, e.g. the skill answered with an error
+                if (i < turns.size() - 1) {
+                    scenarioStats.errors.incrementAndGet();
+                }
+                break;
+            }
+        }
+        scenarioStats.sessions.incrementAndGet();
+    }
+
+    private static Map<String, Object> envelope(String sessionId, boolean newSession, String userId,
+                                                Map<String, Object> attributes, Scenario.Turn turn) {
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("new", newSession);
+        session.put("sessionId", sessionId);
+        session.put("application", Collections.singletonMap("applicationId", APPLICATION_ID));
+        session.put("attributes", attributes);
+        session.put("user", Collections.singletonMap("userId", userId));
+
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("type", turn.getIntentName() == null ? "LaunchRequest" : "IntentRequest");
+        request.put("requestId", "EdwRequestId." + UUID.randomUUID());
+        request.put("timestamp", ISODateTimeFormat.dateTimeNoMillis().withZoneUTC().print(DateTime.now()));
+        request.put("locale", "en-US");
+
+        if (turn.getIntentName() != null) {
+            Map<String, Object> slots = new LinkedHashMap<>();
+
+            for (Map.Entry<String, String> slot : turn.getSlots().entrySet()) {
+                Map<String, String> slotValue = new LinkedHashMap<>();
+                slotValue.put("name", slot.getKey());
+                slotValue.put("value", slot.getValue());
+                slots.put(slot.getKey(), slotValue);
+            }
+            Map<String, Object> intent = new LinkedHashMap<>();
+            intent.put("name", turn.getIntentName());
+            intent.put("slots", slots);
+            request.put("intent", intent);
+        }
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("version", "1.0");
+        envelope.put("session", session);
+        envelope.put("request", request);
+        return envelope;
+    }
+
+    private static TransitUser existingUser(String userId) {
+        TransitUser user = new TransitUser();
+        user.setUserId(userId);
+        user.setHomeAddress("1509 Blakeley Street, Seattle, WA 98105, USA");
+        user.setTimeZone("America/Los_Angeles");
+        Map<String, String> destinations = new HashMap<>();
+        destinations.put("work", "2400 Martin Street, Seattle, WA 98114, USA");
+        user.setDestinations(destinations);
+        user.setHomePlace(new LatLng(47.6613, -122.3173), "stub-home");
+        user.setDestinationPlace("work", new LatLng(47.6205, -122.3493), "stub-work");
+        return user;
+    }
+
+    /**
+     * Results of one scenario in one run
+     */
+    public static class ScenarioStats {
+        private final String name;
+        private final Histogram latencyMicros = new Histogram();
+        private final AtomicLong sessions = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private volatile long elapsedNanos;
+
+        ScenarioStats(String name) {
+            this.name = name;
+        }
+
+        public long getSessions() {
+            return sessions.get();
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public Histogram getLatencyMicros() {
+            return latencyMicros;
+        }
+    }
+
+    /**
+     * Settings of a run, given as key=value arguments
+     */
+    public static class Options {
+        int concurrency = 16;
+        int warmupSeconds = 10;
+        int durationSeconds = 30;
+        int users = 1000;
+        double mapsMedianMillis = 150;
+        double mapsP99Millis = 800;
+        double dbMedianMillis = 8;
+        double dbP99Millis = 50;
+
+        public static Options parse(String... args) {
+            Options options = new Options();
+
+            for (String arg : args) {
+                String[] keyValue = arg.split("=", 2);
+                Validate.isTrue(keyValue.length == 2, "Expected key=value: " + arg);
+                String value = keyValue[1];
+
+                switch (keyValue[0]) {
+                    case "concurrency": options.concurrency = Integer.parseInt(value); break;
+                    case "warmupSeconds": options.warmupSeconds = Integer.parseInt(value); break;
+                    case "durationSeconds": options.durationSeconds = Integer.parseInt(value); break;
+                    case "users": options.users = Integer.parseInt(value); break;
+                    case "mapsMedianMillis": options.mapsMedianMillis = Double.parseDouble(value); break;
+                    case "mapsP99Millis": options.mapsP99Millis = Double.parseDouble(value); break;
+                    case "dbMedianMillis": options.dbMedianMillis = Double.parseDouble(value); break;
+                    case "dbP99Millis": options.dbP99Millis = Double.parseDouble(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + keyValue[0]);
+                }
+            }
+            Validate.isTrue(options.concurrency > 0 && options.users > 0);
+            return options;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.loadtest;
+
+import com.ramnani.alexaskills.CommuteHelper.metrics.Metrics;
+import com.ramnani.alexaskills.CommuteHelper.metrics.StdoutMetricsSink;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for LoadHarness
+ */
+public class LoadHarnessTest {
+
+    @After
+    public void tearDown() {
+        Metrics.configure(new StdoutMetricsSink(), 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void everyScenarioCompletesWithoutErrors() throws Exception {
+        LoadHarness.Options options = LoadHarness.Options.parse(
+                "concurrency=" + Scenario.defaultScenarios().size(), "users=10",
+                "mapsMedianMillis=0", "mapsP99Millis=0", "dbMedianMillis=0", "dbP99Millis=0");
+        LoadHarness harness = new LoadHarness(options, Scenario.defaultScenarios());
+        Map<String, LoadHarness.ScenarioStats> stats = harness.run(0);
+
+        for (Scenario scenario : Scenario.defaultScenarios()) {
+            LoadHarness.ScenarioStats scenarioStats = stats.get(scenario.getName());
+            assertTrue(scenario.getName(), scenarioStats.getSessions() > 0);
+            assertEquals(scenario.getName(), 0, scenarioStats.getErrors());
+            assertEquals(scenario.getName(), scenarioStats.getRequests(),
+                    scenarioStats.getLatencyMicros().getCount());
+        }
+        assertTrue(harness.report().contains("nextTransit"));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.loadtest;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A multi-turn Alexa conversation. Each turn is sent in the same session, with
+ * the session attributes returned by the previous turn. Only the last turn may
+ * end the session.
+ */
+public class Scenario {
+
+    private final String name;
+    private final boolean existingUser;
+    private final List<Turn> turns;
+
+    /**
+     * @param existingUser Whether the conversation is with a user that has completed
+     *                     setup, or with a new user
+     */
+    public Scenario(String name, boolean existingUser, Turn... turns) {
+        Validate.notNull(name);
+        Validate.notEmpty(turns);
+
+        this.name = name;
+        this.existingUser = existingUser;
+        this.turns = Collections.unmodifiableList(Arrays.asList(turns));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isExistingUser() {
+        return existingUser;
+    }
+
+    public List<Turn> getTurns() {
+        return turns;
+    }
+
+    /**
+     * The conversations of a typical day: mostly commute questions and follow-ups,
+     * with some new users going through setup and some address changes.
+     */
+    public static List<Scenario> defaultScenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new Scenario("nextTransit", true,
+                Turn.launch(),
+                Turn.intent("GetNextTransitToWork", "transit", "bus"),
+                Turn.intent("AMAZON.NextIntent"),
+                Turn.intent("YesIntent"),
+                Turn.intent("GetArrivalTime"),
+                Turn.intent("GetDirections"),
+                Turn.intent("NoIntent")));
+        scenarios.add(new Scenario("quickQuestion", true,
+                Turn.intent("GetNextTransitToWork", "transit", "train"),
+                Turn.intent("GetTotalTransitDuration"),
+                Turn.intent("AMAZON.StopIntent")));
+        scenarios.add(new Scenario("setup", false,
+                Turn.launch(),
+                Turn.intent("GetNextTransitToWork", "transit", "bus"),
+                Turn.intent("PutPostalAddress", "address", "1509 Blakeley Street"),
+                Turn.intent("YesIntent"),
+                Turn.intent("PutPostalAddress", "address", "2400 Martin Street"),
+                Turn.intent("YesIntent")));
+        scenarios.add(new Scenario("updateWorkAddress", true,
+                Turn.intent("UpdateWorkAddress"),
+                Turn.intent("PutPostalAddress", "address", "1920 Sixteenth Avenue"),
+                Turn.intent("YesIntent")));
+        scenarios.add(new Scenario("getHomeAddress", true,
+                Turn.intent("GetHomeAddress")));
+        return scenarios;
+    }
+
+    /**
+     * A LaunchRequest, or an IntentRequest with its slot values
+     */
+    public static class Turn {
+        private final String intentName;
+        private final Map<String, String> slots;
+
+        private Turn(String intentName, Map<String, String> slots) {
+            this.intentName = intentName;
+            this.slots = slots;
+        }
+
+        public static Turn launch() {
+            return new Turn(null, Collections.emptyMap());
+        }
+
+        public static Turn intent(String intentName) {
+            return new Turn(intentName, Collections.emptyMap());
+        }
+
+        public static Turn intent(String intentName, String slotName, String slotValue) {
+            return new Turn(intentName, Collections.singletonMap(slotName, slotValue));
+        }
+
+        /**
+         * @return The intent name, or null for a LaunchRequest
+         */
+        public String getIntentName() {
+            return intentName;
+        }
+
+        public Map<String, String> getSlots() {
+            return slots;
+        }
+    }
+}
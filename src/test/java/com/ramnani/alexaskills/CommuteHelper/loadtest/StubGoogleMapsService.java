@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.loadtest;
+
+import com.google.maps.model.Geometry;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResult;
+import com.ramnani.alexaskills.CommuteHelper.GoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.TransitSuggestion;
+import org.apache.commons.lang3.Validate;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.ramnani.alexaskills.CommuteHelper.maps.TransitRouteBuilder.duration;
+
+/**
+ * GoogleMapsService that answers every call in-process with synthetic data,
+ * after waiting for a latency drawn from the configured distribution.
+ */
+public class StubGoogleMapsService extends GoogleMapsService {
+
+    private static final String TIMEZONE = "America/Los_Angeles";
+    private static final int SUGGESTIONS = 3;
+
+    private final LatencyDistribution latency;
+
+    public StubGoogleMapsService(LatencyDistribution latency) {
+        super("stub");
+        Validate.notNull(latency);
+        this.latency = latency;
+    }
+
+    @Override
+    public String getAddressOfPlace(String placeName) {
+        PlacesSearchResult place = getPlace(placeName);
+        return place == null ? null : place.formattedAddress;
+    }
+
+    @Override
+    public PlacesSearchResult getPlace(String placeName) {
+        latency.sleep();
+
+        if (placeName == null || placeName.isEmpty()) {
+            return null;
+        }
+        PlacesSearchResult place = new PlacesSearchResult();
+        place.formattedAddress = placeName + ", Seattle, WA 98101, USA";
+        place.placeId = "stub-place";
+        place.geometry = new Geometry();
+        place.geometry.location = new LatLng(47.61, -122.33);
+        return place;
+    }
+
+    @Override
+    public CompletableFuture<String> getTimezoneFromLocationAsync(LatLng location) {
+        return CompletableFuture.supplyAsync(() -> {
+            latency.sleep();
+            return TIMEZONE;
+        });
+    }
+
+    @Override
+    public String getTimezoneFromAddress(String address) {
+        // a geocoding call followed by a timezone call
+        latency.sleep();
+        latency.sleep();
+        return TIMEZONE;
+    }
+
+    @Override
+    public String getTimezoneFromLocation(LatLng location) {
+        latency.sleep();
+        return TIMEZONE;
+    }
+
+    @Override
+    public List<TransitSuggestion> getNextTransitToDestination(String transitType,
+                                                               String homeAddress,
+                                                               LatLng homeLocation,
+                                                               String destinationAddress,
+                                                               LatLng destinationLocation) {
+        latency.sleep();
+        return suggestions(DateTime.now());
+    }
+
+    @Override
+    public List<TransitSuggestion> getTransitToDestinationDepartingAfter(String transitType,
+                                                                         String homeAddress,
+                                                                         LatLng homeLocation,
+                                                                         String destinationAddress,
+                                                                         LatLng destinationLocation,
+                                                                         DateTime departedAfter) {
+        latency.sleep();
+        return suggestions(departedAfter);
+    }
+
+    private static List<TransitSuggestion> suggestions(DateTime now) {
+        List<TransitSuggestion> suggestions = new ArrayList<>();
+
+        for (int i = 0; i < SUGGESTIONS; i++) {
+            DateTime walkingStart = now.plusMinutes(2 + 10 * i);
+            suggestions.add(new TransitSuggestion("Bus", walkingStart, walkingStart.plusMinutes(6),
+                    walkingStart.plusMinutes(31), duration(1740), duration(360), duration(1380),
+                    "Walk to 3rd Ave & Pike St", "Bus towards Downtown Seattle",
+                    String.valueOf(40 + i), i % 2));
+        }
+        return suggestions;
+    }
+
+    @Override
+    public void prime() {
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.loadtest;
+
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitHelperDao;
+import com.ramnani.alexaskills.CommuteHelper.Storage.TransitUser;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * TransitHelperDao backed by an in-memory map. Reads and writes wait for a
+ * latency drawn from the configured distribution. Users are copied in and out
+ * of the map, so callers can't change the stored users without saving them,
+ * the same as with DynamoDB.
+ */
+public class StubTransitHelperDao extends TransitHelperDao {
+
+    private final ConcurrentMap<String, TransitUser> users = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, ConcurrentMap<String, Long>> recentCommuters = new ConcurrentHashMap<>();
+    private final LatencyDistribution latency;
+
+    public StubTransitHelperDao(LatencyDistribution latency) {
+        super("stub");
+        Validate.notNull(latency);
+        this.latency = latency;
+    }
+
+    @Override
+    public void prime() {
+    }
+
+    @Override
+    public TransitUser getUser(String userId) {
+        latency.sleep();
+        return copy(users.get(userId));
+    }
+
+    @Override
+    public TransitUser upsertUser(String userId, String homeAddress) {
+        TransitUser user = new TransitUser();
+        user.setUserId(userId);
+        user.setHomeAddress(homeAddress);
+        return saveUser(user);
+    }
+
+    @Override
+    public TransitUser upsertUser(String userId, String homeAddress,
+                                  Map<String, String> destinations, String timeZone) {
+        TransitUser user = new TransitUser();
+        user.setUserId(userId);
+        user.setHomeAddress(homeAddress);
+        user.setDestinations(destinations);
+        user.setTimeZone(timeZone);
+        return saveUser(user);
+    }
+
+    @Override
+    public TransitUser saveUser(TransitUser user) {
+        latency.sleep();
+        users.put(user.getUserId(), copy(user));
+        return user;
+    }
+
+    @Override
+    public TransitUser updateHomeAddress(String userId, String homeAddress) {
+        TransitUser user = getExistingUser(userId);
+        user.setHomeAddress(homeAddress);
+        user.setHomePlace(null, null);
+        return saveUser(user);
+    }
+
+    @Override
+    public void addOrUpdateDestination(String userId, String name, String destinationAddress) {
+        TransitUser user = getExistingUser(userId);
+
+        if (user.getDestinations() == null) {
+            user.setDestinations(new HashMap<>());
+        }
+        user.getDestinations().put(name, destinationAddress);
+        user.setDestinationPlace(name, null, null);
+        saveUser(user);
+    }
+
+    @Override
+    public void addOrUpdateTimezone(String userId, String timezone) {
+        TransitUser user = getExistingUser(userId);
+        user.setTimeZone(timezone);
+        saveUser(user);
+    }
+
+    @Override
+    public void deleteUser(String userId) {
+        latency.sleep();
+        users.remove(userId);
+    }
+
+    @Override
+    public boolean containsUser(String userId) {
+        latency.sleep();
+        return users.containsKey(userId);
+    }
+
+    @Override
+    public String getTimeZone(String userId) {
+        latency.sleep();
+        TransitUser user = users.get(userId);
+        return user == null ? null : user.getTimeZone();
+    }
+
+    @Override
+    public TransitUser getUnencryptedAttributes(String userId) {
+        latency.sleep();
+        TransitUser user = users.get(userId);
+
+        if (user == null) {
+            return null;
+        }
+        TransitUser plaintextUser = new TransitUser();
+        plaintextUser.setUserId(userId);
+        plaintextUser.setTimeZone(user.getTimeZone());
+        return plaintextUser;
+    }
+
+    @Override
+    public void putRecentCommuter(int slot, String userId, long expiresAtSeconds) {
+        latency.sleep();
+        recentCommuters.computeIfAbsent(slot, s -> new ConcurrentHashMap<>()).put(userId, expiresAtSeconds);
+    }
+
+    @Override
+    public List<String> getRecentCommuters(int slot, int max) {
+        latency.sleep();
+        List<String> userIds = new ArrayList<>();
+        long nowSeconds = System.currentTimeMillis() / 1000;
+
+        for (Map.Entry<String, Long> commuter : recentCommuters.getOrDefault(slot,
+                new ConcurrentHashMap<>()).entrySet()) {
+            if (userIds.size() < max && commuter.getValue() > nowSeconds) {
+                userIds.add(commuter.getKey());
+            }
+        }
+        return userIds;
+    }
+
+    /**
+     * Stores a user without any latency, for seeding the store before a run
+     */
+    public void seedUser(TransitUser user) {
+        users.put(user.getUserId(), copy(user));
+    }
+
+    private TransitUser getExistingUser(String userId) {
+        TransitUser user = getUser(userId);
+
+        if (user == null) {
+            throw new IllegalArgumentException("User does not exist: " + userId);
+        }
+        return user;
+    }
+
+    private static TransitUser copy(TransitUser user) {
+        if (user == null) {
+            return null;
+        }
+        TransitUser copy = new TransitUser();
+        copy.setUserId(user.getUserId());
+        copy.setHomeAddress(user.getHomeAddress());
+        copy.setTimeZone(user.getTimeZone());
+        copy.setHomeLocation(user.getHomeLocation());
+        copy.setHomePlaceId(user.getHomePlaceId());
+
+        if (user.getDestinations() != null) {
+            copy.setDestinations(new HashMap<>(user.getDestinations()));
+        }
+        if (user.getDestinationLocations() != null) {
+            copy.setDestinationLocations(new HashMap<>(user.getDestinationLocations()));
+        }
+        if (user.getDestinationPlaceIds() != null) {
+            copy.setDestinationPlaceIds(new HashMap<>(user.getDestinationPlaceIds()));
+        }
+        return copy;
+    }
+}
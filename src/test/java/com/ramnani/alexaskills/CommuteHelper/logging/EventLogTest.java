@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.logging;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for EventLog
+ */
+public class EventLogTest {
+
+    @After
+    public void tearDown() {
+        EventLog.endRequest();
+        EventLog.configure(EventLog.DEFAULT_QUEUE_SIZE, EventLog.DEFAULT_VERBOSE_SAMPLE_RATE);
+        EventLog.setRedactionKey(null);
+    }
+
+    @Test
+    public void formatsFieldsAndRedactsAddresses() {
+        EventLog.setRedactionKey("deploy-secret");
+        EventLog.startRequest("GetNextTransitToWork");
+        String line = EventLog.event("transit.request")
+                .field("userId", "user-1")
+                .field("transitType", "light rail")
+                .field("missing", null)
+                .address("home", "1 Main St, Seattle, WA")
+                .format();
+
+        assertTrue(line, line.startsWith("event=transit.request intent=GetNextTransitToWork userId=user-1 "
+                + "transitType=\"light rail\" missing=- home=addr-"));
+        assertFalse(line, line.contains("Main"));
+        assertEquals(EventLog.redact("1 Main St, Seattle, WA"), EventLog.redact(" 1 main st, seattle, wa"));
+        assertNotEquals(EventLog.redact("1 Main St"), EventLog.redact("2 Main St"));
+    }
+
+    @Test
+    public void addressHashesDependOnTheKey() {
+        assertEquals("addr-redacted", EventLog.redact("1 Main St"));
+
+        EventLog.setRedactionKey("deploy-1");
+        String first = EventLog.redact("1 Main St");
+        EventLog.setRedactionKey("deploy-2");
+
+        assertTrue(first, first.matches("addr-[0-9a-f]{16}"));
+        assertNotEquals(first, EventLog.redact("1 Main St"));
+    }
+
+    @Test
+    public void verboseEventsAreSampledPerIntent() {
+        EventLog.configure(10, 3);
+        int sampled = 0;
+
+        for (int i = 0; i < 9; i++) {
+            EventLog.startRequest("AMAZON.NextIntent");
+
+            if (EventLog.verbose("suggestion") != Event.DISCARDED) {
+                sampled++;
+            }
+        }
+        assertEquals(3, sampled);
+
+        // The first request of another intent is sampled as well
+        EventLog.startRequest("GetArrivalTime");
+        assertNotEquals(Event.DISCARDED, EventLog.verbose("suggestion"));
+    }
+
+    @Test
+    public void discardedEventsDontComputeLazyFields() {
+        EventLog.configure(10, 0);
+        EventLog.startRequest("AMAZON.NextIntent");
+        AtomicBoolean computed = new AtomicBoolean();
+
+        Event event = EventLog.verbose("suggestion").lazy("text", () -> computed.getAndSet(true));
+        event.log();
+        EventLog.flush();
+
+        assertSame(Event.DISCARDED, event);
+        assertFalse(computed.get());
+    }
+
+    @Test
+    public void dropsEventsInsteadOfBlockingWhenTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        AsyncEventWriter writer = new AsyncEventWriter(2, line -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(line);
+        });
+        int accepted = 0;
+
+        for (int i = 0; i < 10; i++) {
+            if (writer.offer(new Event("event" + i, null))) {
+                accepted++;
+            }
+        }
+        assertTrue("accepted " + accepted, accepted >= 2 && accepted <= 3);
+
+        release.countDown();
+        writer.close();
+        assertEquals(accepted, written.size());
+    }
+}
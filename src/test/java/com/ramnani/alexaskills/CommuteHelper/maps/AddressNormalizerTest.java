@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit Tests for AddressNormalizer
+ */
+public class AddressNormalizerTest {
+
+    private static final String KEY = "2400 boyer ave e seattle|wa|98112";
+
+    @Test
+    public void spellingsOfTheSameAddressShareTheKey() {
+        assertEquals(KEY, AddressNormalizer.normalize("2400 Boyer Ave E, Seattle, WA 98112, USA"));
+        assertEquals(KEY, AddressNormalizer.normalize("2400 Boyer Avenue East, Seattle, Washington 98112-1234"));
+        assertEquals(KEY, AddressNormalizer.normalize("2400 BOYER AVE E #12B, SEATTLE, WA 98112"));
+
+        assertEquals("2400 boyer ave e seattle|wa|",
+                AddressNormalizer.normalize("2400 boyer avenue east seattle washington"));
+        assertEquals("2400 boyer ave e seattle|wa|",
+                AddressNormalizer.normalize("2400 Boyer Ave. E., Apt 5, Seattle, WA"));
+    }
+
+    @Test
+    public void keepsWhatTellsPlacesApart() {
+        assertNotEquals(AddressNormalizer.normalize("2400 Boyer Ave E, Seattle, WA"),
+                AddressNormalizer.normalize("2400 Boyer Ave W, Seattle, WA"));
+        assertNotEquals(AddressNormalizer.normalize("1 Main St, Portland, OR"),
+                AddressNormalizer.normalize("1 Main St, Portland, ME"));
+    }
+
+    @Test
+    public void differentPostalCodesGiveDifferentKeys() {
+        assertEquals("100 main st||98101", AddressNormalizer.normalize("100 Main St 98101"));
+        assertEquals("100 main st||10001", AddressNormalizer.normalize("100 Main St 10001"));
+        assertNotEquals(AddressNormalizer.normalize("100 Main St, Springfield, 62701"),
+                AddressNormalizer.normalize("100 Main St, Springfield, 01103"));
+    }
+
+    @Test
+    public void addressesThatCouldBeInAnyCityHaveNoKey() {
+        assertNull(AddressNormalizer.normalize("100 Main St"));
+        assertNull(AddressNormalizer.normalize("100 Main St, Springfield"));
+    }
+
+    @Test
+    public void directionsAreNotTakenForStates() {
+        // NE is Nebraska, but without commas it's the street's direction
+        assertEquals("500 pine st ne||98101", AddressNormalizer.normalize("500 Pine Street Northeast 98101"));
+        assertEquals("500 pine st ne||98101", AddressNormalizer.normalize("500 pine st ne 98101"));
+        assertEquals("500 pine st ne redmond|wa|", AddressNormalizer.normalize("500 Pine St NE, Redmond, WA"));
+        assertEquals("100 1st ave miami|fl|33101", AddressNormalizer.normalize("100 First Avenue, Miami, FL 33101"));
+    }
+
+    @Test
+    public void addressesWithoutWordsHaveNoKey() {
+        assertNull(AddressNormalizer.normalize(null));
+        assertNull(AddressNormalizer.normalize(" , ."));
+    }
+}
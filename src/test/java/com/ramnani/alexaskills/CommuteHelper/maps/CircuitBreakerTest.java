@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.ramnani.alexaskills.CommuteHelper.GoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.TransitSuggestion;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for CircuitBreaker
+ */
+public class CircuitBreakerTest {
+
+    private static final CircuitBreaker.Settings SETTINGS = new CircuitBreaker.Settings(10, 4, 50, 1000, 80, 5);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(2000);
+
+    private long now = 1000000;
+    private final CircuitBreaker breaker = new CircuitBreaker("Directions", SETTINGS, () -> now);
+
+    @Test
+    public void opensWhenTooManyCallsFail() {
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void opensWhenTooManyCallsAreSlow() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(SLOW);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void oldCallsLeaveTheWindow() {
+        breaker.onError(FAST);
+        breaker.onError(FAST);
+        breaker.onError(FAST);
+        now += 11000;
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void probesOnceAfterTheOpenTime() {
+        open();
+        now += 5000;
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        now += 5000;
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void directionsAreAnsweredFromRecentRoutesWhileUnavailable() {
+        FakeMapsApi maps = new FakeMapsApi();
+        GoogleMapsService service = new GoogleMapsService(maps, null, null, SETTINGS);
+
+        List<TransitSuggestion> fresh = service.getNextTransitToDestination("bus", "home", "work");
+        assertEquals(0, fresh.get(0).getStaleMinutes());
+
+        maps.setDirectionsAvailable(false);
+
+        for (int i = 0; i < 5; i++) {
+            List<TransitSuggestion> recent = service.getNextTransitToDestination("bus", "home", "work");
+            assertEquals(fresh.get(0).getTransitStartTime(), recent.get(0).getTransitStartTime());
+        }
+        // Three failures out of four calls opened the breaker
+        assertEquals(4, maps.getDirectionsCalls());
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+}
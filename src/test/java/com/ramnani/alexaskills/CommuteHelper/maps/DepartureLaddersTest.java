@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import org.joda.time.DateTime;
+import org.joda.time.Instant;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for DepartureLadders
+ */
+public class DepartureLaddersTest {
+
+    private final List<Instant> fetches = new ArrayList<>();
+
+    /**
+     * Three departures, 10 minutes apart, starting 5 minutes after the
+     * requested departure time
+     */
+    private final DepartureLadders.Fetcher fetcher = (origin, destination, departureTime) -> {
+        fetches.add(departureTime);
+        DirectionsRoute[] routes = new DirectionsRoute[3];
+
+        for (int i = 0; i < routes.length; i++) {
+            DateTime departure = departureTime.toDateTime().plusMinutes(5 + 10 * i);
+            routes[i] = TransitRouteBuilder.departingAt(departure).build();
+        }
+        return routes;
+    };
+
+    @Test
+    public void laterRequestsAreReadFromTheLadder() {
+        DepartureLadders ladders = new DepartureLadders(3, 2, 10, 10, 10, 1000, Runnable::run);
+
+        DirectionsRoute[] first = ladders.getUpcoming("home", "work", fetcher).getRoutes();
+        assertEquals(2, fetches.size());
+        // The calls are 10 minutes apart, so two departures are returned twice
+        assertEquals(4, first.length);
+
+        DirectionsRoute[] second = ladders.getUpcoming("home", "work", fetcher).getRoutes();
+        assertEquals(2, fetches.size());
+        assertEquals(4, second.length);
+
+        for (int i = 1; i < second.length; i++) {
+            assertTrue(departure(second[i - 1]) < departure(second[i]));
+        }
+    }
+
+    @Test
+    public void routesCarryTheTimeTheyWereFetched() throws Exception {
+        DepartureLadders ladders = new DepartureLadders(3, 1, 10, 10, 10, 1000, Runnable::run);
+        long before = System.currentTimeMillis();
+
+        long fetchedAt = ladders.getUpcoming("home", "work", fetcher).getFetchedAtMillis();
+        assertTrue(fetchedAt >= before);
+
+        Thread.sleep(5);
+        assertEquals(fetchedAt, ladders.getUpcoming("home", "work", fetcher).getFetchedAtMillis());
+        assertEquals(1, fetches.size());
+    }
+
+    @Test
+    public void topsUpInTheBackgroundWhenDeparturesAreLeft() throws Exception {
+        List<Runnable> pending = new CopyOnWriteArrayList<>();
+        DepartureLadders ladders = new DepartureLadders(5, 1, 15, 10, 10, 1000, pending::add);
+
+        // Nothing is known yet, so the first request waits for the top up
+        Thread runner = new Thread(() -> {
+            while (pending.isEmpty()) {
+                Thread.yield();
+            }
+            pending.remove(0).run();
+        });
+        runner.start();
+        assertEquals(3, ladders.getUpcoming("home", "work", fetcher).getRoutes().length);
+        // The request may go before the top up is marked finished
+        runner.join();
+
+        // Three are left, fewer than five, but the request doesn't wait
+        assertEquals(3, ladders.getUpcoming("home", "work", fetcher).getRoutes().length);
+        assertEquals(1, pending.size());
+
+        pending.remove(0).run();
+        assertEquals(2, fetches.size());
+        // The top up starts at the last known departure
+        assertEquals(departureOf(fetches.get(0), 25), fetches.get(1).getMillis());
+        assertEquals(6, ladders.getUpcoming("home", "work", fetcher).getRoutes().length);
+        assertEquals(2, fetches.size());
+    }
+
+    @Test
+    public void requestsOnAnEmptyLadderWaitForTheTopUpInFlight() throws Exception {
+        List<Runnable> pending = new CopyOnWriteArrayList<>();
+        DepartureLadders ladders = new DepartureLadders(3, 1, 10, 10, 10, 1000, pending::add);
+        AtomicInteger first = new AtomicInteger();
+
+        Thread firstRequest = new Thread(() -> first.set(ladders.getUpcoming("home", "work", fetcher).getRoutes().length));
+        firstRequest.start();
+
+        while (pending.isEmpty()) {
+            Thread.yield();
+        }
+        Thread runner = new Thread(() -> {
+            // Give the second request time to start waiting
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            pending.remove(0).run();
+        });
+        runner.start();
+
+        assertEquals(3, ladders.getUpcoming("home", "work", fetcher).getRoutes().length);
+        firstRequest.join();
+        assertEquals(3, first.get());
+        assertEquals(1, fetches.size());
+    }
+
+    @Test
+    public void emptyLadderIsAnsweredOnceTheFirstCallReturns() {
+        List<Runnable> pending = new CopyOnWriteArrayList<>();
+        List<MapsPriority> priorities = new CopyOnWriteArrayList<>();
+        DepartureLadders ladders = new DepartureLadders(3, 2, 10, 10, 10, 1000, pending::add);
+        DepartureLadders.Fetcher prioritized = (origin, destination, departureTime) -> {
+            priorities.add(MapsPriority.current());
+            return fetcher.fetch(origin, destination, departureTime);
+        };
+
+        Thread runner = new Thread(() -> {
+            while (pending.size() < 2) {
+                Thread.yield();
+            }
+            pending.remove(0).run();
+        });
+        runner.start();
+
+        assertEquals(3, ladders.getUpcoming("home", "work", prioritized).getRoutes().length);
+        // The second call is still pending, and doesn't hold up the user
+        assertEquals(1, pending.size());
+
+        pending.remove(0).run();
+        assertEquals(Arrays.asList(MapsPriority.INTERACTIVE, MapsPriority.PREFETCH), priorities);
+        assertEquals(4, ladders.getUpcoming("home", "work", fetcher).getRoutes().length);
+    }
+
+    @Test
+    public void rejectedTopUpIsFinished() {
+        AtomicBoolean isSaturated = new AtomicBoolean(true);
+        DepartureLadders ladders = new DepartureLadders(3, 2, 10, 10, 10, 1000, runnable -> {
+            if (isSaturated.get()) {
+                throw new RejectedExecutionException();
+            }
+            runnable.run();
+        });
+
+        assertNull(ladders.getUpcoming("home", "work", fetcher));
+        assertTrue(fetches.isEmpty());
+
+        // Not left marked as topping up, so the next request tops up
+        isSaturated.set(false);
+        assertEquals(4, ladders.getUpcoming("home", "work", fetcher).getRoutes().length);
+    }
+
+    private static long departureOf(Instant requested, int minutes) {
+        return requested.toDateTime().plusMinutes(minutes).getMillis();
+    }
+
+    private static long departure(DirectionsRoute route) {
+        return route.legs[0].steps[0].transitDetails.departureTime.getMillis();
+    }
+}
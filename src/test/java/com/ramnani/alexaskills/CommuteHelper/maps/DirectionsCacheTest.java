@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.LatLng;
+import com.ramnani.alexaskills.CommuteHelper.GoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.TransitSuggestion;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for DirectionsCache
+ */
+public class DirectionsCacheTest {
+
+    private static final LatLng STOP = new LatLng(47.6101, -122.3421);
+    private static final LatLng WORK = new LatLng(47.6205, -122.3493);
+
+    @Test
+    public void encodesGeohash() {
+        assertEquals("u4pruydqqvj", Geohash.encode(new LatLng(57.64911, 10.40744), 11));
+
+        LatLng center = Geohash.decode("c23nb62");
+        assertEquals("c23nb62", Geohash.encode(center, 7));
+    }
+
+    @Test
+    public void entriesExpireWithTheirDepartureBucket() {
+        DirectionsCache cache = new DirectionsCache(7, 120, 10);
+        String key = cache.key("c23nb62", "c23nbr0", 0);
+        cache.put(key, new DirectionsRoute[0], 60000);
+
+        assertEquals(key, cache.key("c23nb62", "c23nbr0", 119999));
+        assertEquals(0, cache.get(key, 119999).getRoutes().length);
+        assertNull(cache.get(key, 120000));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void nearbyUsersShareDirections() {
+        // A few dozen meters apart, in the same cell of precision 6
+        FakeMapsApi maps = busFromTheStop()
+                .withLocation("home 1", new LatLng(47.6080, -122.3400))
+                .withLocation("home 2", new LatLng(47.6082, -122.3403))
+                .withLocation("work", WORK);
+        GoogleMapsService service = new GoogleMapsService(maps, new DirectionsCache(6, 120, 10));
+
+        List<TransitSuggestion> first = service.getNextTransitToDestination("bus", "home 1", "work");
+        List<TransitSuggestion> second = service.getNextTransitToDestination("bus", "home 2", "work");
+
+        assertEquals(1, maps.getDirectionsCalls());
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertEquals(first.get(0).getTransitStartTime(), second.get(0).getTransitStartTime());
+
+        // The walk to the stop is the user's own, not the one from the cell center
+        long walkingSeconds = first.get(0).getWalkingDuration().inSeconds;
+        assertTrue(walkingSeconds > 200 && walkingSeconds < 400);
+        assertEquals(first.get(0).getTransitStartTime().minusSeconds((int) walkingSeconds),
+                first.get(0).getWalkingStartTime());
+    }
+
+    @Test
+    public void storedCoordinatesAreNotGeocoded() {
+        FakeMapsApi maps = busFromTheStop();
+        GoogleMapsService service = new GoogleMapsService(maps, new DirectionsCache(6, 120, 10));
+
+        List<TransitSuggestion> suggestions = service.getNextTransitToDestination("bus",
+                "home", new LatLng(47.6080, -122.3400), "work", WORK);
+
+        assertEquals(0, maps.getGeocodeCalls());
+        assertEquals(1, maps.getDirectionsCalls());
+        assertEquals(1, suggestions.size());
+    }
+
+    private static FakeMapsApi busFromTheStop() {
+        return new FakeMapsApi().withDirections(departureTime ->
+                TransitRouteBuilder.departingAt(departureTime.toDateTime().plusMinutes(10))
+                        .walking(60)
+                        .stops("3rd Ave & Pike St", STOP, "Seattle Center", WORK)
+                        .build());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.TravelMode;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Unit Tests for DirectionsResponses
+ */
+public class DirectionsResponsesTest {
+
+    @Test
+    public void primingResponseIsParsedLikeALiveOne() throws IOException {
+        DirectionsRoute[] routes = DirectionsResponses.load("fixtures/directions-prime.json");
+
+        assertEquals(1, routes.length);
+        DirectionsLeg leg = routes[0].legs[0];
+        assertNotNull(leg.departureTime);
+        assertEquals(TravelMode.WALKING, leg.steps[0].travelMode);
+        assertEquals(TravelMode.TRANSIT, leg.steps[1].travelMode);
+        assertEquals("Bus", leg.steps[1].transitDetails.line.vehicle.name);
+    }
+
+    @Test(expected = IOException.class)
+    public void missingResponseFails() throws IOException {
+        DirectionsResponses.load("fixtures/missing.json");
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.GeocodingResult;
+import com.google.maps.model.Geometry;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlacesSearchResponse;
+import com.google.maps.model.PlacesSearchResult;
+import org.joda.time.Instant;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * MapsApi answering from what a test configured it with. Directions returns
+ * one bus route leaving 10 minutes after the requested departure time unless
+ * told otherwise; Places, Geocoding and Time Zone calls fail until they're
+ * configured.
+ */
+public class FakeMapsApi implements MapsApi {
+
+    private String placeName;
+    private final Map<String, LatLng> locations = new HashMap<>();
+    private LatLng anyLocation;
+    private TimeZone timeZone;
+    private Function<Instant, DirectionsRoute> directions = departureTime ->
+            TransitRouteBuilder.departingAt(departureTime.toDateTime().plusMinutes(10)).build();
+    private boolean isDirectionsAvailable = true;
+    private int geocodeCalls;
+    private int directionsCalls;
+
+    public FakeMapsApi withPlace(String name) {
+        this.placeName = name;
+        return this;
+    }
+
+    public FakeMapsApi withLocation(String address, LatLng location) {
+        locations.put(address, location);
+        return this;
+    }
+
+    /**
+     * Geocodes the addresses without a location of their own to this one
+     */
+    public FakeMapsApi withAnyLocation(LatLng location) {
+        this.anyLocation = location;
+        return this;
+    }
+
+    public FakeMapsApi withTimeZone(String id) {
+        this.timeZone = TimeZone.getTimeZone(id);
+        return this;
+    }
+
+    public FakeMapsApi withDirections(Function<Instant, DirectionsRoute> directions) {
+        this.directions = directions;
+        return this;
+    }
+
+    /**
+     * @param isAvailable false makes Directions calls fail with an IOException
+     */
+    public void setDirectionsAvailable(boolean isAvailable) {
+        this.isDirectionsAvailable = isAvailable;
+    }
+
+    public int getGeocodeCalls() {
+        return geocodeCalls;
+    }
+
+    public int getDirectionsCalls() {
+        return directionsCalls;
+    }
+
+    @Override
+    public PlacesSearchResponse textSearch(String query) {
+        if (placeName == null) {
+            throw new UnsupportedOperationException();
+        }
+        PlacesSearchResult place = new PlacesSearchResult();
+        place.name = placeName;
+        PlacesSearchResponse response = new PlacesSearchResponse();
+        response.results = new PlacesSearchResult[] { place };
+        return response;
+    }
+
+    @Override
+    public GeocodingResult[] geocode(String address) {
+        if (locations.isEmpty() && anyLocation == null) {
+            throw new UnsupportedOperationException();
+        }
+        geocodeCalls++;
+        GeocodingResult result = new GeocodingResult();
+        result.geometry = new Geometry();
+        result.geometry.location = locations.getOrDefault(address, anyLocation);
+        return new GeocodingResult[] { result };
+    }
+
+    @Override
+    public TimeZone getTimeZone(LatLng location) {
+        if (timeZone == null) {
+            throw new UnsupportedOperationException();
+        }
+        return timeZone;
+    }
+
+    @Override
+    public CompletableFuture<TimeZone> getTimeZoneAsync(LatLng location) {
+        return CompletableFuture.completedFuture(getTimeZone(location));
+    }
+
+    @Override
+    public DirectionsRoute[] getTransitDirections(String origin, String destination, Instant departureTime)
+            throws IOException {
+        directionsCalls++;
+
+        if (!isDirectionsAvailable) {
+            throw new IOException("Directions is unavailable");
+        }
+        return new DirectionsRoute[] { directions.apply(departureTime) };
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.ramnani.alexaskills.CommuteHelper.deadline.Deadline;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit Tests for QpsGovernor
+ */
+public class QpsGovernorTest {
+
+    @Test
+    public void spreadsCallsOverTheKeys() throws Exception {
+        QpsGovernor governor = new QpsGovernor(2, 0.001, 1, 10);
+
+        int first = governor.acquire(MapsPriority.INTERACTIVE);
+        int second = governor.acquire(MapsPriority.INTERACTIVE);
+        assertNotEquals(first, second);
+
+        try {
+            governor.acquire(MapsPriority.INTERACTIVE);
+            fail("Both keys are out of quota");
+        } catch (MapsThrottledException expected) {
+        }
+    }
+
+    @Test
+    public void batchCallsLeaveTheReserveToInteractiveOnes() throws Exception {
+        QpsGovernor governor = new QpsGovernor(1, 0.001, 4, 10);
+
+        // Batch calls leave half of the burst
+        governor.acquire(MapsPriority.BATCH);
+        governor.acquire(MapsPriority.BATCH);
+        // which interactive calls get without waiting
+        long start = System.currentTimeMillis();
+        governor.acquire(MapsPriority.INTERACTIVE);
+        governor.acquire(MapsPriority.INTERACTIVE);
+        assertEquals(0, (System.currentTimeMillis() - start) / 100);
+    }
+
+    @Test
+    public void interactiveCallsGoFirst() throws Exception {
+        QpsGovernor governor = new QpsGovernor(1, 10, 1, 10);
+        governor.acquire(MapsPriority.INTERACTIVE);
+        List<MapsPriority> order = new CopyOnWriteArrayList<>();
+
+        Thread prefetch = new Thread(() -> {
+            try {
+                governor.acquire(MapsPriority.PREFETCH);
+                order.add(MapsPriority.PREFETCH);
+            } catch (MapsThrottledException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        prefetch.start();
+
+        while (governor.getQueueLength(MapsPriority.PREFETCH) == 0) {
+            Thread.yield();
+        }
+        governor.acquire(MapsPriority.INTERACTIVE);
+        order.add(MapsPriority.INTERACTIVE);
+        prefetch.join();
+
+        assertEquals(MapsPriority.INTERACTIVE, order.get(0));
+        assertEquals(MapsPriority.PREFETCH, order.get(1));
+    }
+
+    @Test
+    public void waitsNoLongerThanTheDeadline() throws Exception {
+        QpsGovernor governor = new QpsGovernor(1, 0.001, 1, 10);
+        governor.acquire(MapsPriority.BATCH);
+        Deadline.start(50);
+        long start = System.currentTimeMillis();
+
+        try {
+            governor.acquire(MapsPriority.BATCH);
+            fail("The key is out of quota");
+        } catch (MapsThrottledException expected) {
+        } finally {
+            Deadline.clear();
+        }
+        assertEquals(0, (System.currentTimeMillis() - start) / 1000);
+    }
+}
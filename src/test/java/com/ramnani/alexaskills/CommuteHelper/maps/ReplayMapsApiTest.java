@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.TravelMode;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Instant;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit Tests for ReplayMapsApi
+ */
+public class ReplayMapsApiTest {
+
+    private static final DateTime RECORDED_DEPARTURE =
+            new DateTime(2017, 3, 6, 8, 0, DateTimeZone.forID("America/Los_Angeles"));
+    private static final LatLng LOCATION = new LatLng(47.6062, -122.3321);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysRecordedResponses() throws Exception {
+        Path file = record();
+        ReplayMapsApi replay = new ReplayMapsApi(MapsCorpus.open(file), ReplayMapsApi.Latency.none());
+
+        assertEquals("Pike Place Market", replay.textSearch("pike place").results[0].name);
+        assertEquals(LOCATION.lat, replay.geocode("seattle")[0].geometry.location.lat, 0);
+        assertEquals("America/Los_Angeles", replay.getTimeZone(LOCATION).getID());
+        assertEquals("America/Los_Angeles", replay.getTimeZoneAsync(LOCATION).get().getID());
+    }
+
+    @Test
+    public void replayedRoutesMoveToTheRequestedDepartureTime() throws Exception {
+        ReplayMapsApi replay = new ReplayMapsApi(MapsCorpus.open(record()), ReplayMapsApi.Latency.none());
+        DateTime departure = RECORDED_DEPARTURE.plusDays(30).plusMinutes(7);
+
+        DirectionsRoute[] routes = replay.getTransitDirections("home", "work", new Instant(departure));
+        DirectionsLeg leg = routes[0].legs[0];
+
+        assertEquals(departure.getMillis(), leg.departureTime.getMillis());
+        assertEquals(departure.plusMinutes(25).getMillis(), leg.arrivalTime.getMillis());
+        assertEquals(departure.plusMinutes(5).getMillis(),
+                leg.steps[1].transitDetails.departureTime.getMillis());
+        assertEquals(RECORDED_DEPARTURE.getZone(), leg.departureTime.getZone());
+        assertEquals(TravelMode.TRANSIT, leg.steps[1].travelMode);
+        assertEquals(1200, leg.steps[1].duration.inSeconds);
+    }
+
+    @Test
+    public void unrecordedRequestsFail() throws Exception {
+        ReplayMapsApi replay = new ReplayMapsApi(MapsCorpus.open(record()), ReplayMapsApi.Latency.none());
+
+        try {
+            replay.getTransitDirections("home", "gym", Instant.now());
+            fail("Expected the unrecorded request to fail");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertTrue(replay.getTimeZoneAsync(new LatLng(0, 0)).isCompletedExceptionally());
+    }
+
+    @Test
+    public void truncatedRecordIsIgnored() throws Exception {
+        Path file = record();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        MapsCorpus corpus = MapsCorpus.open(file);
+
+        assertEquals(4, corpus.size());
+        assertNull(corpus.next(MapsCorpus.transitDirectionsKey("home", "work")));
+    }
+
+    @Test
+    public void parsesLatency() {
+        MapsCorpus.Entry entry = new MapsCorpus.Entry("key", 0, 1500, 0, 0);
+
+        assertEquals(0, ReplayMapsApi.Latency.parse("none").delayMicros(entry));
+        assertEquals(1500, ReplayMapsApi.Latency.parse("recorded").delayMicros(entry));
+        assertEquals(20000, ReplayMapsApi.Latency.parse("20").delayMicros(entry));
+    }
+
+    /**
+     * Records one response per API, with the directions last
+     */
+    private Path record() throws Exception {
+        Path file = folder.newFile().toPath();
+
+        try (MapsCorpusWriter writer = new MapsCorpusWriter(file)) {
+            MapsApi maps = new FakeMapsApi()
+                    .withPlace("Pike Place Market")
+                    .withAnyLocation(LOCATION)
+                    .withTimeZone("America/Los_Angeles")
+                    .withDirections(departureTime -> TransitRouteBuilder
+                            .departingAt(departureTime.toDateTime(RECORDED_DEPARTURE.getZone()).plusMinutes(5))
+                            .walking(300)
+                            .riding(1200)
+                            .build());
+            RecordingMapsApi recording = new RecordingMapsApi(maps, writer);
+            recording.textSearch("pike place");
+            recording.geocode("seattle");
+            recording.getTimeZone(LOCATION);
+            recording.getTimeZoneAsync(LOCATION).get();
+            recording.getTransitDirections("home", "work", new Instant(RECORDED_DEPARTURE));
+        }
+        return file;
+    }
+
+}
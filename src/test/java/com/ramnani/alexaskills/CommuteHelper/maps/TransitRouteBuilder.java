@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.maps;
+
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.DirectionsStep;
+import com.google.maps.model.Duration;
+import com.google.maps.model.LatLng;
+import com.google.maps.model.StopDetails;
+import com.google.maps.model.TransitDetails;
+import com.google.maps.model.TransitLine;
+import com.google.maps.model.TravelMode;
+import com.google.maps.model.Vehicle;
+import org.joda.time.DateTime;
+
+/**
+ * Builds a one leg Directions route riding a bus, optionally after a walk to
+ * the stop. The leg starts when the walk does, and ends when the ride does.
+ */
+public class TransitRouteBuilder {
+
+    private final DateTime departure;
+    private Long walkingSeconds;
+    private long ridingSeconds = 600;
+    private String line = "8";
+    private StopDetails departureStop;
+    private StopDetails arrivalStop;
+
+    private TransitRouteBuilder(DateTime departure) {
+        this.departure = departure;
+    }
+
+    /**
+     * @param departure When the bus leaves the stop
+     */
+    public static TransitRouteBuilder departingAt(DateTime departure) {
+        return new TransitRouteBuilder(departure);
+    }
+
+    public TransitRouteBuilder walking(long seconds) {
+        this.walkingSeconds = seconds;
+        return this;
+    }
+
+    public TransitRouteBuilder riding(long seconds) {
+        this.ridingSeconds = seconds;
+        return this;
+    }
+
+    public TransitRouteBuilder line(String shortName) {
+        this.line = shortName;
+        return this;
+    }
+
+    public TransitRouteBuilder stops(String from, LatLng fromLocation, String to, LatLng toLocation) {
+        this.departureStop = stop(from, fromLocation);
+        this.arrivalStop = stop(to, toLocation);
+        return this;
+    }
+
+    public DirectionsRoute build() {
+        DirectionsStep transitStep = new DirectionsStep();
+        transitStep.travelMode = TravelMode.TRANSIT;
+        transitStep.duration = duration(ridingSeconds);
+        transitStep.transitDetails = new TransitDetails();
+        transitStep.transitDetails.departureTime = departure;
+        transitStep.transitDetails.departureStop = departureStop;
+        transitStep.transitDetails.arrivalStop = arrivalStop;
+        transitStep.transitDetails.line = new TransitLine();
+        transitStep.transitDetails.line.shortName = line;
+        transitStep.transitDetails.line.vehicle = new Vehicle();
+        transitStep.transitDetails.line.vehicle.name = "Bus";
+
+        DirectionsLeg leg = new DirectionsLeg();
+        long legSeconds = ridingSeconds;
+
+        if (walkingSeconds == null) {
+            leg.steps = new DirectionsStep[] { transitStep };
+        } else {
+            DirectionsStep walkingStep = new DirectionsStep();
+            walkingStep.travelMode = TravelMode.WALKING;
+            walkingStep.duration = duration(walkingSeconds);
+            leg.steps = new DirectionsStep[] { walkingStep, transitStep };
+            legSeconds += walkingSeconds;
+        }
+        leg.departureTime = departure.minusSeconds((int) (legSeconds - ridingSeconds));
+        leg.arrivalTime = departure.plusSeconds((int) ridingSeconds);
+        leg.duration = duration(legSeconds);
+
+        DirectionsRoute route = new DirectionsRoute();
+        route.legs = new DirectionsLeg[] { leg };
+        return route;
+    }
+
+    public static Duration duration(long seconds) {
+        Duration duration = new Duration();
+        duration.inSeconds = seconds;
+        duration.humanReadable = (seconds / 60) + " mins";
+        return duration;
+    }
+
+    private static StopDetails stop(String name, LatLng location) {
+        StopDetails stop = new StopDetails();
+        stop.name = name;
+        stop.location = location;
+        return stop;
+    }
+}
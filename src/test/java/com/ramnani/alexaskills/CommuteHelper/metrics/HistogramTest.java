@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for Histogram
+ */
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        for (int i = 0; i < Histogram.BUCKET_COUNT - 1; i++) {
+            long lowest = Histogram.lowestValue(i);
+            long nextLowest = Histogram.lowestValue(i + 1);
+            assertEquals(i, Histogram.bucketIndex(lowest));
+            assertEquals(i, Histogram.bucketIndex(nextLowest - 1));
+            assertEquals(i + 1, Histogram.bucketIndex(nextLowest));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000, histogram.getMax());
+        assertWithinPrecision(5000000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(9900000, histogram.getValueAtPercentile(99));
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void snapshotAndResetMovesAllValues() {
+        Histogram histogram = new Histogram();
+        histogram.record(10);
+        histogram.record(20000);
+        histogram.record(Long.MAX_VALUE);
+
+        Histogram snapshot = histogram.snapshotAndReset();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(Histogram.MAX_VALUE, snapshot.getMax());
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+                Math.abs(expected - actual) <= expected / 16);
+    }
+}
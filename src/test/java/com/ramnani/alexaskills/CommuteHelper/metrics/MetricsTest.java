@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.metrics;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for Metrics
+ */
+public class MetricsTest {
+
+    private final List<String> documents = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        Metrics.configure(new StdoutMetricsSink(), 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void flushWritesEmbeddedMetricFormat() throws Exception {
+        Metrics.configure(documents::add, 0, TimeUnit.SECONDS);
+        Metrics.flush();
+        documents.clear();
+
+        Metrics.recordDependencyLatency("TestDependency", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(40));
+        Metrics.recordDependencyError("TestDependency");
+        Metrics.flush();
+
+        assertEquals(1, documents.size());
+        JsonNode document = new ObjectMapper().readTree(documents.get(0));
+        JsonNode directive = document.get("_aws").get("CloudWatchMetrics").get(0);
+        assertEquals(Metrics.NAMESPACE, directive.get("Namespace").getTextValue());
+        assertEquals(Metrics.DEPENDENCY, directive.get("Dimensions").get(0).get(0).getTextValue());
+        assertEquals("TestDependency", document.get(Metrics.DEPENDENCY).getTextValue());
+        assertEquals(1, document.get("LatencyCount").getLongValue());
+        assertEquals(1, document.get(Metrics.ERRORS).getLongValue());
+        assertTrue(document.get("LatencyP50").getDoubleValue() >= 37);
+
+        documents.clear();
+        Metrics.flush();
+        assertTrue(documents.isEmpty());
+    }
+
+    @Test
+    public void nothingIsRecordedWhileDisabled() {
+        Metrics.configure(documents::add, 0, TimeUnit.SECONDS);
+        Metrics.flush();
+        documents.clear();
+
+        Metrics.setEnabled(false);
+        Metrics.recordError(Metrics.INTENT, "TestIntent");
+        Metrics.setEnabled(true);
+        Metrics.flush();
+        assertTrue(documents.isEmpty());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for ReminderScheduler
+ */
+public class ReminderSchedulerTest {
+
+    private static final long LEAD = TimeUnit.MINUTES.toMillis(10);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Reminder> delivered = new ArrayList<>();
+    private final List<String> checked = new ArrayList<>();
+
+    /**
+     * The departure moved two minutes later since the reminder was set
+     */
+    private final DepartureChecker laterDeparture = reminder -> {
+        checked.add(reminder.getUserId());
+        return reminder.getLeaveAtMillis() + TimeUnit.MINUTES.toMillis(2);
+    };
+
+    @Test
+    public void departureIsRecheckedBeforeReminderIsDelivered() throws Exception {
+        ReminderScheduler scheduler = scheduler(store());
+        long now = System.currentTimeMillis();
+        long leaveAt = now + TimeUnit.MINUTES.toMillis(30);
+        scheduler.schedule("user-1", "bus", leaveAt);
+
+        Reminder reminder = scheduler.getPendingReminder("user-1");
+        long recheckAt = scheduler.recheckAt(reminder);
+        assertTrue(recheckAt >= leaveAt - LEAD && recheckAt <= leaveAt - LEAD / 2);
+
+        scheduler.tick(recheckAt - ReminderScheduler.TICK_MILLIS);
+        assertTrue(checked.isEmpty());
+
+        scheduler.tick(recheckAt);
+        assertEquals(1, checked.size());
+        assertTrue(delivered.isEmpty());
+
+        scheduler.tick(leaveAt + TimeUnit.MINUTES.toMillis(2));
+        assertEquals(1, delivered.size());
+        assertEquals(leaveAt + TimeUnit.MINUTES.toMillis(2), delivered.get(0).getLeaveAtMillis());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void cancelledAndReplacedRemindersAreNotDelivered() throws Exception {
+        ReminderScheduler scheduler = scheduler(store());
+        long leaveAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+        scheduler.schedule("user-1", "bus", leaveAt);
+        scheduler.schedule("user-2", "bus", leaveAt);
+        scheduler.schedule("user-2", "train", leaveAt + TimeUnit.MINUTES.toMillis(5));
+        assertTrue(scheduler.cancel("user-1"));
+
+        scheduler.tick(leaveAt + TimeUnit.HOURS.toMillis(1));
+        scheduler.tick(leaveAt + TimeUnit.HOURS.toMillis(2));
+
+        assertEquals(1, delivered.size());
+        assertEquals("train", delivered.get(0).getTransitType());
+    }
+
+    @Test
+    public void pendingRemindersSurviveRestart() throws Exception {
+        Path journal = folder.newFile().toPath();
+        long leaveAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2);
+
+        FileReminderStore store = new FileReminderStore(journal);
+        ReminderScheduler scheduler = scheduler(store);
+        scheduler.schedule("user-1", "bus", leaveAt);
+        scheduler.schedule("user-2", "bus", leaveAt);
+        scheduler.cancel("user-2");
+        scheduler.tick(System.currentTimeMillis());
+        store.close();
+
+        FileReminderStore reloaded = new FileReminderStore(journal);
+        ReminderScheduler restarted = scheduler(reloaded);
+        restarted.start();
+        restarted.stop();
+
+        assertEquals(1, restarted.getPendingCount());
+        assertNotNull(restarted.getPendingReminder("user-1"));
+        assertEquals(leaveAt, restarted.getPendingReminder("user-1").getLeaveAtMillis());
+    }
+
+    @Test
+    public void journalIsCompactedOnceRecordsAreSuperseded() throws Exception {
+        Path journal = folder.newFile().toPath();
+        long leaveAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2);
+        FileReminderStore store = new FileReminderStore(journal, 10);
+
+        for (int i = 0; i < 10; i++) {
+            store.save(new Reminder("user-1", "bus", leaveAt + i, false));
+        }
+        store.save(new Reminder("user-2", "bus", leaveAt, false));
+        store.flush();
+        assertEquals(11, store.getJournalRecords());
+
+        store.delete("user-2");
+        store.flush();
+        assertEquals(1, store.getJournalRecords());
+        store.close();
+
+        Collection<Reminder> reloaded = new FileReminderStore(journal).loadAll();
+        assertEquals(1, reloaded.size());
+        assertEquals(leaveAt + 9, reloaded.iterator().next().getLeaveAtMillis());
+    }
+
+    private FileReminderStore store() throws Exception {
+        return new FileReminderStore(folder.newFile().toPath());
+    }
+
+    private ReminderScheduler scheduler(ReminderStore store) {
+        return new ReminderScheduler(store, laterDeparture, delivered::add, LEAD, Runnable::run);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for TimingWheel
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long START = 1_500_000_123_000L;
+
+    @Test
+    public void remindersComeDueInTheirTickAcrossAllLevels() {
+        TimingWheel wheel = new TimingWheel(TICK, START);
+        Random random = new Random(42);
+        int count = 5000;
+
+        for (int i = 0; i < count; i++) {
+            // up to about 11 days out, which spans the first three levels
+            long dueAt = START + (long) (random.nextDouble() * 1_000_000) * TICK + random.nextInt((int) TICK);
+            wheel.add(reminder("user-" + i), dueAt);
+        }
+        int returned = 0;
+
+        for (long now = START; returned < count; now += 7 * TICK) {
+            List<Reminder> due = wheel.advance(now);
+
+            // due within the tick of now, and not before the previous advance
+            for (Reminder reminder : due) {
+                assertTrue(reminder.dueAtMillis / TICK <= now / TICK);
+                assertTrue("Returned late: " + reminder.dueAtMillis + " at " + now,
+                        reminder.dueAtMillis / TICK > (now - 7 * TICK) / TICK);
+            }
+            returned += due.size();
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void burstInTheSameTickIsReturnedTogether() {
+        TimingWheel wheel = new TimingWheel(TICK, START);
+        long dueAt = START + 3600 * TICK;
+
+        for (int i = 0; i < 10000; i++) {
+            wheel.add(reminder("user-" + i), dueAt + i % TICK);
+        }
+        assertEquals(0, wheel.advance(dueAt - 1).size());
+        assertEquals(10000, wheel.advance(dueAt).size());
+    }
+
+    @Test
+    public void overdueAndFarFutureReminders() {
+        TimingWheel wheel = new TimingWheel(TICK, START);
+        long farFuture = START + 400L * 24 * 3600 * TICK;
+        wheel.add(reminder("overdue"), START - 60 * TICK);
+        wheel.add(reminder("far"), farFuture);
+
+        assertEquals("overdue", wheel.advance(START).get(0).getUserId());
+        assertEquals(0, wheel.advance(farFuture - TICK).size());
+        assertEquals("far", wheel.advance(farFuture).get(0).getUserId());
+    }
+
+    private static Reminder reminder(String userId) {
+        return new Reminder(userId, "bus", 0, false);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.reminders;
+
+import com.ramnani.alexaskills.CommuteHelper.loadtest.LatencyDistribution;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubGoogleMapsService;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubTransitHelperDao;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for TransitDepartureChecker
+ */
+public class TransitDepartureCheckerTest {
+
+    @Test
+    public void departureNearestTheScheduledOneIsKept() {
+        StubTransitHelperDao dao = new StubTransitHelperDao(LatencyDistribution.NONE);
+        dao.upsertUser("user-1", "2400 Boyer Ave E, Seattle, WA 98112");
+        dao.addOrUpdateDestination("user-1", "work", "400 Broad St, Seattle, WA 98109");
+        TransitDepartureChecker checker = new TransitDepartureChecker(
+                new StubGoogleMapsService(LatencyDistribution.NONE), dao);
+
+        // The stub has departures every 10 minutes from the requested time,
+        // the first of them leaving within minutes of now
+        long leaveAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(20);
+        long rechecked = checker.recheck(new Reminder("user-1", "bus", leaveAt, false));
+
+        assertTrue(Math.abs(rechecked - leaveAt) <= TransitDepartureChecker.SLACK_MILLIS);
+    }
+
+    @Test
+    public void reminderIsDroppedWithoutWorkAddress() {
+        StubTransitHelperDao dao = new StubTransitHelperDao(LatencyDistribution.NONE);
+        dao.upsertUser("user-1", "2400 Boyer Ave E, Seattle, WA 98112");
+        TransitDepartureChecker checker = new TransitDepartureChecker(
+                new StubGoogleMapsService(LatencyDistribution.NONE), dao);
+
+        assertEquals(-1, checker.recheck(new Reminder("user-1", "bus", System.currentTimeMillis(), false)));
+    }
+}
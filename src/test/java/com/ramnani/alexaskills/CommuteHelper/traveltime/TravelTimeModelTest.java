@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.traveltime;
+
+import com.google.maps.model.Duration;
+import com.ramnani.alexaskills.CommuteHelper.TransitSuggestion;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import static com.ramnani.alexaskills.CommuteHelper.maps.TransitRouteBuilder.duration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for TravelTimeModel
+ */
+public class TravelTimeModelTest {
+
+    private static final DateTimeZone SEATTLE = DateTimeZone.forID("America/Los_Angeles");
+
+    /**
+     * A Monday, 8:10 AM in Seattle
+     */
+    private static final DateTime MONDAY_MORNING = new DateTime(2017, 3, 6, 8, 10, SEATTLE);
+
+    @Test
+    public void estimatesTypicalDurationForTheTimeOfWeek() {
+        TravelTimeModel model = new TravelTimeModel();
+
+        int[] durations = { 25, 28, 31, 28 };
+
+        for (int i = 0; i < durations.length; i++) {
+            model.record("user-1", "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(i), durations[i], 0), SEATTLE);
+        }
+        TravelTimeEstimate estimate = model.estimate("user-1", "bus", MONDAY_MORNING.plusMinutes(30));
+
+        assertNotNull(estimate);
+        assertEquals(4, estimate.getObservations());
+        assertEquals(28, estimate.getTotalMinutes(), UserTravelTimes.BIN_MINUTES);
+        assertTrue(estimate.getTotalDeviationMinutes() > 0 && estimate.getTotalDeviationMinutes() < 5);
+        assertEquals(5, estimate.getWalkingMinutes(), UserTravelTimes.BIN_MINUTES);
+
+        // a different day, and a different time of the same day
+        assertNull(model.estimate("user-1", "bus", MONDAY_MORNING.plusDays(1)));
+        assertNull(model.estimate("user-1", "bus", MONDAY_MORNING.plusHours(9)));
+        assertNull(model.estimate("user-2", "bus", MONDAY_MORNING));
+    }
+
+    @Test
+    public void slotIsTheLeavingTimeInTheUsersTimezone() {
+        TravelTimeModel model = new TravelTimeModel();
+        DateTime utc = MONDAY_MORNING.withZone(DateTimeZone.UTC);
+
+        for (int i = 0; i < 3; i++) {
+            model.record("user-1", "work", "bus", suggestion(utc.plusMinutes(i), 30, 0), SEATTLE);
+        }
+        assertNotNull(model.estimate("user-1", "bus", MONDAY_MORNING));
+    }
+
+    @Test
+    public void countersAreHalvedInsteadOfOverflowing() {
+        TravelTimeModel model = new TravelTimeModel();
+
+        for (int i = 0; i < 1000; i++) {
+            model.record("user-1", "work", "bus", suggestion(MONDAY_MORNING.plusSeconds(i), 20, 0), SEATTLE);
+        }
+        model.record("user-1", "work", "bus", suggestion(MONDAY_MORNING.minusMinutes(1), 60, 0), SEATTLE);
+        TravelTimeEstimate estimate = model.estimate("user-1", "bus", MONDAY_MORNING);
+
+        assertTrue(estimate.getObservations() <= 256);
+        assertEquals(20, estimate.getTotalMinutes(), UserTravelTimes.BIN_MINUTES);
+    }
+
+    @Test
+    public void numberOfUsersIsBounded() {
+        TravelTimeModel model = new TravelTimeModel(10);
+
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 3; j++) {
+                model.record("user-" + i, "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(j), 20, 0), SEATTLE);
+            }
+        }
+        int known = 0;
+
+        for (int i = 0; i < 100; i++) {
+            known += model.estimate("user-" + i, "bus", MONDAY_MORNING) == null ? 0 : 1;
+        }
+        assertTrue(known > 0 && known <= 10);
+    }
+
+    @Test
+    public void eachDepartureIsCountedOnce() {
+        TravelTimeModel model = new TravelTimeModel();
+
+        // asked again, with the same three buses in every response
+        for (int asked = 0; asked < 2; asked++) {
+            for (int i = 0; i < 3; i++) {
+                model.record("user-1", "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(10 * i), 30, 0), SEATTLE);
+            }
+        }
+        assertEquals(3, model.estimate("user-1", "bus", MONDAY_MORNING).getObservations());
+    }
+
+    @Test
+    public void staleSuggestionsAreNotCounted() {
+        TravelTimeModel model = new TravelTimeModel();
+
+        for (int i = 0; i < 3; i++) {
+            model.record("user-1", "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(i), 30, 5), SEATTLE);
+        }
+        assertNull(model.estimate("user-1", "bus", MONDAY_MORNING));
+    }
+
+    @Test
+    public void transitTypesAreLearntSeparately() {
+        TravelTimeModel model = new TravelTimeModel();
+
+        for (int i = 0; i < 4; i++) {
+            model.record("user-1", "work", "Train", suggestion(MONDAY_MORNING.plusMinutes(i), 15, 0), SEATTLE);
+        }
+        for (int i = 0; i < 3; i++) {
+            model.record("user-1", "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(i), 40, 0), SEATTLE);
+        }
+        assertEquals(40, model.estimate("user-1", "bus", MONDAY_MORNING).getTotalMinutes(),
+                UserTravelTimes.BIN_MINUTES);
+        assertEquals(15, model.estimate("user-1", "train", MONDAY_MORNING).getTotalMinutes(),
+                UserTravelTimes.BIN_MINUTES);
+        // without a transit type, the most observed one
+        assertEquals(4, model.estimate("user-1", null, MONDAY_MORNING).getObservations());
+    }
+
+    @Test
+    public void tripsPastTheRangeAreNotBinnedAsShorterOnes() {
+        TravelTimeModel model = new TravelTimeModel();
+
+        for (int i = 0; i < 4; i++) {
+            model.record("user-1", "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(i), 120, 0), SEATTLE);
+        }
+        TravelTimeEstimate estimate = model.estimate("user-1", "bus", MONDAY_MORNING);
+
+        assertTrue(estimate.isBeyondRange());
+        assertEquals(4, estimate.getObservations());
+        assertEquals("work", estimate.getDestination());
+        assertEquals("Bus", estimate.getVehicleType());
+
+        // a few long trips would skew the typical time of the others
+        for (int i = 0; i < 3; i++) {
+            model.record("user-2", "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(i), 30, 0), SEATTLE);
+        }
+        model.record("user-2", "work", "bus", suggestion(MONDAY_MORNING.plusMinutes(5), 120, 0), SEATTLE);
+        assertNull(model.estimate("user-2", "bus", MONDAY_MORNING));
+    }
+
+    private static TransitSuggestion suggestion(DateTime leavingTime, int totalMinutes, int staleMinutes) {
+        TransitSuggestion suggestion = new TransitSuggestion("Bus", leavingTime, leavingTime.plusMinutes(5),
+                leavingTime.plusMinutes(totalMinutes), minutes(totalMinutes), minutes(5),
+                minutes(totalMinutes - 5), "Walk to stop", "Bus towards work", "49", 0);
+        suggestion.setStaleMinutes(staleMinutes);
+        return suggestion;
+    }
+
+    private static Duration minutes(int minutes) {
+        return duration(minutes * 60L);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016-2017 Bhushan Ramnani (b.ramnani@gmail.com),
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ramnani.alexaskills.CommuteHelper.warmup;
+
+import com.ramnani.alexaskills.CommuteHelper.loadtest.LatencyDistribution;
+import com.ramnani.alexaskills.CommuteHelper.loadtest.StubTransitHelperDao;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Tests for WarmPool, and the pings and schedule it works from
+ */
+public class WarmPoolTest {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    public void recognizesPingsOnly() {
+        assertEquals(4, WarmupRequest.parse(bytes("{\"warmup\": {\"concurrency\": 4}}")).getConcurrency());
+        assertEquals(1, WarmupRequest.parse(bytes("{\"warmup\": {}}")).getConcurrency());
+
+        assertNull(WarmupRequest.parse(bytes("{\"version\":\"1.0\",\"request\":{\"type\":\"LaunchRequest\"}}")));
+        // An Alexa request that happens to mention the field
+        assertNull(WarmupRequest.parse(bytes("{\"warmup\":{},\"request\":{\"type\":\"LaunchRequest\"}}")));
+        assertNull(WarmupRequest.parse(bytes("not json \"warmup\"")));
+    }
+
+    @Test
+    public void scheduleWindowsMayWrapAroundMidnight() {
+        WarmupSchedule schedule = WarmupSchedule.parse("06:00-09:30, 23:00-01:00", "America/Los_Angeles");
+        DateTimeZone zone = DateTimeZone.forID("America/Los_Angeles");
+
+        assertTrue(schedule.isActive(new DateTime(2017, 3, 6, 7, 15, zone).getMillis()));
+        assertFalse(schedule.isActive(new DateTime(2017, 3, 6, 9, 30, zone).getMillis()));
+        assertTrue(schedule.isActive(new DateTime(2017, 3, 6, 0, 30, zone).getMillis()));
+        assertFalse(WarmupSchedule.parse("", "UTC").isActive(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void commutersWhoAskedSoonAfterThisTimeOfDayAreDue() {
+        RecentCommuters commuters = new RecentCommuters(new StubTransitHelperDao(LatencyDistribution.NONE));
+        long yesterday = (System.currentTimeMillis() / DAY_MILLIS - 1) * DAY_MILLIS;
+        commuters.record("early", yesterday + 7 * HOUR_MILLIS);
+        commuters.record("soon", yesterday + 8 * HOUR_MILLIS + TimeUnit.MINUTES.toMillis(20));
+        commuters.record("later", yesterday + 9 * HOUR_MILLIS);
+
+        long now = yesterday + DAY_MILLIS + 8 * HOUR_MILLIS;
+        assertEquals(Collections.singletonList("soon"),
+                commuters.dueWithin(now, TimeUnit.MINUTES.toMillis(30), 10));
+        assertEquals(Arrays.asList("soon", "later"), commuters.dueWithin(now, HOUR_MILLIS, 10));
+        assertEquals(Collections.singletonList("soon"), commuters.dueWithin(now, HOUR_MILLIS, 1));
+    }
+
+    @Test
+    public void commutersAreWrittenOncePerSlot() {
+        AtomicInteger writes = new AtomicInteger();
+        RecentCommuters commuters = new RecentCommuters(new StubTransitHelperDao(LatencyDistribution.NONE) {
+            @Override
+            public void putRecentCommuter(int slot, String userId, long expiresAtSeconds) {
+                writes.incrementAndGet();
+                super.putRecentCommuter(slot, userId, expiresAtSeconds);
+            }
+        });
+        long slotStart = System.currentTimeMillis() / TimeUnit.MINUTES.toMillis(RecentCommuters.SLOT_MINUTES)
+                * TimeUnit.MINUTES.toMillis(RecentCommuters.SLOT_MINUTES);
+
+        commuters.record("user", slotStart);
+        commuters.record("user", slotStart + TimeUnit.MINUTES.toMillis(1));
+        assertEquals(1, writes.get());
+
+        commuters.record("user", slotStart + DAY_MILLIS);
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void onlyTheFirstInvocationIsCold() {
+        WarmPool pool = new WarmPool(null, 0);
+
+        assertTrue(new String(pool.onWarmup(new WarmupRequest(1)), StandardCharsets.UTF_8)
+                .contains("\"coldStart\":true"));
+        assertTrue(new String(pool.onWarmup(new WarmupRequest(1)), StandardCharsets.UTF_8)
+                .contains("\"coldStart\":false"));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}